@@ -0,0 +1,105 @@
+package hdb.data.relational;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import external_sort.RunCodec;
+import hdb.data.relational.Tuple.TypeException;
+
+/**
+ * A {@code TupleCodec} encodes {@code Tuple}s into raw bytes for the runs of an {@code ExternalSort} (e.g., one whose
+ * {@code codec()} returns it) and decodes them from such runs. The attribute values of each {@code Tuple} are written
+ * one after another without any type information: a {@code RunCodec} for the type of each attribute ({@code Integer},
+ * {@code Long}, {@code Double}, or {@code String}) is chosen from the {@code RelationSchema} once when the
+ * {@code TupleCodec} is constructed.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class TupleCodec implements RunCodec<Tuple> {
+
+	/**
+	 * The {@code RelationSchema} of the {@code Tuple}s.
+	 */
+	RelationSchema schema;
+
+	/**
+	 * The {@code RunCodec} for the values of each attribute.
+	 */
+	RunCodec<Object>[] codecs;
+
+	/**
+	 * Constructs a {@code TupleCodec}.
+	 *
+	 * @param schema
+	 *            the {@code RelationSchema} of the {@code Tuple}s
+	 * @throws IllegalArgumentException
+	 *             if the type of an attribute is not {@code Integer}, {@code Long}, {@code Double}, or {@code String}
+	 */
+	@SuppressWarnings("unchecked")
+	public TupleCodec(RelationSchema schema) {
+		this.schema = schema;
+		this.codecs = (RunCodec<Object>[]) new RunCodec<?>[schema.size()];
+		for (int i = 0; i < codecs.length; i++)
+			codecs[i] = (RunCodec<Object>) codec(schema.attributeTypes[i]);
+	}
+
+	/**
+	 * Returns a {@code RunCodec} for the values of the specified type.
+	 *
+	 * @param type
+	 *            the type of an attribute
+	 * @return a {@code RunCodec} for the values of the specified type
+	 * @throws IllegalArgumentException
+	 *             if the specified type is not {@code Integer}, {@code Long}, {@code Double}, or {@code String}
+	 */
+	static RunCodec<?> codec(Class<?> type) {
+		if (type == Integer.class)
+			return RunCodec.INTEGER;
+		if (type == Long.class)
+			return RunCodec.LONG;
+		if (type == Double.class)
+			return RunCodec.DOUBLE;
+		if (type == String.class)
+			return RunCodec.STRING;
+		throw new IllegalArgumentException("no codec for " + type.getName());
+	}
+
+	/**
+	 * Writes the attribute values of the specified {@code Tuple} to the specified {@code DataOutput}.
+	 *
+	 * @param o
+	 *            a {@code Tuple}
+	 * @param out
+	 *            a {@code DataOutput}
+	 * @throws IOException
+	 *             if an I/O error occurs (e.g., the {@code DataOutput} runs out of space)
+	 */
+	@Override
+	public void write(Tuple o, DataOutput out) throws IOException {
+		for (int i = 0; i < codecs.length; i++)
+			codecs[i].write(o.attributeValues[i], out);
+	}
+
+	/**
+	 * Reads a {@code Tuple} from the specified {@code DataInput}.
+	 *
+	 * @param in
+	 *            a {@code DataInput}
+	 * @return the {@code Tuple} read
+	 * @throws IOException
+	 *             if an I/O error occurs or the attribute values read do not match the {@code RelationSchema}
+	 */
+	@Override
+	public Tuple read(DataInput in) throws IOException {
+		Object[] attributeValues = new Object[codecs.length];
+		for (int i = 0; i < codecs.length; i++)
+			attributeValues[i] = codecs[i].read(in);
+		try {
+			return new Tuple(schema, attributeValues);
+		} catch (TypeException e) {
+			throw new IOException("attribute values do not match " + schema, e);
+		}
+	}
+
+}
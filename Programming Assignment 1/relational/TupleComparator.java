@@ -0,0 +1,188 @@
+package hdb.data.relational;
+
+import java.util.Comparator;
+
+import hdb.data.relational.RelationSchema.InvalidAttributeIndexException;
+
+/**
+ * A {@code TupleComparator} compares {@code Tuple}s by a list of attributes, each in ascending or descending order.
+ * The attributes are resolved against a {@code RelationSchema} once when the {@code TupleComparator} is constructed,
+ * and a {@code Comparator} specialized for the type of each attribute ({@code Integer}, {@code Double},
+ * {@code String}, or any other {@code Comparable} type) is chosen at that time so that comparing two {@code Tuple}s
+ * involves neither type checks nor lookups in the {@code RelationSchema}. A {@code TupleComparator} can thus be used
+ * for sorting {@code Tuple}s (e.g., by an {@code ExternalSort} whose {@code comparator()} returns it).
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class TupleComparator implements Comparator<Tuple> {
+
+	/**
+	 * A {@code Comparator} for {@code Integer} attribute values.
+	 */
+	static final Comparator<Object> INTEGER = new Comparator<Object>() {
+
+		@Override
+		public int compare(Object o1, Object o2) {
+			return Integer.compare((Integer) o1, (Integer) o2);
+		}
+
+	};
+
+	/**
+	 * A {@code Comparator} for {@code Double} attribute values (consistent with {@link Double#compareTo(Double)}).
+	 */
+	static final Comparator<Object> DOUBLE = new Comparator<Object>() {
+
+		@Override
+		public int compare(Object o1, Object o2) {
+			return Double.compare((Double) o1, (Double) o2);
+		}
+
+	};
+
+	/**
+	 * A {@code Comparator} for {@code String} attribute values.
+	 */
+	static final Comparator<Object> STRING = new Comparator<Object>() {
+
+		@Override
+		public int compare(Object o1, Object o2) {
+			return ((String) o1).compareTo((String) o2);
+		}
+
+	};
+
+	/**
+	 * A {@code Comparator} for attribute values of any other {@code Comparable} type.
+	 */
+	static final Comparator<Object> COMPARABLE = new Comparator<Object>() {
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public int compare(Object o1, Object o2) {
+			return ((Comparable<Object>) o1).compareTo(o2);
+		}
+
+	};
+
+	/**
+	 * The indexes of the attributes by which {@code Tuple}s are compared.
+	 */
+	int[] attributeIndexes;
+
+	/**
+	 * The {@code Comparator}s for the values of the attributes by which {@code Tuple}s are compared.
+	 */
+	Comparator<Object>[] comparators;
+
+	/**
+	 * Constructs a {@code TupleComparator} that compares {@code Tuple}s by the specified attributes in ascending order.
+	 *
+	 * @param schema
+	 *            the {@code RelationSchema} of the {@code Tuple}s
+	 * @param attributeIndexes
+	 *            the indexes of the attributes by which {@code Tuple}s are compared (in order of significance)
+	 * @throws InvalidAttributeIndexException
+	 *             if an invalid attribute index is given
+	 * @throws IllegalArgumentException
+	 *             if the type of a specified attribute is not {@code Comparable}
+	 */
+	public TupleComparator(RelationSchema schema, int... attributeIndexes) throws InvalidAttributeIndexException {
+		this(schema, attributeIndexes, new boolean[attributeIndexes.length]);
+	}
+
+	/**
+	 * Constructs a {@code TupleComparator} that compares {@code Tuple}s by the specified attributes.
+	 *
+	 * @param schema
+	 *            the {@code RelationSchema} of the {@code Tuple}s
+	 * @param attributeIndexes
+	 *            the indexes of the attributes by which {@code Tuple}s are compared (in order of significance)
+	 * @param descending
+	 *            indicates, for each specified attribute, whether {@code Tuple}s are compared in descending order
+	 * @throws InvalidAttributeIndexException
+	 *             if an invalid attribute index is given
+	 * @throws IllegalArgumentException
+	 *             if the numbers of attribute indexes and directions do not match or the type of a specified
+	 *             attribute is not {@code Comparable}
+	 */
+	@SuppressWarnings("unchecked")
+	public TupleComparator(RelationSchema schema, int[] attributeIndexes, boolean[] descending)
+			throws InvalidAttributeIndexException {
+		if (attributeIndexes.length != descending.length)
+			throw new IllegalArgumentException("attribute indexes and directions do not match");
+		this.attributeIndexes = attributeIndexes.clone();
+		this.comparators = (Comparator<Object>[]) new Comparator<?>[attributeIndexes.length];
+		for (int i = 0; i < attributeIndexes.length; i++) {
+			Comparator<Object> comparator = comparator(schema.attributeType(attributeIndexes[i]));
+			comparators[i] = descending[i] ? reverse(comparator) : comparator;
+		}
+	}
+
+	/**
+	 * Returns a {@code Comparator} for the values of the specified type.
+	 *
+	 * @param type
+	 *            the type of an attribute
+	 * @return a {@code Comparator} for the values of the specified type
+	 * @throws IllegalArgumentException
+	 *             if the specified type is not {@code Comparable}
+	 */
+	static Comparator<Object> comparator(Class<?> type) {
+		if (type == Integer.class)
+			return INTEGER;
+		if (type == Double.class)
+			return DOUBLE;
+		if (type == String.class)
+			return STRING;
+		if (Comparable.class.isAssignableFrom(type))
+			return COMPARABLE;
+		throw new IllegalArgumentException(type.getName() + " is not Comparable");
+	}
+
+	/**
+	 * Returns a {@code Comparator} that imposes the reverse of the ordering of the specified {@code Comparator}.
+	 *
+	 * @param comparator
+	 *            a {@code Comparator}
+	 * @return a {@code Comparator} that imposes the reverse of the ordering of the specified {@code Comparator}
+	 */
+	static Comparator<Object> reverse(Comparator<Object> comparator) {
+		return new Comparator<Object>() {
+
+			@Override
+			public int compare(Object o1, Object o2) {
+				return comparator.compare(o2, o1);
+			}
+
+		};
+	}
+
+	/**
+	 * Compares the specified {@code Tuple}s by the attributes of this {@code TupleComparator} in order of significance.
+	 * A {@code Tuple} never has a {@code null} attribute value (see {@link Tuple#setAttribute(int, Object)}), so no
+	 * ordering of {@code null}s is needed.
+	 *
+	 * @param t1
+	 *            a {@code Tuple}
+	 * @param t2
+	 *            a {@code Tuple}
+	 * @return a negative integer, zero, or a positive integer if the first {@code Tuple} is less than, equal to, or
+	 *         greater than the second {@code Tuple}, respectively
+	 * @throws NullPointerException
+	 *             if either {@code Tuple} is {@code null}
+	 */
+	@Override
+	public int compare(Tuple t1, Tuple t2) {
+		Object[] v1 = t1.attributeValues;
+		Object[] v2 = t2.attributeValues;
+		for (int i = 0; i < attributeIndexes.length; i++) {
+			int a = attributeIndexes[i];
+			int c = comparators[i].compare(v1[a], v2[a]);
+			if (c != 0)
+				return c;
+		}
+		return 0;
+	}
+
+}
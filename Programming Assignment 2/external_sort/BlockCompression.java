@@ -0,0 +1,278 @@
+package external_sort;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@code BlockCompression} compresses each block of a run before the block is written and decompresses the block
+ * after it is read. Compression trades CPU time for disk bandwidth, which pays off when merge passes are I/O-bound.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public interface BlockCompression {
+
+	/**
+	 * A fast {@code BlockCompression} that replaces repeated byte sequences with references to their earlier
+	 * occurrences (an LZ77 variant in the style of LZ4 implemented in pure Java).
+	 */
+	public static final BlockCompression FAST = new BlockCompression() {
+
+		/**
+		 * The number of bits of the hash values used for finding earlier occurrences.
+		 */
+		final int HASH_BITS = 12;
+
+		/**
+		 * The minimum length of a match.
+		 */
+		final int MIN_MATCH = 4;
+
+		/**
+		 * The maximum distance to a match.
+		 */
+		final int MAX_OFFSET = 65535;
+
+		@Override
+		public int maxCompressedLength(int length) {
+			return length + length / 255 + 16;
+		}
+
+		@Override
+		public int compress(byte[] src, int length, byte[] dst) {
+			int[] table = new int[1 << HASH_BITS]; // the last position (plus 1) of each hashed 4-byte sequence
+			int anchor = 0; // the start of the literals not yet emitted
+			int o = 0;
+			for (int i = 0; i + MIN_MATCH <= length;) {
+				int v = readInt(src, i);
+				int h = (v * -1640531535) >>> (32 - HASH_BITS);
+				int ref = table[h] - 1;
+				table[h] = i + 1;
+				if (ref < 0 || i - ref > MAX_OFFSET || readInt(src, ref) != v) {
+					i++;
+					continue;
+				}
+				int matchLength = MIN_MATCH;
+				while (i + matchLength < length && src[ref + matchLength] == src[i + matchLength])
+					matchLength++;
+				o = emit(src, anchor, i - anchor, dst, o, matchLength - MIN_MATCH);
+				dst[o++] = (byte) (i - ref);
+				dst[o++] = (byte) ((i - ref) >>> 8);
+				o = writeLength(dst, o, matchLength - MIN_MATCH);
+				i += matchLength;
+				anchor = i;
+			}
+			return emit(src, anchor, length - anchor, dst, o, 0); // the last literals
+		}
+
+		@Override
+		public void decompress(byte[] src, int length, byte[] dst, int dstLength) throws IOException {
+			try {
+				int s = 0;
+				int d = 0;
+				while (s < length) {
+					int token = src[s++] & 0xff;
+					int literals = token >>> 4;
+					if (literals == 15) {
+						int b;
+						do {
+							b = src[s++] & 0xff;
+							literals += b;
+						} while (b == 255);
+					}
+					System.arraycopy(src, s, dst, d, literals);
+					s += literals;
+					d += literals;
+					if (s >= length) // the last literals
+						break;
+					int from = d - ((src[s++] & 0xff) | (src[s++] & 0xff) << 8);
+					int matchLength = token & 15;
+					if (matchLength == 15) {
+						int b;
+						do {
+							b = src[s++] & 0xff;
+							matchLength += b;
+						} while (b == 255);
+					}
+					for (int end = d + matchLength + MIN_MATCH; d < end;) // the match may overlap the output
+						dst[d++] = dst[from++];
+				}
+				if (d != dstLength)
+					throw new IOException("corrupt block: " + d + " bytes decompressed instead of " + dstLength);
+			} catch (IndexOutOfBoundsException e) {
+				throw new IOException("corrupt block", e);
+			}
+		}
+
+		/**
+		 * Emits a token followed by the specified literals.
+		 *
+		 * @param src
+		 *            the source array
+		 * @param from
+		 *            the position of the literals in the source array
+		 * @param literals
+		 *            the number of literals
+		 * @param dst
+		 *            the destination array
+		 * @param o
+		 *            the position in the destination array
+		 * @param matchLength
+		 *            the length of the following match minus {@link #MIN_MATCH}
+		 * @return the position in the destination array after the literals
+		 */
+		int emit(byte[] src, int from, int literals, byte[] dst, int o, int matchLength) {
+			dst[o++] = (byte) (Math.min(literals, 15) << 4 | Math.min(matchLength, 15));
+			if (literals >= 15)
+				o = writeLength(dst, o, literals);
+			System.arraycopy(src, from, dst, o, literals);
+			return o + literals;
+		}
+
+		/**
+		 * Writes the part of the specified length that does not fit in a token (i.e., the length minus 15 if the
+		 * length is at least 15) as a sequence of bytes each of which is 255 except the last one.
+		 *
+		 * @param dst
+		 *            the destination array
+		 * @param o
+		 *            the position in the destination array
+		 * @param length
+		 *            a length
+		 * @return the position in the destination array after the written bytes
+		 */
+		int writeLength(byte[] dst, int o, int length) {
+			if (length < 15)
+				return o;
+			for (length -= 15; length >= 255; length -= 255)
+				dst[o++] = (byte) 255;
+			dst[o++] = (byte) length;
+			return o;
+		}
+
+		/**
+		 * Reads a 4-byte integer from the specified array.
+		 *
+		 * @param b
+		 *            a byte array
+		 * @param i
+		 *            a position in the byte array
+		 * @return the 4-byte integer at the specified position
+		 */
+		int readInt(byte[] b, int i) {
+			return (b[i] & 0xff) | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff) << 16 | (b[i + 3] & 0xff) << 24;
+		}
+
+	};
+
+	/**
+	 * A {@code BlockCompression} that uses {@code java.util.zip.Deflater} (which compresses better than {@link #FAST}
+	 * but is slower).
+	 */
+	public static final BlockCompression DEFLATE = new BlockCompression() {
+
+		/**
+		 * The {@code Deflater} of each thread.
+		 */
+		ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+
+			@Override
+			protected Deflater initialValue() {
+				return new Deflater(Deflater.BEST_SPEED);
+			}
+
+		};
+
+		/**
+		 * The {@code Inflater} of each thread.
+		 */
+		ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+
+			@Override
+			protected Inflater initialValue() {
+				return new Inflater();
+			}
+
+		};
+
+		@Override
+		public int maxCompressedLength(int length) {
+			return length + (length >>> 12) + (length >>> 14) + (length >>> 25) + 13 + 64;
+		}
+
+		@Override
+		public int compress(byte[] src, int length, byte[] dst) {
+			Deflater deflater = deflaters.get();
+			deflater.reset();
+			deflater.setInput(src, 0, length);
+			deflater.finish();
+			int o = 0;
+			while (!deflater.finished() && o < dst.length)
+				o += deflater.deflate(dst, o, dst.length - o);
+			return deflater.finished() ? o : dst.length;
+		}
+
+		@Override
+		public void decompress(byte[] src, int length, byte[] dst, int dstLength) throws IOException {
+			Inflater inflater = inflaters.get();
+			inflater.reset();
+			inflater.setInput(src, 0, length);
+			try {
+				int d = 0;
+				while (!inflater.finished() && d < dstLength) {
+					int n = inflater.inflate(dst, d, dstLength - d);
+					if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+						break;
+					d += n;
+				}
+				if (d != dstLength)
+					throw new IOException("corrupt block: " + d + " bytes decompressed instead of " + dstLength);
+			} catch (DataFormatException e) {
+				throw new IOException("corrupt block", e);
+			}
+		}
+
+	};
+
+	/**
+	 * Returns the maximum number of bytes that {@link #compress(byte[], int, byte[])} may produce from the specified
+	 * number of bytes.
+	 *
+	 * @param length
+	 *            the number of bytes to compress
+	 * @return the maximum number of bytes that {@link #compress(byte[], int, byte[])} may produce from the specified
+	 *         number of bytes
+	 */
+	int maxCompressedLength(int length);
+
+	/**
+	 * Compresses the specified number of bytes from the beginning of the source array into the destination array.
+	 *
+	 * @param src
+	 *            the source array
+	 * @param length
+	 *            the number of bytes to compress
+	 * @param dst
+	 *            the destination array (at least {@link #maxCompressedLength(int)} bytes long)
+	 * @return the number of compressed bytes
+	 */
+	int compress(byte[] src, int length, byte[] dst);
+
+	/**
+	 * Decompresses the specified number of bytes from the beginning of the source array into the destination array.
+	 *
+	 * @param src
+	 *            the source array
+	 * @param length
+	 *            the number of compressed bytes
+	 * @param dst
+	 *            the destination array
+	 * @param dstLength
+	 *            the expected number of decompressed bytes
+	 * @throws IOException
+	 *             if the compressed bytes are corrupt
+	 */
+	void decompress(byte[] src, int length, byte[] dst, int dstLength) throws IOException;
+
+}
@@ -0,0 +1,428 @@
+package external_sort;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@code BlockIndex} records, for each block of a run, the offset of the block in the run, the number of elements
+ * in the block, and the first and last elements of the block (i.e., the fence keys of the block). If
+ * {@link ExternalSort#blockIndex()} is {@code true}, each run ends with its {@code BlockIndex} (encoded using the
+ * {@code RunCodec} of the {@code ExternalSort} or Java serialization) followed by the offset of the
+ * {@code BlockIndex} (8 bytes), which is also the length of the data in the run. Readers can thus count the elements
+ * in a run without decoding them and read only the blocks that overlap a key range.
+ *
+ * A {@code BlockIndex} can also be sampled from a run that has no {@code BlockIndex} (see
+ * {@link #sample(String, int, ExternalSort)}); such a sparse {@code BlockIndex} covers only some of the blocks and
+ * records neither the numbers of elements nor the last elements of the blocks.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public class BlockIndex<T> {
+
+	/**
+	 * The name of the run (i.e., the file name).
+	 */
+	String fileName;
+
+	/**
+	 * The {@code ExternalSort} that wrote the run.
+	 */
+	ExternalSort<T> externalSort;
+
+	/**
+	 * The offsets of the blocks.
+	 */
+	long[] offsets;
+
+	/**
+	 * The numbers of elements in the blocks ({@code null} if this {@code BlockIndex} is sparse).
+	 */
+	int[] counts;
+
+	/**
+	 * The first elements of the blocks.
+	 */
+	List<T> firstKeys;
+
+	/**
+	 * The last elements of the blocks ({@code null} if this {@code BlockIndex} is sparse).
+	 */
+	List<T> lastKeys;
+
+	/**
+	 * The length of the data in the run (i.e., the offset following the last block).
+	 */
+	long dataLength;
+
+	/**
+	 * Constructs a {@code BlockIndex}.
+	 *
+	 * @param fileName
+	 *            the name of the run (i.e., the file name)
+	 * @param externalSort
+	 *            the {@code ExternalSort} that wrote the run
+	 * @param offsets
+	 *            the offsets of the blocks
+	 * @param counts
+	 *            the numbers of elements in the blocks ({@code null} if the {@code BlockIndex} is sparse)
+	 * @param firstKeys
+	 *            the first elements of the blocks
+	 * @param lastKeys
+	 *            the last elements of the blocks ({@code null} if the {@code BlockIndex} is sparse)
+	 * @param dataLength
+	 *            the length of the data in the run
+	 */
+	BlockIndex(String fileName, ExternalSort<T> externalSort, long[] offsets, int[] counts, List<T> firstKeys,
+			List<T> lastKeys, long dataLength) {
+		this.fileName = fileName;
+		this.externalSort = externalSort;
+		this.offsets = offsets;
+		this.counts = counts;
+		this.firstKeys = firstKeys;
+		this.lastKeys = lastKeys;
+		this.dataLength = dataLength;
+	}
+
+	/**
+	 * Reads the {@code BlockIndex} at the end of the specified run.
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 * @param fileName
+	 *            the name of the run (i.e., the file name)
+	 * @param externalSort
+	 *            the {@code ExternalSort} that wrote the run (and whose {@link ExternalSort#blockIndex()} is
+	 *            {@code true})
+	 * @return the {@code BlockIndex} of the specified run
+	 * @throws IOException
+	 *             if an I/O error occurs or the run has no valid {@code BlockIndex}
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> BlockIndex<T> read(String fileName, ExternalSort<T> externalSort)
+			throws IOException, ClassNotFoundException {
+		byte[] footer;
+		long dataLength;
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			dataLength = dataLength(file);
+			footer = new byte[(int) (file.length() - 8 - dataLength)];
+			file.seek(dataLength);
+			file.readFully(footer);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(footer))) {
+			int blocks = in.readInt();
+			long[] offsets = new long[blocks];
+			int[] counts = new int[blocks];
+			ArrayList<T> firstKeys = new ArrayList<T>(blocks);
+			ArrayList<T> lastKeys = new ArrayList<T>(blocks);
+			RunCodec<T> codec = externalSort.codec;
+			for (int i = 0; i < blocks; i++) {
+				offsets[i] = in.readLong();
+				counts[i] = in.readInt();
+				firstKeys.add(codec == null ? (T) in.readObject() : codec.read(in));
+				lastKeys.add(codec == null ? (T) in.readObject() : codec.read(in));
+			}
+			return new BlockIndex<T>(fileName, externalSort, offsets, counts, firstKeys, lastKeys, dataLength);
+		}
+	}
+
+	/**
+	 * Returns the length of the data in the specified run, which ends with a {@code BlockIndex}.
+	 *
+	 * @param fileName
+	 *            the name of the run (i.e., the file name)
+	 * @return the length of the data in the specified run
+	 * @throws IOException
+	 *             if an I/O error occurs or the run has no valid {@code BlockIndex}
+	 */
+	static long dataLength(String fileName) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			return dataLength(file);
+		}
+	}
+
+	/**
+	 * Returns the length of the data in the specified run, which ends with a {@code BlockIndex}.
+	 *
+	 * @param file
+	 *            the run
+	 * @return the length of the data in the specified run
+	 * @throws IOException
+	 *             if an I/O error occurs or the run has no valid {@code BlockIndex}
+	 */
+	static long dataLength(RandomAccessFile file) throws IOException {
+		long length = file.length();
+		if (length < 8)
+			throw new IOException("no block index: " + length + " bytes");
+		file.seek(length - 8);
+		long dataLength = file.readLong();
+		if (dataLength < 0 || dataLength > length - 8)
+			throw new IOException("corrupt block index: invalid offset " + dataLength);
+		return dataLength;
+	}
+
+	/**
+	 * Encodes the specified {@code BlockIndex} entries and the offset of the encoded entries (i.e., the footer of a
+	 * run).
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 * @param offsets
+	 *            the offsets of the blocks
+	 * @param counts
+	 *            the numbers of elements in the blocks
+	 * @param firstKeys
+	 *            the first elements of the blocks
+	 * @param lastKeys
+	 *            the last elements of the blocks
+	 * @param dataLength
+	 *            the length of the data in the run
+	 * @param codec
+	 *            the {@code RunCodec} for encoding the elements ({@code null} if Java serialization is used)
+	 * @return the footer of the run
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	static <T> byte[] footer(List<Long> offsets, List<Integer> counts, List<T> firstKeys, List<T> lastKeys,
+			long dataLength, RunCodec<T> codec) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeInt(offsets.size());
+			for (int i = 0; i < offsets.size(); i++) {
+				out.writeLong(offsets.get(i));
+				out.writeInt(counts.get(i));
+				if (codec == null) {
+					out.writeObject(firstKeys.get(i));
+					out.writeObject(lastKeys.get(i));
+				} else {
+					codec.write(firstKeys.get(i), out);
+					codec.write(lastKeys.get(i), out);
+				}
+			}
+		}
+		new DataOutputStream(bytes).writeLong(dataLength); // outside the object stream so that it ends the footer
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Samples a sparse {@code BlockIndex} from the specified run by decoding the first element of evenly spaced
+	 * blocks (see {@link RunReader#blockOffsets(String, int, ExternalSort)}).
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 * @param fileName
+	 *            the name of the run (i.e., the file name)
+	 * @param samples
+	 *            the maximum number of blocks to sample (the first block is always sampled)
+	 * @param externalSort
+	 *            the {@code ExternalSort} that wrote the run
+	 * @return a sparse {@code BlockIndex} of the specified run
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> BlockIndex<T> sample(String fileName, int samples, ExternalSort<T> externalSort)
+			throws IOException, ClassNotFoundException {
+		long[] blocks = RunReader.blockOffsets(fileName, externalSort.bufferSize, externalSort);
+		long dataLength = RunReader.length(fileName, externalSort);
+		int stride = Math.max(1, (blocks.length + samples - 1) / samples);
+		long[] offsets = new long[(blocks.length + stride - 1) / stride];
+		ArrayList<T> firstKeys = new ArrayList<T>();
+		for (int i = 0; i < offsets.length; i++) {
+			int b = i * stride;
+			long end = b + 1 < blocks.length ? blocks[b + 1] : dataLength;
+			RunReader reader = new RunReader(fileName, externalSort.bufferSize, externalSort, false, blocks[b], end);
+			offsets[i] = blocks[b];
+			firstKeys.add((T) reader.next());
+			reader.close();
+		}
+		return new BlockIndex<T>(fileName, externalSort, offsets, null, firstKeys, null, dataLength);
+	}
+
+	/**
+	 * Returns the number of blocks covered by this {@code BlockIndex}.
+	 *
+	 * @return the number of blocks covered by this {@code BlockIndex}
+	 */
+	public int blockCount() {
+		return offsets.length;
+	}
+
+	/**
+	 * Returns the offset of the specified block.
+	 *
+	 * @param block
+	 *            the index of a block
+	 * @return the offset of the specified block (the length of the data in the run if the specified index equals the
+	 *         number of blocks)
+	 */
+	public long offset(int block) {
+		return block < offsets.length ? offsets[block] : dataLength;
+	}
+
+	/**
+	 * Returns the first element of the specified block.
+	 *
+	 * @param block
+	 *            the index of a block
+	 * @return the first element of the specified block
+	 */
+	public T firstKey(int block) {
+		return firstKeys.get(block);
+	}
+
+	/**
+	 * Returns the last element of the specified block.
+	 *
+	 * @param block
+	 *            the index of a block
+	 * @return the last element of the specified block
+	 * @throws UnsupportedOperationException
+	 *             if this {@code BlockIndex} is sparse
+	 */
+	public T lastKey(int block) {
+		if (lastKeys == null)
+			throw new UnsupportedOperationException("sparse block index");
+		return lastKeys.get(block);
+	}
+
+	/**
+	 * Returns the number of elements in the run without decoding them.
+	 *
+	 * @return the number of elements in the run
+	 * @throws UnsupportedOperationException
+	 *             if this {@code BlockIndex} is sparse
+	 */
+	public long count() {
+		if (counts == null)
+			throw new UnsupportedOperationException("sparse block index");
+		long count = 0;
+		for (int c : counts)
+			count += c;
+		return count;
+	}
+
+	/**
+	 * Returns the number of elements in the specified key range of the run. Only the blocks that partially overlap
+	 * the range (at most two) are decoded.
+	 *
+	 * @param lower
+	 *            the lower bound (inclusive) of the range ({@code null} if the range has no lower bound)
+	 * @param upper
+	 *            the upper bound (exclusive) of the range ({@code null} if the range has no upper bound)
+	 * @return the number of elements in the specified key range of the run
+	 * @throws UnsupportedOperationException
+	 *             if this {@code BlockIndex} is sparse
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	public long count(T lower, T upper) throws IOException, ClassNotFoundException {
+		if (counts == null)
+			throw new UnsupportedOperationException("sparse block index");
+		Comparator<? super T> comparator = externalSort.comparator;
+		long count = 0;
+		for (int b = startBlock(lower), end = endBlock(upper); b < end; b++) {
+			if ((lower == null || comparator.compare(firstKeys.get(b), lower) >= 0)
+					&& (upper == null || comparator.compare(lastKeys.get(b), upper) < 0))
+				count += counts[b]; // the block lies within the range
+			else
+				for (Iterator<T> i = range(b, b + 1, lower, upper); i.hasNext(); i.next())
+					count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns an {@code Iterator} over the elements in the specified key range of the run, which reads only the blocks
+	 * that overlap the range.
+	 *
+	 * @param lower
+	 *            the lower bound (inclusive) of the range ({@code null} if the range has no lower bound)
+	 * @param upper
+	 *            the upper bound (exclusive) of the range ({@code null} if the range has no upper bound)
+	 * @return an {@code Iterator} over the elements in the specified key range of the run
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	public Iterator<T> range(T lower, T upper) throws IOException, ClassNotFoundException {
+		return range(startBlock(lower), endBlock(upper), lower, upper);
+	}
+
+	/**
+	 * Returns an {@code Iterator} over the elements in the specified key range of the specified blocks.
+	 *
+	 * @param start
+	 *            the index of the first block to read
+	 * @param end
+	 *            the index following that of the last block to read
+	 * @param lower
+	 *            the lower bound (inclusive) of the range ({@code null} if the range has no lower bound)
+	 * @param upper
+	 *            the upper bound (exclusive) of the range ({@code null} if the range has no upper bound)
+	 * @return an {@code Iterator} over the elements in the specified key range of the specified blocks
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@SuppressWarnings("unchecked")
+	Iterator<T> range(int start, int end, T lower, T upper) throws IOException, ClassNotFoundException {
+		return new RangeIterator<T>((Iterator<T>) new RunReader(fileName, externalSort.bufferSize, externalSort,
+				externalSort.mapFinalRuns, offset(start), offset(Math.max(start, end))), lower, upper,
+				externalSort.comparator);
+	}
+
+	/**
+	 * Returns the index of the first block that may contain elements greater than or equal to the specified lower
+	 * bound: the first block whose last element is not smaller than the lower bound or, if this {@code BlockIndex} is
+	 * sparse, the last covered block whose first element is smaller than the lower bound.
+	 *
+	 * @param lower
+	 *            the lower bound ({@code null} if there is no lower bound)
+	 * @return the index of the first block that may contain elements greater than or equal to the specified lower
+	 *         bound (the number of blocks if there is no such block)
+	 */
+	public int startBlock(T lower) {
+		if (lower == null || offsets.length == 0)
+			return 0;
+		Comparator<? super T> comparator = externalSort.comparator;
+		if (lastKeys != null)
+			return PartitionedMerge.lowerBound(lastKeys, lower, comparator);
+		return Math.max(0, PartitionedMerge.lowerBound(firstKeys, lower, comparator) - 1);
+	}
+
+	/**
+	 * Returns the index of the first block whose first element is not smaller than the specified upper bound (i.e.,
+	 * the first block that contains no element smaller than the upper bound).
+	 *
+	 * @param upper
+	 *            the upper bound ({@code null} if there is no upper bound)
+	 * @return the index of the first block whose first element is not smaller than the specified upper bound (the
+	 *         number of blocks if there is no such block)
+	 */
+	public int endBlock(T upper) {
+		if (upper == null)
+			return offsets.length;
+		return PartitionedMerge.lowerBound(firstKeys, upper, externalSort.comparator);
+	}
+
+}
@@ -0,0 +1,33 @@
+package external_sort;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A {@code BlockReadEvent} is a JDK Flight Recorder event that records the read of a block from a run.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+@Name("external_sort.BlockRead")
+@Label("Block Read")
+@Category("External Sort")
+@Description("A block read from a run")
+class BlockReadEvent extends jdk.jfr.Event {
+
+	/**
+	 * The name of the run.
+	 */
+	@Label("Run")
+	String run;
+
+	/**
+	 * The number of bytes read.
+	 */
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+}
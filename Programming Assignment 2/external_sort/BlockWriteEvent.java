@@ -0,0 +1,33 @@
+package external_sort;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A {@code BlockWriteEvent} is a JDK Flight Recorder event that records the write of a block to a run.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+@Name("external_sort.BlockWrite")
+@Label("Block Write")
+@Category("External Sort")
+@Description("A block written to a run")
+class BlockWriteEvent extends jdk.jfr.Event {
+
+	/**
+	 * The name of the run.
+	 */
+	@Label("Run")
+	String run;
+
+	/**
+	 * The number of bytes written.
+	 */
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+}
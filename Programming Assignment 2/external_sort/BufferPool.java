@@ -0,0 +1,163 @@
+package external_sort;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code BufferPool} hands out {@code InputBuffer}s, {@code OutputBuffer}s, and direct {@code ByteBuffer}s of the
+ * buffer size of an {@code ExternalSort} and recycles them once they are released, so that reading and writing runs
+ * allocates almost no buffers once the {@code BufferPool} is warmed up. A {@code BufferPool} keeps at most a fixed
+ * number of released buffers of each kind; any others are left to the garbage collector. A {@code BufferPool} can be
+ * used by multiple threads at the same time.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class BufferPool {
+
+	/**
+	 * The {@code ExternalSort} that owns this {@code BufferPool}.
+	 */
+	ExternalSort<?> externalSort;
+
+	/**
+	 * The size of the buffers in this {@code BufferPool}.
+	 */
+	int bufferSize;
+
+	/**
+	 * The released {@code InputBuffer}s.
+	 */
+	ArrayBlockingQueue<InputBuffer> inputBuffers;
+
+	/**
+	 * The released {@code OutputBuffer}s.
+	 */
+	ArrayBlockingQueue<OutputBuffer> outputBuffers;
+
+	/**
+	 * The released direct {@code ByteBuffer}s.
+	 */
+	ArrayBlockingQueue<ByteBuffer> directBuffers;
+
+	/**
+	 * The number of buffers allocated by this {@code BufferPool}.
+	 */
+	AtomicLong allocationCount = new AtomicLong();
+
+	/**
+	 * Constructs a {@code BufferPool}.
+	 *
+	 * @param externalSort
+	 *            the {@code ExternalSort} that owns the {@code BufferPool}
+	 * @param capacity
+	 *            the maximum number of released buffers of each kind that the {@code BufferPool} keeps
+	 */
+	public BufferPool(ExternalSort<?> externalSort, int capacity) {
+		this.externalSort = externalSort;
+		this.bufferSize = externalSort.bufferSize;
+		capacity = Math.max(1, capacity);
+		inputBuffers = new ArrayBlockingQueue<InputBuffer>(capacity);
+		outputBuffers = new ArrayBlockingQueue<OutputBuffer>(capacity);
+		directBuffers = new ArrayBlockingQueue<ByteBuffer>(capacity);
+	}
+
+	/**
+	 * Returns an {@code InputBuffer} of the specified size. If the {@code ExternalSort} reads runs using
+	 * {@code FileChannel}s, the {@code InputBuffer} manages a direct {@code ByteBuffer}; otherwise, it manages a byte
+	 * array.
+	 *
+	 * @param size
+	 *            the size of the {@code InputBuffer}
+	 * @return an {@code InputBuffer} of the specified size
+	 */
+	public InputBuffer acquireInputBuffer(int size) {
+		InputBuffer b = size == bufferSize ? inputBuffers.poll() : null;
+		if (b != null)
+			return b;
+		allocationCount.incrementAndGet();
+		b = externalSort.channelIO ? new InputBuffer(externalSort.allocateDirect(size)) : new InputBuffer(size);
+		if (size == bufferSize)
+			b.pool = this;
+		return b;
+	}
+
+	/**
+	 * Returns an empty {@code OutputBuffer} of the specified size. If the {@code ExternalSort} writes runs using
+	 * {@code FileChannel}s and does not compress blocks, the {@code OutputBuffer} writes data to a direct
+	 * {@code ByteBuffer} so that each block can be written to a run without being copied; otherwise, it writes data
+	 * to a byte array.
+	 *
+	 * @param size
+	 *            the size of the {@code OutputBuffer}
+	 * @return an empty {@code OutputBuffer} of the specified size
+	 */
+	public OutputBuffer acquireOutputBuffer(int size) {
+		OutputBuffer b = size == bufferSize ? outputBuffers.poll() : null;
+		if (b != null) {
+			b.count = 0;
+			return b;
+		}
+		allocationCount.incrementAndGet();
+		return externalSort.channelIO && externalSort.compression == null
+				? new OutputBuffer(externalSort.allocateDirect(size)) : new OutputBuffer(size);
+	}
+
+	/**
+	 * Returns a cleared direct {@code ByteBuffer} of the buffer size.
+	 *
+	 * @return a cleared direct {@code ByteBuffer} of the buffer size
+	 */
+	public ByteBuffer acquireDirectBuffer() {
+		ByteBuffer b = directBuffers.poll();
+		if (b != null) {
+			b.clear();
+			return b;
+		}
+		allocationCount.incrementAndGet();
+		return externalSort.allocateDirect(bufferSize);
+	}
+
+	/**
+	 * Returns the specified {@code InputBuffer} to this {@code BufferPool}.
+	 *
+	 * @param b
+	 *            an {@code InputBuffer} that is no longer used
+	 */
+	public void release(InputBuffer b) {
+		if (b.pool == this)
+			inputBuffers.offer(b);
+	}
+
+	/**
+	 * Returns the specified {@code OutputBuffer} to this {@code BufferPool}.
+	 *
+	 * @param b
+	 *            an {@code OutputBuffer} that is no longer used
+	 */
+	public void release(OutputBuffer b) {
+		if (b.capacity() == bufferSize)
+			outputBuffers.offer(b);
+	}
+
+	/**
+	 * Returns the specified direct {@code ByteBuffer} to this {@code BufferPool}.
+	 *
+	 * @param b
+	 *            a direct {@code ByteBuffer} that is no longer used
+	 */
+	public void release(ByteBuffer b) {
+		if (b.capacity() == bufferSize)
+			directBuffers.offer(b);
+	}
+
+	/**
+	 * Returns the number of buffers allocated by this {@code BufferPool}.
+	 *
+	 * @return the number of buffers allocated by this {@code BufferPool}
+	 */
+	public long allocationCount() {
+		return allocationCount.get();
+	}
+
+}
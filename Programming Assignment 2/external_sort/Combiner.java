@@ -0,0 +1,46 @@
+package external_sort;
+
+/**
+ * A {@code Combiner} combines two elements that are equal according to their {@linkplain Comparable natural ordering}
+ * (or the {@code Comparator} that orders them) into one element (e.g., for eliminating duplicates or for aggregating
+ * the elements of each group). The combined element must be equal to both of the given elements according to that
+ * ordering.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public interface Combiner<T> {
+
+	/**
+	 * Returns a {@code Combiner} that keeps only the first of the equal elements (i.e., eliminates duplicates).
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 * @return a {@code Combiner} that keeps only the first of the equal elements
+	 */
+	public static <T> Combiner<T> distinct() {
+		return new Combiner<T>() {
+
+			@Override
+			public T combine(T first, T second) {
+				return first;
+			}
+
+		};
+	}
+
+	/**
+	 * Combines the specified elements (which are equal according to their natural ordering). The first element may be
+	 * modified and returned.
+	 *
+	 * @param first
+	 *            an element (which may itself be the result of combining earlier elements)
+	 * @param second
+	 *            the element that follows the first element
+	 * @return the combined element
+	 */
+	T combine(T first, T second);
+
+}
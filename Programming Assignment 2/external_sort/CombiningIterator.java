@@ -0,0 +1,169 @@
+package external_sort;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Given an {@code Iterator} over elements in ascending order, a {@code CombiningIterator} combines each sequence of
+ * consecutive equal elements (according to their {@linkplain Comparable natural ordering} or a {@code Comparator})
+ * into one element using a {@code Combiner}. The key prefix of each combined element is
+ * taken from the input {@code Iterator} if it is a {@code PrefixedIterator} and computed using a {@code KeyPrefix}
+ * otherwise.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public class CombiningIterator<T> implements PrefixedIterator<T> {
+
+	/**
+	 * The input {@code Iterator}.
+	 */
+	Iterator<T> iterator;
+
+	/**
+	 * The {@code Combiner} for combining equal elements.
+	 */
+	Combiner<T> combiner;
+
+	/**
+	 * The {@code KeyPrefix} for the elements ({@code null} if key prefixes are not used).
+	 */
+	KeyPrefix<T> keyPrefix;
+
+	/**
+	 * The {@code Comparator} that determines which elements are equal.
+	 */
+	Comparator<? super T> comparator;
+
+	/**
+	 * The element obtained from the input {@code Iterator} but not yet combined ({@code null} if no such element).
+	 */
+	T pending = null;
+
+	/**
+	 * The key prefix of {@link #pending}.
+	 */
+	long pendingPrefix;
+
+	/**
+	 * The key prefix of the element most recently returned by {@link #next()}.
+	 */
+	long prefix;
+
+	/**
+	 * Constructs a {@code CombiningIterator}.
+	 *
+	 * @param iterator
+	 *            an {@code Iterator} over elements in ascending order
+	 * @param combiner
+	 *            the {@code Combiner} for combining equal elements
+	 * @param keyPrefix
+	 *            the {@code KeyPrefix} for the elements ({@code null} if key prefixes are not used)
+	 */
+	public CombiningIterator(Iterator<T> iterator, Combiner<T> combiner, KeyPrefix<T> keyPrefix) {
+		this(iterator, combiner, keyPrefix, ExternalSort.NATURAL_ORDER);
+	}
+
+	/**
+	 * Constructs a {@code CombiningIterator}.
+	 *
+	 * @param iterator
+	 *            an {@code Iterator} over elements in ascending order according to the specified {@code Comparator}
+	 * @param combiner
+	 *            the {@code Combiner} for combining equal elements
+	 * @param keyPrefix
+	 *            the {@code KeyPrefix} for the elements ({@code null} if key prefixes are not used)
+	 * @param comparator
+	 *            the {@code Comparator} that determines which elements are equal
+	 */
+	public CombiningIterator(Iterator<T> iterator, Combiner<T> combiner, KeyPrefix<T> keyPrefix,
+			Comparator<? super T> comparator) {
+		this.iterator = iterator;
+		this.combiner = combiner;
+		this.keyPrefix = keyPrefix;
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Constructs a {@code CombiningIterator} that determines which elements are equal according to their
+	 * {@linkplain Comparable natural ordering}.
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 * @param iterator
+	 *            an {@code Iterator} over elements in ascending order
+	 * @param combiner
+	 *            the {@code Combiner} for combining equal elements
+	 * @param keyPrefix
+	 *            the {@code KeyPrefix} for the elements ({@code null} if key prefixes are not used)
+	 * @return the constructed {@code CombiningIterator}
+	 */
+	public static <T extends Comparable<? super T>> CombiningIterator<T> naturalOrder(Iterator<T> iterator,
+			Combiner<T> combiner, KeyPrefix<T> keyPrefix) {
+		return new CombiningIterator<T>(iterator, combiner, keyPrefix, Comparator.<T>naturalOrder());
+	}
+
+	/**
+	 * Determines whether or not the iteration has more elements (i.e., {@link #next} would return an element rather
+	 * than throwing an exception).
+	 *
+	 * @return {@code true} if the iteration has more elements; {@code false} otherwise
+	 */
+	@Override
+	public boolean hasNext() {
+		return pending != null || iterator.hasNext();
+	}
+
+	/**
+	 * Returns the next element in the iteration (the combination of the next sequence of equal elements).
+	 *
+	 * @return the next element in the iteration
+	 * @throws NoSuchElementException
+	 *             if the iteration has no more elements
+	 */
+	@Override
+	public T next() {
+		if (pending == null)
+			take();
+		T combined = pending;
+		prefix = pendingPrefix;
+		pending = null;
+		while (iterator.hasNext()) {
+			take();
+			if (comparator.compare(pending, combined) != 0)
+				break;
+			combined = combiner.combine(combined, pending);
+			pending = null;
+		}
+		return combined;
+	}
+
+	/**
+	 * Returns the key prefix of the element most recently returned by {@link #next()} (meaningful only if the input
+	 * {@code Iterator} is a {@code PrefixedIterator} or a {@code KeyPrefix} is given).
+	 *
+	 * @return the key prefix of the element most recently returned by {@link #next()}
+	 */
+	@Override
+	public long prefix() {
+		return prefix;
+	}
+
+	/**
+	 * Obtains the next element from the input {@code Iterator} as {@link #pending} along with its key prefix.
+	 *
+	 * @throws NoSuchElementException
+	 *             if the input {@code Iterator} has no more elements
+	 */
+	void take() {
+		pending = iterator.next();
+		if (iterator instanceof PrefixedIterator)
+			pendingPrefix = ((PrefixedIterator<T>) iterator).prefix();
+		else if (keyPrefix != null)
+			pendingPrefix = keyPrefix.prefix(pending);
+	}
+
+}
@@ -0,0 +1,74 @@
+package external_sort;
+
+/**
+ * A {@code DeviceProfile} describes the storage device on which an {@code ExternalSort} stores its runs in terms of the
+ * time for positioning (i.e., the latency paid for each block read or written) and the sequential bandwidth.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class DeviceProfile {
+
+	/**
+	 * A {@code DeviceProfile} for hard disk drives (10 ms per block and 150 MB/s).
+	 */
+	public static final DeviceProfile HDD = new DeviceProfile(10e-3, 150e6);
+
+	/**
+	 * A {@code DeviceProfile} for SATA solid state drives (100 us per block and 500 MB/s).
+	 */
+	public static final DeviceProfile SSD = new DeviceProfile(100e-6, 500e6);
+
+	/**
+	 * A {@code DeviceProfile} for NVMe solid state drives (20 us per block and 2 GB/s).
+	 */
+	public static final DeviceProfile NVME = new DeviceProfile(20e-6, 2e9);
+
+	/**
+	 * The time (in seconds) for positioning before reading or writing a block.
+	 */
+	double latency;
+
+	/**
+	 * The sequential bandwidth (in bytes per second).
+	 */
+	double bandwidth;
+
+	/**
+	 * Constructs a {@code DeviceProfile}.
+	 *
+	 * @param latency
+	 *            the time (in seconds) for positioning before reading or writing a block
+	 * @param bandwidth
+	 *            the sequential bandwidth (in bytes per second)
+	 */
+	public DeviceProfile(double latency, double bandwidth) {
+		this.latency = latency;
+		this.bandwidth = bandwidth;
+	}
+
+	/**
+	 * Returns the time (in seconds) that this device takes to read or write the specified number of bytes in blocks of
+	 * the specified size.
+	 *
+	 * @param bytes
+	 *            the number of bytes
+	 * @param blockSize
+	 *            the block size
+	 * @return the time (in seconds) that this device takes to read or write the specified number of bytes in blocks of
+	 *         the specified size
+	 */
+	public double transferTime(double bytes, int blockSize) {
+		return bytes / blockSize * latency + bytes / bandwidth;
+	}
+
+	/**
+	 * Returns a string representation of this {@code DeviceProfile}.
+	 *
+	 * @return a string representation of this {@code DeviceProfile}
+	 */
+	@Override
+	public String toString() {
+		return String.format("(%.6f s/block, %.0f MB/s)", latency, bandwidth / 1e6);
+	}
+
+}
@@ -0,0 +1,106 @@
+package external_sort;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A {@code DoubleExternalSort} sorts {@code double} values in ascending order (as defined by
+ * {@link Double#compare(double, double)}, i.e., {@code -0.0} before {@code 0.0} and {@code NaN} last) without boxing
+ * them. A {@code DoubleExternalSort} can also be used as a {@code PrimitiveIterator.OfDouble} over all of these sorted
+ * values. Each value is sorted and written to runs as a {@code long} key obtained from its bits (see
+ * {@link #key(double)}), so every {@code NaN} is returned as {@link Double#NaN}.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class DoubleExternalSort extends PrimitiveExternalSort implements PrimitiveIterator.OfDouble {
+
+	/**
+	 * The keys of the chunk of input values that are sorted for an initial run.
+	 */
+	long[] chunk;
+
+	/**
+	 * Constructs a {@code DoubleExternalSort}.
+	 *
+	 * @param iterator
+	 *            the input {@code PrimitiveIterator.OfDouble}
+	 * @param degree
+	 *            the number of runs that are merged together to form a new run
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param runLength
+	 *            the number of values in each initial run
+	 * @param fileNamePrefix
+	 *            the prefix that all of the run names (i.e., the names of the run files) will commonly have
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public DoubleExternalSort(PrimitiveIterator.OfDouble iterator, int degree, int bufferSize, int runLength,
+			String fileNamePrefix, PrintStream out) throws IOException {
+		super(iterator, Long.BYTES, degree, bufferSize, runLength, fileNamePrefix);
+		chunk = new long[runLength];
+		sort(out);
+		chunk = null;
+	}
+
+	@Override
+	int sortChunk() {
+		PrimitiveIterator.OfDouble input = (PrimitiveIterator.OfDouble) this.input;
+		int n = 0;
+		while (n < chunk.length && input.hasNext())
+			chunk[n++] = key(input.nextDouble());
+		Arrays.sort(chunk, 0, n);
+		return n;
+	}
+
+	@Override
+	long chunkKey(int i) {
+		return chunk[i];
+	}
+
+	/**
+	 * Returns the next value in the iteration.
+	 *
+	 * @return the next value in the iteration
+	 * @throws NoSuchElementException
+	 *             if the iteration has no more values
+	 * @throws UncheckedIOException
+	 *             if an I/O error occurs
+	 */
+	@Override
+	public double nextDouble() {
+		return value(nextKey());
+	}
+
+	/**
+	 * Returns the key of the specified value. The keys of values compare (as signed {@code long}s) in the same way as
+	 * the values compare by {@link Double#compare(double, double)}: the bits of a negative value (whose sign bit is
+	 * set) except for the sign bit are inverted so that larger magnitudes become smaller keys.
+	 *
+	 * @param v
+	 *            a {@code double} value
+	 * @return the key of the specified value
+	 */
+	static long key(double v) {
+		long bits = Double.doubleToLongBits(v);
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the value of the specified key (see {@link #key(double)}).
+	 *
+	 * @param key
+	 *            the key of a {@code double} value
+	 * @return the value of the specified key
+	 */
+	static double value(long key) {
+		return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+	}
+
+}
@@ -1,197 +1,1831 @@
 package external_sort;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * An {@code ExternalSort} sorts data elements in ascending order according to the {@linkplain Comparable natural
- * ordering} of the elements. An {@code ExternalSort} can also be used as an {@code Iterator} over all of these sorted
- * data elements.
+ * ordering} of the elements or the {@code Comparator} returned by {@link #comparator()}. An {@code ExternalSort} can
+ * also be used as an {@code Iterator} over all of these sorted data elements.
  * 
  * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
  *
  * @param <T>
  *            the type of the elements
  */
-public abstract class ExternalSort<T extends Comparable<? super T>> implements Iterator<T> {
+public abstract class ExternalSort<T> implements Iterator<T> {
+
+	/**
+	 * The {@code Comparator} that compares {@code Comparable} elements according to their natural ordering.
+	 */
+	static final Comparator<Object> NATURAL_ORDER = new Comparator<Object>() {
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public int compare(Object o1, Object o2) {
+			return ((Comparable<Object>) o1).compareTo(o2);
+		}
+
+	};
 
 	/**
 	 * The number of runs that are merged together to form a new run
 	 */
-	int degree;
+	int degree;
+
+	/**
+	 * The buffer size.
+	 */
+	int bufferSize;
+
+	/**
+	 * The prefix that all of the run names (i.e., the names of the run files) commonly have
+	 */
+	String fileNamePrefix;
+
+	/**
+	 * The {@code RunCodec} for encoding and decoding the elements in runs ({@code null} if Java serialization is used).
+	 */
+	RunCodec<T> codec;
+
+	/**
+	 * The maximum number of the smallest elements to produce ({@code Long.MAX_VALUE} if all elements are produced).
+	 */
+	long limit;
+
+	/**
+	 * The sorted elements if they are kept in memory instead of being written to runs ({@code null} otherwise).
+	 */
+	ArrayList<T> inMemory = null;
+
+	/**
+	 * The last initial run if it is kept in memory and merged with the other runs only in the final merge pass
+	 * ({@code null} otherwise).
+	 */
+	ArrayList<T> inMemoryRun = null;
+
+	/**
+	 * The directories across which runs are placed round-robin ({@code null} if runs are placed according to the file
+	 * name prefix only).
+	 */
+	List<File> spillDirectories;
+
+	/**
+	 * A flag indicating whether or not to delete runs once they are merged into a durable run.
+	 */
+	boolean deleteMergedRuns;
+
+	/**
+	 * The {@code SpillAccount} that keeps track of the number of bytes that the runs occupy.
+	 */
+	SpillAccount spillAccount;
+
+	/**
+	 * A flag indicating whether or not each run ends with a {@code BlockIndex}.
+	 */
+	boolean blockIndex;
+
+	/**
+	 * The names of the runs merged into the output iterator ({@code null} if they have been deleted or are kept).
+	 */
+	List<String> finalRuns = null;
+
+	/**
+	 * The {@code RunManifest} recording the completed runs ({@code null} if this {@code ExternalSort} is not
+	 * resumable).
+	 */
+	RunManifest manifest = null;
+
+	/**
+	 * The {@code Combiner} for combining equal elements ({@code null} if equal elements are not combined).
+	 */
+	Combiner<T> combiner;
+
+	/**
+	 * The {@code BlockCompression} applied to each block of the runs ({@code null} if blocks are not compressed).
+	 */
+	BlockCompression compression;
+
+	/**
+	 * The {@code KeyPrefix} for the elements ({@code null} if elements are compared only by the {@link #comparator}).
+	 */
+	KeyPrefix<T> keyPrefix;
+
+	/**
+	 * The {@code Comparator} that determines the order of the elements.
+	 */
+	Comparator<? super T> comparator;
+
+	/**
+	 * The output iterator of (i.e., the iterator over all elements that are sorted by) this {@code ExternalSort}.
+	 */
+	Iterator<T> iterator;
+
+	/**
+	 * The ID of the next run.
+	 */
+	AtomicInteger nextRunID = new AtomicInteger();
+
+	/**
+	 * The number of buffer reads so far.
+	 */
+	AtomicLong bufferReadCount = new AtomicLong();
+
+	/**
+	 * The number of buffer writes so far.
+	 */
+	AtomicLong bufferWriteCount = new AtomicLong();
+
+	/**
+	 * The number of bytes actually read from run files so far.
+	 */
+	AtomicLong physicalBytesRead = new AtomicLong();
+
+	/**
+	 * The number of bytes actually written to run files so far.
+	 */
+	AtomicLong physicalBytesWritten = new AtomicLong();
+
+	/**
+	 * The time spent reading and writing blocks of runs so far (in nanoseconds).
+	 */
+	AtomicLong ioNanos = new AtomicLong();
+
+	/**
+	 * The number of comparisons performed while sorting initial runs and merging runs so far.
+	 */
+	AtomicLong comparisons = new AtomicLong();
+
+	/**
+	 * The CPU time of the tasks that have constructed runs in parallel so far (in nanoseconds).
+	 */
+	AtomicLong taskCpuNanos = new AtomicLong();
+
+	/**
+	 * The number of runs constructed so far.
+	 */
+	AtomicLong runCount = new AtomicLong();
+
+	/**
+	 * The number of elements written to the runs constructed so far.
+	 */
+	AtomicLong elementsWritten = new AtomicLong();
+
+	/**
+	 * The largest heap usage of the JVM sampled during the current pass (in bytes).
+	 */
+	AtomicLong peakHeapUsage = new AtomicLong();
+
+	/**
+	 * The number of the current pass (0 for the initial pass).
+	 */
+	volatile int pass = 0;
+
+	/**
+	 * The {@code PassMetrics} of the completed passes.
+	 */
+	ArrayList<PassMetrics> passMetrics = new ArrayList<PassMetrics>();
+
+	/**
+	 * The {@code PassMetrics} of the final merge pass ({@code null} if there is no such pass or it has completed).
+	 */
+	PassMetrics finalPass = null;
+
+	/**
+	 * The {@code Iterator} merging the runs into the output iterator ({@code null} if there is no such
+	 * {@code Iterator}).
+	 */
+	Iterator<T> finalMerge = null;
+
+	/**
+	 * The names of the runs merged into the output iterator ({@code null} if the output iterator merges no runs).
+	 */
+	List<String> outputRuns = null;
+
+	/**
+	 * The {@code RunReader}s of the runs merged into the output iterator ({@code null} if there are no such
+	 * {@code RunReader}s).
+	 */
+	List<Iterator<T>> outputReaders = null;
+
+	/**
+	 * A flag indicating whether or not elements have been obtained from the output iterator (or the output iterator
+	 * has been partitioned by {@link #partitions(int)}).
+	 */
+	boolean outputStarted = false;
+
+	/**
+	 * The {@code SortListener} notified of the progress of this {@code ExternalSort} ({@code null} if there is no
+	 * such {@code SortListener}).
+	 */
+	SortListener listener;
+
+	/**
+	 * The {@code MergePlan} according to which the initial runs are merged ({@code null} until the initial runs are
+	 * constructed).
+	 */
+	MergePlan mergePlan;
+
+	/**
+	 * The {@code ExecutorService} for constructing runs in parallel ({@code null} if runs are constructed by the
+	 * calling thread).
+	 */
+	ExecutorService executor;
+
+	/**
+	 * A flag indicating whether runs are merged using {@code LoserTreeMergeIterator}s (rather than
+	 * {@code OrderedMergeIterator}s).
+	 */
+	boolean loserTreeMerge;
+
+	/**
+	 * A flag indicating whether runs are read and written using {@code FileChannel}s and reusable direct
+	 * {@code ByteBuffer}s (rather than {@code FileInputStream}s and {@code FileOutputStream}s).
+	 */
+	boolean channelIO;
+
+	/**
+	 * A flag indicating whether the runs merged into the output iterator are memory-mapped.
+	 */
+	boolean mapFinalRuns;
+
+	/**
+	 * The alignment (in bytes) of the direct {@code ByteBuffer}s used for reading and writing runs.
+	 */
+	int blockAlignment;
+
+	/**
+	 * The number of blocks that each {@code RunReader} loads in the background ahead of the block being consumed.
+	 */
+	int prefetchDepth;
+
+	/**
+	 * The maximum number of filled output buffers that each {@code RunWriter} hands to a writer thread.
+	 */
+	int writeBehindDepth;
+
+	/**
+	 * The {@code BufferPool} that hands out and recycles the buffers for reading and writing runs.
+	 */
+	BufferPool bufferPool;
+
+	/**
+	 * The {@code ExecutorService} for reading and writing runs in the background ({@code null} until needed).
+	 */
+	ExecutorService ioExecutor;
+
+	/**
+	 * The {@code SortConfiguration} that determined the parameters of this {@code ExternalSort} ({@code null} if the
+	 * parameters were given explicitly).
+	 */
+	SortConfiguration configuration;
+
+	/**
+	 * The number of bytes of the elements accounted for by {@link #exceedsMemoryBudget(ArrayList)}.
+	 */
+	long accountedBytes = 0;
+
+	/**
+	 * The number of elements accounted for by {@link #exceedsMemoryBudget(ArrayList)}.
+	 */
+	int accountedElements = 0;
+
+	/**
+	 * Constructs an {@code ExternalSort}
+	 * 
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param degree
+	 *            the number of runs that are merged together to form a new run
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param fileNamePrefix
+	 *            the prefix that all of the run names (i.e., the names of the run files) will commonly have
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	public ExternalSort(Iterator<T> iterator, int degree, int bufferSize, String fileNamePrefix, PrintStream out)
+			throws IOException, ClassNotFoundException {
+		this(iterator, degree, bufferSize, Long.MAX_VALUE, null, fileNamePrefix, out);
+	}
+
+	/**
+	 * Constructs an {@code ExternalSort} that produces only the {@code limit} smallest elements (e.g., for
+	 * {@code ORDER BY ... LIMIT k}). If {@code limit} elements fit in memory (i.e., {@link #isFull(ArrayList)} does not
+	 * return {@code true} for them), they are kept in a bounded heap and nothing is written to runs. Otherwise, each run
+	 * keeps at most {@code limit} elements and the input elements that cannot be among the {@code limit} smallest
+	 * elements are discarded before they are written.
+	 * 
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param degree
+	 *            the number of runs that are merged together to form a new run
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param limit
+	 *            the maximum number of the smallest elements to produce
+	 * @param fileNamePrefix
+	 *            the prefix that all of the run names (i.e., the names of the run files) will commonly have
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @throws IllegalArgumentException
+	 *             if {@code limit} is negative
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	public ExternalSort(Iterator<T> iterator, int degree, int bufferSize, long limit, String fileNamePrefix,
+			PrintStream out) throws IOException, ClassNotFoundException {
+		this(iterator, degree, bufferSize, limit, null, fileNamePrefix, out);
+	}
+
+	/**
+	 * Constructs an {@code ExternalSort} whose degree and buffer size are chosen by the specified
+	 * {@code SortConfiguration}. A subclass using this constructor can implement {@link #isFull(ArrayList)} by calling
+	 * {@link #exceedsMemoryBudget(ArrayList)}.
+	 * 
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param configuration
+	 *            a {@code SortConfiguration}
+	 * @param fileNamePrefix
+	 *            the prefix that all of the run names (i.e., the names of the run files) will commonly have
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	protected ExternalSort(Iterator<T> iterator, SortConfiguration configuration, String fileNamePrefix,
+			PrintStream out) throws IOException, ClassNotFoundException {
+		this(iterator, configuration.degree(), configuration.bufferSize(), Long.MAX_VALUE, configuration,
+				fileNamePrefix, out);
+	}
+
+	/**
+	 * Constructs an {@code ExternalSort}
+	 * 
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param degree
+	 *            the number of runs that are merged together to form a new run
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param limit
+	 *            the maximum number of the smallest elements to produce ({@code Long.MAX_VALUE} for all elements)
+	 * @param configuration
+	 *            the {@code SortConfiguration} that determined the degree and the buffer size ({@code null} if they
+	 *            are given explicitly)
+	 * @param fileNamePrefix
+	 *            the prefix that all of the run names (i.e., the names of the run files) will commonly have
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @throws IllegalArgumentException
+	 *             if {@code limit} is negative
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort(Iterator<T> iterator, int degree, int bufferSize, long limit, SortConfiguration configuration,
+			String fileNamePrefix, PrintStream out) throws IOException, ClassNotFoundException {
+		if (limit < 0)
+			throw new IllegalArgumentException("negative limit: " + limit);
+		this.limit = limit;
+		this.configuration = configuration;
+		this.fileNamePrefix = fileNamePrefix;
+		this.degree = degree;
+		this.bufferSize = bufferSize;
+		this.codec = codec();
+		this.compression = compression();
+		this.combiner = combiner();
+		this.keyPrefix = keyPrefix();
+		Comparator<? super T> comparator = comparator();
+		this.comparator = comparator == null ? NATURAL_ORDER : comparator;
+		this.loserTreeMerge = loserTreeMerge();
+		this.channelIO = channelIO();
+		this.mapFinalRuns = mapFinalRuns();
+		this.blockAlignment = blockAlignment();
+		this.bufferPool = new BufferPool(this, bufferPoolCapacity());
+		this.prefetchDepth = prefetchDepth();
+		this.writeBehindDepth = writeBehindDepth();
+		List<File> directories = spillDirectories();
+		this.spillDirectories = directories == null || directories.isEmpty() ? null
+				: new ArrayList<File>(directories);
+		this.deleteMergedRuns = deleteMergedRuns();
+		this.spillAccount = new SpillAccount(maxSpillBytes());
+		this.blockIndex = blockIndex();
+		if (resumable())
+			this.manifest = new RunManifest(fileNamePrefix + "manifest");
+		this.listener = listener();
+		if (iterator == null)
+			return;
+		if (parallelism() > 1)
+			executor = Executors.newFixedThreadPool(parallelism());
+		try {
+			sort(iterator, out);
+		} finally {
+			if (executor != null)
+				executor.shutdown();
+		}
+	}
+
+	/**
+	 * Sorts the elements from the specified input {@code Iterator} by constructing initial runs and then merging them
+	 * pass by pass according to a {@code MergePlan}. The {@code PassMetrics} of each pass are recorded.
+	 * 
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	void sort(Iterator<T> iterator, PrintStream out) throws IOException, ClassNotFoundException {
+		out.print("initial pass: ");
+		long time = System.nanoTime();
+		PassMetrics metrics = startPass(0);
+		ArrayList<String> runNames = resume();
+		if (runNames != null)
+			out.println(runNames.size() + " runs resumed from " + manifest.file);
+		else {
+			runNames = createInitialRuns(iterator);
+			out.println(runNames.size() + " runs" + (inMemoryRun == null ? "" : " + 1 in-memory run")
+					+ String.format(" (%.5f seconds)", (System.nanoTime() - time) * 1.0e-9));
+			if (inMemory != null) {
+				out.println(inMemory.size() + " element(s) sorted in memory");
+				this.iterator = inMemory.iterator();
+				completePass(metrics);
+				return;
+			}
+			if (manifest != null)
+				manifest.recordInitialRuns(runNames);
+		}
+		completePass(metrics);
+		long[] runLengths = new long[runNames.size()];
+		for (int i = 0; i < runLengths.length; i++)
+			runLengths[i] = manifest == null ? new File(runNames.get(i)).length() // merged runs may have been deleted
+					: manifest.length(runNames.get(i));
+		mergePlan = new MergePlan(runLengths, degree);
+		long bytesWritten = bytesWritten();
+		List<String> finalRuns = mergePlan.execute(runNames, new MergePlan.Pass<ClassNotFoundException>() {
+
+			@Override
+			public List<String> merge(int pass, List<List<String>> groups) throws IOException, ClassNotFoundException {
+				out.print("merge pass " + pass + ": ");
+				long time = System.nanoTime();
+				PassMetrics metrics = startPass(pass);
+				List<String> created = createRuns(groups);
+				completePass(metrics);
+				out.println(created.size() + " run(s)"
+						+ String.format(" (%.5f seconds)", (System.nanoTime() - time) * 1.0e-9));
+				return created;
+			}
+
+		});
+		if (mergePlan.passCount() > 0)
+			out.println("bytes written by merge passes: " + (bytesWritten() - bytesWritten) + " (predicted: "
+					+ mergePlan.predictedBytesWritten() + ")");
+		out.print("merge pass " + (mergePlan.passCount() + 1) + ": ");
+		finalPass = startPass(mergePlan.passCount() + 1); // completed once the output iterator is exhausted
+		ArrayList<Iterator<T>> iterators = new ArrayList<Iterator<T>>();
+		for (Iterator<T> i : createRunReaders(finalRuns, mapFinalRuns))
+			iterators.add(i);
+		outputRuns = finalRuns;
+		outputReaders = new ArrayList<Iterator<T>>(iterators);
+		if (deleteMergedRuns)
+			this.finalRuns = finalRuns;
+		if (inMemoryRun != null)
+			iterators.add(prefixed(inMemoryRun.iterator()));
+		finalMerge = createMergeIterator(iterators);
+		this.iterator = limit(combine(finalMerge));
+		if (manifest != null)
+			manifest.recordCompletion();
+		out.println("1 output iterator");
+	}
+
+	/**
+	 * Resumes from the runs recorded in the {@link #manifest} if this {@code ExternalSort} is resumable and the
+	 * {@link #manifest} shows that a sort with the same parameters constructed all of its initial runs (which are still
+	 * intact) but did not form its output iterator. Otherwise, a new manifest is started if this {@code ExternalSort} is
+	 * resumable.
+	 * 
+	 * @return the names of the initial runs if this {@code ExternalSort} resumes; {@code null} otherwise
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	ArrayList<String> resume() throws IOException {
+		if (manifest == null)
+			return null;
+		if (manifest.load() && manifest.resumable(degree, bufferSize, limit, runFormat())) {
+			manifest.open();
+			nextRunID.set(manifest.nextRunID()); // the recorded runs must not be overwritten
+			return new ArrayList<String>(manifest.initialRuns());
+		}
+		manifest.create(degree, bufferSize, limit, runFormat());
+		return null;
+	}
+
+	/**
+	 * Returns a fingerprint of the settings that determine the content and encoding of the runs (i.e., the classes of
+	 * the {@code RunCodec}, {@code BlockCompression}, {@code KeyPrefix}, {@code Combiner}, and {@code Comparator}, and
+	 * whether or not runs end with a {@code BlockIndex}), which a resumable {@code ExternalSort} records so that it
+	 * never resumes from runs written with different settings.
+	 * 
+	 * @return a fingerprint of the settings that determine the content and encoding of the runs
+	 */
+	String runFormat() {
+		return "codec=" + className(codec) + ",compression=" + className(compression) + ",keyPrefix="
+				+ className(keyPrefix) + ",combiner=" + className(combiner) + ",comparator=" + className(comparator)
+				+ ",blockIndex=" + blockIndex;
+	}
+
+	/**
+	 * Returns the name of the class of the specified object.
+	 * 
+	 * @param o
+	 *            an object
+	 * @return the name of the class of the specified object; {@code "none"} if the object is {@code null}
+	 */
+	static String className(Object o) {
+		return o == null ? "none" : o.getClass().getName();
+	}
+
+	/**
+	 * Returns the names of the specified runs.
+	 * 
+	 * @param runs
+	 *            the IDs of runs in a {@code MergePlan}
+	 * @param runNames
+	 *            the names of the runs (i.e., file names) in the order of their IDs
+	 * @return the names of the specified runs
+	 */
+	static List<String> runNames(List<Integer> runs, List<String> runNames) {
+		ArrayList<String> names = new ArrayList<String>();
+		for (int run : runs)
+			names.add(runNames.get(run));
+		return names;
+	}
+
+	/**
+	 * Returns the names of the specified groups of runs.
+	 * 
+	 * @param groups
+	 *            groups of runs in a {@code MergePlan}
+	 * @param runNames
+	 *            the names of the runs (i.e., file names) in the order of their IDs
+	 * @return the names of the specified groups of runs
+	 */
+	static List<List<String>> groupNames(Iterable<List<Integer>> groups, List<String> runNames) {
+		ArrayList<List<String>> names = new ArrayList<List<String>>();
+		for (List<Integer> group : groups)
+			names.add(runNames(group, runNames));
+		return names;
+	}
+
+	/**
+	 * Constructs new runs by merging each of the specified groups of input runs. If runs are constructed in parallel
+	 * (see {@link #parallelism()}), the groups are merged concurrently by the threads in the {@link #executor} while
+	 * the total number of buffers used by the concurrent merges stays within {@link #mergeBufferBudget()}.
+	 * 
+	 * @param groups
+	 *            groups of input runs (i.e., file names)
+	 * @return the names of the new runs (i.e., file names) in the order of the groups
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ArrayList<String> createRuns(List<List<String>> groups) throws IOException, ClassNotFoundException {
+		ArrayList<String> createdRuns = new ArrayList<String>();
+		if (executor == null) {
+			for (List<String> group : groups) {
+				String runName = createRun(group);
+				if (!group.contains(runName))
+					deleteMergedRuns(group);
+				createdRuns.add(runName);
+			}
+			return createdRuns;
+		}
+		int budget = Math.max(1, mergeBufferBudget());
+		Semaphore buffers = new Semaphore(budget); // one permit for each buffer in use
+		ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+		for (List<String> group : groups) {
+			if (group.size() == 1) {
+				createdRuns.add(group.get(0));
+				continue;
+			}
+			String completed = completedRun(group);
+			if (completed != null) {
+				createdRuns.add(completed);
+				continue;
+			}
+			int permits = Math.min(group.size() + 1, budget); // an input buffer per input run plus an output buffer
+			acquire(buffers, permits);
+			String runName = nextRunName();
+			createdRuns.add(runName);
+			futures.add(executor.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					long cpuTime = PassMetrics.cpuTime();
+					try {
+						Iterator<T> merge = createMergeIterator(createRunReaders(group));
+						createRun(limit(combine(merge)), runName, group);
+						comparisons.addAndGet(comparisons(merge));
+						deleteMergedRuns(group);
+					} finally {
+						taskCpuNanos.addAndGet(PassMetrics.cpuTime() - cpuTime);
+						buffers.release(permits);
+					}
+					return null;
+				}
+
+			}));
+		}
+		await(futures);
+		return createdRuns;
+	}
+
+	/**
+	 * Constructs a new run by merging input runs.
+	 * 
+	 * @param runNames
+	 *            the names of the input runs.
+	 * @return the name of the newly constructed run
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	String createRun(List<String> runNames) throws IOException, ClassNotFoundException {
+		if (runNames.size() == 1)
+			return runNames.get(0);
+		String completed = completedRun(runNames);
+		if (completed != null)
+			return completed;
+		Iterator<T> merge = createMergeIterator(createRunReaders(runNames));
+		String runName = createRun(limit(combine(merge)), nextRunName(), runNames);
+		comparisons.addAndGet(comparisons(merge));
+		return runName;
+	}
+
+	/**
+	 * Deletes the specified runs, which have been merged into a durable run, if {@link #deleteMergedRuns()} is
+	 * {@code true}.
+	 * 
+	 * @param runNames
+	 *            the names of the merged runs
+	 */
+	void deleteMergedRuns(List<String> runNames) {
+		if (!deleteMergedRuns)
+			return;
+		for (String runName : runNames)
+			deleteRun(runName);
+	}
+
+	/**
+	 * Deletes the specified run and accounts for the bytes that it no longer occupies.
+	 * 
+	 * @param runName
+	 *            the name of a run
+	 */
+	void deleteRun(String runName) {
+		spillAccount.deleteRun(runName);
+	}
+
+	/**
+	 * Accounts for the specified number of bytes newly written to runs.
+	 * 
+	 * @param bytes
+	 *            the number of bytes newly written to runs
+	 * @throws IOException
+	 *             if the runs would occupy more than {@link #maxSpillBytes()} bytes
+	 */
+	void spill(long bytes) throws IOException {
+		spillAccount.spill(bytes);
+	}
+
+	/**
+	 * Begins the specified pass.
+	 * 
+	 * @param pass
+	 *            the number of the pass (0 for the initial pass)
+	 * @return the {@code PassMetrics} of the pass
+	 */
+	PassMetrics startPass(int pass) {
+		this.pass = pass;
+		return new PassMetrics(pass, this);
+	}
+
+	/**
+	 * Samples the heap usage of the JVM and updates {@link #peakHeapUsage} accordingly.
+	 */
+	void sampleHeapUsage() {
+		long usage = PassMetrics.heapUsage();
+		for (long peak = peakHeapUsage.get(); usage > peak; peak = peakHeapUsage.get())
+			if (peakHeapUsage.compareAndSet(peak, usage))
+				break;
+	}
+
+	/**
+	 * Completes the pass described by the specified {@code PassMetrics} and notifies the {@link #listener}.
+	 * 
+	 * @param metrics
+	 *            the {@code PassMetrics} of the pass
+	 */
+	void completePass(PassMetrics metrics) {
+		metrics.complete(this);
+		passMetrics.add(metrics);
+		if (listener != null)
+			listener.passCompleted(metrics);
+	}
+
+	/**
+	 * Returns the number of comparisons that the specified merging {@code Iterator} has performed.
+	 * 
+	 * @param merge
+	 *            an {@code Iterator} constructed by {@link #createMergeIterator(Iterable)}
+	 * @return the number of comparisons that the specified {@code Iterator} has performed
+	 */
+	static long comparisons(Iterator<?> merge) {
+		if (merge instanceof LoserTreeMergeIterator)
+			return ((LoserTreeMergeIterator<?>) merge).comparisons();
+		if (merge instanceof OrderedMergeIterator)
+			return ((OrderedMergeIterator<?>) merge).comparisons();
+		return 0;
+	}
+
+	/**
+	 * Accounts for a block read from a run and commits the specified {@code BlockReadEvent}.
+	 * 
+	 * @param event
+	 *            the {@code BlockReadEvent} begun before the block was read
+	 * @param runName
+	 *            the name of the run
+	 * @param bytes
+	 *            the number of bytes read
+	 * @param startTime
+	 *            the value of {@code System.nanoTime()} before the block was read
+	 */
+	void blockRead(BlockReadEvent event, String runName, long bytes, long startTime) {
+		ioNanos.addAndGet(System.nanoTime() - startTime);
+		physicalBytesRead.addAndGet(bytes);
+		increaseBufferReadCount();
+		event.end();
+		if (event.shouldCommit()) {
+			event.run = runName;
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Accounts for a block written to a run and commits the specified {@code BlockWriteEvent}.
+	 * 
+	 * @param event
+	 *            the {@code BlockWriteEvent} begun before the block was written
+	 * @param runName
+	 *            the name of the run
+	 * @param bytes
+	 *            the number of bytes written
+	 * @param startTime
+	 *            the value of {@code System.nanoTime()} before the block was written
+	 */
+	void blockWritten(BlockWriteEvent event, String runName, long bytes, long startTime) {
+		ioNanos.addAndGet(System.nanoTime() - startTime);
+		physicalBytesWritten.addAndGet(bytes);
+		event.end();
+		if (event.shouldCommit()) {
+			event.run = runName;
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Returns the name of the run that the {@link #manifest} shows to have been constructed by merging the specified
+	 * runs.
+	 * 
+	 * @param runNames
+	 *            the names of the input runs
+	 * @return the name of the (intact) run constructed by merging the specified runs; {@code null} if this
+	 *         {@code ExternalSort} is not resumable or no such run has been recorded
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	String completedRun(List<String> runNames) throws IOException {
+		return manifest == null ? null : manifest.output(runNames);
+	}
+
+	/**
+	 * Returns an {@code Iterator} that combines each sequence of equal elements from the specified {@code Iterator}
+	 * using the {@link #combiner}.
+	 * 
+	 * @param iterator
+	 *            an {@code Iterator} over elements in ascending order
+	 * @return the specified {@code Iterator} if equal elements are not combined; a {@code CombiningIterator} otherwise
+	 */
+	Iterator<T> combine(Iterator<T> iterator) {
+		return combiner == null ? iterator : new CombiningIterator<T>(iterator, combiner, keyPrefix, comparator);
+	}
+
+	/**
+	 * Returns a {@code PrefixedIterator} that computes the key prefix of each element from the specified
+	 * {@code Iterator} using the {@link #keyPrefix} (so that the elements can be merged with those from runs).
+	 * 
+	 * @param iterator
+	 *            an {@code Iterator}
+	 * @return the specified {@code Iterator} if key prefixes are not used; a {@code PrefixedIterator} otherwise
+	 */
+	Iterator<T> prefixed(Iterator<T> iterator) {
+		if (keyPrefix == null)
+			return iterator;
+		return new PrefixedIterator<T>() {
+
+			long prefix;
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public T next() {
+				T next = iterator.next();
+				prefix = keyPrefix.prefix(next);
+				return next;
+			}
+
+			@Override
+			public long prefix() {
+				return prefix;
+			}
+
+		};
+	}
+
+	/**
+	 * Sorts the specified list and then combines each sequence of equal elements in the list using the
+	 * {@link #combiner}.
+	 * 
+	 * @param list
+	 *            a list of elements
+	 */
+	void sortAndCombine(ArrayList<T> list) {
+		sort(list);
+		if (combiner == null)
+			return;
+		ArrayList<T> combined = new ArrayList<T>();
+		for (Iterator<T> i = combine(list.iterator()); i.hasNext();)
+			combined.add(i.next());
+		list.clear();
+		list.addAll(combined);
+	}
+
+	/**
+	 * Returns an {@code Iterator} over at most {@link #limit} of the first elements from the specified
+	 * {@code Iterator} (so that no run keeps more elements than can be produced).
+	 * 
+	 * @param iterator
+	 *            an {@code Iterator}
+	 * @return the specified {@code Iterator} if all elements are produced; a {@code LimitIterator} otherwise
+	 */
+	Iterator<T> limit(Iterator<T> iterator) {
+		return limit == Long.MAX_VALUE ? iterator : new LimitIterator<T>(iterator, limit);
+	}
+
+	/**
+	 * Constructs an {@code Iterator} that merges the specified {@code Iterator}s.
+	 * 
+	 * @param iterators
+	 *            {@code Iterator}s each of which iterates over elements in ascending order
+	 * @return a {@code LoserTreeMergeIterator} if {@link #loserTreeMerge()} is {@code true}; an
+	 *         {@code OrderedMergeIterator} otherwise
+	 */
+	Iterator<T> createMergeIterator(Iterable<Iterator<T>> iterators) {
+		if (loserTreeMerge)
+			return new LoserTreeMergeIterator<T>(iterators, keyPrefix != null, comparator);
+		return new OrderedMergeIterator<T>(iterators, keyPrefix != null, comparator);
+	}
+
+	/**
+	 * Constructs {@code RunReader}s for the specified runs.
+	 * 
+	 * @param runNames
+	 *            the names of the runs (i.e., the file names)
+	 * @return the constructed {@code RunReader}s
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	Iterable<Iterator<T>> createRunReaders(List<String> runNames) throws IOException, ClassNotFoundException {
+		return createRunReaders(runNames, false);
+	}
+
+	/**
+	 * Constructs {@code RunReader}s for the specified runs.
+	 * 
+	 * @param runNames
+	 *            the names of the runs (i.e., the file names)
+	 * @param mapped
+	 *            a flag indicating whether or not to memory-map the runs
+	 * @return the constructed {@code RunReader}s
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@SuppressWarnings("unchecked")
+	Iterable<Iterator<T>> createRunReaders(List<String> runNames, boolean mapped)
+			throws IOException, ClassNotFoundException {
+		ArrayList<Iterator<T>> iterators = new ArrayList<Iterator<T>>();
+		for (String runName : runNames)
+			iterators.add((Iterator<T>) new RunReader(runName, bufferSize, this, mapped));
+		return iterators;
+	}
+
+	/**
+	 * Determines whether or not the iteration has more elements (i.e., {@link #next} would return an element rather
+	 * than throwing an exception).
+	 *
+	 * @return {@code true} if the iteration has more elements; {@code false} otherwise
+	 */
+	@Override
+	public boolean hasNext() {
+		if (iterator.hasNext())
+			return true;
+		if (finalRuns != null) { // the runs merged into the output iterator are no longer needed
+			deleteMergedRuns(finalRuns);
+			finalRuns = null;
+		}
+		if (finalPass != null) {
+			comparisons.addAndGet(comparisons(finalMerge));
+			completePass(finalPass);
+			finalPass = null;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the next element in the iteration.
+	 *
+	 * @return the next element in the iteration
+	 * @throws NoSuchElementException
+	 *             if the iteration has no more elements
+	 */
+	@Override
+	public T next() {
+		outputStarted = true;
+		return iterator.next();
+	}
+
+	/**
+	 * Returns {@code Iterator}s over at most the specified number of consecutive key ranges of the sorted elements, so
+	 * that the final merge can be performed concurrently by consuming each {@code Iterator} in a different thread. The
+	 * ranges are determined by splitter keys sampled from the runs merged into the output iterator (see
+	 * {@link PartitionedMerge}), and the elements from the returned {@code Iterator}s, concatenated in order, are the
+	 * same as those from this {@code ExternalSort}. Each {@code Iterator} reads the runs with buffers of its own, so
+	 * the final merge uses up to as many times as much memory for buffers. Fewer {@code Iterator}s are returned if the
+	 * samples have fewer distinct keys, and this {@code ExternalSort} itself is returned as the only {@code Iterator}
+	 * if it produces only a limited number of the smallest elements (see {@link #limit}). This method must be called
+	 * before any element is obtained from this {@code ExternalSort}, which then has no more elements to iterate over.
+	 * 
+	 * @param count
+	 *            the maximum number of {@code Iterator}s
+	 * @return {@code Iterator}s over consecutive key ranges of the sorted elements in ascending order
+	 * @throws IllegalArgumentException
+	 *             if the specified number is smaller than 1
+	 * @throws IllegalStateException
+	 *             if elements have been obtained from this {@code ExternalSort} or it has already been partitioned
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	public List<Iterator<T>> partitions(int count) throws IOException, ClassNotFoundException {
+		if (count < 1)
+			throw new IllegalArgumentException("invalid number of partitions: " + count);
+		if (outputStarted)
+			throw new IllegalStateException("the output iterator has already been used");
+		outputStarted = true;
+		List<Iterator<T>> partitions = new ArrayList<Iterator<T>>();
+		if (inMemory != null) { // all of the elements have been sorted in memory
+			for (int i = 0; i < count; i++) {
+				int from = (int) ((long) i * inMemory.size() / count);
+				int to = (int) ((long) (i + 1) * inMemory.size() / count);
+				if (from < to)
+					partitions.add(inMemory.subList(from, to).iterator());
+			}
+			iterator = Collections.emptyIterator();
+			return partitions;
+		}
+		if (finalMerge == null || limit != Long.MAX_VALUE || count == 1) {
+			partitions.add(this);
+			return partitions;
+		}
+		for (Iterator<T> r : outputReaders) // the output iterator is replaced by the partitions
+			((RunReader) (Iterator<?>) r).close();
+		PartitionedMerge<T> merge = new PartitionedMerge<T>(this, outputRuns, inMemoryRun, finalRuns, finalPass);
+		finalRuns = null;
+		finalPass = null;
+		finalMerge = null;
+		outputReaders = null;
+		iterator = Collections.emptyIterator();
+		return merge.partitions(count);
+	}
+
+	/**
+	 * Returns a parallel {@code Stream} over the sorted elements whose {@code Spliterator} splits into the
+	 * {@code Iterator}s returned by {@link #partitions(int)}, so that the ranges of the final merge are merged
+	 * concurrently (e.g., by the common {@code ForkJoinPool}). The {@code Stream} is ordered, and thus operations such
+	 * as {@code forEachOrdered} and {@code collect} observe the elements in ascending order.
+	 * 
+	 * @param count
+	 *            the maximum number of ranges
+	 * @return a parallel {@code Stream} over the sorted elements
+	 * @throws IllegalStateException
+	 *             if elements have been obtained from this {@code ExternalSort} or it has already been partitioned
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	public Stream<T> stream(int count) throws IOException, ClassNotFoundException {
+		List<Iterator<T>> partitions = partitions(count);
+		return StreamSupport.stream(new PartitionedMerge.PartitionSpliterator<T>(partitions, 0, partitions.size(),
+				comparator == NATURAL_ORDER ? null : comparator), true);
+	}
+
+	protected abstract boolean isFull(ArrayList<T> list);
+
+	/**
+	 * Constructs an {@code ExternalSort} whose degree, buffer size, and initial runs are chosen to fit in the specified
+	 * memory budget (see {@link SortConfiguration}). The input is assumed to be large and the runs are assumed to be
+	 * stored on an {@linkplain DeviceProfile#SSD SSD}.
+	 * 
+	 * @param <T>
+	 *            the type of the elements
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param memoryBudget
+	 *            the memory budget (in bytes)
+	 * @param fileNamePrefix
+	 *            the prefix that all of the run names (i.e., the names of the run files) will commonly have
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @return the constructed {@code ExternalSort}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	public static <T extends Comparable<? super T>> ExternalSort<T> create(Iterator<T> iterator, long memoryBudget,
+			String fileNamePrefix, PrintStream out) throws IOException, ClassNotFoundException {
+		return create(iterator, new SortConfiguration(memoryBudget), fileNamePrefix, out);
+	}
+
+	/**
+	 * Constructs an {@code ExternalSort} whose degree, buffer size, and initial runs are chosen to fit in the specified
+	 * memory budget and minimize the predicted I/O time on the specified device (see {@link SortConfiguration}).
+	 * 
+	 * @param <T>
+	 *            the type of the elements
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param memoryBudget
+	 *            the memory budget (in bytes)
+	 * @param inputSize
+	 *            the estimated input size in bytes (0 if unknown)
+	 * @param device
+	 *            the {@code DeviceProfile} of the device storing the runs
+	 * @param fileNamePrefix
+	 *            the prefix that all of the run names (i.e., the names of the run files) will commonly have
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @return the constructed {@code ExternalSort}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	public static <T extends Comparable<? super T>> ExternalSort<T> create(Iterator<T> iterator, long memoryBudget,
+			long inputSize, DeviceProfile device, String fileNamePrefix, PrintStream out)
+			throws IOException, ClassNotFoundException {
+		return create(iterator, new SortConfiguration(memoryBudget, inputSize, device), fileNamePrefix, out);
+	}
+
+	/**
+	 * Constructs an {@code ExternalSort} whose parameters are chosen by the specified {@code SortConfiguration} and
+	 * whose initial runs are filled until the elements exceed the memory budget (see
+	 * {@link #exceedsMemoryBudget(ArrayList)}).
+	 * 
+	 * @param <T>
+	 *            the type of the elements
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param configuration
+	 *            a {@code SortConfiguration}
+	 * @param fileNamePrefix
+	 *            the prefix that all of the run names (i.e., the names of the run files) will commonly have
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @return the constructed {@code ExternalSort}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	public static <T extends Comparable<? super T>> ExternalSort<T> create(Iterator<T> iterator,
+			SortConfiguration configuration, String fileNamePrefix, PrintStream out)
+			throws IOException, ClassNotFoundException {
+		return new ExternalSort<T>(iterator, configuration, fileNamePrefix, out) {
+
+			@Override
+			protected boolean isFull(ArrayList<T> list) {
+				return exceedsMemoryBudget(list);
+			}
+
+		};
+	}
+
+	/**
+	 * Determines whether or not the elements in the specified list occupy at least as many bytes as each initial run
+	 * can contain according to the {@code SortConfiguration} of this {@code ExternalSort}. The sizes of the elements
+	 * (see {@link #sizeOf(Object)}) are accounted for incrementally as elements are appended to the list.
+	 * 
+	 * @param list
+	 *            the list to which elements are appended for constructing an initial run
+	 * @return {@code true} if the elements in the specified list occupy at least as many bytes as each initial run can
+	 *         contain; {@code false} otherwise
+	 * @throws IllegalStateException
+	 *             if this {@code ExternalSort} has no {@code SortConfiguration}
+	 */
+	protected boolean exceedsMemoryBudget(ArrayList<T> list) {
+		if (configuration == null)
+			throw new IllegalStateException("no memory budget is configured");
+		if (list.size() < accountedElements) { // a new list
+			accountedElements = 0;
+			accountedBytes = 0;
+		}
+		for (; accountedElements < list.size(); accountedElements++)
+			accountedBytes += sizeOf(list.get(accountedElements));
+		if (accountedBytes < configuration.runBytes())
+			return false;
+		accountedElements = 0; // the list will be written to a run
+		accountedBytes = 0;
+		return true;
+	}
+
+	/**
+	 * Returns the estimated number of bytes that the specified element occupies in memory including the reference to
+	 * it. The default implementation assumes a 64-bit JVM with compressed references: 24 bytes for {@code Integer}s
+	 * and other small boxed primitives, 32 bytes for {@code Long}s and {@code Double}s, 64 bytes plus 2 bytes per
+	 * character for {@code String}s, and 64 bytes for all other objects. Subclasses may override this method for
+	 * more accurate estimates.
+	 * 
+	 * @param element
+	 *            an element
+	 * @return the estimated number of bytes that the specified element occupies in memory
+	 */
+	protected long sizeOf(T element) {
+		if (element instanceof Long || element instanceof Double)
+			return 32;
+		if (element instanceof Integer || element instanceof Float || element instanceof Short
+				|| element instanceof Byte || element instanceof Character || element instanceof Boolean)
+			return 24;
+		if (element instanceof String)
+			return 64 + 2L * ((String) element).length();
+		return 64;
+	}
+
+	/**
+	 * Determines whether or not initial runs are constructed by {@linkplain ReplacementSelection replacement selection}
+	 * rather than by sorting one memory load of elements at a time. Replacement selection produces runs that are about
+	 * twice as long as the memory on random input and a single run on sorted input, which reduces the number of merge
+	 * passes.
+	 * 
+	 * @return {@code true} if initial runs are constructed by replacement selection; {@code false} otherwise
+	 */
+	protected boolean replacementSelection() {
+		return false;
+	}
+
+	/**
+	 * Returns the number of threads that construct runs. If a value larger than 1 is returned, chunks of elements
+	 * obtained from the input {@code Iterator} are sorted and written to runs by a pool of that many threads while at
+	 * most that many chunks are in flight, and the independent merges of each merge pass are also executed by that pool
+	 * (the default is 1, i.e., the calling thread constructs all runs).
+	 * 
+	 * @return the number of threads that construct runs
+	 */
+	protected int parallelism() {
+		return 1;
+	}
+
+	/**
+	 * Returns the total number of buffers that concurrent merges may use at any time when runs are constructed in
+	 * parallel (see {@link #parallelism()}). A merge of {@code k} runs uses {@code k} input buffers and an output buffer
+	 * (the default is unlimited, i.e., up to {@link #parallelism()} merges run concurrently).
+	 * 
+	 * @return the total number of buffers that concurrent merges may use at any time
+	 */
+	protected int mergeBufferBudget() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Determines whether or not runs are merged using {@link LoserTreeMergeIterator}s, which need about
+	 * log<sub>2</sub>(k) comparisons and no allocation per element when merging k runs, rather than
+	 * {@link OrderedMergeIterator}s.
+	 * 
+	 * @return {@code true} if runs are merged using {@code LoserTreeMergeIterator}s; {@code false} otherwise
+	 */
+	protected boolean loserTreeMerge() {
+		return false;
+	}
+
+	/**
+	 * Determines whether or not runs are read and written using {@code FileChannel}s and reusable direct
+	 * {@code ByteBuffer}s aligned to {@link #blockAlignment()} (rather than {@code FileInputStream}s and
+	 * {@code FileOutputStream}s with a new byte array for every block read). Unless blocks are compressed, each block
+	 * is encoded directly into a direct {@code ByteBuffer} and written from there without being copied.
+	 * 
+	 * @return {@code true} if runs are read and written using {@code FileChannel}s; {@code false} otherwise
+	 */
+	protected boolean channelIO() {
+		return false;
+	}
+
+	/**
+	 * Determines whether or not the runs merged into the output iterator (i.e., in the final merge pass) are
+	 * memory-mapped so that their blocks are decoded directly from the mapped memory.
+	 * 
+	 * @return {@code true} if the runs merged into the output iterator are memory-mapped; {@code false} otherwise
+	 */
+	protected boolean mapFinalRuns() {
+		return false;
+	}
+
+	/**
+	 * Returns the alignment (in bytes, a power of 2) of the direct {@code ByteBuffer}s used when runs are read and
+	 * written using {@code FileChannel}s (the default is 4096, the page size of most devices).
+	 * 
+	 * @return the alignment of the direct {@code ByteBuffer}s used for reading and writing runs
+	 */
+	protected int blockAlignment() {
+		return 4096;
+	}
+
+	/**
+	 * Returns the maximum number of released buffers of each kind that the {@code BufferPool} of this
+	 * {@code ExternalSort} keeps for reuse (the default is {@code 2 * (degree + 1)}, i.e., the buffers of two merges,
+	 * but no more than the buffers that fit in the memory budget of the {@code SortConfiguration}, or in the maximum
+	 * heap size if there is no {@code SortConfiguration}).
+	 * 
+	 * @return the maximum number of released buffers of each kind that the {@code BufferPool} keeps
+	 */
+	protected int bufferPoolCapacity() {
+		long budget = configuration != null ? configuration.memoryBudget() : Runtime.getRuntime().maxMemory();
+		return (int) Math.min(2L * (degree + 1), Math.max(1, budget / bufferSize));
+	}
+
+	/**
+	 * Returns the number of blocks that each {@code RunReader} loads in the background ahead of the block being
+	 * consumed. If a positive value is returned, merges overlap disk reads with the consumption of elements (the default
+	 * is 0, i.e., each block is read only when the previous block has been consumed).
+	 * 
+	 * @return the number of blocks that each {@code RunReader} loads in the background
+	 */
+	protected int prefetchDepth() {
+		return 0;
+	}
+
+	/**
+	 * Returns the maximum number of filled output buffers that each {@code RunWriter} hands to a writer thread. If a
+	 * positive value is returned, elements are written to the next output buffer while the filled ones are written to
+	 * the run in the background, and filling pauses whenever that many filled output buffers are waiting (the default
+	 * is 0, i.e., each output buffer is written to the run before the next one is filled).
+	 * 
+	 * @return the maximum number of filled output buffers that each {@code RunWriter} hands to a writer thread
+	 */
+	protected int writeBehindDepth() {
+		return 0;
+	}
+
+	/**
+	 * Returns the {@code RunCodec} for encoding and decoding the elements in runs. If {@code null} is returned (the
+	 * default), the elements are written to runs using Java serialization.
+	 * 
+	 * @return the {@code RunCodec} for encoding and decoding the elements in runs; {@code null} if Java serialization
+	 *         is used
+	 */
+	protected RunCodec<T> codec() {
+		return null;
+	}
+
+	/**
+	 * Returns the directories across which runs are placed. If directories are returned, each run is placed in the
+	 * directory chosen round-robin by its ID (so that the runs merged together, and thus their I/O, are spread across
+	 * the directories, which may reside on different devices). If {@code null} or no directory is returned (the
+	 * default), each run is named by appending its ID to the file name prefix.
+	 * 
+	 * @return the directories across which runs are placed; {@code null} if runs are placed according to the file name
+	 *         prefix only
+	 */
+	protected List<File> spillDirectories() {
+		return null;
+	}
+
+	/**
+	 * Determines whether or not to delete runs once they are no longer needed (i.e., once they have been merged into a
+	 * completed run, which is forced to the device first, or once the output iterator has returned all of the elements
+	 * from them). By default, runs are kept, as they always have been.
+	 * 
+	 * @return {@code true} to delete runs once they are no longer needed; {@code false} (the default) to keep them
+	 */
+	protected boolean deleteMergedRuns() {
+		return false;
+	}
+
+	/**
+	 * Returns the maximum number of bytes that the runs may occupy at any time. Writing a run fails with an
+	 * {@code IOException} if the runs would occupy more bytes.
+	 * 
+	 * @return the maximum number of bytes that the runs may occupy at any time ({@code Long.MAX_VALUE}, the default,
+	 *         if unlimited)
+	 */
+	protected long maxSpillBytes() {
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Determines whether or not each run ends with a {@code BlockIndex} that records the offset, the number of
+	 * elements, and the first and last elements of each block. The final merge, when partitioned (see
+	 * {@link #partitions(int)}), then positions each run at the blocks that overlap each key range without sampling
+	 * the runs, and a run can be read through {@link BlockIndex#read(String, ExternalSort)} to count its elements
+	 * without decoding them or to scan only the blocks that overlap a key range.
+	 * 
+	 * @return {@code true} if each run ends with a {@code BlockIndex}; {@code false} (the default) otherwise
+	 */
+	protected boolean blockIndex() {
+		return false;
+	}
+
+	/**
+	 * Determines whether or not this {@code ExternalSort} is resumable. A resumable {@code ExternalSort} records each
+	 * completed run in a {@code RunManifest} (the file named {@code fileNamePrefix + "manifest"}). If an
+	 * {@code ExternalSort} with the same file name prefix, degree, buffer size, and limit is constructed after a failure
+	 * that occurred once all of the initial runs were constructed, it validates the recorded runs (by their lengths and
+	 * checksums) and continues merging from them without consuming its input {@code Iterator}; every merge whose
+	 * output run was recorded and is intact is skipped. The sort starts over instead if the settings that determine
+	 * the content and encoding of the runs differ from those recorded (i.e., the classes of the {@link #codec()},
+	 * {@link #compression()}, {@link #keyPrefix()}, {@link #combiner()}, and {@link #comparator()}, and
+	 * {@link #blockIndex()}). The last initial run of a resumable {@code ExternalSort} is never kept in memory (see
+	 * {@link #keepLastRunInMemory()}).
+	 * 
+	 * @return {@code true} if this {@code ExternalSort} is resumable; {@code false} (the default) otherwise
+	 */
+	protected boolean resumable() {
+		return false;
+	}
 
 	/**
-	 * The buffer size.
+	 * Determines whether or not to keep the last initial run in memory when it is only partially filled (i.e., the
+	 * input ends before {@link #isFull(ArrayList)} returns {@code true}) so that it participates in the final merge as
+	 * an in-memory input instead of being written and read back. Regardless of this setting, the elements are sorted
+	 * entirely in memory if the input ends before the first initial run is filled.
+	 * 
+	 * @return {@code true} to keep the last initial run in memory if it is partially filled; {@code false} (the
+	 *         default) to write it like the other runs
 	 */
-	int bufferSize;
+	protected boolean keepLastRunInMemory() {
+		return false;
+	}
 
 	/**
-	 * The prefix that all of the run names (i.e., the names of the run files) commonly have
+	 * Returns the {@code Combiner} for combining equal elements. If a {@code Combiner} is returned, each sequence of
+	 * equal elements is combined into one element whenever a run is constructed (both from the input and by merging
+	 * runs) and when the output elements are produced, so that duplicate-heavy inputs shrink with each pass (e.g.,
+	 * {@link Combiner#distinct()} for {@code DISTINCT}, or a {@code Combiner} that aggregates the elements of each group
+	 * for {@code GROUP BY}). If {@code null} is returned (the default), equal elements are not combined.
+	 * 
+	 * @return the {@code Combiner} for combining equal elements; {@code null} if equal elements are not combined
 	 */
-	String fileNamePrefix;
+	protected Combiner<T> combiner() {
+		return null;
+	}
 
 	/**
-	 * The output iterator of (i.e., the iterator over all elements that are sorted by) this {@code ExternalSort}.
+	 * Returns the {@code BlockCompression} applied to each block of the runs. If a {@code BlockCompression} is
+	 * returned, each block is stored in a run as the length of the compressed block followed by the compressed block.
+	 * If {@code null} is returned (the default), blocks are stored as they are.
+	 * 
+	 * @return the {@code BlockCompression} applied to each block of the runs; {@code null} if blocks are not compressed
 	 */
-	Iterator<T> iterator;
+	protected BlockCompression compression() {
+		return null;
+	}
 
 	/**
-	 * The ID of the next run.
+	 * Returns the {@code KeyPrefix} for the elements. If a {@code KeyPrefix} is returned, initial runs are sorted by
+	 * {@link PrefixSort}, the key prefix of each element is stored in runs along with the element, and merges compare
+	 * key prefixes before calling {@code compareTo} (or the {@code Comparator} returned by {@link #comparator()}). If
+	 * {@code null} is returned (the default), elements are compared only by {@code compareTo} (or that
+	 * {@code Comparator}).
+	 * 
+	 * @return the {@code KeyPrefix} for the elements; {@code null} if elements are compared only by {@code compareTo}
+	 *         (or the {@code Comparator} returned by {@link #comparator()})
 	 */
-	int nextRunID = 0;
+	protected KeyPrefix<T> keyPrefix() {
+		return null;
+	}
 
 	/**
-	 * The number of buffer reads so far.
+	 * Returns the {@code Comparator} that determines the order of the elements. If {@code null} is returned (the
+	 * default), the elements must be {@code Comparable} and are sorted according to their natural ordering. A
+	 * {@code KeyPrefix} (see {@link #keyPrefix()}) and a {@code Combiner} (see {@link #combiner()}), if any, must be
+	 * consistent with the returned {@code Comparator}.
+	 * 
+	 * @return the {@code Comparator} that determines the order of the elements; {@code null} if the elements are sorted
+	 *         according to their natural ordering
 	 */
-	long bufferReadCount = 0;
+	protected Comparator<? super T> comparator() {
+		return null;
+	}
 
 	/**
-	 * The number of buffer writes so far.
+	 * Returns the {@code SortListener} notified of the progress of this {@code ExternalSort}. Regardless of this
+	 * setting, the {@code PassMetrics} of the completed passes are available from {@link #passMetrics()}, and
+	 * {@link PassEvent}s, {@link BlockReadEvent}s, and {@link BlockWriteEvent}s are emitted while the JDK Flight
+	 * Recorder records them (e.g., {@code -XX:StartFlightRecording}).
+	 * 
+	 * @return the {@code SortListener} notified of the progress of this {@code ExternalSort}; {@code null} (the
+	 *         default) if there is no such {@code SortListener}
 	 */
-	long bufferWriteCount = 0;
+	protected SortListener listener() {
+		return null;
+	}
 
 	/**
-	 * Constructs an {@code ExternalSort}
+	 * Sorts the specified list of elements for an initial run (using {@link PrefixSort} if this {@code ExternalSort}
+	 * has a {@code KeyPrefix}) and counts the comparisons.
+	 * 
+	 * @param list
+	 *            a list of elements
+	 */
+	void sort(ArrayList<T> list) {
+		if (keyPrefix != null) {
+			comparisons.addAndGet(PrefixSort.sort(list, keyPrefix, comparator));
+			return;
+		}
+		long[] count = new long[1];
+		Collections.sort(list, new Comparator<T>() {
+
+			@Override
+			public int compare(T o1, T o2) {
+				count[0]++;
+				return comparator.compare(o1, o2);
+			}
+
+		});
+		comparisons.addAndGet(count[0]);
+	}
+
+	/**
+	 * Constructs initial runs using the data from the specified input {@code Iterator}. The elements that do not fill
+	 * an initial run at the end of the input may be kept in memory instead (see
+	 * {@link #keepInMemory(ArrayList, List)}).
 	 * 
 	 * @param iterator
 	 *            the input {@code Iterator}
-	 * @param degree
-	 *            the number of runs that are merged together to form a new run
-	 * @param bufferSize
-	 *            the buffer size
-	 * @param fileNamePrefix
-	 *            the prefix that all of the run names (i.e., the names of the run files) will commonly have
-	 * @param out
-	 *            a {@code PrintStream}
+	 * @return the names of the initial runs constructed (i.e., file names)
 	 * @throws IOException
 	 *             if an I/O error occurs
 	 * @throws ClassNotFoundException
 	 *             if the class of a serialized object cannot be found
 	 */
-	public ExternalSort(Iterator<T> iterator, int degree, int bufferSize, String fileNamePrefix, PrintStream out)
-			throws IOException, ClassNotFoundException {
-		if (iterator == null)
-			return;
-		this.fileNamePrefix = fileNamePrefix;
-		this.degree = degree;
-		this.bufferSize = bufferSize;
-
-		out.print("initial pass: ");
-		long time = System.nanoTime();
-		ArrayList<String> runNames = createInitialRuns(iterator);
-		out.println(runNames.size() + " runs" + String.format(" (%.5f seconds)", (System.nanoTime() - time) * 1.0e-9));
-		int mergePass = 0;
-		while (runNames.size() > degree) {
-			out.print("merge pass " + (++mergePass) + ": ");
-			time = System.nanoTime();
-			runNames = merge(runNames);
-			out.println(runNames.size() + " run(s)"
-					+ String.format(" (%.5f seconds)", (System.nanoTime() - time) * 1.0e-9));
+	ArrayList<String> createInitialRuns(Iterator<T> iterator)
+			throws FileNotFoundException, IOException, ClassNotFoundException {
+		if (limit != Long.MAX_VALUE)
+			return createInitialRunsWithLimit(iterator);
+		if (replacementSelection())
+			return createInitialRunsByReplacementSelection(iterator);
+		if (executor != null)
+			return createInitialRunsInParallel(iterator);
+		ArrayList<T> list = new ArrayList<T>(); // a temporary list for storing elements from the input iterator
+		ArrayList<String> runNames = new ArrayList<String>();
+		while (iterator.hasNext()) {
+			list.add(iterator.next());
+			boolean full = isFull(list);
+			if (!full && !iterator.hasNext() && keepInMemory(list, runNames))
+				break;
+			if (full || !iterator.hasNext()) {
+				sort(list); // sort the elements in the list
+				// construct a run containing the elements in the list and register the name of the run
+				runNames.add(createRun(combine(list.iterator())));
+				list.clear();
+			}
 		}
-		out.print("merge pass " + (++mergePass) + ": ");
-		this.iterator = new OrderedMergeIterator<T>(createRunReaders(runNames));
-		out.println("1 output iterator");
+		return runNames;
 	}
 
 	/**
-	 * Merges the specified input runs into new runs
+	 * Keeps the specified elements, which are the last elements from the input and do not fill an initial run, in
+	 * memory if no initial run has been constructed (then all of the elements are sorted in memory) or
+	 * {@link #keepLastRunInMemory()} is {@code true} (then the elements form an in-memory run).
 	 * 
+	 * @param list
+	 *            the last elements from the input
 	 * @param runNames
-	 *            the name of the input runs (i.e., file names)
-	 * @return the names of the new runs (i.e., file names)
+	 *            the names of the initial runs constructed so far
+	 * @return {@code true} if the elements are kept in memory; {@code false} if they need to be written to a run
+	 */
+	boolean keepInMemory(ArrayList<T> list, List<String> runNames) {
+		if (!runNames.isEmpty() && (!keepLastRunInMemory() || manifest != null))
+			return false;
+		sortAndCombine(list);
+		if (runNames.isEmpty())
+			inMemory = list;
+		else
+			inMemoryRun = list;
+		return true;
+	}
+
+	/**
+	 * Constructs initial runs that together contain the {@link #limit} smallest elements from the specified input
+	 * {@code Iterator}. While fewer than {@link #limit} elements have been obtained and {@link #isFull(ArrayList)} is
+	 * not {@code true}, the elements are kept in memory. Once {@link #limit} elements are kept, they are maintained in a
+	 * bounded max-heap that replaces its largest element with each smaller input element, and the result is stored in
+	 * {@link #inMemory} without constructing any run. Otherwise, each run keeps at most {@link #limit} elements, and a
+	 * cutoff (the largest element of runs that together contain at least {@link #limit} elements) is maintained so
+	 * that any input element not smaller than the cutoff is discarded before it is written. If equal elements are
+	 * combined (see {@link #combiner()}), the limit applies to the combined elements; the elements are then kept in
+	 * memory only if all of them fit, and the cutoff is the largest of the first {@link #limit} combined elements of a
+	 * run (elements equal to the cutoff are kept to be combined with it). The last run is kept in
+	 * {@link #inMemoryRun} if {@link #keepLastRunInMemory()} is {@code true} and the run is partially filled.
+	 * 
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @return the names of the initial runs constructed (i.e., file names)
 	 * @throws IOException
 	 *             if an I/O error occurs
 	 * @throws ClassNotFoundException
 	 *             if the class of a serialized object cannot be found
 	 */
-	ArrayList<String> merge(List<String> runNames) throws IOException, ClassNotFoundException {
-		// TODO complete this method (5 points)
-		//throw new UnsupportedOperationException();
-		int runCount = 0;
-		ArrayList<String> toCreate = new ArrayList<String>();
-		ArrayList<String> createdRuns = new ArrayList<String>();
-		
-		for(String s : runNames) {
-			toCreate.add(s);												// add each run to a list
-			runCount++;
-			if(runCount == this.degree) {									// when the number of runs is equal to the degree, merge to create a new run
-				createdRuns.add(createRun(toCreate));
-				runCount = 0;
-				toCreate.clear();
+	ArrayList<String> createInitialRunsWithLimit(Iterator<T> iterator) throws IOException, ClassNotFoundException {
+		ArrayList<T> list = new ArrayList<T>();
+		ArrayList<String> runNames = new ArrayList<String>();
+		if (limit == 0) {
+			inMemory = list;
+			return runNames;
+		}
+		boolean full = false;
+		while (iterator.hasNext() && (combiner != null || list.size() < limit) && !full) {
+			list.add(iterator.next());
+			full = isFull(list);
+		}
+		if (!full && !iterator.hasNext()) { // all of the elements fit in memory
+			sortAndCombine(list);
+			if (list.size() > limit)
+				list.subList((int) limit, list.size()).clear();
+			inMemory = list;
+			return runNames;
+		}
+		if (!full && combiner == null) { // the limit smallest elements fit in memory
+			PriorityQueue<T> heap = new PriorityQueue<T>(Math.max(list.size(), 1),
+					Collections.reverseOrder(comparator));
+			heap.addAll(list);
+			while (iterator.hasNext()) {
+				T element = iterator.next();
+				if (comparator.compare(element, heap.peek()) < 0) {
+					heap.poll();
+					heap.add(element);
+				}
 			}
+			list = new ArrayList<T>(heap);
+			sort(list);
+			inMemory = list;
+			return runNames;
 		}
-		return createdRuns;
+		T cutoff = null; // no element smaller than the cutoff can be discarded
+		long count = 0; // the number of elements in the runs constructed since the cutoff was determined
+		T largest = null; // the largest element in these runs
+		while (true) {
+			if (full || !iterator.hasNext()) {
+				sortAndCombine(list);
+				if (list.size() > limit)
+					list.subList((int) limit, list.size()).clear();
+				if (!full && !iterator.hasNext() && keepLastRunInMemory() && manifest == null && !list.isEmpty()) {
+					inMemoryRun = list;
+					break;
+				}
+				full = false;
+				if (!list.isEmpty()) {
+					T last = list.get(list.size() - 1);
+					runNames.add(createRun(list.iterator()));
+					if (combiner != null) { // runs may share keys, so only a run with limit keys determines the cutoff
+						if (list.size() == limit)
+							cutoff = last;
+					} else {
+						count += list.size();
+						if (largest == null || comparator.compare(last, largest) > 0)
+							largest = last;
+						if (count >= limit) { // at least limit elements are smaller than or equal to the largest one
+							cutoff = largest;
+							count = 0;
+							largest = null;
+						}
+					}
+				}
+				list.clear();
+			}
+			if (!iterator.hasNext())
+				break;
+			T element = iterator.next();
+			int c = cutoff == null ? -1 : comparator.compare(element, cutoff);
+			if (c < 0 || c == 0 && combiner != null) { // an element equal to the cutoff may be combined with it
+				list.add(element);
+				full = isFull(list);
+			}
+		}
+		return runNames;
 	}
 
 	/**
-	 * Constructs a new run by merging input runs.
+	 * Constructs initial runs in parallel using the data from the specified input {@code Iterator}. Each chunk of
+	 * elements obtained from the input {@code Iterator} is sorted and written to a run by a thread in the
+	 * {@link #executor} while at most {@link #parallelism()} chunks (including the one being filled) are in memory. If
+	 * a task fails, the failure is reported as soon as the next chunk is filled rather than after the whole input is
+	 * consumed.
 	 * 
-	 * @param runNames
-	 *            the names of the input runs.
-	 * @return the name of the newly constructed run
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @return the names of the initial runs constructed (i.e., file names)
 	 * @throws IOException
 	 *             if an I/O error occurs
 	 * @throws ClassNotFoundException
 	 *             if the class of a serialized object cannot be found
 	 */
-	String createRun(List<String> runNames) throws IOException, ClassNotFoundException {
-		if (runNames.size() == 1)
-			return runNames.get(0);
-		return createRun(new OrderedMergeIterator<T>(createRunReaders(runNames)));
+	ArrayList<String> createInitialRunsInParallel(Iterator<T> iterator) throws IOException, ClassNotFoundException {
+		Semaphore permits = new Semaphore(parallelism()); // one permit for each chunk in flight
+		ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+		ArrayList<String> runNames = new ArrayList<String>();
+		while (iterator.hasNext()) {
+			acquire(permits, 1); // acquired before the chunk is filled so that the chunk counts as in memory
+			ArrayList<T> chunk = new ArrayList<T>();
+			boolean full = false;
+			while (!full && iterator.hasNext()) {
+				chunk.add(iterator.next());
+				full = isFull(chunk);
+			}
+			if (!full && keepInMemory(chunk, runNames)) {
+				permits.release();
+				break;
+			}
+			checkCompleted(futures); // stops early if a task has failed
+			String runName = nextRunName(); // run names are determined in the order of the chunks
+			runNames.add(runName);
+			futures.add(executor.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					long cpuTime = PassMetrics.cpuTime();
+					try {
+						sort(chunk);
+						createRun(combine(chunk.iterator()), runName);
+					} finally {
+						taskCpuNanos.addAndGet(PassMetrics.cpuTime() - cpuTime);
+						permits.release();
+					}
+					return null;
+				}
+
+			}));
+		}
+		await(futures);
+		return runNames;
 	}
 
 	/**
-	 * Constructs {@code RunReader}s for the specified runs.
+	 * Acquires the specified number of permits from the specified {@code Semaphore}.
 	 * 
-	 * @param runNames
-	 *            the names of the runs (i.e., the file names)
-	 * @return the constructed {@code RunReader}s
+	 * @param semaphore
+	 *            a {@code Semaphore}
+	 * @param permits
+	 *            the number of permits to acquire
+	 * @throws InterruptedIOException
+	 *             if the current thread is interrupted
+	 */
+	static void acquire(Semaphore semaphore, int permits) throws InterruptedIOException {
+		try {
+			semaphore.acquire(permits);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	/**
+	 * Waits until all of the specified {@code Future}s complete.
+	 * 
+	 * @param futures
+	 *            {@code Future}s
 	 * @throws IOException
-	 *             if an I/O error occurs
+	 *             if an I/O error occurs in a task
 	 * @throws ClassNotFoundException
-	 *             if the class of a serialized object cannot be found
+	 *             if the class of a serialized object cannot be found in a task
 	 */
-	@SuppressWarnings("unchecked")
-	Iterable<Iterator<T>> createRunReaders(List<String> runNames) throws IOException, ClassNotFoundException {
-		ArrayList<Iterator<T>> iterators = new ArrayList<Iterator<T>>();
-		for (String runName : runNames)
-			iterators.add((Iterator<T>) new RunReader(runName, bufferSize, this));
-		return iterators;
+	static void await(List<Future<?>> futures) throws IOException, ClassNotFoundException {
+		for (Future<?> future : futures)
+			get(future);
 	}
 
 	/**
-	 * Determines whether or not the iteration has more elements (i.e., {@link #next} would return an element rather
-	 * than throwing an exception).
-	 *
-	 * @return {@code true} if the iteration has more elements; {@code false} otherwise
+	 * Removes the specified {@code Future}s that have completed, rethrowing the failure of any of them.
+	 * 
+	 * @param futures
+	 *            {@code Future}s
+	 * @throws IOException
+	 *             if an I/O error occurred in a completed task
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object could not be found in a completed task
 	 */
-	@Override
-	public boolean hasNext() {
-		return iterator.hasNext();
+	static void checkCompleted(List<Future<?>> futures) throws IOException, ClassNotFoundException {
+		for (Iterator<Future<?>> i = futures.iterator(); i.hasNext();) {
+			Future<?> future = i.next();
+			if (future.isDone()) {
+				get(future);
+				i.remove();
+			}
+		}
 	}
 
 	/**
-	 * Returns the next element in the iteration.
-	 *
-	 * @return the next element in the iteration
-	 * @throws NoSuchElementException
-	 *             if the iteration has no more elements
+	 * Waits until the specified {@code Future} completes.
+	 * 
+	 * @param future
+	 *            a {@code Future}
+	 * @throws IOException
+	 *             if an I/O error occurs in the task
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found in the task
 	 */
-	@Override
-	public T next() {
-		return iterator.next();
+	static void get(Future<?> future) throws IOException, ClassNotFoundException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof ClassNotFoundException)
+				throw (ClassNotFoundException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
+		}
 	}
 
-	protected abstract boolean isFull(ArrayList<T> list);
-
 	/**
-	 * Constructs initial runs using the data from the specified input {@code Iterator}.
+	 * Constructs initial runs by {@linkplain ReplacementSelection replacement selection} using the data from the
+	 * specified input {@code Iterator}.
 	 * 
 	 * @param iterator
 	 *            the input {@code Iterator}
@@ -201,19 +1835,13 @@ public abstract class ExternalSort<T extends Comparable<? super T>> implements I
 	 * @throws ClassNotFoundException
 	 *             if the class of a serialized object cannot be found
 	 */
-	ArrayList<String> createInitialRuns(Iterator<T> iterator)
-			throws FileNotFoundException, IOException, ClassNotFoundException {
-		ArrayList<T> list = new ArrayList<T>(); // a temporary list for storing elements from the input iterator
+	ArrayList<String> createInitialRunsByReplacementSelection(Iterator<T> iterator)
+			throws IOException, ClassNotFoundException {
 		ArrayList<String> runNames = new ArrayList<String>();
-		while (iterator.hasNext()) {
-			list.add(iterator.next());
-			if (isFull(list) || !iterator.hasNext()) {
-				Collections.sort(list); // sort the elements in the list
-				runNames.add(createRun(list.iterator())); // construct a run containing the elements in the list and
-															// register the name of the run
-				list.clear();
-			}
-		}
+		ReplacementSelection<T> selection = new ReplacementSelection<T>(iterator, this);
+		while (selection.nextRun())
+			runNames.add(createRun(combine(selection))); // construct a run containing the elements of the current run
+		comparisons.addAndGet(selection.comparisons);
 		return runNames;
 	}
 
@@ -229,18 +1857,131 @@ public abstract class ExternalSort<T extends Comparable<? super T>> implements I
 	 *             if the class of a serialized object cannot be found
 	 */
 	String createRun(Iterator<T> iterator) throws IOException, ClassNotFoundException {
-		String fileName = fileNamePrefix + (nextRunID++) + ".run";
-		new RunWriter<T>(iterator, fileName, bufferSize, this);
+		return createRun(iterator, nextRunName());
+	}
+
+	/**
+	 * Constructs a new run with the specified name using the data from the specified input {@code Iterator}.
+	 * 
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param fileName
+	 *            the name of the new run (i.e., the file name)
+	 * @return the name of the newly constructed run
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	String createRun(Iterator<T> iterator, String fileName) throws IOException, ClassNotFoundException {
+		return createRun(iterator, fileName, Collections.<String>emptyList());
+	}
+
+	/**
+	 * Constructs a new run with the specified name using the data from the specified input {@code Iterator} and
+	 * records the run in the {@link #manifest} if this {@code ExternalSort} is resumable.
+	 * 
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param fileName
+	 *            the name of the new run (i.e., the file name)
+	 * @param inputs
+	 *            the names of the runs merged by the input {@code Iterator} (empty for an initial run)
+	 * @return the name of the newly constructed run
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	String createRun(Iterator<T> iterator, String fileName, List<String> inputs)
+			throws IOException, ClassNotFoundException {
+		RunWriter<T> writer = new RunWriter<T>(iterator, fileName, bufferSize, this);
+		if (manifest == null && deleteMergedRuns && !inputs.isEmpty())
+			sync(fileName); // the run must be durable before its inputs are deleted (a resumable run is already durable)
+		if (manifest != null)
+			manifest.record(fileName, inputs, writer.count, writer.checksum.getValue(), nextRunID.get());
+		runCount.incrementAndGet();
+		elementsWritten.addAndGet(writer.count);
+		sampleHeapUsage();
+		if (listener != null)
+			listener.runCreated(pass, fileName, writer.count, new File(fileName).length());
 		return fileName;
 	}
 
+	/**
+	 * Forces the contents of the specified file to the device.
+	 * 
+	 * @param fileName
+	 *            the name of a file
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	static void sync(String fileName) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(fileName, true)) {
+			out.getFD().sync();
+		}
+	}
+
+	/**
+	 * Allocates a direct {@code ByteBuffer} of the specified capacity whose address is aligned to
+	 * {@link #blockAlignment}.
+	 * 
+	 * @param capacity
+	 *            the capacity of the {@code ByteBuffer}
+	 * @return a direct {@code ByteBuffer} of the specified capacity
+	 */
+	ByteBuffer allocateDirect(int capacity) {
+		if (blockAlignment <= 1)
+			return ByteBuffer.allocateDirect(capacity);
+		ByteBuffer b = ByteBuffer.allocateDirect(capacity + blockAlignment - 1);
+		int offset = b.alignmentOffset(0, blockAlignment);
+		b.position(offset == 0 ? 0 : blockAlignment - offset);
+		b.limit(b.position() + capacity);
+		return b.slice();
+	}
+
+	/**
+	 * Returns the {@code ExecutorService} for reading and writing runs in the background. Its threads are daemon
+	 * threads so that {@code RunReader}s of the output iterator can still prefetch after this {@code ExternalSort} is
+	 * constructed.
+	 * 
+	 * @return the {@code ExecutorService} for reading and writing runs in the background
+	 */
+	synchronized ExecutorService ioExecutor() {
+		if (ioExecutor == null)
+			ioExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r);
+					t.setDaemon(true);
+					return t;
+				}
+
+			});
+		return ioExecutor;
+	}
+
+	/**
+	 * Returns the name of the next run (i.e., the file name).
+	 * 
+	 * @return the name of the next run
+	 */
+	String nextRunName() {
+		int id = nextRunID.getAndIncrement();
+		String name = fileNamePrefix + id + ".run";
+		if (spillDirectories == null)
+			return name;
+		return new File(spillDirectories.get(id % spillDirectories.size()), new File(name).getName()).getPath();
+	}
+
 	/**
 	 * Returns the number of buffer reads.
 	 * 
 	 * @return the number of buffer reads
 	 */
 	public long bufferReadCount() {
-		return bufferReadCount;
+		return bufferReadCount.get();
 	}
 
 	/**
@@ -249,21 +1990,97 @@ public abstract class ExternalSort<T extends Comparable<? super T>> implements I
 	 * @return the number of buffer writes
 	 */
 	public long bufferWriteCount() {
-		return bufferWriteCount;
+		return bufferWriteCount.get();
 	}
 
 	/**
 	 * Increases the number of buffer reads.
 	 */
 	void increaseBufferReadCount() {
-		bufferReadCount++;
+		bufferReadCount.incrementAndGet();
 	}
 
 	/**
 	 * Increases the number of buffer writes.
 	 */
 	void increaseBufferWriteCount() {
-		bufferWriteCount++;
+		bufferWriteCount.incrementAndGet();
+	}
+
+	/**
+	 * Returns the {@code BufferPool} that hands out and recycles the buffers for reading and writing runs.
+	 * 
+	 * @return the {@code BufferPool} that hands out and recycles the buffers for reading and writing runs
+	 */
+	public BufferPool bufferPool() {
+		return bufferPool;
+	}
+
+	/**
+	 * Returns the number of bytes that the runs currently occupy.
+	 * 
+	 * @return the number of bytes that the runs currently occupy
+	 */
+	public long spillBytes() {
+		return spillAccount.spillBytes.get();
+	}
+
+	/**
+	 * Returns the largest number of bytes that the runs have occupied at any time.
+	 * 
+	 * @return the largest number of bytes that the runs have occupied at any time
+	 */
+	public long peakSpillBytes() {
+		return spillAccount.peakSpillBytes.get();
+	}
+
+	/**
+	 * Returns the {@code PassMetrics} of the completed passes. The final merge pass completes once the output iterator
+	 * has returned all of the elements.
+	 * 
+	 * @return the {@code PassMetrics} of the completed passes in the order of the passes
+	 */
+	public List<PassMetrics> passMetrics() {
+		return Collections.unmodifiableList(passMetrics);
+	}
+
+	/**
+	 * Returns the number of comparisons performed while sorting initial runs and merging runs so far.
+	 * 
+	 * @return the number of comparisons performed while sorting initial runs and merging runs so far
+	 */
+	public long comparisons() {
+		return comparisons.get();
+	}
+
+	/**
+	 * Returns the maximum number of the smallest elements that this {@code ExternalSort} produces.
+	 * 
+	 * @return the maximum number of the smallest elements that this {@code ExternalSort} produces
+	 *         ({@code Long.MAX_VALUE} if all elements are produced)
+	 */
+	public long limit() {
+		return limit;
+	}
+
+	/**
+	 * Returns the {@code SortConfiguration} that determined the parameters of this {@code ExternalSort}.
+	 * 
+	 * @return the {@code SortConfiguration} that determined the parameters of this {@code ExternalSort} ({@code null}
+	 *         if the parameters were given explicitly)
+	 */
+	public SortConfiguration configuration() {
+		return configuration;
+	}
+
+	/**
+	 * Returns the {@code MergePlan} according to which the initial runs are merged.
+	 * 
+	 * @return the {@code MergePlan} according to which the initial runs are merged ({@code null} if no elements have
+	 *         been sorted or the elements have been sorted in memory)
+	 */
+	public MergePlan mergePlan() {
+		return mergePlan;
 	}
 
 	/**
@@ -281,7 +2098,7 @@ public abstract class ExternalSort<T extends Comparable<? super T>> implements I
 	 * @return the number of bytes read
 	 */
 	public long bytesRead() {
-		return bufferReadCount * bufferSize;
+		return bufferReadCount.get() * bufferSize;
 	}
 
 	/**
@@ -290,7 +2107,27 @@ public abstract class ExternalSort<T extends Comparable<? super T>> implements I
 	 * @return the number of bytes written
 	 */
 	public long bytesWritten() {
-		return bufferWriteCount * bufferSize;
+		return bufferWriteCount.get() * bufferSize;
+	}
+
+	/**
+	 * Returns the number of bytes actually read from run files (which is smaller than {@link #bytesRead()} if blocks
+	 * are compressed).
+	 * 
+	 * @return the number of bytes actually read from run files
+	 */
+	public long physicalBytesRead() {
+		return physicalBytesRead.get();
+	}
+
+	/**
+	 * Returns the number of bytes actually written to run files (which is smaller than {@link #bytesWritten()} if
+	 * blocks are compressed).
+	 * 
+	 * @return the number of bytes actually written to run files
+	 */
+	public long physicalBytesWritten() {
+		return physicalBytesWritten.get();
 	}
 
 }
@@ -1,25 +1,49 @@
 package external_sort;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import java.io.ObjectInputStream;
 import java.io.ByteArrayInputStream;
-import java.util.ArrayList;
+import java.io.DataInputStream;
 
 /**
- * An {@code InputBuffer} provides access to objects stored in a fixed size byte array.
+ * An {@code InputBuffer} provides access to objects stored in a fixed size byte array (or in a {@code ByteBuffer},
+ * e.g., a direct or memory-mapped {@code ByteBuffer} filled by a {@code FileChannel}).
  * 
  * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
  */
 public class InputBuffer {
 
+	/**
+	 * A marker indicating that no more objects can be deserialized.
+	 */
+	static final Object END = new Object();
+
 	/**
 	 * A byte array managed by this {@code InputBuffer}.
 	 */
 	byte[] buffer;
 
+	/**
+	 * A {@code ByteBuffer} managed by this {@code InputBuffer} ({@code null} if this {@code InputBuffer} manages a byte
+	 * array). The objects are stored between the position and the limit of the {@code ByteBuffer}.
+	 */
+	ByteBuffer byteBuffer = null;
+
+	/**
+	 * The {@code BufferPool} that handed out this {@code InputBuffer} ({@code null} if this {@code InputBuffer} is not
+	 * pooled).
+	 */
+	BufferPool pool = null;
+
 	/**
 	 * Constructs an {@code InputBuffer}.
 	 * 
@@ -32,16 +56,64 @@ public class InputBuffer {
 	}
 
 	/**
-	 * Returns the byte array managed by this {@code InputBuffer}.
+	 * Constructs an {@code InputBuffer} that provides access to the objects stored in the specified {@code ByteBuffer}
+	 * without copying them to a byte array.
+	 * 
+	 * @param byteBuffer
+	 *            a {@code ByteBuffer} whose remaining bytes store objects
+	 */
+	public InputBuffer(ByteBuffer byteBuffer) {
+		this.byteBuffer = byteBuffer;
+	}
+
+	/**
+	 * Returns the byte array managed by this {@code InputBuffer} (a copy of the remaining bytes if this
+	 * {@code InputBuffer} manages a {@code ByteBuffer}).
 	 *
 	 * @return the byte array managed by this {@code InputBuffer}
 	 */
 	public byte[] toByteArray() {
+		if (byteBuffer != null) {
+			byte[] b = new byte[byteBuffer.remaining()];
+			byteBuffer.duplicate().get(b);
+			return b;
+		}
 		return buffer;
 	}
 
 	/**
-	 * Returns an {@code Iterator} over the objects stored in the byte array of this {@code InputBuffer}.
+	 * Returns an {@code InputStream} over the bytes managed by this {@code InputBuffer}.
+	 * 
+	 * @return an {@code InputStream} over the bytes managed by this {@code InputBuffer}
+	 */
+	InputStream inputStream() {
+		if (byteBuffer == null)
+			return new ByteArrayInputStream(buffer);
+		ByteBuffer b = byteBuffer.duplicate();
+		return new InputStream() {
+
+			@Override
+			public int read() {
+				return b.hasRemaining() ? b.get() & 0xff : -1;
+			}
+
+			@Override
+			public int read(byte[] a, int off, int len) {
+				if (len == 0)
+					return 0;
+				if (!b.hasRemaining())
+					return -1;
+				len = Math.min(len, b.remaining());
+				b.get(a, off, len);
+				return len;
+			}
+
+		};
+	}
+
+	/**
+	 * Returns an {@code Iterator} over the objects stored in the byte array of this {@code InputBuffer}. The objects are
+	 * deserialized as the iteration proceeds, and this {@code InputBuffer} is released once all of them are read.
 	 *
 	 * @return an {@code Iterator} over the objects stored in the byte array of this {@code InputBuffer}
 	 * @throws IOException
@@ -51,15 +123,199 @@ public class InputBuffer {
 	 */
 	public Iterator<Object> iterator() throws IOException, ClassNotFoundException {
 		// TODO complete this method (40 points)
-		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buffer));
-		ArrayList<Object> deserializedData = new ArrayList<Object>();
-		
+		return iterator(false);
+	}
+
+	/**
+	 * Returns a {@code PrefixedIterator} over the objects stored in the byte array of this {@code InputBuffer}. The
+	 * objects are deserialized as the iteration proceeds, and this {@code InputBuffer} is released once all of them
+	 * are read.
+	 *
+	 * @param prefixed
+	 *            a flag indicating whether each object is preceded by its key prefix (see {@link KeyPrefix})
+	 * @return a {@code PrefixedIterator} over the objects stored in the byte array of this {@code InputBuffer}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	public PrefixedIterator<Object> iterator(boolean prefixed) throws IOException, ClassNotFoundException {
+		InputStream source = inputStream();
+		ObjectInputStream in = new ObjectInputStream(source);
+		return new PrefixedIterator<Object>() {										// objects are deserialized one at a time as the iteration proceeds
+
+			long prefix;
+
+			long nextPrefix;
+
+			Object next = read();
+
+			Object read() {
+				if (prefixed) {
+					try {
+						nextPrefix = in.readLong();
+					} catch (EOFException e) {												// no more prefixes
+						release();
+						return END;
+					} catch (StreamCorruptedException e) {
+						if (!padding(source))
+							throw new UncheckedIOException(e);
+						release();
+						return END;
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				return readObject(in, source);
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != END;
+			}
+
+			@Override
+			public Object next() {
+				if (next == END)
+					throw new NoSuchElementException();
+				Object o = next;
+				prefix = nextPrefix;
+				next = read();
+				return o;
+			}
+
+			@Override
+			public long prefix() {
+				return prefix;
+			}
+
+		};
+	}
+
+	/**
+	 * Reads the next object from the specified {@code ObjectInputStream}. When no more objects can be read (i.e., the
+	 * end of the byte array or the zero padding that follows the last object is reached), this {@code InputBuffer} is
+	 * released.
+	 * 
+	 * @param in
+	 *            an {@code ObjectInputStream} over the byte array of this {@code InputBuffer}
+	 * @param source
+	 *            the {@code InputStream} from which the {@code ObjectInputStream} reads
+	 * @return the object read; {@link #END} if no more objects can be read
+	 * @throws UncheckedIOException
+	 *             if the byte array is corrupt or the class of a serialized object cannot be found
+	 */
+	Object readObject(ObjectInputStream in, InputStream source) {
 		try {
-			while(true)
-				deserializedData.add(in.readObject());
-		} catch(Exception e) {																// ObjectInputStream will throw EOFException when there are no more objects to be read
-			System.out.println("End of ObjectInputStream");
+			return in.readObject();
+		} catch (EOFException e) {															// no more bytes to read
+		} catch (StreamCorruptedException e) {
+			if (!padding(source))
+				throw new UncheckedIOException(e);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (ClassNotFoundException e) {
+			throw new UncheckedIOException(new IOException(e));
 		}
-		return deserializedData.iterator();
+		release();
+		return END;
+	}
+
+	/**
+	 * Determines whether or not the specified {@code InputStream} has reached the zero padding that follows the last
+	 * object (i.e., all of the remaining bytes are zero).
+	 * 
+	 * @param source
+	 *            the {@code InputStream} from which the objects are read
+	 * @return {@code true} if the specified {@code InputStream} has reached the zero padding; {@code false} otherwise
+	 */
+	boolean padding(InputStream source) {
+		try {
+			for (int b = source.read(); b != -1; b = source.read())
+				if (b != 0)
+					return false;
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns an {@code Iterator} over the objects stored in the byte array of this {@code InputBuffer} using the
+	 * specified {@code RunCodec}. The byte array is expected to start with the number of objects stored in it. The
+	 * objects are decoded as the iteration proceeds, and this {@code InputBuffer} is released once all of them are
+	 * decoded.
+	 *
+	 * @param codec
+	 *            the {@code RunCodec} for decoding the objects
+	 * @return an {@code Iterator} over the objects stored in the byte array of this {@code InputBuffer}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public Iterator<Object> iterator(RunCodec<?> codec) throws IOException {
+		return iterator(codec, false);
+	}
+
+	/**
+	 * Returns a {@code PrefixedIterator} over the objects stored in the byte array of this {@code InputBuffer} using
+	 * the specified {@code RunCodec}. The byte array is expected to start with the number of objects stored in it. The
+	 * objects are decoded as the iteration proceeds, and this {@code InputBuffer} is released once all of them are
+	 * decoded.
+	 *
+	 * @param codec
+	 *            the {@code RunCodec} for decoding the objects
+	 * @param prefixed
+	 *            a flag indicating whether each object is preceded by its key prefix (see {@link KeyPrefix})
+	 * @return a {@code PrefixedIterator} over the objects stored in the byte array of this {@code InputBuffer}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public PrefixedIterator<Object> iterator(RunCodec<?> codec, boolean prefixed) throws IOException {
+		DataInputStream in = new DataInputStream(inputStream());
+		int count = in.readInt();
+		if (count == 0)
+			release();
+		return new PrefixedIterator<Object>() {										// objects are decoded one at a time as the iteration proceeds
+
+			int remaining = count;
+
+			long prefix;
+
+			@Override
+			public boolean hasNext() {
+				return remaining > 0;
+			}
+
+			@Override
+			public Object next() {
+				if (remaining == 0)
+					throw new NoSuchElementException();
+				try {
+					if (prefixed)
+						prefix = in.readLong();
+					Object o = codec.read(in);
+					if (--remaining == 0)
+						release();
+					return o;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+			@Override
+			public long prefix() {
+				return prefix;
+			}
+
+		};
+	}
+
+	/**
+	 * Returns this {@code InputBuffer} to the {@code BufferPool} that handed it out (if any). This
+	 * {@code InputBuffer} must not be used after it is released.
+	 */
+	void release() {
+		if (pool != null)
+			pool.release(this);
 	}
 }
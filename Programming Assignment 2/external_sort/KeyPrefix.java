@@ -0,0 +1,79 @@
+package external_sort;
+
+/**
+ * A {@code KeyPrefix} extracts from each element a 64-bit key prefix that is binary-comparable (i.e., compared as an
+ * unsigned {@code long}) and consistent with the {@linkplain Comparable natural ordering} of the elements (or the
+ * {@code Comparator} that orders them): for any elements {@code a} and {@code b}, {@code a.compareTo(b) < 0} must imply
+ * {@code Long.compareUnsigned(prefix(a), prefix(b)) <= 0}. Elements can thus be ordered by comparing their key prefixes
+ * first and calling {@code compareTo} only when the key prefixes are equal.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public interface KeyPrefix<T> {
+
+	/**
+	 * A {@code KeyPrefix} for {@code Integer}s (the complete value with the sign bit flipped).
+	 */
+	public static final KeyPrefix<Integer> INTEGER = new KeyPrefix<Integer>() {
+
+		@Override
+		public long prefix(Integer o) {
+			return o ^ Long.MIN_VALUE;
+		}
+
+	};
+
+	/**
+	 * A {@code KeyPrefix} for {@code Long}s (the complete value with the sign bit flipped).
+	 */
+	public static final KeyPrefix<Long> LONG = new KeyPrefix<Long>() {
+
+		@Override
+		public long prefix(Long o) {
+			return o ^ Long.MIN_VALUE;
+		}
+
+	};
+
+	/**
+	 * A {@code KeyPrefix} for {@code Double}s (the complete value transformed so that the order of the bits matches
+	 * {@link Double#compareTo(Double)}).
+	 */
+	public static final KeyPrefix<Double> DOUBLE = new KeyPrefix<Double>() {
+
+		@Override
+		public long prefix(Double o) {
+			long bits = Double.doubleToLongBits(o);
+			return bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+		}
+
+	};
+
+	/**
+	 * A {@code KeyPrefix} for {@code String}s (the first 4 UTF-16 characters, padded with zeros).
+	 */
+	public static final KeyPrefix<String> STRING = new KeyPrefix<String>() {
+
+		@Override
+		public long prefix(String o) {
+			long prefix = 0;
+			for (int i = 0; i < 4; i++)
+				prefix = (prefix << 16) | (i < o.length() ? o.charAt(i) : 0);
+			return prefix;
+		}
+
+	};
+
+	/**
+	 * Returns the key prefix of the specified element.
+	 *
+	 * @param o
+	 *            an element
+	 * @return the key prefix of the specified element
+	 */
+	long prefix(T o);
+
+}
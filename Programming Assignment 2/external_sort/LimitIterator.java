@@ -0,0 +1,79 @@
+package external_sort;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@code LimitIterator} iterates over at most a certain number of the first elements from another {@code Iterator}.
+ * If the other {@code Iterator} is a {@code PrefixedIterator}, the key prefixes of the elements are also available from
+ * the {@code LimitIterator}.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public class LimitIterator<T> implements PrefixedIterator<T> {
+
+	/**
+	 * The input {@code Iterator}.
+	 */
+	Iterator<T> iterator;
+
+	/**
+	 * The number of elements that can still be returned.
+	 */
+	long remaining;
+
+	/**
+	 * Constructs a {@code LimitIterator}.
+	 *
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param limit
+	 *            the maximum number of elements to return
+	 */
+	public LimitIterator(Iterator<T> iterator, long limit) {
+		this.iterator = iterator;
+		this.remaining = limit;
+	}
+
+	/**
+	 * Determines whether or not the iteration has more elements (i.e., {@link #next} would return an element rather
+	 * than throwing an exception).
+	 *
+	 * @return {@code true} if the iteration has more elements; {@code false} otherwise
+	 */
+	@Override
+	public boolean hasNext() {
+		return remaining > 0 && iterator.hasNext();
+	}
+
+	/**
+	 * Returns the next element in the iteration.
+	 *
+	 * @return the next element in the iteration
+	 * @throws NoSuchElementException
+	 *             if the iteration has no more elements
+	 */
+	@Override
+	public T next() {
+		if (remaining <= 0)
+			throw new NoSuchElementException();
+		T next = iterator.next();
+		remaining--;
+		return next;
+	}
+
+	/**
+	 * Returns the key prefix of the element most recently returned by {@link #next()} (available only if the input
+	 * {@code Iterator} is a {@code PrefixedIterator}).
+	 *
+	 * @return the key prefix of the element most recently returned by {@link #next()}
+	 */
+	@Override
+	public long prefix() {
+		return ((PrefixedIterator<T>) iterator).prefix();
+	}
+
+}
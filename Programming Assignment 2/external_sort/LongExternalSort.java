@@ -0,0 +1,78 @@
+package external_sort;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A {@code LongExternalSort} sorts {@code long} values in ascending order without boxing them. A
+ * {@code LongExternalSort} can also be used as a {@code PrimitiveIterator.OfLong} over all of these sorted values.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class LongExternalSort extends PrimitiveExternalSort implements PrimitiveIterator.OfLong {
+
+	/**
+	 * The chunk of input values that are sorted for an initial run.
+	 */
+	long[] chunk;
+
+	/**
+	 * Constructs a {@code LongExternalSort}.
+	 *
+	 * @param iterator
+	 *            the input {@code PrimitiveIterator.OfLong}
+	 * @param degree
+	 *            the number of runs that are merged together to form a new run
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param runLength
+	 *            the number of values in each initial run
+	 * @param fileNamePrefix
+	 *            the prefix that all of the run names (i.e., the names of the run files) will commonly have
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public LongExternalSort(PrimitiveIterator.OfLong iterator, int degree, int bufferSize, int runLength,
+			String fileNamePrefix, PrintStream out) throws IOException {
+		super(iterator, Long.BYTES, degree, bufferSize, runLength, fileNamePrefix);
+		chunk = new long[runLength];
+		sort(out);
+		chunk = null;
+	}
+
+	@Override
+	int sortChunk() {
+		PrimitiveIterator.OfLong input = (PrimitiveIterator.OfLong) this.input;
+		int n = 0;
+		while (n < chunk.length && input.hasNext())
+			chunk[n++] = input.nextLong();
+		Arrays.sort(chunk, 0, n);
+		return n;
+	}
+
+	@Override
+	long chunkKey(int i) {
+		return chunk[i];
+	}
+
+	/**
+	 * Returns the next value in the iteration.
+	 *
+	 * @return the next value in the iteration
+	 * @throws NoSuchElementException
+	 *             if the iteration has no more values
+	 * @throws UncheckedIOException
+	 *             if an I/O error occurs
+	 */
+	@Override
+	public long nextLong() {
+		return nextKey();
+	}
+
+}
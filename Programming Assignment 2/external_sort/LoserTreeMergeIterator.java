@@ -0,0 +1,269 @@
+package external_sort;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Given multiple {@code Iterator}s each of which iterates over elements in ascending order according to the
+ * {@linkplain Comparable natural ordering} of the elements (or a {@code Comparator}), a {@code LoserTreeMergeIterator}
+ * iterates over all of these elements in ascending order. Unlike {@link OrderedMergeIterator}, a
+ * {@code LoserTreeMergeIterator} uses a tournament tree that keeps the loser of each match at each internal node.
+ * Finding the next element thus requires only one match per level of the tree (i.e., about log<sub>2</sub>(k)
+ * comparisons for k {@code Iterator}s) and allocates no objects. If the input {@code Iterator}s are
+ * {@code PrefixedIterator}s, elements are compared by their key prefixes first (see {@link KeyPrefix}).
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public class LoserTreeMergeIterator<T> implements PrefixedIterator<T> {
+
+	/**
+	 * The input {@code Iterator}s.
+	 */
+	ArrayList<Iterator<T>> iterators = new ArrayList<Iterator<T>>();
+
+	/**
+	 * The last element obtained from each input {@code Iterator} ({@code null} if that {@code Iterator} has no more
+	 * elements).
+	 */
+	Object[] heads;
+
+	/**
+	 * The tournament tree. {@code tree[0]} is the index of the {@code Iterator} whose last element is the smallest
+	 * (i.e., the overall winner), and {@code tree[i]} for each internal node {@code i} ({@code 0 < i < k}) is the
+	 * index of the {@code Iterator} that lost the match at that node. The leaf for the {@code Iterator} with index
+	 * {@code j} is node {@code k + j}.
+	 */
+	int[] tree;
+
+	/**
+	 * A flag indicating whether the input {@code Iterator}s are {@code PrefixedIterator}s.
+	 */
+	boolean prefixed;
+
+	/**
+	 * The key prefix of the last element obtained from each input {@code Iterator} (used only if {@link #prefixed} is
+	 * {@code true}).
+	 */
+	long[] prefixes;
+
+	/**
+	 * The key prefix of the element most recently returned by {@link #next()}.
+	 */
+	long prefix;
+
+	/**
+	 * The {@code Comparator} that determines the order of the elements.
+	 */
+	Comparator<? super T> comparator;
+
+	/**
+	 * The number of comparisons performed so far.
+	 */
+	long comparisons = 0;
+
+	/**
+	 * Constructs a {@code LoserTreeMergeIterator}.
+	 *
+	 * @param iterators
+	 *            {@code Iterator}s each of which iterates over elements in ascending order according to the
+	 *            {@linkplain Comparable natural ordering} of the elements
+	 */
+	public LoserTreeMergeIterator(Iterable<Iterator<T>> iterators) {
+		this(iterators, false);
+	}
+
+	/**
+	 * Constructs a {@code LoserTreeMergeIterator}.
+	 *
+	 * @param iterators
+	 *            {@code Iterator}s each of which iterates over elements in ascending order according to the
+	 *            {@linkplain Comparable natural ordering} of the elements
+	 * @param prefixed
+	 *            a flag indicating whether the {@code Iterator}s are {@code PrefixedIterator}s whose key prefixes are
+	 *            compared before the elements
+	 */
+	public LoserTreeMergeIterator(Iterable<Iterator<T>> iterators, boolean prefixed) {
+		this(iterators, prefixed, ExternalSort.NATURAL_ORDER);
+	}
+
+	/**
+	 * Constructs a {@code LoserTreeMergeIterator}.
+	 *
+	 * @param iterators
+	 *            {@code Iterator}s each of which iterates over elements in ascending order according to the specified
+	 *            {@code Comparator}
+	 * @param prefixed
+	 *            a flag indicating whether the {@code Iterator}s are {@code PrefixedIterator}s whose key prefixes are
+	 *            compared before the elements
+	 * @param comparator
+	 *            the {@code Comparator} that determines the order of the elements
+	 */
+	public LoserTreeMergeIterator(Iterable<Iterator<T>> iterators, boolean prefixed, Comparator<? super T> comparator) {
+		this.prefixed = prefixed;
+		this.comparator = comparator;
+		for (Iterator<T> iterator : iterators)
+			this.iterators.add(iterator);
+		int k = this.iterators.size();
+		heads = new Object[k];
+		prefixes = new long[k];
+		tree = new int[Math.max(k, 1)];
+		for (int i = 0; i < k; i++)
+			load(i);
+		if (k == 0) {
+			tree[0] = -1;
+			return;
+		}
+		int[] winners = new int[2 * k]; // the winner of the match at each node
+		for (int i = 0; i < k; i++)
+			winners[k + i] = i;
+		for (int node = k - 1; node > 0; node--) {
+			int l = winners[2 * node];
+			int r = winners[2 * node + 1];
+			if (precedes(r, l)) {
+				winners[node] = r;
+				tree[node] = l;
+			} else {
+				winners[node] = l;
+				tree[node] = r;
+			}
+		}
+		tree[0] = k == 1 ? 0 : winners[1];
+	}
+
+	/**
+	 * Constructs a {@code LoserTreeMergeIterator} that merges elements according to their
+	 * {@linkplain Comparable natural ordering}.
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 * @param iterators
+	 *            {@code Iterator}s each of which iterates over elements in ascending order according to the
+	 *            {@linkplain Comparable natural ordering} of the elements
+	 * @return the constructed {@code LoserTreeMergeIterator}
+	 */
+	public static <T extends Comparable<? super T>> LoserTreeMergeIterator<T> naturalOrder(
+			Iterable<Iterator<T>> iterators) {
+		return naturalOrder(iterators, false);
+	}
+
+	/**
+	 * Constructs a {@code LoserTreeMergeIterator} that merges elements according to their
+	 * {@linkplain Comparable natural ordering}.
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 * @param iterators
+	 *            {@code Iterator}s each of which iterates over elements in ascending order according to the
+	 *            {@linkplain Comparable natural ordering} of the elements
+	 * @param prefixed
+	 *            a flag indicating whether the {@code Iterator}s are {@code PrefixedIterator}s whose key prefixes are
+	 *            compared before the elements
+	 * @return the constructed {@code LoserTreeMergeIterator}
+	 */
+	public static <T extends Comparable<? super T>> LoserTreeMergeIterator<T> naturalOrder(
+			Iterable<Iterator<T>> iterators, boolean prefixed) {
+		return new LoserTreeMergeIterator<T>(iterators, prefixed, Comparator.<T>naturalOrder());
+	}
+
+	/**
+	 * Obtains the next element (and its key prefix) from the {@code Iterator} with the specified index.
+	 *
+	 * @param i
+	 *            the index of an {@code Iterator}
+	 */
+	void load(int i) {
+		Iterator<T> iterator = iterators.get(i);
+		heads[i] = iterator.hasNext() ? iterator.next() : null;
+		if (prefixed && heads[i] != null)
+			prefixes[i] = ((PrefixedIterator<T>) iterator).prefix();
+	}
+
+	/**
+	 * Determines whether or not the last element from the {@code Iterator} with index {@code i} precedes the last
+	 * element from the {@code Iterator} with index {@code j}. An exhausted {@code Iterator} is preceded by every other
+	 * {@code Iterator}, and ties are broken by the indices of the {@code Iterator}s.
+	 *
+	 * @param i
+	 *            the index of an {@code Iterator}
+	 * @param j
+	 *            the index of another {@code Iterator}
+	 * @return {@code true} if the last element from {@code Iterator} {@code i} precedes the last element from
+	 *         {@code Iterator} {@code j}; {@code false} otherwise
+	 */
+	@SuppressWarnings("unchecked")
+	boolean precedes(int i, int j) {
+		if (heads[i] == null)
+			return false;
+		if (heads[j] == null)
+			return true;
+		comparisons++;
+		int c = prefixed ? Long.compareUnsigned(prefixes[i], prefixes[j]) : 0;
+		if (c == 0)
+			c = comparator.compare((T) heads[i], (T) heads[j]);
+		return c < 0 || (c == 0 && i < j);
+	}
+
+	/**
+	 * Determines whether or not the iteration has more elements (i.e., {@link #next} would return an element rather
+	 * than throwing an exception).
+	 *
+	 * @return {@code true} if the iteration has more elements; {@code false} otherwise
+	 */
+	@Override
+	public boolean hasNext() {
+		return tree[0] >= 0 && heads[tree[0]] != null;
+	}
+
+	/**
+	 * Returns the next element in the iteration.
+	 *
+	 * @return the next element in the iteration
+	 * @throws NoSuchElementException
+	 *             if the iteration has no more elements
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		int winner = tree[0];
+		T next = (T) heads[winner];
+		prefix = prefixes[winner];
+		load(winner);
+		for (int node = (heads.length + winner) / 2; node > 0; node /= 2) { // replay the matches up to the root
+			if (precedes(tree[node], winner)) {
+				int loser = winner;
+				winner = tree[node];
+				tree[node] = loser;
+			}
+		}
+		tree[0] = winner;
+		return next;
+	}
+
+	/**
+	 * Returns the key prefix of the element most recently returned by {@link #next()} (meaningful only if the input
+	 * {@code Iterator}s are {@code PrefixedIterator}s).
+	 *
+	 * @return the key prefix of the element most recently returned by {@link #next()}
+	 */
+	@Override
+	public long prefix() {
+		return prefix;
+	}
+
+	/**
+	 * Returns the number of comparisons performed so far.
+	 *
+	 * @return the number of comparisons performed so far
+	 */
+	public long comparisons() {
+		return comparisons;
+	}
+
+}
@@ -0,0 +1,425 @@
+package external_sort;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@code MergeJoin} joins two inputs sorted on their join keys by scanning both of them once (i.e., a sort-merge
+ * join) and iterates over the join results. For each group of right elements with equal join keys, every left element
+ * with the same join key is joined with each element in the group. A group is buffered in memory as long as it has at
+ * most {@link #maxGroupSize()} elements; a larger group is spilled to a run (written by a {@code RunWriter} with the
+ * settings of an {@code ExternalSort}) and read back by a {@code RunReader} for each matching left element, so the
+ * memory used by a {@code MergeJoin} is bounded regardless of the number of duplicates.
+ *
+ * If the inputs are {@code ExternalSort}s (see {@link #MergeJoin(ExternalSort, ExternalSort)}), the final merge pass
+ * of each sort is fused into the join: the runs of each sort are merged as the join consumes them, so neither sorted
+ * output is materialized. The join stops as soon as either input has no more elements that can match, and then the
+ * other input is not consumed any further. A {@code MergeJoin} that is abandoned before it is exhausted must be
+ * {@linkplain #close() closed} so that the run to which the current group has been spilled is closed and deleted.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <L>
+ *            the type of the left elements
+ * @param <R>
+ *            the type of the right elements
+ * @param <O>
+ *            the type of the join results
+ */
+public abstract class MergeJoin<L, R, O> implements Iterator<O>, AutoCloseable {
+
+	/**
+	 * The left input (sorted on the join keys).
+	 */
+	Iterator<L> left;
+
+	/**
+	 * The right input (sorted on the join keys).
+	 */
+	Iterator<R> right;
+
+	/**
+	 * The {@code ExternalSort} whose settings (e.g., its {@code RunCodec}, {@code BlockCompression}, and spill
+	 * directories) are used to spill large groups of right elements.
+	 */
+	ExternalSort<R> runs;
+
+	/**
+	 * The maximum number of right elements in a group that are buffered in memory.
+	 */
+	int maxGroupSize;
+
+	/**
+	 * A flag indicating whether or not {@link #peek} holds the next right element (which is not in the current group).
+	 */
+	boolean peeked = false;
+
+	/**
+	 * The next right element (meaningful only if {@link #peeked} is {@code true}).
+	 */
+	R peek;
+
+	/**
+	 * A flag indicating whether or not there is a current group of right elements.
+	 */
+	boolean grouped = false;
+
+	/**
+	 * The first right element of the current group.
+	 */
+	R groupKey;
+
+	/**
+	 * The right elements of the current group if the group is buffered in memory.
+	 */
+	ArrayList<R> group = new ArrayList<R>();
+
+	/**
+	 * The name of the run to which the current group has been spilled ({@code null} if the group is buffered in
+	 * memory).
+	 */
+	String groupRun = null;
+
+	/**
+	 * The left element that is being joined with the current group.
+	 */
+	L current;
+
+	/**
+	 * The {@code Iterator} over the right elements of the current group that are yet to be joined with
+	 * {@link #current}.
+	 */
+	Iterator<R> matches = Collections.emptyIterator();
+
+	/**
+	 * A flag indicating whether or not {@link #next} holds the next join result.
+	 */
+	boolean pending = false;
+
+	/**
+	 * The next join result (meaningful only if {@link #pending} is {@code true}).
+	 */
+	O next;
+
+	/**
+	 * The number of groups that have been spilled to runs.
+	 */
+	long spilledGroups = 0;
+
+	/**
+	 * Constructs a {@code MergeJoin} over the outputs of the specified {@code ExternalSort}s, into which the final
+	 * merge pass of each {@code ExternalSort} is fused. Large groups of right elements are spilled to runs with the
+	 * settings of the right {@code ExternalSort}.
+	 *
+	 * @param left
+	 *            the {@code ExternalSort} of the left elements (in ascending order of the join keys)
+	 * @param right
+	 *            the {@code ExternalSort} of the right elements (in ascending order of the join keys)
+	 */
+	public MergeJoin(ExternalSort<L> left, ExternalSort<R> right) {
+		this(left, right, right);
+	}
+
+	/**
+	 * Constructs a {@code MergeJoin} over the specified sorted inputs. Large groups of right elements are spilled to
+	 * runs named after the specified file name prefix (using Java serialization).
+	 *
+	 * @param left
+	 *            an {@code Iterator} over the left elements in ascending order of the join keys
+	 * @param right
+	 *            an {@code Iterator} over the right elements in ascending order of the join keys
+	 * @param bufferSize
+	 *            the buffer size for spilling large groups of right elements
+	 * @param fileNamePrefix
+	 *            the prefix of the names of the runs to which large groups of right elements are spilled
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	public MergeJoin(Iterator<L> left, Iterator<R> right, int bufferSize, String fileNamePrefix)
+			throws IOException, ClassNotFoundException {
+		this(left, right, spillSort(bufferSize, fileNamePrefix));
+	}
+
+	/**
+	 * Constructs a {@code MergeJoin} over the specified sorted inputs. Large groups of right elements are spilled to
+	 * runs with the settings of the specified {@code ExternalSort}.
+	 *
+	 * @param left
+	 *            an {@code Iterator} over the left elements in ascending order of the join keys
+	 * @param right
+	 *            an {@code Iterator} over the right elements in ascending order of the join keys
+	 * @param runs
+	 *            the {@code ExternalSort} whose settings are used to spill large groups of right elements
+	 */
+	public MergeJoin(Iterator<L> left, Iterator<R> right, ExternalSort<R> runs) {
+		this.left = left;
+		this.right = right;
+		this.runs = runs;
+		this.maxGroupSize = maxGroupSize();
+	}
+
+	/**
+	 * Constructs an {@code ExternalSort} that is used only to spill large groups of right elements.
+	 *
+	 * @param <R>
+	 *            the type of the right elements
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param fileNamePrefix
+	 *            the prefix of the names of the runs
+	 * @return an {@code ExternalSort} that is used only to spill large groups of right elements
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	static <R> ExternalSort<R> spillSort(int bufferSize, String fileNamePrefix)
+			throws IOException, ClassNotFoundException {
+		return new ExternalSort<R>(null, 2, bufferSize, fileNamePrefix,
+				new PrintStream(OutputStream.nullOutputStream())) {
+
+			@Override
+			protected boolean isFull(ArrayList<R> list) {
+				return false;
+			}
+
+		};
+	}
+
+	/**
+	 * Compares the join keys of the specified left and right elements.
+	 *
+	 * @param left
+	 *            a left element
+	 * @param right
+	 *            a right element
+	 * @return a negative integer, zero, or a positive integer if the join key of the left element is smaller than,
+	 *         equal to, or greater than that of the right element (consistent with the orders of the inputs)
+	 */
+	protected abstract int compare(L left, R right);
+
+	/**
+	 * Joins the specified left and right elements, whose join keys are equal.
+	 *
+	 * @param left
+	 *            a left element
+	 * @param right
+	 *            a right element whose join key equals that of the left element
+	 * @return the join result
+	 */
+	protected abstract O join(L left, R right);
+
+	/**
+	 * Returns the maximum number of right elements in a group (i.e., with equal join keys) that are buffered in
+	 * memory. A group with more elements is spilled to a run.
+	 *
+	 * @return the maximum number of right elements in a group that are buffered in memory (10000 by default)
+	 */
+	protected int maxGroupSize() {
+		return 10000;
+	}
+
+	/**
+	 * Returns the number of groups of right elements that have been spilled to runs.
+	 *
+	 * @return the number of groups of right elements that have been spilled to runs
+	 */
+	public long spilledGroupCount() {
+		return spilledGroups;
+	}
+
+	/**
+	 * Determines whether or not the iteration has more elements (i.e., {@link #next} would return a join result rather
+	 * than throwing an exception).
+	 *
+	 * @return {@code true} if the iteration has more elements; {@code false} otherwise
+	 * @throws UncheckedIOException
+	 *             if an I/O error occurs while a group of right elements is spilled or read back
+	 */
+	@Override
+	public boolean hasNext() {
+		if (pending)
+			return true;
+		try {
+			while (true) {
+				if (matches.hasNext()) {
+					next = join(current, matches.next());
+					pending = true;
+					return true;
+				}
+				if (!left.hasNext()) {
+					releaseGroup();
+					return false;
+				}
+				L l = left.next();
+				if (!grouped || compare(l, groupKey) != 0) {
+					releaseGroup();
+					if (!peek())
+						return false; // no more right elements to match
+					while (compare(l, peek) > 0) // skips the right elements that match no left element
+						if (!advance())
+							return false;
+					if (compare(l, peek) < 0)
+						continue; // no right element matches the left element
+					loadGroup(l);
+				}
+				current = l;
+				matches = replay();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (ClassNotFoundException e) {
+			throw new UncheckedIOException(new IOException(e));
+		}
+	}
+
+	/**
+	 * Returns the next join result.
+	 *
+	 * @return the next join result
+	 * @throws NoSuchElementException
+	 *             if the iteration has no more elements
+	 */
+	@Override
+	public O next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		pending = false;
+		O o = next;
+		next = null;
+		return o;
+	}
+
+	/**
+	 * Closes this {@code MergeJoin}, discarding the current group (and closing and deleting the run to which it has
+	 * been spilled, if any). The iteration has no more elements afterwards.
+	 */
+	@Override
+	public void close() {
+		releaseGroup();
+		left = Collections.emptyIterator();
+		pending = false;
+		next = null;
+	}
+
+	/**
+	 * Obtains the next right element as {@link #peek} unless it has already been obtained.
+	 *
+	 * @return {@code true} if {@link #peek} holds the next right element; {@code false} if the right input has no more
+	 *         elements
+	 */
+	boolean peek() {
+		if (!peeked && right.hasNext()) {
+			peek = right.next();
+			peeked = true;
+		}
+		return peeked;
+	}
+
+	/**
+	 * Discards {@link #peek} and obtains the next right element.
+	 *
+	 * @return {@code true} if {@link #peek} holds the next right element; {@code false} if the right input has no more
+	 *         elements
+	 */
+	boolean advance() {
+		peeked = false;
+		return peek();
+	}
+
+	/**
+	 * Collects the right elements whose join keys equal that of the specified left element into the current group,
+	 * spilling the group to a run once it has more than {@link #maxGroupSize} elements.
+	 *
+	 * @param l
+	 *            a left element whose join key equals that of {@link #peek}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void loadGroup(L l) throws IOException {
+		grouped = true;
+		groupKey = peek;
+		while (peek() && compare(l, peek) == 0) {
+			if (group.size() >= maxGroupSize) {
+				spillGroup(l);
+				return;
+			}
+			group.add(peek);
+			peeked = false;
+		}
+	}
+
+	/**
+	 * Writes the right elements buffered in the current group, followed by the remaining right elements whose join
+	 * keys equal that of the specified left element, to a run.
+	 *
+	 * @param l
+	 *            a left element whose join key equals those of the right elements in the current group
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void spillGroup(L l) throws IOException {
+		Iterator<R> buffered = group.iterator();
+		Iterator<R> elements = new Iterator<R>() {
+
+			@Override
+			public boolean hasNext() {
+				return buffered.hasNext() || peek() && compare(l, peek) == 0;
+			}
+
+			@Override
+			public R next() {
+				if (buffered.hasNext())
+					return buffered.next();
+				peeked = false;
+				return peek;
+			}
+
+		};
+		groupRun = runs.nextRunName();
+		new RunWriter<R>(elements, groupRun, runs.bufferSize, runs);
+		group.clear();
+		spilledGroups++;
+	}
+
+	/**
+	 * Returns an {@code Iterator} over the right elements of the current group.
+	 *
+	 * @return an {@code Iterator} over the right elements of the current group
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@SuppressWarnings("unchecked")
+	Iterator<R> replay() throws IOException, ClassNotFoundException {
+		if (groupRun == null)
+			return group.iterator();
+		return (Iterator<R>) new RunReader(groupRun, runs.bufferSize, runs);
+	}
+
+	/**
+	 * Discards the current group (closing and deleting the run to which it has been spilled, if any).
+	 */
+	void releaseGroup() {
+		if (matches instanceof RunReader)
+			((RunReader) matches).close();
+		grouped = false;
+		groupKey = null;
+		group.clear();
+		matches = Collections.emptyIterator();
+		if (groupRun != null) {
+			runs.deleteRun(groupRun);
+			groupRun = null;
+		}
+	}
+
+}
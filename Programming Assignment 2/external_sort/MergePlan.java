@@ -0,0 +1,261 @@
+package external_sort;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A {@code MergePlan} determines how an {@code ExternalSort} (or a {@code PrimitiveExternalSort}) merges its initial
+ * runs. Given the lengths of the initial runs and the degree (i.e., the maximum number of runs merged together), a
+ * {@code MergePlan} repeatedly merges the shortest runs in the manner of Huffman coding so that the total number of
+ * bytes rewritten by the merges is minimized. If the number of runs does not allow every merge to have the full
+ * degree, only the first merge takes fewer (i.e., the shortest) runs, and every run is carried forward until it is
+ * merged. The merges are grouped into passes so that the merges in each pass only take the initial runs and the runs
+ * constructed in the earlier passes (and thus can be performed concurrently). The last merge is not part of any pass
+ * since it forms the output iterator of the external sort and thus writes no run.
+ *
+ * The runs are identified by integers: the initial runs by {@code 0}, {@code 1}, ..., {@code r-1} and the runs
+ * constructed by the merges by {@code r}, {@code r+1}, ... in the order of the passes.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class MergePlan {
+
+	/**
+	 * A {@code Pass} performs the merges of a pass of a {@code MergePlan} (see
+	 * {@link MergePlan#execute(List, Pass)}).
+	 *
+	 * @param <E>
+	 *            the type of the exception (other than {@code IOException}) that the merges may throw
+	 */
+	interface Pass<E extends Exception> {
+
+		/**
+		 * Merges each of the specified groups of runs into a new run.
+		 *
+		 * @param pass
+		 *            the number of the pass (1 for the first pass)
+		 * @param groups
+		 *            the groups of runs (i.e., file names) to merge
+		 * @return the names of the new runs (i.e., file names) in the order of the groups
+		 * @throws IOException
+		 *             if an I/O error occurs
+		 * @throws E
+		 *             if a merge fails otherwise
+		 */
+		List<String> merge(int pass, List<List<String>> groups) throws IOException, E;
+
+	}
+
+	/**
+	 * The number of initial runs.
+	 */
+	int initialRunCount;
+
+	/**
+	 * The length (in bytes) of each run.
+	 */
+	ArrayList<Long> runLengths = new ArrayList<Long>();
+
+	/**
+	 * The input runs of each pass.
+	 */
+	ArrayList<List<List<Integer>>> passes = new ArrayList<List<List<Integer>>>();
+
+	/**
+	 * The runs merged into the output iterator.
+	 */
+	List<Integer> finalGroup;
+
+	/**
+	 * The total number of bytes that the merges in the passes write.
+	 */
+	long predictedBytesWritten = 0;
+
+	/**
+	 * Constructs a {@code MergePlan}.
+	 *
+	 * @param runLengths
+	 *            the lengths (in bytes) of the initial runs
+	 * @param degree
+	 *            the maximum number of runs that are merged together
+	 * @throws IllegalArgumentException
+	 *             if the degree is smaller than 2
+	 */
+	public MergePlan(long[] runLengths, int degree) {
+		if (degree < 2)
+			throw new IllegalArgumentException("degree: " + degree);
+		initialRunCount = runLengths.length;
+		for (long length : runLengths)
+			this.runLengths.add(length);
+		// each node: {length, sequence number, run ID (-1 for an empty dummy run), pass}
+		PriorityQueue<long[]> queue = new PriorityQueue<long[]>(Math.max(1, runLengths.length),
+				new Comparator<long[]>() {
+
+					@Override
+					public int compare(long[] n1, long[] n2) {
+						int c = Long.compare(n1[0], n2[0]);
+						return c != 0 ? c : Long.compare(n1[1], n2[1]);
+					}
+
+				});
+		long sequence = 0;
+		if (runLengths.length > degree) // dummy runs so that the first merge alone takes fewer than degree runs
+			for (int i = (degree - 1 - (runLengths.length - 1) % (degree - 1)) % (degree - 1); i > 0; i--)
+				queue.add(new long[] { 0, sequence++, -1, 0 });
+		for (int i = 0; i < runLengths.length; i++)
+			queue.add(new long[] { runLengths[i], sequence++, i, 0 });
+		ArrayList<List<Integer>> merges = new ArrayList<List<Integer>>();
+		ArrayList<Integer> mergePasses = new ArrayList<Integer>();
+		while (queue.size() > degree) {
+			ArrayList<Integer> group = new ArrayList<Integer>();
+			long length = 0;
+			long pass = 0;
+			for (int i = 0; i < degree; i++) {
+				long[] node = queue.poll();
+				if (node[2] != -1)
+					group.add((int) node[2]);
+				length += node[0];
+				pass = Math.max(pass, node[3]);
+			}
+			int id = -2 - merges.size(); // a temporary ID until the merges are ordered by pass
+			merges.add(group);
+			mergePasses.add((int) pass + 1);
+			predictedBytesWritten += length;
+			queue.add(new long[] { length, sequence++, id, pass + 1 });
+		}
+		long[] lengths = new long[merges.size()];
+		for (int i = 0; i < merges.size(); i++)
+			for (int run : merges.get(i))
+				lengths[i] += run >= 0 ? runLengths[run] : lengths[-2 - run];
+		int[] ids = new int[merges.size()]; // the final ID of each merged run
+		for (int pass = 1, next = initialRunCount; next < initialRunCount + merges.size(); pass++) {
+			ArrayList<List<Integer>> groups = new ArrayList<List<Integer>>();
+			for (int i = 0; i < merges.size(); i++)
+				if (mergePasses.get(i) == pass) {
+					groups.add(resolve(merges.get(i), ids));
+					ids[i] = next++;
+					this.runLengths.add(lengths[i]);
+				}
+			passes.add(groups);
+		}
+		ArrayList<Integer> remaining = new ArrayList<Integer>();
+		for (long[] node : queue)
+			if (node[2] != -1)
+				remaining.add((int) node[2]);
+		finalGroup = resolve(remaining, ids);
+		Collections.sort(finalGroup);
+	}
+
+	/**
+	 * Replaces the temporary IDs of merged runs in the specified list with their final IDs.
+	 *
+	 * @param runs
+	 *            a list of run IDs
+	 * @param ids
+	 *            the final ID of each merged run
+	 * @return a list containing the final run IDs
+	 */
+	static List<Integer> resolve(List<Integer> runs, int[] ids) {
+		ArrayList<Integer> resolved = new ArrayList<Integer>();
+		for (int run : runs)
+			resolved.add(run >= 0 ? run : ids[-2 - run]);
+		return resolved;
+	}
+
+	/**
+	 * Performs the passes of this {@code MergePlan} using the specified {@code Pass} and returns the runs to be merged
+	 * into the output iterator.
+	 *
+	 * @param <E>
+	 *            the type of the exception (other than {@code IOException}) that the merges may throw
+	 * @param runNames
+	 *            the names of the initial runs (i.e., file names)
+	 * @param pass
+	 *            the {@code Pass} that performs the merges of each pass
+	 * @return the names of the runs (i.e., file names) to be merged into the output iterator
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws E
+	 *             if a merge fails otherwise
+	 */
+	<E extends Exception> List<String> execute(List<String> runNames, Pass<E> pass) throws IOException, E {
+		ArrayList<String> names = new ArrayList<String>(runNames); // the names of the runs in the order of their IDs
+		for (int i = 0; i < passes.size(); i++)
+			names.addAll(pass.merge(i + 1, ExternalSort.groupNames(passes.get(i), names)));
+		return ExternalSort.runNames(finalGroup, names);
+	}
+
+	/**
+	 * Returns the number of passes (excluding the final merge into the output iterator).
+	 *
+	 * @return the number of passes (excluding the final merge into the output iterator)
+	 */
+	public int passCount() {
+		return passes.size();
+	}
+
+	/**
+	 * Returns the groups of runs merged in the specified pass. The runs constructed by these merges are identified by
+	 * consecutive integers in the order of the groups.
+	 *
+	 * @param pass
+	 *            the index of a pass (0 for the first pass)
+	 * @return the groups of runs merged in the specified pass
+	 */
+	public List<List<Integer>> groups(int pass) {
+		return Collections.unmodifiableList(passes.get(pass));
+	}
+
+	/**
+	 * Returns the runs merged into the output iterator.
+	 *
+	 * @return the runs merged into the output iterator
+	 */
+	public List<Integer> finalGroup() {
+		return Collections.unmodifiableList(finalGroup);
+	}
+
+	/**
+	 * Returns the length (in bytes) of the specified run.
+	 *
+	 * @param run
+	 *            the ID of a run
+	 * @return the length (in bytes) of the specified run (for a run constructed by a merge, the total length of the
+	 *         input runs of that merge)
+	 */
+	public long runLength(int run) {
+		return runLengths.get(run);
+	}
+
+	/**
+	 * Returns the total number of bytes that the passes are predicted to write.
+	 *
+	 * @return the total number of bytes that the passes are predicted to write
+	 */
+	public long predictedBytesWritten() {
+		return predictedBytesWritten;
+	}
+
+	/**
+	 * Returns a string representation of this {@code MergePlan}.
+	 *
+	 * @return a string representation of this {@code MergePlan}
+	 */
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		int next = initialRunCount;
+		for (int pass = 0; pass < passes.size(); pass++) {
+			s.append("pass " + (pass + 1) + ":");
+			for (List<Integer> group : passes.get(pass))
+				s.append(" " + group + "->" + next++);
+			s.append(", ");
+		}
+		return s.append("final: " + finalGroup + ", predicted bytes written: " + predictedBytesWritten).toString();
+	}
+
+}
@@ -10,15 +10,72 @@ import java.util.PriorityQueue;
 
 /**
  * Given multiple {@code Iterator}s each of which iterates over elements in ascending order according to the
- * {@linkplain Comparable natural ordering} of the elements, an {@code OrderedMergeIterator} iterates over all of these
- * elements in ascending order.
+ * {@linkplain Comparable natural ordering} of the elements (or a {@code Comparator}), an {@code OrderedMergeIterator}
+ * iterates over all of these elements in ascending order. If the input {@code Iterator}s are {@code PrefixedIterator}s,
+ * elements are compared by their key prefixes first (see {@link KeyPrefix}).
  * 
  * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
  *
  * @param <T>
  *            the type of the elements
  */
-public class OrderedMergeIterator<T extends Comparable<? super T>> implements Iterator<T> {
+public class OrderedMergeIterator<T> implements PrefixedIterator<T> {
+
+	/**
+	 * A {@code PrefixedEntry} pairs the last element obtained from an {@code Iterator} (and its key prefix) with that
+	 * {@code Iterator}.
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 */
+	static class PrefixedEntry<T> extends AbstractMap.SimpleEntry<T, Iterator<T>> {
+
+		/**
+		 * The serial version UID.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The key prefix of the element.
+		 */
+		long prefix;
+
+		/**
+		 * Constructs a {@code PrefixedEntry}.
+		 *
+		 * @param element
+		 *            an element
+		 * @param prefix
+		 *            the key prefix of the element
+		 * @param iterator
+		 *            the {@code Iterator} from which the element was obtained
+		 */
+		PrefixedEntry(T element, long prefix, Iterator<T> iterator) {
+			super(element, iterator);
+			this.prefix = prefix;
+		}
+
+	}
+
+	/**
+	 * A flag indicating whether the input {@code Iterator}s are {@code PrefixedIterator}s.
+	 */
+	boolean prefixed;
+
+	/**
+	 * The key prefix of the element most recently returned by {@link #next()}.
+	 */
+	long prefix;
+
+	/**
+	 * The {@code Comparator} that determines the order of the elements.
+	 */
+	Comparator<? super T> comparator;
+
+	/**
+	 * The number of comparisons performed so far.
+	 */
+	long comparisons = 0;
 
 	/**
 	 * A priority queue for storing {@code Iterator}s while setting the priority of each {@code Iterator} to the last
@@ -29,7 +86,13 @@ public class OrderedMergeIterator<T extends Comparable<? super T>> implements It
 
 				@Override
 				public int compare(Entry<T, Iterator<T>> o1, Entry<T, Iterator<T>> o2) {
-					return o1.getKey().compareTo(o2.getKey());
+					comparisons++;
+					if (prefixed) {
+						int c = Long.compareUnsigned(((PrefixedEntry<T>) o1).prefix, ((PrefixedEntry<T>) o2).prefix);
+						if (c != 0)
+							return c;
+					}
+					return comparator.compare(o1.getKey(), o2.getKey());
 				}
 
 			});
@@ -42,12 +105,95 @@ public class OrderedMergeIterator<T extends Comparable<? super T>> implements It
 	 *            {@linkplain Comparable natural ordering} of the elements
 	 */
 	public OrderedMergeIterator(Iterable<Iterator<T>> iterators) {
+		this(iterators, false);
+	}
+
+	/**
+	 * Constructs an {@code OrderedMergeIterator}.
+	 * 
+	 * @param iterators
+	 *            {@code Iterator}s each of which iterates over elements in ascending order according to the
+	 *            {@linkplain Comparable natural ordering} of the elements
+	 * @param prefixed
+	 *            a flag indicating whether the {@code Iterator}s are {@code PrefixedIterator}s whose key prefixes are
+	 *            compared before the elements
+	 */
+	public OrderedMergeIterator(Iterable<Iterator<T>> iterators, boolean prefixed) {
+		this(iterators, prefixed, ExternalSort.NATURAL_ORDER);
+	}
+
+	/**
+	 * Constructs an {@code OrderedMergeIterator}.
+	 * 
+	 * @param iterators
+	 *            {@code Iterator}s each of which iterates over elements in ascending order according to the specified
+	 *            {@code Comparator}
+	 * @param prefixed
+	 *            a flag indicating whether the {@code Iterator}s are {@code PrefixedIterator}s whose key prefixes are
+	 *            compared before the elements
+	 * @param comparator
+	 *            the {@code Comparator} that determines the order of the elements
+	 */
+	public OrderedMergeIterator(Iterable<Iterator<T>> iterators, boolean prefixed, Comparator<? super T> comparator) {
+		this.prefixed = prefixed;
+		this.comparator = comparator;
 		for (Iterator<T> iterator : iterators) {
 			if (iterator.hasNext())
-				queue.add(new AbstractMap.SimpleEntry<T, Iterator<T>>(iterator.next(), iterator));
+				queue.add(entry(iterator.next(), iterator));
 		}
 	}
 
+	/**
+	 * Constructs an {@code OrderedMergeIterator} that merges elements according to their
+	 * {@linkplain Comparable natural ordering}.
+	 * 
+	 * @param <T>
+	 *            the type of the elements
+	 * @param iterators
+	 *            {@code Iterator}s each of which iterates over elements in ascending order according to the
+	 *            {@linkplain Comparable natural ordering} of the elements
+	 * @return the constructed {@code OrderedMergeIterator}
+	 */
+	public static <T extends Comparable<? super T>> OrderedMergeIterator<T> naturalOrder(
+			Iterable<Iterator<T>> iterators) {
+		return naturalOrder(iterators, false);
+	}
+
+	/**
+	 * Constructs an {@code OrderedMergeIterator} that merges elements according to their
+	 * {@linkplain Comparable natural ordering}.
+	 * 
+	 * @param <T>
+	 *            the type of the elements
+	 * @param iterators
+	 *            {@code Iterator}s each of which iterates over elements in ascending order according to the
+	 *            {@linkplain Comparable natural ordering} of the elements
+	 * @param prefixed
+	 *            a flag indicating whether the {@code Iterator}s are {@code PrefixedIterator}s whose key prefixes are
+	 *            compared before the elements
+	 * @return the constructed {@code OrderedMergeIterator}
+	 */
+	public static <T extends Comparable<? super T>> OrderedMergeIterator<T> naturalOrder(
+			Iterable<Iterator<T>> iterators, boolean prefixed) {
+		return new OrderedMergeIterator<T>(iterators, prefixed, Comparator.<T>naturalOrder());
+	}
+
+	/**
+	 * Pairs the specified element (and its key prefix if {@link #prefixed} is {@code true}) with the specified
+	 * {@code Iterator}.
+	 * 
+	 * @param element
+	 *            the last element obtained from the {@code Iterator}
+	 * @param iterator
+	 *            an {@code Iterator}
+	 * @return a {@code Map.Entry} pairing the element with the {@code Iterator}
+	 */
+	Map.Entry<T, Iterator<T>> entry(T element, Iterator<T> iterator) {
+		if (prefixed)
+			return new PrefixedEntry<T>(element, ((PrefixedIterator<T>) iterator).prefix(), iterator);
+		return new AbstractMap.SimpleEntry<T, Iterator<T>>(element, iterator);
+	}
+
 	/**
 	 * Determines whether or not the iteration has more elements (i.e., {@link #next} would return an element rather
 	 * than throwing an exception).
@@ -72,8 +218,30 @@ public class OrderedMergeIterator<T extends Comparable<? super T>> implements It
 		if (e == null)
 			throw new NoSuchElementException();
 		// TODO complete this method (10 points)
+		if (prefixed)
+			prefix = ((PrefixedEntry<T>) e).prefix;
 		if(e.getValue().hasNext())
-			queue.add(new AbstractMap.SimpleEntry<T, Iterator<T>>(e.getValue().next(), e.getValue()));
+			queue.add(entry(e.getValue().next(), e.getValue()));
 		return e.getKey();
 	}
+
+	/**
+	 * Returns the key prefix of the element most recently returned by {@link #next()} (meaningful only if the input
+	 * {@code Iterator}s are {@code PrefixedIterator}s).
+	 *
+	 * @return the key prefix of the element most recently returned by {@link #next()}
+	 */
+	@Override
+	public long prefix() {
+		return prefix;
+	}
+
+	/**
+	 * Returns the number of comparisons performed so far.
+	 *
+	 * @return the number of comparisons performed so far
+	 */
+	public long comparisons() {
+		return comparisons;
+	}
 }
@@ -2,9 +2,12 @@ package external_sort;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
- * An {@code OutputBuffer} is an {@code OutputStream} that writes data to a fixed size byte array.
+ * An {@code OutputBuffer} is an {@code OutputStream} that writes data to a fixed size byte array (or to a
+ * {@code ByteBuffer}, e.g., a direct {@code ByteBuffer} that is written to a {@code FileChannel} without copying).
  * 
  * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
  */
@@ -27,10 +30,17 @@ public class OutputBuffer extends OutputStream {
 	}
 
 	/**
-	 * A byte array for keeping the data written to this {@code OutputBuffer}.
+	 * A byte array for keeping the data written to this {@code OutputBuffer} ({@code null} if {@link #byteBuffer} is
+	 * used).
 	 */
 	byte[] buffer;
 
+	/**
+	 * A {@code ByteBuffer} for keeping the data written to this {@code OutputBuffer} ({@code null} if {@link #buffer}
+	 * is used). The data is stored from the beginning of the {@code ByteBuffer} regardless of its position.
+	 */
+	ByteBuffer byteBuffer = null;
+
 	/**
 	 * The number of bytes written to this {@code OutputBuffer}.
 	 */
@@ -48,14 +58,73 @@ public class OutputBuffer extends OutputStream {
 	}
 
 	/**
-	 * Returns the byte array containing the data that has been written to this {@code OutputBuffer}.
+	 * Constructs an {@code OutputBuffer} that writes data to the specified {@code ByteBuffer}.
+	 * 
+	 * @param byteBuffer
+	 *            the {@code ByteBuffer} for keeping the data written to the {@code OutputBuffer}
+	 */
+	public OutputBuffer(ByteBuffer byteBuffer) {
+		this.byteBuffer = byteBuffer;
+	}
+
+	/**
+	 * Returns the byte array containing the data that has been written to this {@code OutputBuffer} (a copy of the
+	 * content of the {@code ByteBuffer} if this {@code OutputBuffer} uses a {@code ByteBuffer}).
 	 *
 	 * @return the byte array containing the data that has been written to this {@code OutputBuffer}
 	 */
 	public byte[] toByteArray() {
+		if (byteBuffer != null) {
+			byte[] b = new byte[byteBuffer.capacity()];
+			ByteBuffer d = byteBuffer.duplicate();
+			d.clear();
+			d.get(b);
+			return b;
+		}
 		return buffer;
 	}
 
+	/**
+	 * Returns the size of this {@code OutputBuffer}.
+	 *
+	 * @return the size of this {@code OutputBuffer}
+	 */
+	public int capacity() {
+		return buffer != null ? buffer.length : byteBuffer.capacity();
+	}
+
+	/**
+	 * Writes the specified {@code int} value (4 bytes, high byte first) at the specified index, overwriting the data
+	 * that has been written there.
+	 *
+	 * @param index
+	 *            the index at which the value is written
+	 * @param value
+	 *            an {@code int} value
+	 */
+	void putInt(int index, int value) {
+		if (byteBuffer != null) {
+			byteBuffer.putInt(index, value);
+			return;
+		}
+		buffer[index] = (byte) (value >>> 24);
+		buffer[index + 1] = (byte) (value >>> 16);
+		buffer[index + 2] = (byte) (value >>> 8);
+		buffer[index + 3] = (byte) value;
+	}
+
+	/**
+	 * Fills the rest of this {@code OutputBuffer} (i.e., the space after the data that has been written) with zeros.
+	 */
+	void clearRemaining() {
+		if (byteBuffer == null) {
+			Arrays.fill(buffer, count, buffer.length, (byte) 0);
+			return;
+		}
+		for (int i = count; i < byteBuffer.capacity(); i++)
+			byteBuffer.put(i, (byte) 0);
+	}
+
 	/**
 	 * Writes the specified byte to this {@code OutputBuffer}.
 	 *
@@ -66,9 +135,12 @@ public class OutputBuffer extends OutputStream {
 	 */
 	@Override
 	public void write(int b) throws BufferOverflowException {
-		if (count >= buffer.length)
+		if (count >= capacity())
 			throw new BufferOverflowException();
-		buffer[count] = (byte) b;
+		if (byteBuffer != null)
+			byteBuffer.put(count, (byte) b);
+		else
+			buffer[count] = (byte) b;
 		count += 1;
 	}
 
@@ -90,9 +162,13 @@ public class OutputBuffer extends OutputStream {
 		if ((off < 0) || (off > b.length) || (len < 0) || ((off + len) - b.length > 0)) {
 			throw new IndexOutOfBoundsException();
 		}
-		if (count + len >= buffer.length)
+		if (count + len >= capacity())
 			throw new BufferOverflowException();
-		System.arraycopy(b, off, buffer, count, len);
+		if (byteBuffer != null) {
+			byteBuffer.position(count);
+			byteBuffer.put(b, off, len);
+		} else
+			System.arraycopy(b, off, buffer, count, len);
 		count += len;
 	}
 	
@@ -0,0 +1,431 @@
+package external_sort;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@code PartitionedMerge} splits the final merge of an {@code ExternalSort} into merges over consecutive key
+ * ranges that can proceed concurrently. Splitter keys are chosen from the first elements of evenly spaced blocks of
+ * the runs merged into the output iterator, which are found in the {@code BlockIndex} at the end of each run if
+ * {@link ExternalSort#blockIndex()} is set and sampled from each run otherwise (see
+ * {@link BlockIndex#sample(String, int, ExternalSort)}). The merge over each range reads each run only from the
+ * first block that may contain elements in the range (see {@link BlockIndex#startBlock(Object)}) up to the first
+ * block that begins above it. Each element thus belongs to exactly one range, and the ranges concatenated in order
+ * yield the sorted output.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+class PartitionedMerge<T> {
+
+	/**
+	 * The number of blocks sampled from each run per range.
+	 */
+	static final int SAMPLES_PER_PARTITION = 8;
+
+	/**
+	 * A {@code Partition} iterates over the elements in one range. The merge over the range is constructed when the
+	 * iteration begins (so that the runs are read by the thread consuming the {@code Partition}).
+	 */
+	class Partition implements Iterator<T> {
+
+		/**
+		 * The lower bound (inclusive) of the range ({@code null} for the first range).
+		 */
+		T lower;
+
+		/**
+		 * The upper bound (exclusive) of the range ({@code null} for the last range).
+		 */
+		T upper;
+
+		/**
+		 * The {@code Iterator} merging the range of the runs ({@code null} until the iteration begins).
+		 */
+		Iterator<T> merge = null;
+
+		/**
+		 * The {@code Iterator} over the merged (and, if necessary, combined) elements in the range.
+		 */
+		Iterator<T> iterator = null;
+
+		/**
+		 * The ID of the thread that began the iteration.
+		 */
+		long thread;
+
+		/**
+		 * The CPU time of the thread that began the iteration at the beginning of the iteration in nanoseconds.
+		 */
+		long cpuTime;
+
+		/**
+		 * Constructs a {@code Partition}.
+		 *
+		 * @param lower
+		 *            the lower bound (inclusive) of the range ({@code null} for the first range)
+		 * @param upper
+		 *            the upper bound (exclusive) of the range ({@code null} for the last range)
+		 */
+		Partition(T lower, T upper) {
+			this.lower = lower;
+			this.upper = upper;
+		}
+
+		/**
+		 * Determines whether or not the iteration has more elements (i.e., {@link #next} would return an element
+		 * rather than throwing an exception).
+		 *
+		 * @return {@code true} if the iteration has more elements; {@code false} otherwise
+		 * @throws UncheckedIOException
+		 *             if an I/O error occurs while the merge is constructed
+		 */
+		@Override
+		public boolean hasNext() {
+			if (iterator == null)
+				try {
+					thread = Thread.currentThread().getId();
+					cpuTime = PassMetrics.cpuTime();
+					merge = merge(lower, upper);
+					iterator = externalSort.combine(merge);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				} catch (ClassNotFoundException e) {
+					throw new UncheckedIOException(new IOException(e));
+				}
+			if (iterator.hasNext())
+				return true;
+			if (merge != null) {
+				// the CPU time of the thread that began the final merge pass is already counted by the pass
+				long current = Thread.currentThread().getId();
+				if (current == thread && (finalPass == null || current != finalPass.thread))
+					externalSort.taskCpuNanos.addAndGet(PassMetrics.cpuTime() - cpuTime);
+				completed(merge);
+				merge = null;
+			}
+			return false;
+		}
+
+		/**
+		 * Returns the next element in the iteration.
+		 *
+		 * @return the next element in the iteration
+		 * @throws NoSuchElementException
+		 *             if the iteration has no more elements
+		 */
+		@Override
+		public T next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return iterator.next();
+		}
+
+	}
+
+	/**
+	 * A {@code PartitionSpliterator} traverses the elements of consecutive {@code Partition}s in order and splits by
+	 * handing off half of its {@code Partition}s, so that a parallel {@code Stream} merges the ranges concurrently.
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 */
+	static class PartitionSpliterator<T> implements Spliterator<T> {
+
+		/**
+		 * The {@code Iterator}s over the ranges.
+		 */
+		List<Iterator<T>> partitions;
+
+		/**
+		 * The index of the current {@code Iterator}.
+		 */
+		int from;
+
+		/**
+		 * The index following that of the last {@code Iterator} traversed by this {@code PartitionSpliterator}.
+		 */
+		int to;
+
+		/**
+		 * The {@code Comparator} that determines the order of the elements ({@code null} for the natural ordering).
+		 */
+		Comparator<? super T> comparator;
+
+		/**
+		 * Constructs a {@code PartitionSpliterator}.
+		 *
+		 * @param partitions
+		 *            the {@code Iterator}s over the ranges
+		 * @param from
+		 *            the index of the first {@code Iterator} to traverse
+		 * @param to
+		 *            the index following that of the last {@code Iterator} to traverse
+		 * @param comparator
+		 *            the {@code Comparator} that determines the order of the elements ({@code null} for the natural
+		 *            ordering)
+		 */
+		PartitionSpliterator(List<Iterator<T>> partitions, int from, int to, Comparator<? super T> comparator) {
+			this.partitions = partitions;
+			this.from = from;
+			this.to = to;
+			this.comparator = comparator;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			for (; from < to; from++) {
+				Iterator<T> i = partitions.get(from);
+				if (i.hasNext()) {
+					action.accept(i.next());
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			for (; from < to; from++)
+				for (Iterator<T> i = partitions.get(from); i.hasNext();)
+					action.accept(i.next());
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			if (to - from < 2)
+				return null;
+			int mid = (from + to) >>> 1;
+			Spliterator<T> prefix = new PartitionSpliterator<T>(partitions, from, mid, comparator);
+			from = mid;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | SORTED | NONNULL;
+		}
+
+		@Override
+		public Comparator<? super T> getComparator() {
+			return comparator;
+		}
+
+	}
+
+	/**
+	 * The {@code ExternalSort} whose final merge is partitioned.
+	 */
+	ExternalSort<T> externalSort;
+
+	/**
+	 * The names of the runs merged into the output iterator.
+	 */
+	List<String> runNames;
+
+	/**
+	 * The run kept in memory ({@code null} if there is no such run).
+	 */
+	List<T> inMemoryRun;
+
+	/**
+	 * The names of the runs to delete once all of the ranges have been merged ({@code null} if the runs are kept).
+	 */
+	List<String> finalRuns;
+
+	/**
+	 * The {@code PassMetrics} of the final merge pass ({@code null} if there is no such pass).
+	 */
+	PassMetrics finalPass;
+
+	/**
+	 * The {@code BlockIndex} of each run (sparse if sampled from the run).
+	 */
+	ArrayList<BlockIndex<T>> indexes = new ArrayList<BlockIndex<T>>();
+
+	/**
+	 * The number of ranges that have not been merged completely.
+	 */
+	int remaining;
+
+	/**
+	 * The number of comparisons performed by the merges that have completed.
+	 */
+	long comparisons = 0;
+
+	/**
+	 * Constructs a {@code PartitionedMerge}.
+	 *
+	 * @param externalSort
+	 *            the {@code ExternalSort} whose final merge is partitioned
+	 * @param runNames
+	 *            the names of the runs merged into the output iterator
+	 * @param inMemoryRun
+	 *            the run kept in memory ({@code null} if there is no such run)
+	 * @param finalRuns
+	 *            the names of the runs to delete once all of the ranges have been merged ({@code null} if the runs are
+	 *            kept)
+	 * @param finalPass
+	 *            the {@code PassMetrics} of the final merge pass ({@code null} if there is no such pass)
+	 */
+	PartitionedMerge(ExternalSort<T> externalSort, List<String> runNames, List<T> inMemoryRun, List<String> finalRuns,
+			PassMetrics finalPass) {
+		this.externalSort = externalSort;
+		this.runNames = runNames;
+		this.inMemoryRun = inMemoryRun;
+		this.finalRuns = finalRuns;
+		this.finalPass = finalPass;
+	}
+
+	/**
+	 * Samples splitter keys and then returns {@code Iterator}s over at most the specified number of consecutive
+	 * ranges.
+	 *
+	 * @param count
+	 *            the maximum number of ranges
+	 * @return {@code Iterator}s over the consecutive ranges in ascending order
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	List<Iterator<T>> partitions(int count) throws IOException, ClassNotFoundException {
+		List<T> splitters = splitters(count);
+		List<Iterator<T>> partitions = new ArrayList<Iterator<T>>();
+		for (int i = 0; i <= splitters.size(); i++)
+			partitions.add(new Partition(i == 0 ? null : splitters.get(i - 1),
+					i == splitters.size() ? null : splitters.get(i)));
+		remaining = partitions.size();
+		return partitions;
+	}
+
+	/**
+	 * Obtains the {@code BlockIndex} of each run, collects the first elements of evenly spaced blocks of each run (and
+	 * evenly spaced elements from the run kept in memory) as samples, and chooses the splitter keys at the quantiles
+	 * of the samples.
+	 *
+	 * @param count
+	 *            the maximum number of ranges
+	 * @return the distinct splitter keys in ascending order (fewer than the specified number)
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	List<T> splitters(int count) throws IOException, ClassNotFoundException {
+		int samples = SAMPLES_PER_PARTITION * count;
+		ArrayList<T> all = new ArrayList<T>();
+		for (String runName : runNames) {
+			BlockIndex<T> index = externalSort.blockIndex ? BlockIndex.read(runName, externalSort)
+					: BlockIndex.sample(runName, samples, externalSort);
+			indexes.add(index);
+			int stride = Math.max(1, (index.blockCount() + samples - 1) / samples);
+			for (int i = 0; i < index.blockCount(); i += stride)
+				all.add(index.firstKey(i));
+		}
+		if (inMemoryRun != null)
+			for (int i = 0, stride = Math.max(1, inMemoryRun.size() / samples); i < inMemoryRun.size(); i += stride)
+				all.add(inMemoryRun.get(i));
+		Comparator<? super T> comparator = externalSort.comparator;
+		Collections.sort(all, comparator);
+		ArrayList<T> splitters = new ArrayList<T>();
+		for (int i = 1; i < count && !all.isEmpty(); i++) {
+			T splitter = all.get((int) ((long) i * all.size() / count));
+			if (comparator.compare(splitter, all.get(0)) > 0
+					&& (splitters.isEmpty() || comparator.compare(splitter, splitters.get(splitters.size() - 1)) > 0))
+				splitters.add(splitter);
+		}
+		return splitters;
+	}
+
+	/**
+	 * Constructs an {@code Iterator} that merges the elements in the specified range of the runs.
+	 *
+	 * @param lower
+	 *            the lower bound (inclusive) of the range ({@code null} if the range has no lower bound)
+	 * @param upper
+	 *            the upper bound (exclusive) of the range ({@code null} if the range has no upper bound)
+	 * @return an {@code Iterator} that merges the elements in the specified range of the runs
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	Iterator<T> merge(T lower, T upper) throws IOException, ClassNotFoundException {
+		Comparator<? super T> comparator = externalSort.comparator;
+		ArrayList<Iterator<T>> iterators = new ArrayList<Iterator<T>>();
+		for (BlockIndex<T> index : indexes) {
+			int start = index.startBlock(lower), end = index.endBlock(upper);
+			if (start < end)
+				iterators.add(index.range(start, end, lower, upper));
+		}
+		if (inMemoryRun != null) {
+			int from = lower == null ? 0 : lowerBound(inMemoryRun, lower, comparator);
+			int to = upper == null ? inMemoryRun.size() : lowerBound(inMemoryRun, upper, comparator);
+			iterators.add(externalSort.prefixed(inMemoryRun.subList(from, to).iterator()));
+		}
+		return externalSort.createMergeIterator(iterators);
+	}
+
+	/**
+	 * Returns the index of the first element in the specified sorted list that is not smaller than the specified key.
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 * @param list
+	 *            a list sorted according to the specified {@code Comparator}
+	 * @param key
+	 *            a key
+	 * @param comparator
+	 *            the {@code Comparator} that determines the order of the elements
+	 * @return the index of the first element in the specified list that is not smaller than the specified key (the
+	 *         size of the list if there is no such element)
+	 */
+	static <T> int lowerBound(List<T> list, T key, Comparator<? super T> comparator) {
+		int low = 0, high = list.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparator.compare(list.get(mid), key) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Is called when the merge over a range has completed. Once all of the ranges have been merged, the runs are
+	 * deleted (if they are not kept) and the final merge pass completes.
+	 *
+	 * @param merge
+	 *            the {@code Iterator} that merged the range
+	 */
+	synchronized void completed(Iterator<T> merge) {
+		comparisons += ExternalSort.comparisons(merge);
+		if (--remaining > 0)
+			return;
+		if (finalRuns != null)
+			externalSort.deleteMergedRuns(finalRuns);
+		if (finalPass != null) {
+			externalSort.comparisons.addAndGet(comparisons);
+			synchronized (externalSort) {
+				externalSort.completePass(finalPass);
+			}
+		}
+	}
+
+}
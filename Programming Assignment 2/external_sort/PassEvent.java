@@ -0,0 +1,74 @@
+package external_sort;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A {@code PassEvent} is a JDK Flight Recorder event that records a pass of an {@code ExternalSort} (see
+ * {@link PassMetrics}).
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+@Name("external_sort.Pass")
+@Label("Sort Pass")
+@Category("External Sort")
+@Description("A pass that constructs initial runs or merges runs")
+class PassEvent extends jdk.jfr.Event {
+
+	/**
+	 * The number of the pass (0 for the initial pass).
+	 */
+	@Label("Pass")
+	int pass;
+
+	/**
+	 * The CPU time of the pass.
+	 */
+	@Label("CPU Time")
+	@Timespan
+	long cpuTime;
+
+	/**
+	 * The time spent reading and writing blocks of runs during the pass.
+	 */
+	@Label("I/O Time")
+	@Timespan
+	long ioTime;
+
+	/**
+	 * The number of bytes read from runs during the pass.
+	 */
+	@Label("Bytes Read")
+	@DataAmount
+	long bytesRead;
+
+	/**
+	 * The number of bytes written to runs during the pass.
+	 */
+	@Label("Bytes Written")
+	@DataAmount
+	long bytesWritten;
+
+	/**
+	 * The number of comparisons performed during the pass.
+	 */
+	@Label("Comparisons")
+	long comparisons;
+
+	/**
+	 * The number of runs constructed during the pass.
+	 */
+	@Label("Runs")
+	long runs;
+
+	/**
+	 * The number of elements written to the runs constructed during the pass.
+	 */
+	@Label("Elements")
+	long elements;
+
+}
@@ -0,0 +1,297 @@
+package external_sort;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * A {@code PassMetrics} describes a pass of an {@code ExternalSort}: the initial pass (pass 0), which constructs the
+ * initial runs, or a merge pass. The final merge pass, which merges runs into the output iterator, lasts until the
+ * output iterator has returned all of the elements, and thus its times include the time that the caller spends
+ * between calls to the output iterator.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class PassMetrics {
+
+	/**
+	 * The number of the pass (0 for the initial pass).
+	 */
+	int pass;
+
+	/**
+	 * The wall-clock time of the pass in nanoseconds.
+	 */
+	long wallNanos;
+
+	/**
+	 * The CPU time of the pass in nanoseconds.
+	 */
+	long cpuNanos;
+
+	/**
+	 * The time spent reading and writing blocks of runs in nanoseconds.
+	 */
+	long ioNanos;
+
+	/**
+	 * The number of bytes read from runs.
+	 */
+	long bytesRead;
+
+	/**
+	 * The number of bytes written to runs.
+	 */
+	long bytesWritten;
+
+	/**
+	 * The number of comparisons.
+	 */
+	long comparisons;
+
+	/**
+	 * The number of runs constructed.
+	 */
+	long runs;
+
+	/**
+	 * The number of elements written to the constructed runs.
+	 */
+	long elements;
+
+	/**
+	 * The largest heap usage sampled during the pass in bytes.
+	 */
+	long peakMemory;
+
+	/**
+	 * The ID of the thread that began the pass.
+	 */
+	long thread;
+
+	/**
+	 * The CPU time of the thread that began the pass at the beginning of the pass in nanoseconds.
+	 */
+	long threadCpuNanos;
+
+	/**
+	 * The {@code PassEvent} recording the pass.
+	 */
+	PassEvent event = new PassEvent();
+
+	/**
+	 * Constructs a {@code PassMetrics} when a pass of the specified {@code ExternalSort} begins. The counters of the
+	 * {@code ExternalSort} are captured so that {@link #complete(ExternalSort)} can compute how much they increase
+	 * during the pass. The heap usage is sampled as the first sample of the pass.
+	 *
+	 * @param pass
+	 *            the number of the pass (0 for the initial pass)
+	 * @param externalSort
+	 *            an {@code ExternalSort}
+	 */
+	PassMetrics(int pass, ExternalSort<?> externalSort) {
+		this.pass = pass;
+		externalSort.peakHeapUsage.set(heapUsage());
+		thread = Thread.currentThread().getId();
+		threadCpuNanos = cpuTime(thread);
+		update(externalSort, -1);
+		event.begin();
+	}
+
+	/**
+	 * Completes this {@code PassMetrics} when the pass ends and commits its {@code PassEvent}.
+	 *
+	 * @param externalSort
+	 *            the {@code ExternalSort} performing the pass
+	 */
+	void complete(ExternalSort<?> externalSort) {
+		update(externalSort, 1);
+		long cpuTime = cpuTime(thread); // the pass may complete in another thread (e.g., one consuming the output)
+		if (cpuTime >= threadCpuNanos)
+			cpuNanos += cpuTime - threadCpuNanos;
+		externalSort.sampleHeapUsage();
+		peakMemory = externalSort.peakHeapUsage.get();
+		event.end();
+		if (event.shouldCommit()) {
+			event.pass = pass;
+			event.cpuTime = cpuNanos;
+			event.ioTime = ioNanos;
+			event.bytesRead = bytesRead;
+			event.bytesWritten = bytesWritten;
+			event.comparisons = comparisons;
+			event.runs = runs;
+			event.elements = elements;
+			event.commit();
+		}
+		event = null;
+	}
+
+	/**
+	 * Adds the current values of the counters of the specified {@code ExternalSort}, multiplied by the specified sign,
+	 * to this {@code PassMetrics}.
+	 *
+	 * @param externalSort
+	 *            an {@code ExternalSort}
+	 * @param sign
+	 *            -1 when the pass begins; 1 when the pass ends
+	 */
+	void update(ExternalSort<?> externalSort, int sign) {
+		wallNanos += sign * System.nanoTime();
+		cpuNanos += sign * externalSort.taskCpuNanos.get();
+		ioNanos += sign * externalSort.ioNanos.get();
+		bytesRead += sign * externalSort.physicalBytesRead.get();
+		bytesWritten += sign * externalSort.physicalBytesWritten.get();
+		comparisons += sign * externalSort.comparisons.get();
+		runs += sign * externalSort.runCount.get();
+		elements += sign * externalSort.elementsWritten.get();
+	}
+
+	/**
+	 * Returns the current heap usage of the JVM in bytes.
+	 *
+	 * @return the current heap usage of the JVM in bytes
+	 */
+	static long heapUsage() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Returns the CPU time of the current thread in nanoseconds.
+	 *
+	 * @return the CPU time of the current thread in nanoseconds (0 if the JVM cannot measure it)
+	 */
+	static long cpuTime() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+	}
+
+	/**
+	 * Returns the CPU time of the specified thread in nanoseconds.
+	 *
+	 * @param thread
+	 *            the ID of a thread
+	 * @return the CPU time of the specified thread in nanoseconds (-1 if the thread has terminated or the JVM cannot
+	 *         measure it)
+	 */
+	static long cpuTime(long thread) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		return threads.isThreadCpuTimeSupported() ? threads.getThreadCpuTime(thread) : -1;
+	}
+
+	/**
+	 * Returns the number of the pass.
+	 *
+	 * @return the number of the pass (0 for the initial pass)
+	 */
+	public int pass() {
+		return pass;
+	}
+
+	/**
+	 * Returns the wall-clock time of the pass.
+	 *
+	 * @return the wall-clock time of the pass in nanoseconds
+	 */
+	public long wallNanos() {
+		return wallNanos;
+	}
+
+	/**
+	 * Returns the CPU time of the pass, i.e., the CPU time that the thread which began the pass has spent until the
+	 * pass completed (even if another thread completed the pass) plus that of the tasks constructing runs in parallel
+	 * (see {@link ExternalSort#parallelism()}) and that of the threads merging the partitions of the final merge (see
+	 * {@link ExternalSort#partitions(int)}), each measured within its own thread. The CPU time of the threads reading
+	 * and writing runs in the background is not included, and neither is that of a thread that consumed the output
+	 * iterator without having begun the pass.
+	 *
+	 * @return the CPU time of the pass in nanoseconds
+	 */
+	public long cpuNanos() {
+		return cpuNanos;
+	}
+
+	/**
+	 * Returns the time spent reading and writing blocks of runs during the pass, summed over all threads. When blocks
+	 * are read or written in the background (see {@link ExternalSort#prefetchDepth()} and
+	 * {@link ExternalSort#writeBehindDepth()}), this time overlaps with the CPU time.
+	 *
+	 * @return the time spent reading and writing blocks of runs in nanoseconds
+	 */
+	public long ioNanos() {
+		return ioNanos;
+	}
+
+	/**
+	 * Returns the number of bytes actually read from runs during the pass.
+	 *
+	 * @return the number of bytes actually read from runs during the pass
+	 */
+	public long bytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Returns the number of bytes actually written to runs during the pass.
+	 *
+	 * @return the number of bytes actually written to runs during the pass
+	 */
+	public long bytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * Returns the number of comparisons performed while sorting initial runs and merging runs during the pass.
+	 *
+	 * @return the number of comparisons performed during the pass
+	 */
+	public long comparisons() {
+		return comparisons;
+	}
+
+	/**
+	 * Returns the number of runs constructed during the pass.
+	 *
+	 * @return the number of runs constructed during the pass
+	 */
+	public long runs() {
+		return runs;
+	}
+
+	/**
+	 * Returns the number of elements written to the runs constructed during the pass.
+	 *
+	 * @return the number of elements written to the runs constructed during the pass
+	 */
+	public long elements() {
+		return elements;
+	}
+
+	/**
+	 * Returns the average number of elements in the runs constructed during the pass.
+	 *
+	 * @return the average number of elements in the runs constructed during the pass (0 if no run was constructed)
+	 */
+	public double elementsPerRun() {
+		return runs == 0 ? 0 : (double) elements / runs;
+	}
+
+	/**
+	 * Returns the largest heap usage of the JVM sampled during the pass. The heap usage is sampled when the pass
+	 * begins, whenever a run is constructed, and when the pass ends, so a short-lived peak between samples is missed.
+	 * The heap usage is that of the whole JVM and thus includes the memory used by every other activity in the JVM.
+	 * The peak usages that the JVM keeps for its memory pools are neither reset nor used.
+	 *
+	 * @return the largest heap usage of the JVM sampled during the pass in bytes
+	 */
+	public long peakMemory() {
+		return peakMemory;
+	}
+
+	@Override
+	public String toString() {
+		return "pass " + pass + ": " + runs + " run(s), " + elements + " element(s), " + comparisons
+				+ " comparison(s), " + bytesRead + " byte(s) read, " + bytesWritten + " byte(s) written"
+				+ String.format(" (wall: %.5f, CPU: %.5f, I/O: %.5f seconds, peak memory: %d bytes)",
+						wallNanos * 1.0e-9, cpuNanos * 1.0e-9, ioNanos * 1.0e-9, peakMemory);
+	}
+
+}
@@ -0,0 +1,145 @@
+package external_sort;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * {@code PrefixSort} sorts a list of elements by sorting (key prefix, element) pairs kept in two parallel arrays (see
+ * {@link KeyPrefix}). Most comparisons thus only read {@code long}s from a contiguous array, and {@code compareTo} (or
+ * a {@code Comparator}) is called only when the key prefixes of two elements are equal. Like {@code Collections.sort},
+ * {@code PrefixSort} is stable.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class PrefixSort {
+
+	/**
+	 * The size of the ranges that are sorted by insertion sort.
+	 */
+	static final int INSERTION_SORT_THRESHOLD = 16;
+
+	/**
+	 * Sorts the specified list in ascending order according to the {@linkplain Comparable natural ordering} of the
+	 * elements.
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 * @param list
+	 *            a list
+	 * @param keyPrefix
+	 *            the {@code KeyPrefix} for the elements
+	 * @return the number of comparisons performed
+	 */
+	public static <T extends Comparable<? super T>> long sort(ArrayList<T> list, KeyPrefix<? super T> keyPrefix) {
+		return sort(list, keyPrefix, ExternalSort.NATURAL_ORDER);
+	}
+
+	/**
+	 * Sorts the specified list in ascending order according to the specified {@code Comparator}.
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 * @param list
+	 *            a list
+	 * @param keyPrefix
+	 *            the {@code KeyPrefix} for the elements (must be consistent with the specified {@code Comparator})
+	 * @param comparator
+	 *            the {@code Comparator} that determines the order of the elements
+	 * @return the number of comparisons performed
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> long sort(ArrayList<T> list, KeyPrefix<? super T> keyPrefix, Comparator<? super T> comparator) {
+		int n = list.size();
+		long[] prefixes = new long[n];
+		Object[] elements = list.toArray();
+		for (int i = 0; i < n; i++)
+			prefixes[i] = keyPrefix.prefix((T) elements[i]);
+		long comparisons = sort(prefixes.clone(), elements.clone(), prefixes, elements, 0, n,
+				(Comparator<Object>) comparator);
+		for (int i = 0; i < n; i++)
+			list.set(i, (T) elements[i]);
+		return comparisons;
+	}
+
+	/**
+	 * Sorts the specified range of the destination arrays using the source arrays (which initially have the same
+	 * content as the destination arrays in that range) as temporary space.
+	 *
+	 * @param srcPrefixes
+	 *            the source key prefixes
+	 * @param srcElements
+	 *            the source elements
+	 * @param prefixes
+	 *            the destination key prefixes
+	 * @param elements
+	 *            the destination elements
+	 * @param from
+	 *            the index of the first element in the range (inclusive)
+	 * @param to
+	 *            the index of the last element in the range (exclusive)
+	 * @param comparator
+	 *            the {@code Comparator} for elements with equal key prefixes
+	 * @return the number of comparisons performed
+	 */
+	static long sort(long[] srcPrefixes, Object[] srcElements, long[] prefixes, Object[] elements, int from, int to,
+			Comparator<Object> comparator) {
+		long comparisons = 0;
+		if (to - from <= INSERTION_SORT_THRESHOLD) {
+			for (int i = from + 1; i < to; i++) {
+				long prefix = prefixes[i];
+				Object element = elements[i];
+				int j = i - 1;
+				for (; j >= from; j--) {
+					comparisons++;
+					if (compare(prefixes[j], elements[j], prefix, element, comparator) <= 0)
+						break;
+					prefixes[j + 1] = prefixes[j];
+					elements[j + 1] = elements[j];
+				}
+				prefixes[j + 1] = prefix;
+				elements[j + 1] = element;
+			}
+			return comparisons;
+		}
+		int mid = (from + to) >>> 1;
+		// sort the halves in the source arrays
+		comparisons += sort(prefixes, elements, srcPrefixes, srcElements, from, mid, comparator);
+		comparisons += sort(prefixes, elements, srcPrefixes, srcElements, mid, to, comparator);
+		for (int i = from, l = from, r = mid; i < to; i++) { // merge the halves into the destination arrays
+			if (r < to && l < mid)
+				comparisons++;
+			if (r >= to || (l < mid
+					&& compare(srcPrefixes[l], srcElements[l], srcPrefixes[r], srcElements[r], comparator) <= 0)) {
+				prefixes[i] = srcPrefixes[l];
+				elements[i] = srcElements[l++];
+			} else {
+				prefixes[i] = srcPrefixes[r];
+				elements[i] = srcElements[r++];
+			}
+		}
+		return comparisons;
+	}
+
+	/**
+	 * Compares two elements by their key prefixes and, if the key prefixes are equal, by the specified
+	 * {@code Comparator}.
+	 *
+	 * @param p1
+	 *            the key prefix of the first element
+	 * @param e1
+	 *            the first element
+	 * @param p2
+	 *            the key prefix of the second element
+	 * @param e2
+	 *            the second element
+	 * @param comparator
+	 *            the {@code Comparator} for elements with equal key prefixes
+	 * @return a negative integer, zero, or a positive integer as the first element is less than, equal to, or greater
+	 *         than the second element
+	 */
+	static int compare(long p1, Object e1, long p2, Object e2, Comparator<Object> comparator) {
+		int c = Long.compareUnsigned(p1, p2);
+		return c != 0 ? c : comparator.compare(e1, e2);
+	}
+
+}
@@ -0,0 +1,24 @@
+package external_sort;
+
+import java.util.Iterator;
+
+/**
+ * A {@code PrefixedIterator} is an {@code Iterator} that also provides the key prefix (see {@link KeyPrefix}) of the
+ * element most recently returned by {@link #next()}, so that the key prefix need not be computed again from the
+ * element.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public interface PrefixedIterator<T> extends Iterator<T> {
+
+	/**
+	 * Returns the key prefix of the element most recently returned by {@link #next()}.
+	 *
+	 * @return the key prefix of the element most recently returned by {@link #next()}
+	 */
+	long prefix();
+
+}
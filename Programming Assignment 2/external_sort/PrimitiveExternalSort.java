@@ -0,0 +1,420 @@
+package external_sort;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code PrimitiveExternalSort} is the common part of the external sorts specialized for primitive values (i.e.,
+ * {@link IntExternalSort}, {@link LongExternalSort}, and {@link DoubleExternalSort}). Such an external sort keeps each
+ * chunk of input values in a primitive array, writes runs consisting only of fixed-width values (without any block
+ * header or serialization overhead), and merges runs by comparing primitive values. The runs are merged according to
+ * a {@link MergePlan} just like in {@link ExternalSort}, and they can be deleted once merged (see
+ * {@link #deleteMergedRuns()}) and limited in size (see {@link #maxSpillBytes()}).
+ *
+ * A {@code PrimitiveExternalSort} handles every value as a {@code long} key whose signed order is the order of the
+ * values, so that the values of every primitive type are written, read, and merged by the same code. A subclass only
+ * sorts chunks of input values and converts between its values and their keys.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public abstract class PrimitiveExternalSort {
+
+	/**
+	 * The width (in bytes) of each value in a run ({@code Integer.BYTES} or {@code Long.BYTES}).
+	 */
+	int width;
+
+	/**
+	 * The number of runs that are merged together to form a new run
+	 */
+	int degree;
+
+	/**
+	 * The buffer size.
+	 */
+	int bufferSize;
+
+	/**
+	 * The number of values in each initial run.
+	 */
+	int runLength;
+
+	/**
+	 * The prefix that all of the run names (i.e., the names of the run files) commonly have
+	 */
+	String fileNamePrefix;
+
+	/**
+	 * The ID of the next run.
+	 */
+	AtomicInteger nextRunID = new AtomicInteger();
+
+	/**
+	 * The number of buffer reads so far.
+	 */
+	AtomicLong bufferReadCount = new AtomicLong();
+
+	/**
+	 * The number of buffer writes so far.
+	 */
+	AtomicLong bufferWriteCount = new AtomicLong();
+
+	/**
+	 * A flag indicating whether or not to delete runs once they are merged into a durable run.
+	 */
+	boolean deleteMergedRuns;
+
+	/**
+	 * The {@code SpillAccount} that keeps track of the number of bytes that the runs occupy.
+	 */
+	SpillAccount spillAccount;
+
+	/**
+	 * The input {@code PrimitiveIterator} ({@code null} once the initial runs are constructed).
+	 */
+	PrimitiveIterator<?, ?> input;
+
+	/**
+	 * The {@code MergePlan} according to which the initial runs are merged ({@code null} until the initial runs are
+	 * constructed).
+	 */
+	MergePlan mergePlan;
+
+	/**
+	 * The {@code PrimitiveMerge} that produces the keys of the output values.
+	 */
+	PrimitiveMerge output;
+
+	/**
+	 * The names of the runs merged into the output ({@code null} if they have been deleted or are kept).
+	 */
+	List<String> finalRuns;
+
+	/**
+	 * Constructs a {@code PrimitiveExternalSort}.
+	 *
+	 * @param input
+	 *            the input {@code PrimitiveIterator}
+	 * @param width
+	 *            the width (in bytes) of each value in a run ({@code Integer.BYTES} or {@code Long.BYTES})
+	 * @param degree
+	 *            the number of runs that are merged together to form a new run
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param runLength
+	 *            the number of values in each initial run
+	 * @param fileNamePrefix
+	 *            the prefix that all of the run names (i.e., the names of the run files) will commonly have
+	 * @throws IllegalArgumentException
+	 *             if the buffer size cannot hold a value or the run length is not positive
+	 */
+	PrimitiveExternalSort(PrimitiveIterator<?, ?> input, int width, int degree, int bufferSize, int runLength,
+			String fileNamePrefix) {
+		if (bufferSize < Long.BYTES)
+			throw new IllegalArgumentException("buffer size: " + bufferSize);
+		if (runLength < 1)
+			throw new IllegalArgumentException("run length: " + runLength);
+		this.input = input;
+		this.width = width;
+		this.degree = degree;
+		this.bufferSize = bufferSize;
+		this.runLength = runLength;
+		this.fileNamePrefix = fileNamePrefix;
+		this.deleteMergedRuns = deleteMergedRuns();
+		this.spillAccount = new SpillAccount(maxSpillBytes());
+	}
+
+	/**
+	 * Determines whether or not to delete runs once they are no longer needed (i.e., once they have been merged into a
+	 * completed run, which is forced to the device first, or once the output has returned all of the values from
+	 * them).
+	 *
+	 * @return {@code true} to delete runs once they are no longer needed; {@code false} (the default) to keep them
+	 */
+	protected boolean deleteMergedRuns() {
+		return false;
+	}
+
+	/**
+	 * Returns the maximum number of bytes that the runs may occupy at any time. Writing a run fails with an
+	 * {@code IOException} if the runs would occupy more bytes.
+	 *
+	 * @return the maximum number of bytes that the runs may occupy at any time ({@code Long.MAX_VALUE}, the default,
+	 *         if unlimited)
+	 */
+	protected long maxSpillBytes() {
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Sorts the input values by constructing initial runs and then merging them pass by pass according to a
+	 * {@code MergePlan}.
+	 *
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void sort(PrintStream out) throws IOException {
+		out.print("initial pass: ");
+		long time = System.nanoTime();
+		ArrayList<String> runNames = createInitialRuns();
+		input = null;
+		out.println(runNames.size() + " runs" + String.format(" (%.5f seconds)", (System.nanoTime() - time) * 1.0e-9));
+		long[] runLengths = new long[runNames.size()];
+		for (int i = 0; i < runLengths.length; i++)
+			runLengths[i] = new File(runNames.get(i)).length();
+		mergePlan = new MergePlan(runLengths, degree);
+		List<String> finalRuns = mergePlan.execute(runNames, new MergePlan.Pass<RuntimeException>() {
+
+			@Override
+			public List<String> merge(int pass, List<List<String>> groups) throws IOException {
+				out.print("merge pass " + pass + ": ");
+				long time = System.nanoTime();
+				ArrayList<String> created = new ArrayList<String>();
+				for (List<String> group : groups)
+					created.add(PrimitiveExternalSort.this.merge(group));
+				out.println(created.size() + " run(s)"
+						+ String.format(" (%.5f seconds)", (System.nanoTime() - time) * 1.0e-9));
+				return created;
+			}
+
+		});
+		out.print("merge pass " + (mergePlan.passCount() + 1) + ": ");
+		output = new PrimitiveMerge(createRunReaders(finalRuns), this);
+		if (deleteMergedRuns)
+			this.finalRuns = finalRuns;
+		out.println("1 output iterator");
+	}
+
+	/**
+	 * Constructs initial runs using the input values.
+	 *
+	 * @return the names of the initial runs constructed (i.e., file names)
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	ArrayList<String> createInitialRuns() throws IOException {
+		ArrayList<String> runNames = new ArrayList<String>();
+		while (input.hasNext()) {
+			int n = sortChunk();
+			String runName = nextRunName();
+			PrimitiveRunWriter writer = new PrimitiveRunWriter(runName, bufferSize, this);
+			try {
+				for (int i = 0; i < n; i++)
+					write(writer, chunkKey(i));
+			} finally {
+				writer.close();
+			}
+			runNames.add(runName);
+		}
+		return runNames;
+	}
+
+	/**
+	 * Constructs a new run by merging the specified runs, which are then deleted if {@link #deleteMergedRuns()} is
+	 * {@code true}.
+	 *
+	 * @param runNames
+	 *            the names of the input runs (i.e., file names)
+	 * @return the name of the new run (i.e., file name)
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	String merge(List<String> runNames) throws IOException {
+		String runName = nextRunName();
+		PrimitiveMerge merge = new PrimitiveMerge(createRunReaders(runNames), this);
+		PrimitiveRunWriter writer = new PrimitiveRunWriter(runName, bufferSize, this);
+		try {
+			while (merge.hasNext())
+				write(writer, merge.next());
+		} finally {
+			writer.close();
+		}
+		if (deleteMergedRuns) {
+			ExternalSort.sync(runName); // the run must be durable before its inputs are deleted
+			for (String r : runNames)
+				spillAccount.deleteRun(r);
+		}
+		return runName;
+	}
+
+	/**
+	 * Obtains up to {@link #runLength} values from the input {@code PrimitiveIterator} (which has at least one more
+	 * value) and sorts them in the chunk of this {@code PrimitiveExternalSort}.
+	 *
+	 * @return the number of values in the chunk
+	 */
+	abstract int sortChunk();
+
+	/**
+	 * Returns the key of the specified value in the chunk sorted by {@link #sortChunk()}.
+	 *
+	 * @param i
+	 *            the index of a value in the chunk
+	 * @return the key of the specified value in the chunk
+	 */
+	abstract long chunkKey(int i);
+
+	/**
+	 * Writes the specified key to a run.
+	 *
+	 * @param writer
+	 *            the {@code PrimitiveRunWriter} for the run
+	 * @param key
+	 *            a key
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void write(PrimitiveRunWriter writer, long key) throws IOException {
+		if (width == Integer.BYTES)
+			writer.putInt((int) key);
+		else
+			writer.putLong(key);
+	}
+
+	/**
+	 * Reads the next key from a run (which must have been made available by
+	 * {@link PrimitiveRunReader#ensure(int)}).
+	 *
+	 * @param reader
+	 *            the {@code PrimitiveRunReader} for the run
+	 * @return the next key from the run
+	 */
+	long read(PrimitiveRunReader reader) {
+		return width == Integer.BYTES ? reader.getInt() : reader.getLong();
+	}
+
+	/**
+	 * Determines whether or not the iteration has more values. Once the iteration has no more values, the runs merged
+	 * into the output are deleted if {@link #deleteMergedRuns()} is {@code true}.
+	 *
+	 * @return {@code true} if the iteration has more values; {@code false} otherwise
+	 */
+	public boolean hasNext() {
+		if (output.hasNext())
+			return true;
+		if (finalRuns != null) {
+			for (String runName : finalRuns)
+				spillAccount.deleteRun(runName);
+			finalRuns = null;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the key of the next value in the iteration.
+	 *
+	 * @return the key of the next value in the iteration
+	 * @throws NoSuchElementException
+	 *             if the iteration has no more values
+	 * @throws UncheckedIOException
+	 *             if an I/O error occurs
+	 */
+	long nextKey() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		try {
+			return output.next();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Constructs {@code PrimitiveRunReader}s for the specified runs.
+	 *
+	 * @param runNames
+	 *            the names of the runs (i.e., file names)
+	 * @return the constructed {@code PrimitiveRunReader}s
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	PrimitiveRunReader[] createRunReaders(List<String> runNames) throws IOException {
+		PrimitiveRunReader[] readers = new PrimitiveRunReader[runNames.size()];
+		for (int i = 0; i < readers.length; i++)
+			readers[i] = new PrimitiveRunReader(runNames.get(i), bufferSize, this);
+		return readers;
+	}
+
+	/**
+	 * Returns the name of the next run.
+	 *
+	 * @return the name of the next run
+	 */
+	String nextRunName() {
+		return fileNamePrefix + nextRunID.getAndIncrement() + ".run";
+	}
+
+	/**
+	 * Returns the {@code MergePlan} according to which the initial runs are merged.
+	 *
+	 * @return the {@code MergePlan} according to which the initial runs are merged
+	 */
+	public MergePlan mergePlan() {
+		return mergePlan;
+	}
+
+	/**
+	 * Returns the number of buffer reads so far.
+	 *
+	 * @return the number of buffer reads so far
+	 */
+	public long bufferReadCount() {
+		return bufferReadCount.get();
+	}
+
+	/**
+	 * Returns the number of buffer writes so far.
+	 *
+	 * @return the number of buffer writes so far
+	 */
+	public long bufferWriteCount() {
+		return bufferWriteCount.get();
+	}
+
+	/**
+	 * Returns the number of bytes that the runs currently occupy.
+	 *
+	 * @return the number of bytes that the runs currently occupy
+	 */
+	public long spillBytes() {
+		return spillAccount.spillBytes.get();
+	}
+
+	/**
+	 * Returns the largest number of bytes that the runs have occupied at any time.
+	 *
+	 * @return the largest number of bytes that the runs have occupied at any time
+	 */
+	public long peakSpillBytes() {
+		return spillAccount.peakSpillBytes.get();
+	}
+
+	/**
+	 * Returns the number of bytes read.
+	 *
+	 * @return the number of bytes read
+	 */
+	public long bytesRead() {
+		return bufferReadCount.get() * bufferSize;
+	}
+
+	/**
+	 * Returns the number of bytes written.
+	 *
+	 * @return the number of bytes written
+	 */
+	public long bytesWritten() {
+		return bufferWriteCount.get() * bufferSize;
+	}
+
+}
@@ -0,0 +1,182 @@
+package external_sort;
+
+import java.io.IOException;
+
+/**
+ * A {@code PrimitiveMerge} merges runs of primitive values using a tournament tree that keeps the loser of each match
+ * at each internal node (see {@link LoserTreeMergeIterator}). The current value of each run is kept as a {@code long}
+ * key (see {@link PrimitiveExternalSort}) in a primitive array, and these keys are compared without boxing.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+class PrimitiveMerge {
+
+	/**
+	 * The {@code PrimitiveExternalSort} that reads the keys from the runs.
+	 */
+	PrimitiveExternalSort externalSort;
+
+	/**
+	 * The {@code PrimitiveRunReader}s for the input runs.
+	 */
+	PrimitiveRunReader[] readers;
+
+	/**
+	 * The key of the current value of each run.
+	 */
+	long[] heads;
+
+	/**
+	 * A flag for each input run indicating whether or not that run is exhausted.
+	 */
+	boolean[] exhausted;
+
+	/**
+	 * The tournament tree. {@code tree[0]} is the index of the run whose current value is the smallest and
+	 * {@code tree[i]} for each internal node {@code i} is the index of the run that lost the match at that node.
+	 */
+	int[] tree;
+
+	/**
+	 * Constructs a {@code PrimitiveMerge}.
+	 *
+	 * @param readers
+	 *            the {@code PrimitiveRunReader}s for the input runs
+	 * @param externalSort
+	 *            the {@code PrimitiveExternalSort} that reads the keys from the runs
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	PrimitiveMerge(PrimitiveRunReader[] readers, PrimitiveExternalSort externalSort) throws IOException {
+		this.externalSort = externalSort;
+		this.readers = readers;
+		heads = new long[readers.length];
+		exhausted = new boolean[readers.length];
+		tree = new int[Math.max(readers.length, 1)];
+		start();
+	}
+
+	/**
+	 * Loads the first value of each run and builds the tournament tree.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void start() throws IOException {
+		int k = readers.length;
+		if (k == 0) {
+			tree[0] = -1;
+			return;
+		}
+		for (int i = 0; i < k; i++)
+			exhausted[i] = !load(i);
+		int[] winners = new int[2 * k]; // the winner of the match at each node
+		for (int i = 0; i < k; i++)
+			winners[k + i] = i;
+		for (int node = k - 1; node > 0; node--) {
+			int l = winners[2 * node];
+			int r = winners[2 * node + 1];
+			if (precedes(r, l)) {
+				winners[node] = r;
+				tree[node] = l;
+			} else {
+				winners[node] = l;
+				tree[node] = r;
+			}
+		}
+		tree[0] = k == 1 ? 0 : winners[1];
+	}
+
+	/**
+	 * Loads the next value of the specified run.
+	 *
+	 * @param i
+	 *            the index of a run
+	 * @return {@code true} if a value is loaded; {@code false} if the run is exhausted
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	boolean load(int i) throws IOException {
+		if (!readers[i].ensure(externalSort.width))
+			return false;
+		heads[i] = externalSort.read(readers[i]);
+		return true;
+	}
+
+	/**
+	 * Determines whether or not the current value of the run with index {@code i} is smaller than the current value of
+	 * the run with index {@code j}.
+	 *
+	 * @param i
+	 *            the index of a run
+	 * @param j
+	 *            the index of another run
+	 * @return {@code true} if the current value of run {@code i} is smaller than the current value of run {@code j};
+	 *         {@code false} otherwise
+	 */
+	boolean less(int i, int j) {
+		return heads[i] < heads[j];
+	}
+
+	/**
+	 * Determines whether or not the current value of the run with index {@code i} precedes the current value of the
+	 * run with index {@code j}. An exhausted run is preceded by every other run, and ties are broken by the indices.
+	 *
+	 * @param i
+	 *            the index of a run
+	 * @param j
+	 *            the index of another run
+	 * @return {@code true} if the current value of run {@code i} precedes the current value of run {@code j};
+	 *         {@code false} otherwise
+	 */
+	boolean precedes(int i, int j) {
+		if (exhausted[i])
+			return false;
+		if (exhausted[j])
+			return true;
+		return less(i, j) || (i < j && !less(j, i));
+	}
+
+	/**
+	 * Determines whether or not any run has more values.
+	 *
+	 * @return {@code true} if any run has more values; {@code false} otherwise
+	 */
+	boolean hasNext() {
+		return tree[0] >= 0 && !exhausted[tree[0]];
+	}
+
+	/**
+	 * Returns the key of the smallest current value (which {@link #hasNext()} must have confirmed) and advances past
+	 * that value.
+	 *
+	 * @return the key of the smallest current value
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	long next() throws IOException {
+		long next = heads[tree[0]];
+		advance();
+		return next;
+	}
+
+	/**
+	 * Consumes the smallest current value and replays the matches up to the root.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void advance() throws IOException {
+		int winner = tree[0];
+		exhausted[winner] = !load(winner);
+		for (int node = (readers.length + winner) / 2; node > 0; node /= 2) {
+			if (precedes(tree[node], winner)) {
+				int loser = winner;
+				winner = tree[node];
+				tree[node] = loser;
+			}
+		}
+		tree[0] = winner;
+	}
+
+}
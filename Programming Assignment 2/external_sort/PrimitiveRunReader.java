@@ -0,0 +1,101 @@
+package external_sort;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@code PrimitiveRunReader} reads the fixed-width primitive values of a run written by a
+ * {@code PrimitiveRunWriter} through a direct {@code ByteBuffer}.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class PrimitiveRunReader {
+
+	/**
+	 * The {@code PrimitiveExternalSort} using this {@code PrimitiveRunReader}.
+	 */
+	PrimitiveExternalSort externalSort;
+
+	/**
+	 * The {@code FileChannel} for reading the run ({@code null} once the run is exhausted).
+	 */
+	FileChannel channel;
+
+	/**
+	 * The {@code ByteBuffer} containing the values read but not yet consumed.
+	 */
+	ByteBuffer buffer;
+
+	/**
+	 * Constructs a {@code PrimitiveRunReader}.
+	 *
+	 * @param fileName
+	 *            the name of the run file
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param externalSort
+	 *            the {@code PrimitiveExternalSort} using the {@code PrimitiveRunReader}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public PrimitiveRunReader(String fileName, int bufferSize, PrimitiveExternalSort externalSort) throws IOException {
+		this.externalSort = externalSort;
+		channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		buffer = ByteBuffer.allocateDirect(bufferSize);
+		buffer.limit(0);
+	}
+
+	/**
+	 * Makes sure that the buffer contains a value of the specified width unless the run is exhausted.
+	 *
+	 * @param width
+	 *            the width (in bytes) of a value
+	 * @return {@code true} if the buffer contains a value of the specified width; {@code false} if the run is
+	 *         exhausted
+	 * @throws IOException
+	 *             if an I/O error occurs or the run ends with a partial value (i.e., the run is corrupt)
+	 */
+	public boolean ensure(int width) throws IOException {
+		if (buffer.remaining() >= width)
+			return true;
+		if (channel == null)
+			return false;
+		buffer.compact();
+		int start = buffer.position();
+		while (buffer.position() < width) {
+			if (channel.read(buffer) < 0) {
+				channel.close();
+				channel = null;
+				break;
+			}
+		}
+		if (buffer.position() > start)
+			externalSort.bufferReadCount.incrementAndGet();
+		buffer.flip();
+		if (buffer.hasRemaining() && buffer.remaining() < width)
+			throw new IOException("corrupt run: " + buffer.remaining() + " trailing byte(s) do not form a value");
+		return buffer.hasRemaining();
+	}
+
+	/**
+	 * Returns the next {@code int} value (which must have been made available by {@link #ensure(int)}).
+	 *
+	 * @return the next {@code int} value
+	 */
+	public int getInt() {
+		return buffer.getInt();
+	}
+
+	/**
+	 * Returns the next {@code long} value (which must have been made available by {@link #ensure(int)}).
+	 *
+	 * @return the next {@code long} value
+	 */
+	public long getLong() {
+		return buffer.getLong();
+	}
+
+}
@@ -0,0 +1,107 @@
+package external_sort;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@code PrimitiveRunWriter} writes fixed-width primitive values to a run through a direct {@code ByteBuffer}. The
+ * run contains nothing but the values (in big-endian byte order).
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class PrimitiveRunWriter {
+
+	/**
+	 * The {@code PrimitiveExternalSort} using this {@code PrimitiveRunWriter}.
+	 */
+	PrimitiveExternalSort externalSort;
+
+	/**
+	 * The {@code FileChannel} for writing to the run.
+	 */
+	FileChannel channel;
+
+	/**
+	 * The {@code ByteBuffer} in which values are collected until they are written as a block.
+	 */
+	ByteBuffer buffer;
+
+	/**
+	 * Constructs a {@code PrimitiveRunWriter}.
+	 *
+	 * @param fileName
+	 *            the name of the run file
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param externalSort
+	 *            the {@code PrimitiveExternalSort} using the {@code PrimitiveRunWriter}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public PrimitiveRunWriter(String fileName, int bufferSize, PrimitiveExternalSort externalSort) throws IOException {
+		this.externalSort = externalSort;
+		channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		buffer = ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	/**
+	 * Writes the specified {@code int} value.
+	 *
+	 * @param v
+	 *            an {@code int} value
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void putInt(int v) throws IOException {
+		if (buffer.remaining() < Integer.BYTES)
+			flush();
+		buffer.putInt(v);
+	}
+
+	/**
+	 * Writes the specified {@code long} value.
+	 *
+	 * @param v
+	 *            a {@code long} value
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void putLong(long v) throws IOException {
+		if (buffer.remaining() < Long.BYTES)
+			flush();
+		buffer.putLong(v);
+	}
+
+	/**
+	 * Writes the values in the buffer to the run as a block.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs or the runs would occupy more than
+	 *             {@link PrimitiveExternalSort#maxSpillBytes()} bytes
+	 */
+	void flush() throws IOException {
+		buffer.flip();
+		externalSort.spillAccount.spill(buffer.remaining());
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+		externalSort.bufferWriteCount.incrementAndGet();
+	}
+
+	/**
+	 * Writes the remaining values and closes the run.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void close() throws IOException {
+		if (buffer.position() > 0)
+			flush();
+		channel.close();
+	}
+
+}
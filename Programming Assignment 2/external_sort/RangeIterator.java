@@ -0,0 +1,143 @@
+package external_sort;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Given an {@code Iterator} over elements in ascending order according to a {@code Comparator}, a
+ * {@code RangeIterator} iterates over only the elements that are greater than or equal to a lower bound and less than
+ * an upper bound. The elements smaller than the lower bound are skipped, and the iteration stops at the first element
+ * that is not smaller than the upper bound (if the input {@code Iterator} is a {@code RunReader}, the run is closed at
+ * that point). If the input {@code Iterator} is a {@code PrefixedIterator}, the key prefixes of the elements are also
+ * available from the {@code RangeIterator}.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public class RangeIterator<T> implements PrefixedIterator<T> {
+
+	/**
+	 * The input {@code Iterator}.
+	 */
+	Iterator<T> iterator;
+
+	/**
+	 * The lower bound (inclusive) of the range ({@code null} if the range has no lower bound or the elements smaller
+	 * than the lower bound have been skipped).
+	 */
+	T lower;
+
+	/**
+	 * The upper bound (exclusive) of the range ({@code null} if the range has no upper bound).
+	 */
+	T upper;
+
+	/**
+	 * The {@code Comparator} that determines the order of the elements.
+	 */
+	Comparator<? super T> comparator;
+
+	/**
+	 * A flag indicating whether or not {@link #next} holds the next element in the iteration.
+	 */
+	boolean pending = false;
+
+	/**
+	 * The next element in the iteration (meaningful only if {@link #pending} is {@code true}).
+	 */
+	T next;
+
+	/**
+	 * The key prefix of the next element in the iteration.
+	 */
+	long nextPrefix;
+
+	/**
+	 * The key prefix of the element most recently returned by {@link #next()}.
+	 */
+	long prefix;
+
+	/**
+	 * Constructs a {@code RangeIterator}.
+	 *
+	 * @param iterator
+	 *            an {@code Iterator} over elements in ascending order according to the specified {@code Comparator}
+	 * @param lower
+	 *            the lower bound (inclusive) of the range ({@code null} if the range has no lower bound)
+	 * @param upper
+	 *            the upper bound (exclusive) of the range ({@code null} if the range has no upper bound)
+	 * @param comparator
+	 *            the {@code Comparator} that determines the order of the elements
+	 */
+	public RangeIterator(Iterator<T> iterator, T lower, T upper, Comparator<? super T> comparator) {
+		this.iterator = iterator;
+		this.lower = lower;
+		this.upper = upper;
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Determines whether or not the iteration has more elements (i.e., {@link #next} would return an element rather
+	 * than throwing an exception).
+	 *
+	 * @return {@code true} if the iteration has more elements; {@code false} otherwise
+	 */
+	@Override
+	public boolean hasNext() {
+		if (pending)
+			return true;
+		while (iterator.hasNext()) {
+			T e = iterator.next();
+			if (lower != null) {
+				if (comparator.compare(e, lower) < 0)
+					continue;
+				lower = null; // no more element is smaller than the lower bound
+			}
+			if (upper != null && comparator.compare(e, upper) >= 0)
+				break;
+			next = e;
+			if (iterator instanceof PrefixedIterator)
+				nextPrefix = ((PrefixedIterator<T>) iterator).prefix();
+			pending = true;
+			return true;
+		}
+		if (iterator instanceof RunReader)
+			((RunReader) iterator).close();
+		iterator = Collections.emptyIterator();
+		return false;
+	}
+
+	/**
+	 * Returns the next element in the iteration.
+	 *
+	 * @return the next element in the iteration
+	 * @throws NoSuchElementException
+	 *             if the iteration has no more elements
+	 */
+	@Override
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		pending = false;
+		prefix = nextPrefix;
+		T e = next;
+		next = null;
+		return e;
+	}
+
+	/**
+	 * Returns the key prefix of the element most recently returned by {@link #next()} (available only if the input
+	 * {@code Iterator} is a {@code PrefixedIterator}).
+	 *
+	 * @return the key prefix of the element most recently returned by {@link #next()}
+	 */
+	@Override
+	public long prefix() {
+		return prefix;
+	}
+
+}
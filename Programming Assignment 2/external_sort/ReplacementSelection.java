@@ -0,0 +1,150 @@
+package external_sort;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@code ReplacementSelection} constructs runs from an input {@code Iterator} using a heap of elements. Whenever the
+ * smallest element in the heap is emitted, it is replaced with the next input element. That input element joins the
+ * current run if it is not smaller than the emitted element and is set aside for the next run otherwise. On random
+ * input, the runs produced this way are about twice as long as the heap; on sorted input, a single run is produced.
+ * A {@code ReplacementSelection} can be viewed as an {@code Iterator} over the elements of the current run.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public class ReplacementSelection<T> implements Iterator<T> {
+
+	/**
+	 * The input {@code Iterator}.
+	 */
+	Iterator<T> input;
+
+	/**
+	 * A list whose first {@link #size} elements form a heap for the current run and whose remaining elements are set
+	 * aside for the next run.
+	 */
+	ArrayList<T> heap = new ArrayList<T>();
+
+	/**
+	 * The number of elements in the heap for the current run.
+	 */
+	int size = 0;
+
+	/**
+	 * The {@code Comparator} that determines the order of the elements.
+	 */
+	Comparator<? super T> comparator;
+
+	/**
+	 * The number of comparisons performed so far.
+	 */
+	long comparisons = 0;
+
+	/**
+	 * Constructs a {@code ReplacementSelection}.
+	 *
+	 * @param input
+	 *            the input {@code Iterator}
+	 * @param externalSort
+	 *            the {@code ExternalSort} that determines (using {@link ExternalSort#isFull(ArrayList)}) how many
+	 *            elements the heap can hold
+	 */
+	public ReplacementSelection(Iterator<T> input, ExternalSort<T> externalSort) {
+		this.input = input;
+		this.comparator = externalSort.comparator;
+		while (input.hasNext()) {
+			heap.add(input.next());
+			if (externalSort.isFull(heap))
+				break;
+		}
+	}
+
+	/**
+	 * Starts the next run if the current run has no more elements.
+	 *
+	 * @return {@code true} if the current run has more elements; {@code false} if there are no more elements at all
+	 */
+	public boolean nextRun() {
+		if (size == 0) {
+			size = heap.size();
+			for (int i = size / 2 - 1; i >= 0; i--)
+				siftDown(i);
+		}
+		return size > 0;
+	}
+
+	/**
+	 * Determines whether or not the current run has more elements (i.e., {@link #next} would return an element rather
+	 * than throwing an exception).
+	 *
+	 * @return {@code true} if the current run has more elements; {@code false} otherwise
+	 */
+	@Override
+	public boolean hasNext() {
+		return size > 0;
+	}
+
+	/**
+	 * Returns the next element in the current run.
+	 *
+	 * @return the next element in the current run
+	 * @throws NoSuchElementException
+	 *             if the current run has no more elements
+	 */
+	@Override
+	public T next() {
+		if (size == 0)
+			throw new NoSuchElementException();
+		T min = heap.get(0);
+		if (input.hasNext()) {
+			T e = input.next();
+			comparisons++;
+			if (comparator.compare(e, min) >= 0) // e can still be emitted in the current run
+				heap.set(0, e);
+			else { // e is set aside for the next run
+				heap.set(0, heap.get(size - 1));
+				heap.set(size - 1, e);
+				size--;
+			}
+		} else { // the heap shrinks since there is no more input
+			int last = heap.size() - 1;
+			heap.set(0, heap.get(size - 1));
+			heap.set(size - 1, heap.get(last));
+			heap.remove(last);
+			size--;
+		}
+		siftDown(0);
+		return min;
+	}
+
+	/**
+	 * Moves down the element at the specified position in the heap until the heap property is restored.
+	 *
+	 * @param i
+	 *            a position in the heap
+	 */
+	void siftDown(int i) {
+		if (i >= size)
+			return;
+		T e = heap.get(i);
+		while (true) {
+			int c = 2 * i + 1;
+			if (c >= size)
+				break;
+			comparisons += c + 1 < size ? 2 : 1;
+			if (c + 1 < size && comparator.compare(heap.get(c + 1), heap.get(c)) < 0)
+				c++;
+			if (comparator.compare(e, heap.get(c)) <= 0)
+				break;
+			heap.set(i, heap.get(c));
+			i = c;
+		}
+		heap.set(i, e);
+	}
+
+}
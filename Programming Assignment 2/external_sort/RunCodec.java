@@ -0,0 +1,115 @@
+package external_sort;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@code RunCodec} encodes objects into raw bytes when they are written to a run and decodes them when they are read
+ * from a run. Compared to Java serialization, a {@code RunCodec} writes no stream headers or class descriptors and
+ * decodes objects without reflection.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ * @param <T>
+ *            the type of the objects
+ */
+public interface RunCodec<T> {
+
+	/**
+	 * A {@code RunCodec} for {@code Integer}s (4 bytes each).
+	 */
+	public static final RunCodec<Integer> INTEGER = new RunCodec<Integer>() {
+
+		@Override
+		public void write(Integer o, DataOutput out) throws IOException {
+			out.writeInt(o);
+		}
+
+		@Override
+		public Integer read(DataInput in) throws IOException {
+			return in.readInt();
+		}
+
+	};
+
+	/**
+	 * A {@code RunCodec} for {@code Long}s (8 bytes each).
+	 */
+	public static final RunCodec<Long> LONG = new RunCodec<Long>() {
+
+		@Override
+		public void write(Long o, DataOutput out) throws IOException {
+			out.writeLong(o);
+		}
+
+		@Override
+		public Long read(DataInput in) throws IOException {
+			return in.readLong();
+		}
+
+	};
+
+	/**
+	 * A {@code RunCodec} for {@code Double}s (8 bytes each).
+	 */
+	public static final RunCodec<Double> DOUBLE = new RunCodec<Double>() {
+
+		@Override
+		public void write(Double o, DataOutput out) throws IOException {
+			out.writeDouble(o);
+		}
+
+		@Override
+		public Double read(DataInput in) throws IOException {
+			return in.readDouble();
+		}
+
+	};
+
+	/**
+	 * A {@code RunCodec} for {@code String}s (the length of the UTF-8 encoding followed by the UTF-8 encoding).
+	 */
+	public static final RunCodec<String> STRING = new RunCodec<String>() {
+
+		@Override
+		public void write(String o, DataOutput out) throws IOException {
+			byte[] b = o.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(b.length);
+			out.write(b);
+		}
+
+		@Override
+		public String read(DataInput in) throws IOException {
+			byte[] b = new byte[in.readInt()];
+			in.readFully(b);
+			return new String(b, StandardCharsets.UTF_8);
+		}
+
+	};
+
+	/**
+	 * Writes the specified object to the specified {@code DataOutput}.
+	 *
+	 * @param o
+	 *            an object
+	 * @param out
+	 *            a {@code DataOutput}
+	 * @throws IOException
+	 *             if an I/O error occurs (e.g., the {@code DataOutput} runs out of space)
+	 */
+	void write(T o, DataOutput out) throws IOException;
+
+	/**
+	 * Reads an object from the specified {@code DataInput}.
+	 *
+	 * @param in
+	 *            a {@code DataInput}
+	 * @return the object read
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	T read(DataInput in) throws IOException;
+
+}
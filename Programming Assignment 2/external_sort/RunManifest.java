@@ -0,0 +1,535 @@
+package external_sort;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A {@code RunManifest} records the runs that an {@code ExternalSort} has completed so that the {@code ExternalSort}
+ * can resume from them after a failure. The manifest is a text file to which a line is appended (and forced to the
+ * device) whenever a run is completed. Each line consists of tab-separated fields:
+ *
+ * <pre>
+ * degree      degree
+ * bufferSize  buffer size
+ * limit       maximum number of elements produced
+ * format      fingerprint of the settings that determine the content and encoding of runs
+ * run         length  element count  CRC32  next run ID  run name  [input run name ...]
+ * initial     initial run name ...
+ * complete
+ * </pre>
+ *
+ * A {@code run} line is written for every run (the input runs are given only for the runs constructed by merging), the
+ * {@code initial} line is written once all of the initial runs are constructed, and the {@code complete} line is
+ * written once the output iterator is formed. A line that is not complete (e.g., because of a failure while it was
+ * written) is ignored. The methods of a {@code RunManifest} are synchronized so that it can be consulted while runs
+ * are recorded by the threads that merge runs in parallel.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class RunManifest {
+
+	/**
+	 * An {@code Entry} describes a completed run.
+	 */
+	static class Entry {
+
+		/**
+		 * The name of the run (i.e., the file name).
+		 */
+		String name;
+
+		/**
+		 * The length (in bytes) of the run.
+		 */
+		long length;
+
+		/**
+		 * The number of elements in the run.
+		 */
+		long count;
+
+		/**
+		 * The CRC32 checksum of the run.
+		 */
+		long checksum;
+
+		/**
+		 * The ID of the next run at the time the run was completed.
+		 */
+		int nextRunID;
+
+		/**
+		 * The names of the runs merged into the run (empty for an initial run).
+		 */
+		List<String> inputs;
+
+	}
+
+	/**
+	 * The manifest file.
+	 */
+	File file;
+
+	/**
+	 * The {@code FileOutputStream} for appending lines to the manifest file ({@code null} if the manifest file is not
+	 * open).
+	 */
+	FileOutputStream out = null;
+
+	/**
+	 * The degree of the {@code ExternalSort}.
+	 */
+	int degree;
+
+	/**
+	 * The buffer size of the {@code ExternalSort}.
+	 */
+	int bufferSize;
+
+	/**
+	 * The maximum number of elements that the {@code ExternalSort} produces.
+	 */
+	long limit;
+
+	/**
+	 * The fingerprint of the settings that determine the content and encoding of the runs (e.g., the
+	 * {@code RunCodec}, {@code BlockCompression}, and {@code Comparator} of the {@code ExternalSort}); {@code null} if
+	 * none has been recorded.
+	 */
+	String format = null;
+
+	/**
+	 * The {@code Entry} of each run (keyed by the run name).
+	 */
+	HashMap<String, Entry> runs = new HashMap<String, Entry>();
+
+	/**
+	 * The {@code Entry} of each run constructed by merging (keyed by the names of the input runs).
+	 */
+	HashMap<List<String>, Entry> merged = new HashMap<List<String>, Entry>();
+
+	/**
+	 * The names of the runs that have been validated.
+	 */
+	HashSet<String> validated = new HashSet<String>();
+
+	/**
+	 * The names of the initial runs ({@code null} if the initial runs are not all constructed).
+	 */
+	List<String> initialRuns = null;
+
+	/**
+	 * A flag indicating whether or not the output iterator has been formed.
+	 */
+	boolean complete = false;
+
+	/**
+	 * Constructs a {@code RunManifest}.
+	 *
+	 * @param fileName
+	 *            the name of the manifest file
+	 */
+	public RunManifest(String fileName) {
+		this.file = new File(fileName);
+	}
+
+	/**
+	 * Loads the content of the manifest file.
+	 *
+	 * @return {@code true} if the manifest file exists and has been loaded; {@code false} if no manifest file exists
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized boolean load() throws IOException {
+		if (!file.exists())
+			return false;
+		String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		content = content.substring(0, content.lastIndexOf('\n') + 1); // only complete lines end with a newline
+		try {
+			for (String line : content.split("\n"))
+				if (!line.isEmpty())
+					parse(line.split("\t"));
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("corrupt manifest: " + file, e);
+		}
+		return true;
+	}
+
+	/**
+	 * Applies the specified fields of a line in the manifest file.
+	 *
+	 * @param fields
+	 *            the fields of a line
+	 */
+	void parse(String[] fields) {
+		switch (fields[0]) {
+		case "degree":
+			degree = Integer.parseInt(fields[1]);
+			break;
+		case "bufferSize":
+			bufferSize = Integer.parseInt(fields[1]);
+			break;
+		case "limit":
+			limit = Long.parseLong(fields[1]);
+			break;
+		case "format":
+			format = fields[1];
+			break;
+		case "run":
+			Entry e = new Entry();
+			e.length = Long.parseLong(fields[1]);
+			e.count = Long.parseLong(fields[2]);
+			e.checksum = Long.parseLong(fields[3]);
+			e.nextRunID = Integer.parseInt(fields[4]);
+			e.name = fields[5];
+			e.inputs = Arrays.asList(Arrays.copyOfRange(fields, 6, fields.length));
+			runs.put(e.name, e);
+			if (!e.inputs.isEmpty())
+				merged.put(e.inputs, e);
+			break;
+		case "initial":
+			initialRuns = Arrays.asList(Arrays.copyOfRange(fields, 1, fields.length));
+			break;
+		case "complete":
+			complete = true;
+			break;
+		}
+	}
+
+	/**
+	 * Determines whether or not the content of the manifest file allows an {@code ExternalSort} with the specified
+	 * parameters to resume (i.e., the output iterator has not been formed, all of the initial runs have been
+	 * constructed and are {@linkplain #isAvailable(String) available}, and the parameters match those recorded).
+	 *
+	 * @param degree
+	 *            the degree of the {@code ExternalSort}
+	 * @param bufferSize
+	 *            the buffer size of the {@code ExternalSort}
+	 * @param limit
+	 *            the maximum number of elements that the {@code ExternalSort} produces
+	 * @return {@code true} if the {@code ExternalSort} can resume; {@code false} otherwise
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized boolean resumable(int degree, int bufferSize, long limit) throws IOException {
+		return resumable(degree, bufferSize, limit, null);
+	}
+
+	/**
+	 * Determines whether or not the content of the manifest file allows an {@code ExternalSort} with the specified
+	 * parameters and run format to resume (i.e., the output iterator has not been formed, all of the initial runs
+	 * have been constructed and are {@linkplain #isAvailable(String) available}, and the parameters and the run format
+	 * match those recorded). Runs written in a different format would otherwise pass validation and then be decoded
+	 * incorrectly.
+	 *
+	 * @param degree
+	 *            the degree of the {@code ExternalSort}
+	 * @param bufferSize
+	 *            the buffer size of the {@code ExternalSort}
+	 * @param limit
+	 *            the maximum number of elements that the {@code ExternalSort} produces
+	 * @param format
+	 *            the fingerprint of the settings that determine the content and encoding of the runs ({@code null}
+	 *            if the run format is not checked)
+	 * @return {@code true} if the {@code ExternalSort} can resume; {@code false} otherwise
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized boolean resumable(int degree, int bufferSize, long limit, String format) throws IOException {
+		if (complete || initialRuns == null || degree != this.degree || bufferSize != this.bufferSize
+				|| limit != this.limit || format != null && !format.equals(this.format))
+			return false;
+		for (String run : initialRuns)
+			if (!isAvailable(run))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Determines whether or not the content of the specified run is available, either from the run itself (if it is
+	 * {@linkplain #isValid(String) valid}) or from the run into which it was merged (if that run is available). A run
+	 * may have been deleted once it was merged.
+	 *
+	 * @param name
+	 *            the name of a run
+	 * @return {@code true} if the content of the specified run is available; {@code false} otherwise
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized boolean isAvailable(String name) throws IOException {
+		if (isValid(name))
+			return true;
+		for (Entry e : merged.values())
+			if (e.inputs.contains(name))
+				return isAvailable(e.name);
+		return false;
+	}
+
+	/**
+	 * Determines whether or not the specified run has been completed and still has the recorded length and checksum.
+	 *
+	 * @param name
+	 *            the name of a run
+	 * @return {@code true} if the specified run has been completed and is intact; {@code false} otherwise
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized boolean isValid(String name) throws IOException {
+		if (validated.contains(name))
+			return true;
+		Entry e = runs.get(name);
+		File f = new File(name);
+		if (e == null || !f.isFile() || f.length() != e.length || checksum(f) != e.checksum)
+			return false;
+		validated.add(name);
+		return true;
+	}
+
+	/**
+	 * Returns the name of the run constructed by merging the specified runs if its content is
+	 * {@linkplain #isAvailable(String) available}.
+	 *
+	 * @param inputs
+	 *            the names of runs
+	 * @return the name of the run constructed by merging the specified runs; {@code null} if there is no such run or
+	 *         its content is not available
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized String output(List<String> inputs) throws IOException {
+		Entry e = merged.get(inputs);
+		return e != null && isAvailable(e.name) ? e.name : null;
+	}
+
+	/**
+	 * Returns the names of the initial runs.
+	 *
+	 * @return the names of the initial runs ({@code null} if the initial runs are not all constructed)
+	 */
+	public synchronized List<String> initialRuns() {
+		return initialRuns;
+	}
+
+	/**
+	 * Returns the length (in bytes) of the specified run.
+	 *
+	 * @param name
+	 *            the name of a run
+	 * @return the length (in bytes) of the specified run ({@code -1} if the run is not recorded)
+	 */
+	public synchronized long length(String name) {
+		Entry e = runs.get(name);
+		return e == null ? -1 : e.length;
+	}
+
+	/**
+	 * Returns the number of elements in the specified run.
+	 *
+	 * @param name
+	 *            the name of a run
+	 * @return the number of elements in the specified run ({@code -1} if the run is not recorded)
+	 */
+	public synchronized long count(String name) {
+		Entry e = runs.get(name);
+		return e == null ? -1 : e.count;
+	}
+
+	/**
+	 * Returns the smallest run ID that no recorded run may use.
+	 *
+	 * @return the smallest run ID that no recorded run may use
+	 */
+	public synchronized int nextRunID() {
+		int id = 0;
+		for (Entry e : runs.values())
+			id = Math.max(id, e.nextRunID);
+		return id;
+	}
+
+	/**
+	 * Starts a new manifest file (replacing the existing one, if any) for an {@code ExternalSort} with the specified
+	 * parameters.
+	 *
+	 * @param degree
+	 *            the degree of the {@code ExternalSort}
+	 * @param bufferSize
+	 *            the buffer size of the {@code ExternalSort}
+	 * @param limit
+	 *            the maximum number of elements that the {@code ExternalSort} produces
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized void create(int degree, int bufferSize, long limit) throws IOException {
+		create(degree, bufferSize, limit, null);
+	}
+
+	/**
+	 * Starts a new manifest file (replacing the existing one, if any) for an {@code ExternalSort} with the specified
+	 * parameters and run format.
+	 *
+	 * @param degree
+	 *            the degree of the {@code ExternalSort}
+	 * @param bufferSize
+	 *            the buffer size of the {@code ExternalSort}
+	 * @param limit
+	 *            the maximum number of elements that the {@code ExternalSort} produces
+	 * @param format
+	 *            the fingerprint of the settings that determine the content and encoding of the runs ({@code null}
+	 *            if no run format is recorded)
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized void create(int degree, int bufferSize, long limit, String format) throws IOException {
+		close();
+		this.degree = degree;
+		this.bufferSize = bufferSize;
+		this.limit = limit;
+		this.format = format;
+		runs.clear();
+		merged.clear();
+		validated.clear();
+		initialRuns = null;
+		complete = false;
+		out = new FileOutputStream(file);
+		append("degree", "" + degree);
+		append("bufferSize", "" + bufferSize);
+		append("limit", "" + limit);
+		if (format != null)
+			append("format", format);
+	}
+
+	/**
+	 * Opens the loaded manifest file so that more lines can be appended to it.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized void open() throws IOException {
+		if (out == null)
+			out = new FileOutputStream(file, true);
+	}
+
+	/**
+	 * Records the specified completed run.
+	 *
+	 * @param name
+	 *            the name of the run
+	 * @param inputs
+	 *            the names of the runs merged into the run (empty for an initial run)
+	 * @param count
+	 *            the number of elements in the run
+	 * @param checksum
+	 *            the CRC32 checksum of the run
+	 * @param nextRunID
+	 *            the ID of the next run
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized void record(String name, List<String> inputs, long count, long checksum, int nextRunID)
+			throws IOException {
+		Entry e = new Entry();
+		e.name = name;
+		e.length = new File(name).length();
+		e.count = count;
+		e.checksum = checksum;
+		e.nextRunID = nextRunID;
+		e.inputs = new ArrayList<String>(inputs);
+		runs.put(name, e);
+		validated.add(name);
+		if (!inputs.isEmpty())
+			merged.put(e.inputs, e);
+		ArrayList<String> fields = new ArrayList<String>(Arrays.asList("run", "" + e.length, "" + count,
+				"" + checksum, "" + nextRunID, name));
+		fields.addAll(inputs);
+		append(fields.toArray(new String[0]));
+	}
+
+	/**
+	 * Records that all of the specified initial runs have been constructed.
+	 *
+	 * @param names
+	 *            the names of the initial runs
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized void recordInitialRuns(List<String> names) throws IOException {
+		initialRuns = new ArrayList<String>(names);
+		ArrayList<String> fields = new ArrayList<String>();
+		fields.add("initial");
+		fields.addAll(names);
+		append(fields.toArray(new String[0]));
+	}
+
+	/**
+	 * Records that the output iterator has been formed and closes the manifest file.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized void recordCompletion() throws IOException {
+		complete = true;
+		append("complete");
+		close();
+	}
+
+	/**
+	 * Closes the manifest file.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public synchronized void close() throws IOException {
+		if (out != null)
+			out.close();
+		out = null;
+	}
+
+	/**
+	 * Appends a line consisting of the specified fields to the manifest file (with a single write so that a line ending
+	 * with a newline is complete) and forces it to the device.
+	 *
+	 * @param fields
+	 *            the fields of the line
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void append(String... fields) throws IOException {
+		StringBuilder line = new StringBuilder();
+		for (String field : fields)
+			line.append(line.length() == 0 ? "" : "\t").append(field);
+		line.append('\n');
+		out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+		out.getFD().sync();
+	}
+
+	/**
+	 * Computes the CRC32 checksum of the specified file.
+	 *
+	 * @param file
+	 *            a file
+	 * @return the CRC32 checksum of the specified file
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = new FileInputStream(file)) {
+			for (int n = in.read(buffer); n >= 0; n = in.read(buffer))
+				crc.update(buffer, 0, n);
+		}
+		return crc.getValue();
+	}
+
+}
@@ -3,22 +3,42 @@ package external_sort;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * A {@code RunReader} reads objects from a run. A {@code RunReader} can also be viewed as an {@code Iterator} over the
- * objects stored in a run.
+ * objects stored in a run. If the {@code ExternalSort} has a {@code KeyPrefix}, the key prefix of each object is read
+ * from the run along with the object.
  * 
  * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
  */
-public class RunReader implements Iterator<Object> {
+public class RunReader implements PrefixedIterator<Object> {
+
+	/**
+	 * A marker indicating that the end of the run has been reached while prefetching.
+	 */
+	static final Object END = new Object();
 
 	/**
 	 * The {@code ExternalSort} that uses this {@code RunReader}.
 	 */
 	ExternalSort<?> externalSort;
 
+	/**
+	 * The name of the run (i.e., the file name).
+	 */
+	String fileName;
+
 	/**
 	 * The input buffer size
 	 */
@@ -30,18 +50,54 @@ public class RunReader implements Iterator<Object> {
 	FileInputStream in;
 
 	/**
-	 * The length of the run.
+	 * The {@code FileChannel} for reading data from the run into direct {@code ByteBuffer}s ({@code null} if the data
+	 * is read using {@link #in} or from {@link #mapped}).
+	 */
+	FileChannel channel = null;
+
+	/**
+	 * The {@code MappedByteBuffer} of the whole run ({@code null} if the run is not memory-mapped).
+	 */
+	MappedByteBuffer mapped = null;
+
+	/**
+	 * The offset at which reading stops (the length of the run unless only a range of the run is read).
 	 */
 	long runLength;
 
 	/**
-	 * The number of bytes read from the run.
+	 * The offset of the next block to read (i.e., the number of bytes read from the run if reading started at the
+	 * beginning of the run).
 	 */
 	long bytesRead = 0;
+
+	/**
+	 * The array into which each compressed block is read ({@code null} if the {@code ExternalSort} has no
+	 * {@code BlockCompression}).
+	 */
+	byte[] compressed = null;
+
+	/**
+	 * The array into which each compressed block is decompressed before it is copied to a direct {@code ByteBuffer}
+	 * (allocated when first needed).
+	 */
+	byte[] decompressed = null;
 	
 	InputBuffer ib;
 	Iterator<Object> itr;
 
+	/**
+	 * The results of prefetching in the order of the blocks in the run (i.e., an {@code Iterator} over the objects in
+	 * each block, the exception thrown while reading a block, or {@link #END}); {@code null} if blocks are not
+	 * prefetched.
+	 */
+	LinkedBlockingQueue<Object> prefetched = null;
+
+	/**
+	 * A flag indicating whether or not all of the prefetched blocks have been consumed.
+	 */
+	boolean finished = false;
+
 	/**
 	 * Constructs a {@code RunReader}.
 	 * 
@@ -59,18 +115,194 @@ public class RunReader implements Iterator<Object> {
 	 */
 	public RunReader(String fileName, int bufferSize, ExternalSort<?> externalSort)
 			throws IOException, ClassNotFoundException {
+		this(fileName, bufferSize, externalSort, false);
+	}
+
+	/**
+	 * Constructs a {@code RunReader}.
+	 * 
+	 * @param fileName
+	 *            the name of the file (i.e., the run)
+	 * @param bufferSize
+	 *            the input buffer size
+	 * @param externalSort
+	 *            the {@code ExternalSort} that uses the {@code RunReader}
+	 * @param mapped
+	 *            a flag indicating whether or not to memory-map the whole run (otherwise, or if the run is larger than 2
+	 *            GB, the run is read using a {@code FileChannel} if {@code ExternalSort#channelIO} is {@code true} and
+	 *            using a {@code FileInputStream} if not)
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 * 
+	 */
+	public RunReader(String fileName, int bufferSize, ExternalSort<?> externalSort, boolean mapped)
+			throws IOException, ClassNotFoundException {
+		this(fileName, bufferSize, externalSort, mapped, 0, length(fileName, externalSort));
+	}
+
+	/**
+	 * Constructs a {@code RunReader} that reads only the blocks stored in the specified byte range of the run.
+	 * 
+	 * @param fileName
+	 *            the name of the file (i.e., the run)
+	 * @param bufferSize
+	 *            the input buffer size
+	 * @param externalSort
+	 *            the {@code ExternalSort} that uses the {@code RunReader}
+	 * @param mapped
+	 *            a flag indicating whether or not to memory-map the run
+	 * @param start
+	 *            the offset of the first block to read
+	 * @param end
+	 *            the offset at which reading stops (the end of a block or the end of the run)
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 * 
+	 */
+	public RunReader(String fileName, int bufferSize, ExternalSort<?> externalSort, boolean mapped, long start,
+			long end) throws IOException, ClassNotFoundException {
 		this.externalSort = externalSort;
+		this.fileName = fileName;
 		this.bufferSize = bufferSize;
 		File file = new File(fileName);
-		runLength = file.length();
+		runLength = end;
+		bytesRead = start;
 		in = new FileInputStream(file);
+		if (start > 0)
+			in.getChannel().position(start);
+		if (mapped && runLength <= Integer.MAX_VALUE)
+			this.mapped = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, runLength);
+		else if (externalSort.channelIO)
+			this.channel = in.getChannel();
+		if (externalSort.compression != null)
+			compressed = new byte[Math.max(externalSort.compression.maxCompressedLength(bufferSize), bufferSize)];
 		
+		if (bytesRead >= runLength) {					// an empty run (or range) has no InputBuffer
+			this.itr = Collections.emptyIterator();
+			close();
+			return;
+		}
+		if (externalSort.prefetchDepth > 0) {			// start loading the initial blocks in the background
+			this.prefetched = new LinkedBlockingQueue<Object>();
+			this.itr = Collections.emptyIterator();
+			for (int i = 0; i < externalSort.prefetchDepth; i++)
+				this.submitPrefetch();
+			return;
+		}
 		this.ib = this.read();							// read the initial InputBuffer
-		this.itr = this.ib.iterator();					// create the Iterator for the current InputBuffer
+		this.itr = this.iterator(this.ib);				// create the Iterator for the current InputBuffer
+	}
+
+	/**
+	 * Returns the length of the data (i.e., the blocks) in the specified run, which excludes the {@code BlockIndex} at
+	 * the end of the run if the {@code ExternalSort} has {@link ExternalSort#blockIndex()} set.
+	 * 
+	 * @param fileName
+	 *            the name of the file (i.e., the run)
+	 * @param externalSort
+	 *            the {@code ExternalSort} that wrote the run
+	 * @return the length of the data in the specified run
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	static long length(String fileName, ExternalSort<?> externalSort) throws IOException {
+		return externalSort.blockIndex ? BlockIndex.dataLength(fileName) : new File(fileName).length();
+	}
+
+	/**
+	 * Returns the offsets of the blocks stored in the specified run. Each uncompressed block occupies as many bytes as
+	 * the buffer size (except the last block of the run), and each compressed block starts with its length (see
+	 * {@code RunWriter#writeBlock(OutputBuffer)}), so only the headers of compressed blocks are read.
+	 * 
+	 * @param fileName
+	 *            the name of the file (i.e., the run)
+	 * @param bufferSize
+	 *            the buffer size with which the run was written
+	 * @param externalSort
+	 *            the {@code ExternalSort} that wrote the run
+	 * @return the offsets of the blocks stored in the specified run
+	 * @throws IOException
+	 *             if an I/O error occurs or a block is corrupt
+	 */
+	static long[] blockOffsets(String fileName, int bufferSize, ExternalSort<?> externalSort) throws IOException {
+		long runLength = length(fileName, externalSort);
+		if (externalSort.compression == null) {
+			long[] offsets = new long[(int) ((runLength + bufferSize - 1) / bufferSize)];
+			for (int i = 0; i < offsets.length; i++)
+				offsets[i] = (long) i * bufferSize;
+			return offsets;
+		}
+		long[] offsets = new long[16];
+		int count = 0;
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			for (long offset = 0; offset < runLength; count++) {
+				if (count == offsets.length)
+					offsets = Arrays.copyOf(offsets, count * 2);
+				offsets[count] = offset;
+				file.seek(offset);
+				int length = file.readInt();
+				if (length < 0)
+					throw new IOException("corrupt block: invalid length " + length);
+				offset += 4 + length;
+			}
+		}
+		return Arrays.copyOf(offsets, count);
+	}
+
+	/**
+	 * Requests that the next block of the run be read and decoded in the background.
+	 */
+	void submitPrefetch() {
+		externalSort.ioExecutor().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				prefetch();
+			}
+
+		});
 	}
 
 	/**
-	 * Constructs an {@code InputBuffer} and fills it using the data from the run.
+	 * Reads and decodes the next block of the run, and then appends the result to {@link #prefetched}. Since this
+	 * method is synchronized, the results are appended in the order of the blocks even if multiple threads prefetch
+	 * blocks from this {@code RunReader} at the same time.
+	 */
+	synchronized void prefetch() {
+		try {
+			if (bytesRead >= runLength) {
+				close();
+				prefetched.add(END);
+			} else
+				prefetched.add(iterator(read()));
+		} catch (Exception e) {
+			prefetched.add(e);
+		}
+	}
+
+	/**
+	 * Returns an {@code Iterator} over the objects stored in the specified {@code InputBuffer}.
+	 * 
+	 * @param b
+	 *            an {@code InputBuffer}
+	 * @return an {@code Iterator} over the objects stored in the specified {@code InputBuffer}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	Iterator<Object> iterator(InputBuffer b) throws IOException, ClassNotFoundException {
+		boolean prefixed = externalSort.keyPrefix != null;
+		return externalSort.codec == null ? b.iterator(prefixed) : b.iterator(externalSort.codec, prefixed);
+	}
+
+	/**
+	 * Obtains an {@code InputBuffer} from the {@code BufferPool} of the {@code ExternalSort} (or a view of the
+	 * memory-mapped run) and fills it using the data from the run.
 	 * 
 	 * @return the filled {@code InputBuffer}
 	 * @throws IOException
@@ -79,32 +311,186 @@ public class RunReader implements Iterator<Object> {
 	 *             if the class of a serialized object cannot be found
 	 */
 	InputBuffer read() throws IOException, ClassNotFoundException {
-		InputBuffer b = new InputBuffer(bufferSize);
-		bytesRead += in.read(b.toByteArray());
-		externalSort.increaseBufferReadCount();
+		if (compressed != null)
+			return readCompressed();
+		long start = bytesRead;
+		long startTime = System.nanoTime();
+		BlockReadEvent event = new BlockReadEvent();
+		event.begin();
+		InputBuffer b;
+		if (mapped != null) { // a view of the next block in the memory-mapped run
+			ByteBuffer view = mapped.duplicate();
+			view.position((int) bytesRead);
+			view.limit((int) Math.min(bytesRead + bufferSize, runLength));
+			b = new InputBuffer(view.slice());
+			bytesRead += view.remaining();
+		} else if (channel != null) {
+			b = externalSort.bufferPool.acquireInputBuffer(bufferSize);
+			ByteBuffer direct = b.byteBuffer;
+			direct.clear();
+			while (direct.hasRemaining() && channel.read(direct) > 0)
+				;
+			direct.flip();
+			bytesRead += direct.remaining();
+		} else {
+			b = externalSort.bufferPool.acquireInputBuffer(bufferSize);
+			byte[] buffer = b.toByteArray();
+			int n = in.read(buffer);
+			if (n > 0)
+				bytesRead += n;
+			Arrays.fill(buffer, Math.max(n, 0), buffer.length, (byte) 0); // clear what remains from the previous use
+		}
+		externalSort.blockRead(event, fileName, bytesRead - start, startTime);
+		return b;
+	}
+
+	/**
+	 * Reads the next compressed block from the run (see {@code RunWriter#writeBlock(OutputBuffer)}) and decompresses
+	 * it into an {@code InputBuffer} obtained from the {@code BufferPool} of the {@code ExternalSort}.
+	 * 
+	 * @return the filled {@code InputBuffer}
+	 * @throws IOException
+	 *             if an I/O error occurs or the block is corrupt
+	 */
+	InputBuffer readCompressed() throws IOException {
+		long start = bytesRead;
+		long startTime = System.nanoTime();
+		BlockReadEvent event = new BlockReadEvent();
+		event.begin();
+		readFully(compressed, 4);
+		int length = (compressed[0] & 0xff) << 24 | (compressed[1] & 0xff) << 16 | (compressed[2] & 0xff) << 8
+				| (compressed[3] & 0xff);
+		if (length < 0 || length > compressed.length)
+			throw new IOException("corrupt block: invalid length " + length);
+		readFully(compressed, length);
+		externalSort.blockRead(event, fileName, bytesRead - start, startTime);
+		InputBuffer b = externalSort.bufferPool.acquireInputBuffer(bufferSize);
+		if (b.byteBuffer != null && decompressed == null)
+			decompressed = new byte[bufferSize];
+		byte[] buffer = b.byteBuffer == null ? b.toByteArray() : decompressed;
+		if (length == bufferSize) // the block is stored as it is
+			System.arraycopy(compressed, 0, buffer, 0, length);
+		else
+			externalSort.compression.decompress(compressed, length, buffer, bufferSize);
+		if (b.byteBuffer != null) {
+			b.byteBuffer.clear();
+			b.byteBuffer.put(buffer);
+			b.byteBuffer.flip();
+		}
 		return b;
 	}
 
+	/**
+	 * Reads the specified number of bytes from the run into the beginning of the specified array.
+	 * 
+	 * @param data
+	 *            a byte array
+	 * @param length
+	 *            the number of bytes to read
+	 * @throws IOException
+	 *             if an I/O error occurs or the run ends before the specified number of bytes are read
+	 */
+	void readFully(byte[] data, int length) throws IOException {
+		if (mapped != null) {
+			if (bytesRead + length > runLength)
+				throw new IOException("unexpected end of run");
+			ByteBuffer view = mapped.duplicate();
+			view.position((int) bytesRead);
+			view.get(data, 0, length);
+		} else if (channel != null) {
+			ByteBuffer wrapped = ByteBuffer.wrap(data, 0, length);
+			while (wrapped.hasRemaining())
+				if (channel.read(wrapped) < 0)
+					throw new IOException("unexpected end of run");
+		} else {
+			for (int n = 0; n < length;) {
+				int r = in.read(data, n, length - n);
+				if (r < 0)
+					throw new IOException("unexpected end of run");
+				n += r;
+			}
+		}
+		bytesRead += length;
+	}
+
 	/**
 	 * Determines whether or not this {@code RunReader} has more objects to iterate over (i.e., {@link #next} would
 	 * return an object rather than throwing an exception).
 	 *
 	 * @return {@code true} if this {@code RunReader} has more objects to iterate over; {@code false} otherwise
+	 * @throws UncheckedIOException
+	 *             if an I/O error occurs or a block is corrupt
 	 */
 	@Override
 	public boolean hasNext() {
 		// TODO complete this method (10 points)
-		if(!(this.itr.hasNext())) {
+		if(this.prefetched != null)
+			return this.hasNextPrefetched();
+		while(!(this.itr.hasNext()) && this.bytesRead < this.runLength) {
 			try {
 				this.ib = this.read();
-				this.itr = this.ib.iterator();
-			} catch (Exception e) {
-				System.out.println("Catch Block for RunReader#read()");
+				this.itr = this.iterator(this.ib);
+			} catch (IOException e) { // a damaged run must not be mistaken for a shorter one
+				close();
+				throw new UncheckedIOException(e);
+			} catch (ClassNotFoundException e) {
+				close();
+				throw new UncheckedIOException(new IOException(e));
 			}
 		}
+		if (this.bytesRead >= this.runLength)
+			this.close();
 		return this.itr.hasNext();
 	}
 
+	/**
+	 * Closes the run once all of its data has been read (so that the file can be deleted and its descriptor is not
+	 * held until this {@code RunReader} is garbage collected).
+	 */
+	void close() {
+		if (in == null)
+			return;
+		try {
+			in.close();
+		} catch (IOException e) {
+		}
+		in = null;
+		channel = null;
+	}
+
+	/**
+	 * Determines whether or not this {@code RunReader} has more objects to iterate over while consuming the blocks
+	 * prefetched in the background. Whenever a prefetched block is consumed, the next block is requested so that
+	 * {@code ExternalSort#prefetchDepth} blocks are loaded ahead of the current block.
+	 *
+	 * @return {@code true} if this {@code RunReader} has more objects to iterate over; {@code false} otherwise
+	 * @throws UncheckedIOException
+	 *             if an I/O error occurs while prefetching
+	 */
+	@SuppressWarnings("unchecked")
+	boolean hasNextPrefetched() {
+		while (!itr.hasNext() && !finished) {
+			Object o;
+			try {
+				o = prefetched.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new UncheckedIOException(new InterruptedIOException());
+			}
+			if (o instanceof Iterator) {
+				itr = (Iterator<Object>) o;
+				submitPrefetch();
+			} else {
+				finished = true;
+				if (o instanceof IOException)
+					throw new UncheckedIOException((IOException) o);
+				if (o instanceof Exception)
+					throw new UncheckedIOException(new IOException((Exception) o));
+			}
+		}
+		return itr.hasNext();
+	}
+
 	/**
 	 * Returns the next object in the iteration.
 	 *
@@ -121,4 +507,15 @@ public class RunReader implements Iterator<Object> {
 			throw new NoSuchElementException();
 	}
 
+	/**
+	 * Returns the key prefix of the object most recently returned by {@link #next()} (meaningful only if the
+	 * {@code ExternalSort} has a {@code KeyPrefix}).
+	 *
+	 * @return the key prefix of the object most recently returned by {@link #next()}
+	 */
+	@Override
+	public long prefix() {
+		return ((PrefixedIterator<Object>) itr).prefix();
+	}
+
 }
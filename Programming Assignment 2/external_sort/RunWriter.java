@@ -1,27 +1,125 @@
 package external_sort;
 
+import java.io.DataOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 import external_sort.OutputBuffer.BufferOverflowException;
 
 /**
- * A {@code RunWriter} writes objects on a run using an {@code OutputBuffer}.
+ * A {@code RunWriter} writes objects on a run using an {@code OutputBuffer}. If the {@code ExternalSort} has
+ * {@link ExternalSort#blockIndex()} set, the run ends with the {@code BlockIndex} of its blocks.
  * 
  * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
  *
  * @param <T>
  *            the type of the objects
  */
-public class RunWriter<T extends Comparable<? super T>> {
+public class RunWriter<T> {
+
+	/**
+	 * A marker indicating that no more {@code OutputBuffer}s will be written behind.
+	 */
+	static final OutputBuffer END = new OutputBuffer(0);
+
+	/**
+	 * A marker indicating that the run will not be completed because the thread filling {@code OutputBuffer}s has
+	 * failed.
+	 */
+	static final OutputBuffer ABORT = new OutputBuffer(0);
+
+	/**
+	 * The {@code ExternalSort} using this {@code RunWriter}.
+	 */
+	ExternalSort<T> externalSort;
+
+	/**
+	 * The name of the run (i.e., the file name).
+	 */
+	String fileName;
 
 	/**
 	 * The last object obtained from the input {@code Iterator}.
 	 */
 	T last = null;
 
+	/**
+	 * The key prefix of {@link #last} (used only if the {@code ExternalSort} has a {@code KeyPrefix}).
+	 */
+	long lastPrefix;
+
+	/**
+	 * The {@code FileOutputStream} for writing data to the run ({@code null} if {@link #channel} is used).
+	 */
+	FileOutputStream out = null;
+
+	/**
+	 * The {@code FileChannel} for writing data to the run from {@link #direct} ({@code null} if {@link #out} is used).
+	 */
+	FileChannel channel = null;
+
+	/**
+	 * The direct {@code ByteBuffer} (obtained from the {@code BufferPool} of the {@code ExternalSort}) that is reused
+	 * for every compressed block and the {@code BlockIndex} written through {@link #channel} (an uncompressed block is
+	 * encoded directly into a direct {@code ByteBuffer} and written from there).
+	 */
+	ByteBuffer direct = null;
+
+	/**
+	 * The array into which each block is compressed ({@code null} if the {@code ExternalSort} has no
+	 * {@code BlockCompression}).
+	 */
+	byte[] compressed = null;
+
+	/**
+	 * The number of objects written to the run.
+	 */
+	long count = 0;
+
+	/**
+	 * The CRC32 checksum of the data written to the run.
+	 */
+	CRC32 checksum = new CRC32();
+
+	/**
+	 * The number of bytes written to the run.
+	 */
+	long length = 0;
+
+	/**
+	 * The offsets of the blocks written to the run ({@code null} if the run has no {@code BlockIndex}).
+	 */
+	ArrayList<Long> blockOffsets = null;
+
+	/**
+	 * The numbers of objects in the blocks ({@code null} if the run has no {@code BlockIndex}).
+	 */
+	ArrayList<Integer> blockCounts = null;
+
+	/**
+	 * The first objects of the blocks ({@code null} if the run has no {@code BlockIndex}).
+	 */
+	ArrayList<T> firstKeys = null;
+
+	/**
+	 * The last objects of the blocks ({@code null} if the run has no {@code BlockIndex}).
+	 */
+	ArrayList<T> lastKeys = null;
+
 	/**
 	 * Constructs a {@code RunWriter}.
 	 * 
@@ -39,45 +137,426 @@ public class RunWriter<T extends Comparable<? super T>> {
 	public RunWriter(Iterator<T> iterator, String fileName, int bufferSize, ExternalSort<T> externalSort)
 			throws IOException {
 		// TODO complete this constructor (20 points)
-		FileOutputStream out = new FileOutputStream(fileName);
-		while(iterator.hasNext()) {
-			out.write(write(iterator, bufferSize));
-			externalSort.increaseBufferWriteCount();
+		this.externalSort = externalSort;
+		this.fileName = fileName;
+		if (externalSort.channelIO) {
+			channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			direct = externalSort.bufferPool.acquireDirectBuffer();
+		} else
+			out = new FileOutputStream(fileName);
+		if (externalSort.compression != null)
+			compressed = new byte[Math.max(externalSort.compression.maxCompressedLength(bufferSize), bufferSize) + 4];
+		if (externalSort.blockIndex) {
+			blockOffsets = new ArrayList<Long>();
+			blockCounts = new ArrayList<Integer>();
+			firstKeys = new ArrayList<T>();
+			lastKeys = new ArrayList<T>();
+		}
+		if (externalSort.writeBehindDepth > 0) {
+			writeBehind(iterator, bufferSize, externalSort);
+			return;
+		}
+		try {
+			while(last != null || iterator.hasNext()) {
+				writeBlock(write(iterator, bufferSize, externalSort));
+				externalSort.increaseBufferWriteCount();
+			}
+			writeIndex();
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Writes the block in the specified {@code OutputBuffer} to the run and then returns the {@code OutputBuffer} to
+	 * the {@code BufferPool} of the {@code ExternalSort}. If the {@code ExternalSort} has a {@code BlockCompression},
+	 * the block is written as its length after compression (4 bytes) followed by the compressed block; a block that
+	 * does not become smaller through compression is written as it is after the buffer size as its length.
+	 * 
+	 * @param b
+	 *            an {@code OutputBuffer} containing a block
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void writeBlock(OutputBuffer b) throws IOException {
+		if (blockOffsets != null)
+			blockOffsets.add(length);
+		if (b.byteBuffer != null) { // the block was encoded directly into a direct ByteBuffer
+			write(b.byteBuffer);
+			externalSort.bufferPool.release(b);
+			return;
 		}
-		out.close();
+		byte[] block = b.toByteArray();
+		if (compressed == null)
+			write(block, block.length);
+		else {
+			int length = externalSort.compression.compress(block, block.length, compressed);
+			if (length >= block.length) { // stores the block as it is
+				length = block.length;
+				System.arraycopy(block, 0, compressed, 4, length);
+			} else
+				System.arraycopy(compressed, 0, compressed, 4, length);
+			compressed[0] = (byte) (length >>> 24);
+			compressed[1] = (byte) (length >>> 16);
+			compressed[2] = (byte) (length >>> 8);
+			compressed[3] = (byte) length;
+			write(compressed, length + 4);
+		}
+		externalSort.bufferPool.release(b);
 	}
 
 	/**
-	 * Constructs an {@code OutputBuffer} and writes objects from the specified {@code Iterator} to that
-	 * {@code OutputBuffer} until the {@code OutputBuffer} runs out of space.
+	 * Writes the specified number of bytes from the beginning of the specified array to the run.
+	 * 
+	 * @param data
+	 *            a byte array
+	 * @param length
+	 *            the number of bytes to write
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void write(byte[] data, int length) throws IOException {
+		externalSort.spill(length);
+		long startTime = System.nanoTime();
+		BlockWriteEvent event = new BlockWriteEvent();
+		event.begin();
+		if (channel == null)
+			out.write(data, 0, length);
+		else {
+			for (int offset = 0; offset < length; offset += direct.capacity()) {
+				direct.clear();
+				direct.put(data, offset, Math.min(direct.capacity(), length - offset));
+				direct.flip();
+				while (direct.hasRemaining())
+					channel.write(direct);
+			}
+		}
+		externalSort.blockWritten(event, fileName, length, startTime);
+		checksum.update(data, 0, length);
+		this.length += length;
+	}
+
+	/**
+	 * Writes the whole content of the specified {@code ByteBuffer} (regardless of its position and limit) to the run
+	 * through the {@code FileChannel}.
+	 * 
+	 * @param data
+	 *            a {@code ByteBuffer}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void write(ByteBuffer data) throws IOException {
+		int length = data.capacity();
+		externalSort.spill(length);
+		long startTime = System.nanoTime();
+		BlockWriteEvent event = new BlockWriteEvent();
+		event.begin();
+		data.clear();
+		while (data.hasRemaining())
+			channel.write(data);
+		externalSort.blockWritten(event, fileName, length, startTime);
+		data.flip();
+		checksum.update(data);
+		this.length += length;
+	}
+
+	/**
+	 * Writes the {@code BlockIndex} of the run, followed by its offset (8 bytes), at the end of the run if the
+	 * {@code ExternalSort} has {@link ExternalSort#blockIndex()} set.
+	 * 
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void writeIndex() throws IOException {
+		if (blockOffsets == null)
+			return;
+		byte[] footer = BlockIndex.footer(blockOffsets, blockCounts, firstKeys, lastKeys, length, externalSort.codec);
+		write(footer, footer.length);
+	}
+
+	/**
+	 * Records the number of objects and the first and last objects of a block in the {@code BlockIndex} of the run.
+	 * 
+	 * @param count
+	 *            the number of objects in the block
+	 * @param first
+	 *            the first object in the block
+	 * @param last
+	 *            the last object in the block
+	 */
+	void indexBlock(int count, T first, T last) {
+		if (blockCounts == null)
+			return;
+		blockCounts.add(count);
+		firstKeys.add(first);
+		lastKeys.add(last);
+	}
+
+	/**
+	 * Closes the run.
+	 * 
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void close() throws IOException {
+		if (channel == null) {
+			if (externalSort.manifest != null) // the run must be durable before it is recorded in the manifest
+				out.getFD().sync();
+			out.close();
+		} else {
+			if (externalSort.manifest != null)
+				channel.force(true);
+			channel.close();
+			externalSort.bufferPool.release(direct);
+		}
+	}
+
+	/**
+	 * Writes objects from the specified {@code Iterator} to the run while a dedicated thread writes each filled
+	 * {@code OutputBuffer} to the file so that the next {@code OutputBuffer} can be filled in
+	 * the meantime. If {@code ExternalSort#writeBehindDepth} filled {@code OutputBuffer}s are waiting to be written,
+	 * filling stops until one of them is written.
+	 * 
+	 * @param iterator
+	 *            the input {@code Iterator}
+	 * @param bufferSize
+	 *            the output buffer size
+	 * @param externalSort
+	 *            the {@code ExternalSort} using this {@code RunWriter}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void writeBehind(Iterator<T> iterator, int bufferSize, ExternalSort<T> externalSort) throws IOException {
+		ArrayBlockingQueue<OutputBuffer> filled = new ArrayBlockingQueue<OutputBuffer>(externalSort.writeBehindDepth);
+		Future<Void> writer = externalSort.ioExecutor().submit(new Callable<Void>() {
+
+			@Override
+			public Void call() throws IOException, InterruptedException {
+				try {
+					for (OutputBuffer b = filled.take(); b != END; b = filled.take()) {
+						if (b == ABORT)
+							return null;
+						writeBlock(b);
+						externalSort.increaseBufferWriteCount();
+					}
+					writeIndex();
+				} finally {
+					close();
+				}
+				return null;
+			}
+
+		});
+		boolean handedOver = false;
+		try {
+			while (last != null || iterator.hasNext())
+				put(filled, write(iterator, bufferSize, externalSort), writer);
+			put(filled, END, writer);
+			handedOver = true;
+			writer.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		} finally {
+			if (!handedOver)
+				abort(filled, writer);
+		}
+	}
+
+	/**
+	 * Makes the writer stop after writing the {@code OutputBuffer}s already in the specified queue and waits until it
+	 * has closed the run so that the run file is no longer written once the current thread has failed. If the current
+	 * thread is interrupted, the writer is cancelled instead.
+	 * 
+	 * @param filled
+	 *            a queue of filled {@code OutputBuffer}s
+	 * @param writer
+	 *            the {@code Future} of the writer
+	 */
+	static void abort(ArrayBlockingQueue<OutputBuffer> filled, Future<Void> writer) {
+		try {
+			put(filled, ABORT, writer);
+			writer.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			writer.cancel(true);
+		} catch (ExecutionException e) { // the writer has already failed and closed the run
+		}
+	}
+
+	/**
+	 * Inserts the specified {@code OutputBuffer} into the specified queue, waiting if necessary for space to become
+	 * available unless the writer has terminated.
+	 * 
+	 * @param filled
+	 *            a queue of filled {@code OutputBuffer}s
+	 * @param b
+	 *            an {@code OutputBuffer}
+	 * @param writer
+	 *            the {@code Future} of the writer
+	 * @throws InterruptedException
+	 *             if the current thread is interrupted
+	 * @throws ExecutionException
+	 *             if the writer has failed
+	 */
+	static void put(ArrayBlockingQueue<OutputBuffer> filled, OutputBuffer b, Future<Void> writer)
+			throws InterruptedException, ExecutionException {
+		while (!filled.offer(b, 100, TimeUnit.MILLISECONDS))
+			if (writer.isDone()) {
+				writer.get(); // throws the exception that terminated the writer
+				throw new ExecutionException(new IOException("the writer terminated"));
+			}
+	}
+
+	/**
+	 * Obtains an {@code OutputBuffer} and writes objects from the specified {@code Iterator} to that
+	 * {@code OutputBuffer} using the {@code RunCodec} of the specified {@code ExternalSort} (or Java serialization if it
+	 * has none) until the {@code OutputBuffer} runs out of space.
 	 * 
 	 * @param iterator
 	 *            an {@code Iterator}
 	 * @param bufferSize
 	 *            the size of the {@code OutputBuffer}
-	 * @return the byte array containing the data that has been written to the {@code OutputBuffer}
+	 * @param externalSort
+	 *            the {@code ExternalSort} using this {@code RunWriter}
+	 * @return the {@code OutputBuffer} containing the data that has been written
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	OutputBuffer write(Iterator<T> iterator, int bufferSize, ExternalSort<T> externalSort) throws IOException {
+		return externalSort.codec == null ? write(iterator, bufferSize)
+				: write(iterator, bufferSize, externalSort.codec);
+	}
+
+	/**
+	 * Obtains an {@code OutputBuffer} from the {@code BufferPool} of the {@code ExternalSort} and writes objects from
+	 * the specified {@code Iterator} to that {@code OutputBuffer} until the {@code OutputBuffer} runs out of space.
+	 * 
+	 * @param iterator
+	 *            an {@code Iterator}
+	 * @param bufferSize
+	 *            the size of the {@code OutputBuffer}
+	 * @return the {@code OutputBuffer} containing the data that has been written
 	 * @throws IOException
 	 *             if an I/O error occurs
 	 */
-	byte[] write(Iterator<T> iterator, int bufferSize) throws IOException {
-		OutputBuffer b = new OutputBuffer(bufferSize);
+	OutputBuffer write(Iterator<T> iterator, int bufferSize) throws IOException {
+		OutputBuffer b = externalSort.bufferPool.acquireOutputBuffer(bufferSize);
 		ObjectOutputStream out = new ObjectOutputStream(b);
+		int count = 0;
+		int mark = b.count; // the end of the last object written completely
+		T first = null, written = null;
 		try {
-			if (last != null)
-				out.writeObject(last);
-			while (iterator.hasNext()) {
-				last = iterator.next();
+			while (last != null || iterator.hasNext()) {
+				if (last == null)
+					take(iterator);
+				if (externalSort.keyPrefix != null)
+					out.writeLong(lastPrefix);
 				out.writeObject(last);
+				if (count++ == 0)
+					first = last;
+				written = last;
+				last = null;
+				this.count++;
+				mark = b.count; // writeObject drains the object to the OutputBuffer before returning
 			}
 		} catch (BufferOverflowException e) {
-			return b.toByteArray();
 		} finally {
 			try {
 				out.close();
 			} catch (Exception e) {
 			}
 		}
-		return b.toByteArray();
+		if (count == 0 && last != null) // the object would never fit in any block
+			tooLarge(b, bufferSize);
+		indexBlock(count, first, written);
+		b.count = mark; // discards the partially written object so that the block ends with zero padding
+		b.clearRemaining(); // clear what remains from the previous use
+		return b;
+	}
+
+	/**
+	 * Obtains an {@code OutputBuffer} from the {@code BufferPool} of the {@code ExternalSort} and writes objects from
+	 * the specified {@code Iterator} to that {@code OutputBuffer} using the specified {@code RunCodec} until the
+	 * {@code OutputBuffer} runs out of space. The {@code OutputBuffer} starts with the number of objects written to
+	 * it, and an object that does not fit in the {@code OutputBuffer} is written to the next {@code OutputBuffer}.
+	 * 
+	 * @param iterator
+	 *            an {@code Iterator}
+	 * @param bufferSize
+	 *            the size of the {@code OutputBuffer}
+	 * @param codec
+	 *            a {@code RunCodec}
+	 * @return the {@code OutputBuffer} containing the data that has been written
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	OutputBuffer write(Iterator<T> iterator, int bufferSize, RunCodec<T> codec) throws IOException {
+		OutputBuffer b = externalSort.bufferPool.acquireOutputBuffer(bufferSize);
+		DataOutputStream out = new DataOutputStream(b);
+		out.writeInt(0); // reserve space for the number of objects
+		int count = 0;
+		T first = null, written = null;
+		while (last != null || iterator.hasNext()) {
+			if (last == null)
+				take(iterator);
+			int mark = b.count;
+			try {
+				if (externalSort.keyPrefix != null)
+					out.writeLong(lastPrefix);
+				codec.write(last, out);
+			} catch (BufferOverflowException e) {
+				b.count = mark; // discard the partially written object
+				if (count == 0) // the object would never fit in any block
+					tooLarge(b, bufferSize);
+				break;
+			}
+			if (count == 0)
+				first = last;
+			written = last;
+			last = null;
+			count++;
+			this.count++;
+		}
+		indexBlock(count, first, written);
+		b.putInt(0, count);
+		return b;
+	}
+
+	/**
+	 * Returns the specified {@code OutputBuffer} to the {@code BufferPool} of the {@code ExternalSort} and reports that
+	 * an object does not fit in an empty block (otherwise, empty blocks would be written forever).
+	 * 
+	 * @param b
+	 *            the empty {@code OutputBuffer} in which the object did not fit
+	 * @param bufferSize
+	 *            the size of the {@code OutputBuffer}
+	 * @throws IOException
+	 *             always
+	 */
+	void tooLarge(OutputBuffer b, int bufferSize) throws IOException {
+		externalSort.bufferPool.release(b);
+		throw new IOException("element larger than bufferSize (" + bufferSize + " bytes)");
+	}
+
+	/**
+	 * Obtains the next object from the specified {@code Iterator} as {@link #last}. If the {@code ExternalSort} has a
+	 * {@code KeyPrefix}, the key prefix of the object is also stored in {@link #lastPrefix} (it is taken from the
+	 * {@code Iterator} if the {@code Iterator} is a {@code PrefixedIterator} and computed otherwise).
+	 * 
+	 * @param iterator
+	 *            an {@code Iterator}
+	 */
+	void take(Iterator<T> iterator) {
+		last = iterator.next();
+		if (externalSort.keyPrefix != null)
+			lastPrefix = iterator instanceof PrefixedIterator ? ((PrefixedIterator<T>) iterator).prefix()
+					: externalSort.keyPrefix.prefix(last);
 	}
 
 }
@@ -0,0 +1,196 @@
+package external_sort;
+
+/**
+ * A {@code SortConfiguration} chooses the parameters of an {@code ExternalSort} (i.e., the number of bytes of elements
+ * in each initial run, the degree, and the buffer size) for a given memory budget. Among the buffer sizes that are
+ * powers of 2, a {@code SortConfiguration} chooses the one that minimizes the predicted I/O time on a
+ * {@code DeviceProfile} while the input buffers of a merge and its output buffer fit in the memory budget (i.e.,
+ * {@code (degree + 1) * bufferSize <= memoryBudget}) and each initial run leaves room for one output buffer. Larger
+ * buffers make each block cheaper to read and write, but reduce the degree and thus may require more merge passes.
+ * The degree never exceeds {@link #MAX_DEGREE}, however large the memory budget is.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public class SortConfiguration {
+
+	/**
+	 * The smallest buffer size considered.
+	 */
+	public static final int MIN_BUFFER_SIZE = 1024;
+
+	/**
+	 * The largest buffer size considered.
+	 */
+	public static final int MAX_BUFFER_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * The largest degree chosen. Merging more runs at once saves few merge passes while each additional run needs
+	 * its own input buffer.
+	 */
+	public static final int MAX_DEGREE = 1024;
+
+	/**
+	 * The ratio of the assumed input size to the memory budget when the input size is unknown.
+	 */
+	public static final int DEFAULT_INPUT_SIZE_RATIO = 100;
+
+	/**
+	 * The memory budget (in bytes).
+	 */
+	long memoryBudget;
+
+	/**
+	 * The (estimated) input size (in bytes).
+	 */
+	long inputSize;
+
+	/**
+	 * The {@code DeviceProfile} of the device storing the runs.
+	 */
+	DeviceProfile device;
+
+	/**
+	 * The number of runs that are merged together to form a new run.
+	 */
+	int degree;
+
+	/**
+	 * The buffer size.
+	 */
+	int bufferSize;
+
+	/**
+	 * The number of bytes of elements that each initial run can contain.
+	 */
+	long runBytes;
+
+	/**
+	 * The predicted I/O time (in seconds).
+	 */
+	double predictedTime = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Constructs a {@code SortConfiguration} for an input of unknown size on an {@linkplain DeviceProfile#SSD SSD}.
+	 *
+	 * @param memoryBudget
+	 *            the memory budget (in bytes)
+	 * @throws IllegalArgumentException
+	 *             if the memory budget cannot hold 3 buffers of the smallest size
+	 */
+	public SortConfiguration(long memoryBudget) {
+		this(memoryBudget, 0, DeviceProfile.SSD);
+	}
+
+	/**
+	 * Constructs a {@code SortConfiguration}.
+	 *
+	 * @param memoryBudget
+	 *            the memory budget (in bytes)
+	 * @param inputSize
+	 *            the estimated input size in bytes (0 if unknown, in which case the input is assumed to be
+	 *            {@link #DEFAULT_INPUT_SIZE_RATIO} times larger than the memory budget)
+	 * @param device
+	 *            the {@code DeviceProfile} of the device storing the runs
+	 * @throws IllegalArgumentException
+	 *             if the memory budget cannot hold 3 buffers of the smallest size
+	 */
+	public SortConfiguration(long memoryBudget, long inputSize, DeviceProfile device) {
+		if (memoryBudget < 3L * MIN_BUFFER_SIZE)
+			throw new IllegalArgumentException("memory budget: " + memoryBudget);
+		this.memoryBudget = memoryBudget;
+		this.inputSize = inputSize > 0 ? inputSize : DEFAULT_INPUT_SIZE_RATIO * memoryBudget;
+		this.device = device;
+		for (int b = MIN_BUFFER_SIZE; b <= MAX_BUFFER_SIZE && 3L * b <= memoryBudget; b *= 2) {
+			int d = (int) Math.min(MAX_DEGREE, memoryBudget / b - 1);
+			long r = memoryBudget - b;
+			double time = predictedTime(this.inputSize, r, d, b, device);
+			if (time <= predictedTime) { // ties are broken in favor of larger buffers
+				predictedTime = time;
+				degree = d;
+				bufferSize = b;
+				runBytes = r;
+			}
+		}
+	}
+
+	/**
+	 * Predicts the I/O time of sorting.
+	 *
+	 * @param inputSize
+	 *            the input size (in bytes)
+	 * @param runBytes
+	 *            the number of bytes in each initial run
+	 * @param degree
+	 *            the degree
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param device
+	 *            the {@code DeviceProfile} of the device storing the runs
+	 * @return the predicted I/O time (in seconds)
+	 */
+	static double predictedTime(long inputSize, long runBytes, int degree, int bufferSize, DeviceProfile device) {
+		long runs = (inputSize + runBytes - 1) / runBytes;
+		int levels = 1; // the initial pass plus the final merge count as one level (written once and read once)
+		for (long r = degree; r < runs; r *= degree)
+			levels++;
+		return device.transferTime(2.0 * levels * inputSize, bufferSize);
+	}
+
+	/**
+	 * Returns the memory budget (in bytes).
+	 *
+	 * @return the memory budget (in bytes)
+	 */
+	public long memoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Returns the number of runs that are merged together to form a new run.
+	 *
+	 * @return the number of runs that are merged together to form a new run
+	 */
+	public int degree() {
+		return degree;
+	}
+
+	/**
+	 * Returns the buffer size.
+	 *
+	 * @return the buffer size
+	 */
+	public int bufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Returns the number of bytes of elements that each initial run can contain.
+	 *
+	 * @return the number of bytes of elements that each initial run can contain
+	 */
+	public long runBytes() {
+		return runBytes;
+	}
+
+	/**
+	 * Returns the predicted I/O time (in seconds).
+	 *
+	 * @return the predicted I/O time (in seconds)
+	 */
+	public double predictedTime() {
+		return predictedTime;
+	}
+
+	/**
+	 * Returns a string representation of this {@code SortConfiguration}.
+	 *
+	 * @return a string representation of this {@code SortConfiguration}
+	 */
+	@Override
+	public String toString() {
+		return "memory budget: " + memoryBudget + ", input size: " + inputSize + ", device: " + device + ", degree: "
+				+ degree + ", bufferSize: " + bufferSize + ", run bytes: " + runBytes
+				+ String.format(", predicted I/O time: %.3f seconds", predictedTime);
+	}
+
+}
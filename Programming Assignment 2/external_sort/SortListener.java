@@ -0,0 +1,35 @@
+package external_sort;
+
+/**
+ * A {@code SortListener} is notified of the progress of an {@code ExternalSort} (see
+ * {@link ExternalSort#listener()}). Its methods may be called by the threads that construct runs in parallel (see
+ * {@link ExternalSort#parallelism()}) and thus need to be thread-safe.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public interface SortListener {
+
+	/**
+	 * Is called when a run is constructed.
+	 *
+	 * @param pass
+	 *            the number of the pass constructing the run (0 for the initial pass)
+	 * @param runName
+	 *            the name of the run (i.e., the file name)
+	 * @param elements
+	 *            the number of elements in the run
+	 * @param bytes
+	 *            the number of bytes that the run occupies
+	 */
+	void runCreated(int pass, String runName, long elements, long bytes);
+
+	/**
+	 * Is called when a pass completes. The final merge pass completes when the output iterator has returned all of the
+	 * elements.
+	 *
+	 * @param metrics
+	 *            the {@code PassMetrics} of the pass
+	 */
+	void passCompleted(PassMetrics metrics);
+
+}
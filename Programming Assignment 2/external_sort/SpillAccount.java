@@ -0,0 +1,73 @@
+package external_sort;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code SpillAccount} keeps track of the number of bytes that the runs of an external sort (i.e., an
+ * {@code ExternalSort} or a {@code PrimitiveExternalSort}) occupy and makes writing a run fail once the runs would
+ * occupy more than a limit. A {@code SpillAccount} can be used by multiple threads at the same time.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+class SpillAccount {
+
+	/**
+	 * The maximum number of bytes that the runs may occupy at any time.
+	 */
+	long maxSpillBytes;
+
+	/**
+	 * The number of bytes that the runs currently occupy.
+	 */
+	AtomicLong spillBytes = new AtomicLong();
+
+	/**
+	 * The largest number of bytes that the runs have occupied at any time.
+	 */
+	AtomicLong peakSpillBytes = new AtomicLong();
+
+	/**
+	 * Constructs a {@code SpillAccount}.
+	 *
+	 * @param maxSpillBytes
+	 *            the maximum number of bytes that the runs may occupy at any time
+	 */
+	SpillAccount(long maxSpillBytes) {
+		this.maxSpillBytes = maxSpillBytes;
+	}
+
+	/**
+	 * Accounts for the specified number of bytes newly written to runs.
+	 *
+	 * @param bytes
+	 *            the number of bytes newly written to runs
+	 * @throws IOException
+	 *             if the runs would occupy more than {@link #maxSpillBytes} bytes
+	 */
+	void spill(long bytes) throws IOException {
+		long total = spillBytes.addAndGet(bytes);
+		if (total > maxSpillBytes) {
+			spillBytes.addAndGet(-bytes);
+			throw new IOException("spill limit exceeded: " + total + " bytes needed, " + maxSpillBytes + " allowed");
+		}
+		for (long peak = peakSpillBytes.get(); total > peak; peak = peakSpillBytes.get())
+			if (peakSpillBytes.compareAndSet(peak, total))
+				break;
+	}
+
+	/**
+	 * Deletes the specified run and accounts for the bytes that it no longer occupies.
+	 *
+	 * @param runName
+	 *            the name of a run
+	 */
+	void deleteRun(String runName) {
+		File file = new File(runName);
+		long length = file.length();
+		if (file.delete())
+			spillBytes.addAndGet(-length);
+	}
+
+}
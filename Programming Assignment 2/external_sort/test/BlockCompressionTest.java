@@ -0,0 +1,222 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import external_sort.BlockCompression;
+import external_sort.ExternalSort;
+import external_sort.RunCodec;
+import external_sort.RunReader;
+import external_sort.RunWriter;
+
+/**
+ * This program tests the {@link BlockCompression} interface.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class BlockCompressionTest {
+
+	/**
+	 * Tests whether or not each {@code BlockCompression} restores random, zero, and repetitive blocks.
+	 *
+	 * @throws IOException
+	 *             if a compressed block is corrupt
+	 */
+	@Test
+	public void roundTrip() throws IOException {
+		Random random = new Random(0);
+		byte[] randomBlock = new byte[4096];
+		random.nextBytes(randomBlock);
+		byte[] zeroBlock = new byte[4096];
+		byte[] repetitiveBlock = new byte[4096];
+		for (int i = 0; i < repetitiveBlock.length; i++)
+			repetitiveBlock[i] = (byte) (i % 7 == 0 ? random.nextInt() : i % 13);
+		for (BlockCompression c : new BlockCompression[] { BlockCompression.FAST, BlockCompression.DEFLATE }) {
+			for (byte[] block : new byte[][] { randomBlock, zeroBlock, repetitiveBlock, new byte[0], new byte[3] }) {
+				byte[] compressed = new byte[c.maxCompressedLength(block.length)];
+				int length = c.compress(block, block.length, compressed);
+				byte[] restored = new byte[block.length];
+				if (length < block.length)
+					c.decompress(compressed, length, restored, block.length);
+				else
+					restored = Arrays.copyOf(block, block.length); // stored as it is
+				assertArrayEquals(block, restored);
+			}
+			byte[] compressed = new byte[c.maxCompressedLength(zeroBlock.length)];
+			assertTrue(c.compress(zeroBlock, zeroBlock.length, compressed) < zeroBlock.length / 10);
+		}
+	}
+
+	/**
+	 * Tests whether or not sorting with compressed blocks (using Java serialization or a {@code RunCodec}, streams or
+	 * {@code FileChannel}s, and with or without prefetching) produces the correct result while writing fewer bytes.
+	 * 
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void sort() throws ClassNotFoundException, IOException {
+		for (BlockCompression c : new BlockCompression[] { BlockCompression.FAST, BlockCompression.DEFLATE }) {
+			for (int variant = 0; variant < 4; variant++) {
+				ExternalSort<Integer> e = sort(100000, c, (variant & 1) != 0, (variant & 2) != 0);
+				System.out.println("physical bytes written: " + e.physicalBytesWritten() + " (logical: "
+						+ e.bytesWritten() + "), physical bytes read: " + e.physicalBytesRead() + " (logical: "
+						+ e.bytesRead() + ")");
+				assertTrue(e.physicalBytesWritten() < e.bytesWritten());
+				assertTrue(e.physicalBytesRead() < e.bytesRead());
+			}
+		}
+	}
+
+	/**
+	 * Tests whether or not reading a damaged compressed run fails rather than yielding only the objects before the
+	 * damage (with a truncated run and a run whose block has an invalid length, with and without prefetching).
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void corrupt() throws ClassNotFoundException, IOException {
+		for (int variant = 0; variant < 4; variant++) {
+			ExternalSort<Integer> e = externalSort(variant / 2 == 1);
+			new RunWriter<Integer>(RunWriterTest.iterator(100000), "test_corrupt", 1024, e);
+			try (RandomAccessFile file = new RandomAccessFile("test_corrupt", "rw")) {
+				if (variant % 2 == 0)
+					file.setLength(file.length() - 100); // truncates the last block
+				else {
+					file.seek(file.readInt() + 4); // the length of the second block
+					file.writeInt(-1);
+				}
+			}
+			RunReader reader = new RunReader("test_corrupt", 1024, e);
+			int count = 0;
+			try {
+				while (reader.hasNext()) {
+					reader.next();
+					count++;
+				}
+				fail(count + " objects read from a damaged run");
+			} catch (UncheckedIOException ex) {
+				System.out.println(ex.getMessage() + " after " + count + " objects");
+			}
+		}
+	}
+
+	/**
+	 * Constructs an {@code ExternalSort} that is used only to write and read runs of compressed blocks.
+	 *
+	 * @param prefetch
+	 *            a flag indicating whether or not to prefetch blocks
+	 * @return the constructed {@code ExternalSort}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> externalSort(boolean prefetch) throws ClassNotFoundException, IOException {
+		return new ExternalSort<Integer>(null, 2, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return false;
+			}
+
+			@Override
+			protected BlockCompression compression() {
+				return BlockCompression.FAST;
+			}
+
+			@Override
+			protected int prefetchDepth() {
+				return prefetch ? 2 : 0;
+			}
+
+		};
+	}
+
+	/**
+	 * Sorts integers each of which appears 10 times (i.e., (n-1)/10, ..., 0, 0) using the specified
+	 * {@code BlockCompression} and verifies the result.
+	 *
+	 * @param n
+	 *            the number of integers to sort
+	 * @param compression
+	 *            a {@code BlockCompression}
+	 * @param codec
+	 *            a flag indicating whether or not to use {@link RunCodec#INTEGER}
+	 * @param channelIO
+	 *            a flag indicating whether or not to use {@code FileChannel}s and prefetching
+	 * @return the {@code ExternalSort} used
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(int n, BlockCompression compression, boolean codec, boolean channelIO)
+			throws ClassNotFoundException, IOException {
+		Iterator<Integer> iterator = new Iterator<Integer>() { // iterator over (n-1)/10, ..., 1, 0, ..., 0
+
+			int i = n - 1;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				return i-- / 10;
+			}
+
+		};
+		ExternalSort<Integer> e = new ExternalSort<Integer>(iterator, 4, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 5000;
+			}
+
+			@Override
+			protected BlockCompression compression() {
+				return compression;
+			}
+
+			@Override
+			protected RunCodec<Integer> codec() {
+				return codec ? RunCodec.INTEGER : null;
+			}
+
+			@Override
+			protected boolean channelIO() {
+				return channelIO;
+			}
+
+			@Override
+			protected int prefetchDepth() {
+				return channelIO ? 2 : 0;
+			}
+
+		};
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals((Integer) (i / 10), e.next()); // must get 0, ..., 0, 1, ..., (n-1)/10 from e
+		}
+		assertEquals(false, e.hasNext());
+		return e;
+	}
+
+}
@@ -0,0 +1,213 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import external_sort.BlockCompression;
+import external_sort.BlockIndex;
+import external_sort.ExternalSort;
+import external_sort.KeyPrefix;
+import external_sort.RunCodec;
+import external_sort.RunReader;
+import external_sort.RunWriter;
+
+/**
+ * This program tests the {@link BlockIndex} class.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class BlockIndexTest {
+
+	/**
+	 * The number of variants of the {@code ExternalSort} (see {@link #externalSort(Iterator, int)}).
+	 */
+	static final int VARIANTS = 4;
+
+	/**
+	 * Tests whether or not the {@code BlockIndex} at the end of a run records the blocks of the run, whether or not
+	 * the elements in the run can be counted (also within key ranges) using the {@code BlockIndex}, and whether or not
+	 * the elements in key ranges can be read using the {@code BlockIndex} (with various settings of the
+	 * {@code ExternalSort}).
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void index() throws ClassNotFoundException, IOException {
+		int n = 30000;
+		List<Integer> elements = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++)
+			elements.add(i / 3); // duplicates span blocks
+		for (int variant = 0; variant < VARIANTS; variant++) {
+			ExternalSort<Integer> e = externalSort(null, variant);
+			new RunWriter<Integer>(elements.iterator(), "test_index", 1024, e);
+			BlockIndex<Integer> index = BlockIndex.read("test_index", e);
+			System.out.println(index.blockCount() + " block(s)");
+			assertTrue(index.blockCount() > 1);
+			assertEquals(n, index.count());
+			assertEquals(0, index.offset(0));
+			assertEquals(elements.get(0), index.firstKey(0));
+			assertEquals(elements.get(n - 1), index.lastKey(index.blockCount() - 1));
+			for (int b = 1; b < index.blockCount(); b++) {
+				assertTrue(index.offset(b - 1) < index.offset(b));
+				assertTrue(index.lastKey(b - 1) <= index.firstKey(b));
+			}
+			assertEquals(elements, list(new RunReader("test_index", 1024, e))); // the BlockIndex must not be read
+			int[][] ranges = { { 0, n }, { 100, 200 }, { 1234, 1235 }, { 5000, 5000 }, { -5, 3 }, { n / 3 - 2, n } };
+			for (int[] r : ranges) {
+				List<Integer> expected = range(elements, r[0], r[1]);
+				assertEquals(expected.size(), index.count(r[0], r[1]));
+				assertEquals(expected, list(index.range(r[0], r[1])));
+			}
+			assertEquals(n, index.count(null, null));
+			assertEquals(range(elements, 0, 1000), list(index.range(null, 1000)));
+			assertEquals(range(elements, 9000, n), list(index.range(9000, null)));
+			assertTrue(index.startBlock(5000) > 0);
+			assertTrue(index.endBlock(5000) < index.blockCount());
+		}
+	}
+
+	/**
+	 * Tests whether or not an {@code ExternalSort} whose runs end with {@code BlockIndex}es sorts elements correctly,
+	 * also when its final merge is partitioned into key ranges located through the {@code BlockIndex}es.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void sort() throws ClassNotFoundException, IOException {
+		Random random = new Random(0);
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < 100000; i++)
+			input.add(random.nextInt(30000));
+		List<Integer> expected = new ArrayList<Integer>(input);
+		Collections.sort(expected);
+		for (int variant = 0; variant < VARIANTS; variant++) {
+			assertEquals(expected, list(externalSort(input.iterator(), variant)));
+			List<Iterator<Integer>> partitions = externalSort(input.iterator(), variant).partitions(4);
+			assertTrue(partitions.size() > 1);
+			List<Integer> output = new ArrayList<Integer>();
+			for (Iterator<Integer> partition : partitions)
+				output.addAll(list(partition));
+			assertEquals(expected, output);
+		}
+	}
+
+	/**
+	 * Returns the elements in the specified key range of the specified sorted list.
+	 *
+	 * @param elements
+	 *            a sorted list of integers
+	 * @param lower
+	 *            the lower bound (inclusive) of the range
+	 * @param upper
+	 *            the upper bound (exclusive) of the range
+	 * @return the elements in the specified key range of the specified sorted list
+	 */
+	static List<Integer> range(List<Integer> elements, int lower, int upper) {
+		List<Integer> range = new ArrayList<Integer>();
+		for (int e : elements)
+			if (e >= lower && e < upper)
+				range.add(e);
+		return range;
+	}
+
+	/**
+	 * Returns a list of the elements from the specified {@code Iterator}.
+	 *
+	 * @param <T>
+	 *            the type of the elements
+	 * @param iterator
+	 *            an {@code Iterator}
+	 * @return a list of the elements from the specified {@code Iterator}
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> List<T> list(Iterator<?> iterator) {
+		List<T> list = new ArrayList<T>();
+		while (iterator.hasNext())
+			list.add((T) iterator.next());
+		return list;
+	}
+
+	/**
+	 * Constructs an {@code ExternalSort} whose runs end with {@code BlockIndex}es.
+	 *
+	 * @param iterator
+	 *            the input {@code Iterator} ({@code null} if the {@code ExternalSort} is used only for writing and
+	 *            reading runs)
+	 * @param variant
+	 *            0 for the default settings, 1 for key prefixes and a {@code RunCodec}, 2 for compressed blocks that
+	 *            are written behind and prefetched, and 3 for a {@code RunCodec} and memory-mapped final runs merged
+	 *            by a loser tree
+	 * @return the constructed {@code ExternalSort}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> externalSort(Iterator<Integer> iterator, int variant)
+			throws ClassNotFoundException, IOException {
+		return new ExternalSort<Integer>(iterator, 4, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 3000;
+			}
+
+			@Override
+			protected boolean blockIndex() {
+				return true;
+			}
+
+			@Override
+			protected KeyPrefix<Integer> keyPrefix() {
+				return variant == 1 ? KeyPrefix.INTEGER : null;
+			}
+
+			@Override
+			protected RunCodec<Integer> codec() {
+				return variant == 1 || variant == 3 ? RunCodec.INTEGER : null;
+			}
+
+			@Override
+			protected BlockCompression compression() {
+				return variant == 2 ? BlockCompression.FAST : null;
+			}
+
+			@Override
+			protected int writeBehindDepth() {
+				return variant == 2 ? 2 : 0;
+			}
+
+			@Override
+			protected int prefetchDepth() {
+				return variant == 2 ? 2 : 0;
+			}
+
+			@Override
+			protected boolean mapFinalRuns() {
+				return variant == 3;
+			}
+
+			@Override
+			protected boolean loserTreeMerge() {
+				return variant == 3;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,110 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import external_sort.BufferPool;
+import external_sort.ExternalSort;
+import external_sort.InputBuffer;
+import external_sort.OutputBuffer;
+
+/**
+ * This program tests the {@link BufferPool} class.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class BufferPoolTest {
+
+	/**
+	 * Tests the acquisition and release of buffers.
+	 * 
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void recycle() throws ClassNotFoundException, IOException {
+		ExternalSort<Integer> e = new ExternalSort<Integer>(null, 2, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return false;
+			}
+
+		};
+		BufferPool pool = new BufferPool(e, 2);
+		OutputBuffer o1 = pool.acquireOutputBuffer(1024);
+		OutputBuffer o2 = pool.acquireOutputBuffer(1024);
+		OutputBuffer o3 = pool.acquireOutputBuffer(1024);
+		assertEquals(3, pool.allocationCount());
+		pool.release(o1);
+		pool.release(o2);
+		pool.release(o3); // must be left to the garbage collector since the pool keeps at most 2 buffers of each kind
+		assertEquals(o1, pool.acquireOutputBuffer(1024));
+		assertEquals(o2, pool.acquireOutputBuffer(1024));
+		assertEquals(3, pool.allocationCount());
+		pool.acquireOutputBuffer(1024);
+		assertEquals(4, pool.allocationCount());
+		pool.release(pool.acquireOutputBuffer(512)); // buffers of other sizes must not be kept
+		assertEquals(5, pool.allocationCount());
+		pool.acquireOutputBuffer(1024);
+		assertEquals(6, pool.allocationCount());
+		InputBuffer i1 = pool.acquireInputBuffer(1024);
+		pool.release(i1);
+		assertEquals(i1, pool.acquireInputBuffer(1024));
+		assertEquals(7, pool.allocationCount());
+	}
+
+	/**
+	 * Tests the {@link ExternalSort} class to see whether or not it reuses buffers.
+	 * 
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void sort() throws ClassNotFoundException, IOException {
+		int n = 160000;
+		Iterator<Integer> iterator = new Iterator<Integer>() { // iterator over (n-1), (n-2), ..., 2, 1, 0
+
+			int i = n - 1;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				return i--;
+			}
+
+		};
+		ExternalSort<Integer> e = new ExternalSort<Integer>(iterator, 4, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 10000;
+			}
+
+		};
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(i, e.next()); // must get 0, 1, 2, ..., (n-1) from e
+		}
+		assertEquals(false, e.hasNext());
+		long allocations = e.bufferPool().allocationCount();
+		long uses = e.bufferReadCount() + e.bufferWriteCount();
+		System.out.println("buffers allocated: " + allocations + ", buffers used: " + uses);
+		assertTrue(allocations * 10 < uses); // most buffers must be reused
+	}
+
+}
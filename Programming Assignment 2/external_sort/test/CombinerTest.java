@@ -0,0 +1,216 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import external_sort.Combiner;
+import external_sort.ExternalSort;
+import external_sort.KeyPrefix;
+
+/**
+ * This program tests the {@link ExternalSort} class when equal elements are combined using a {@link Combiner}.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class CombinerTest {
+
+	/**
+	 * A {@code Group} counts the elements that have the same key.
+	 */
+	static class Group implements Comparable<Group>, Serializable {
+
+		/**
+		 * The serial version UID.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The key of the elements.
+		 */
+		int key;
+
+		/**
+		 * The number of the elements.
+		 */
+		int count;
+
+		/**
+		 * Constructs a {@code Group}.
+		 *
+		 * @param key
+		 *            the key of the elements
+		 * @param count
+		 *            the number of the elements
+		 */
+		Group(int key, int count) {
+			this.key = key;
+			this.count = count;
+		}
+
+		@Override
+		public int compareTo(Group o) {
+			return Integer.compare(key, o.key);
+		}
+
+	}
+
+	/**
+	 * Tests whether or not duplicates are eliminated (with and without replacement selection, parallel construction of
+	 * runs, and key prefixes) and fewer bytes are written than when duplicates are kept.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void distinct() throws ClassNotFoundException, IOException {
+		int n = 100000;
+		int keys = 3000;
+		for (int variant = 0; variant < 4; variant++) {
+			long bytesWritten = sort(n, keys, null, variant).bytesWritten();
+			ExternalSort<Integer> e = sort(n, keys, Combiner.<Integer>distinct(), variant);
+			for (Integer i = 0; i < keys; i++) {
+				assertEquals(true, e.hasNext());
+				assertEquals(i, e.next()); // must get 0, 1, 2, ..., (keys-1) from e
+			}
+			assertEquals(false, e.hasNext());
+			System.out.println("bytes written: " + e.bytesWritten() + " (duplicates kept: " + bytesWritten + ")");
+			assertTrue(e.bytesWritten() * 2 < bytesWritten);
+		}
+	}
+
+	/**
+	 * Tests whether or not the elements of each group are counted correctly, also when only the smallest groups are
+	 * produced.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void groupBy() throws ClassNotFoundException, IOException {
+		Random random = new Random(0);
+		ArrayList<Group> input = new ArrayList<Group>();
+		TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+		for (int i = 0; i < 50000; i++) {
+			int key = random.nextInt(5000);
+			input.add(new Group(key, 1));
+			expected.put(key, expected.getOrDefault(key, 0) + 1);
+		}
+		for (long k : new long[] { Long.MAX_VALUE, 10, 2500 }) {
+			ExternalSort<Group> e = new ExternalSort<Group>(input.iterator(), 3, 1024, k, "test", System.out) {
+
+				@Override
+				protected boolean isFull(ArrayList<Group> list) {
+					return list.size() >= 2000;
+				}
+
+				@Override
+				protected Combiner<Group> combiner() {
+					return new Combiner<Group>() {
+
+						@Override
+						public Group combine(Group first, Group second) {
+							return new Group(first.key, first.count + second.count);
+						}
+
+					};
+				}
+
+			};
+			Iterator<Integer> keys = expected.keySet().iterator();
+			for (long i = 0; i < Math.min(k, expected.size()); i++) {
+				assertEquals(true, e.hasNext());
+				Group g = e.next();
+				Integer key = keys.next();
+				assertEquals((int) key, g.key);
+				assertEquals((int) expected.get(key), g.count);
+			}
+			assertEquals(false, e.hasNext());
+		}
+	}
+
+	/**
+	 * Sorts random integers using the specified {@code Combiner}.
+	 *
+	 * @param n
+	 *            the number of integers
+	 * @param keys
+	 *            the number of distinct integers (i.e., 0, 1, ..., (keys-1))
+	 * @param combiner
+	 *            a {@code Combiner} ({@code null} if equal integers are not combined)
+	 * @param variant
+	 *            0 for the default settings, 1 for replacement selection, 2 for parallel construction of runs, and 3
+	 *            for key prefixes with loser tree merges
+	 * @return the {@code ExternalSort} used
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(int n, int keys, Combiner<Integer> combiner, int variant)
+			throws ClassNotFoundException, IOException {
+		Iterator<Integer> iterator = new Iterator<Integer>() { // iterator over n random integers
+
+			Random random = new Random(n);
+
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < n;
+			}
+
+			@Override
+			public Integer next() {
+				return i++ < keys ? i - 1 : random.nextInt(keys); // every integer appears at least once
+			}
+
+		};
+		return new ExternalSort<Integer>(iterator, 4, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 5000;
+			}
+
+			@Override
+			protected Combiner<Integer> combiner() {
+				return combiner;
+			}
+
+			@Override
+			protected boolean replacementSelection() {
+				return variant == 1;
+			}
+
+			@Override
+			protected int parallelism() {
+				return variant == 2 ? 4 : 1;
+			}
+
+			@Override
+			protected KeyPrefix<Integer> keyPrefix() {
+				return variant == 3 ? KeyPrefix.INTEGER : null;
+			}
+
+			@Override
+			protected boolean loserTreeMerge() {
+				return variant == 3;
+			}
+
+		};
+	}
+
+}
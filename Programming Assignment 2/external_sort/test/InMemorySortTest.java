@@ -0,0 +1,132 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+import external_sort.KeyPrefix;
+
+/**
+ * This program tests the {@link ExternalSort} class when elements are kept in memory instead of being written to runs.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class InMemorySortTest {
+
+	/**
+	 * Tests whether or not an input that does not fill an initial run is sorted without writing any run.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void fastPath() throws ClassNotFoundException, IOException {
+		for (int parallelism : new int[] { 1, 4 }) {
+			ExternalSort<Integer> e = sort(4999, 5000, false, parallelism, false);
+			assertEquals(0, e.bufferWriteCount());
+			assertEquals(0, e.bufferReadCount());
+			assertNull(e.mergePlan());
+		}
+		ExternalSort<Integer> e = sort(0, 5000, false, 1, false);
+		assertEquals(0, e.bufferWriteCount());
+	}
+
+	/**
+	 * Tests whether or not the last, partially filled initial run is merged from memory (with and without parallel
+	 * construction of runs and key prefixes) so that fewer bytes are written and read.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void hybrid() throws ClassNotFoundException, IOException {
+		for (int parallelism : new int[] { 1, 4 }) {
+			for (boolean prefixed : new boolean[] { false, true }) {
+				ExternalSort<Integer> spilled = sort(102500, 5000, false, parallelism, prefixed);
+				ExternalSort<Integer> hybrid = sort(102500, 5000, true, parallelism, prefixed);
+				System.out.println("bytes written: " + hybrid.bytesWritten() + " (last run spilled: "
+						+ spilled.bytesWritten() + ")");
+				assertTrue(hybrid.bytesWritten() < spilled.bytesWritten());
+				assertTrue(hybrid.bytesRead() < spilled.bytesRead());
+			}
+		}
+	}
+
+	/**
+	 * Sorts the specified number of integers in descending order and verifies the result.
+	 *
+	 * @param n
+	 *            the number of integers
+	 * @param runLength
+	 *            the number of integers in each initial run
+	 * @param keepLastRunInMemory
+	 *            a flag indicating whether or not to keep the last initial run in memory
+	 * @param parallelism
+	 *            the number of threads for constructing runs
+	 * @param prefixed
+	 *            a flag indicating whether or not to use key prefixes
+	 * @return the {@code ExternalSort} used
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(int n, int runLength, boolean keepLastRunInMemory, int parallelism, boolean prefixed)
+			throws ClassNotFoundException, IOException {
+		Iterator<Integer> iterator = new Iterator<Integer>() { // iterator over (n-1), (n-2), ..., 2, 1, 0
+
+			int i = n - 1;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				return i--;
+			}
+
+		};
+		ExternalSort<Integer> e = new ExternalSort<Integer>(iterator, 4, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= runLength;
+			}
+
+			@Override
+			protected boolean keepLastRunInMemory() {
+				return keepLastRunInMemory;
+			}
+
+			@Override
+			protected int parallelism() {
+				return parallelism;
+			}
+
+			@Override
+			protected KeyPrefix<Integer> keyPrefix() {
+				return prefixed ? KeyPrefix.INTEGER : null;
+			}
+
+		};
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(i, e.next()); // must get 0, 1, 2, ..., (n-1) from e
+		}
+		assertEquals(false, e.hasNext());
+		return e;
+	}
+
+}
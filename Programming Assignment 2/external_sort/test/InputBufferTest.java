@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 
 import org.junit.Test;
@@ -63,4 +64,34 @@ public class InputBufferTest {
 		o.close();
 	}
 
+	/**
+	 * Tests whether or not {@link InputBuffer#iterator()} reports corrupt bytes that follow the serialized objects
+	 * instead of treating them as the end of the objects.
+	 * 
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void corruption() throws ClassNotFoundException, IOException {
+		int n = 10;
+		OutputBuffer out = new OutputBuffer(1024);
+		ObjectOutputStream o = new ObjectOutputStream(out);
+		for (Integer i = 0; i < n; i++)
+			o.writeObject(i);
+		InputBuffer in = new InputBuffer(1024);
+		System.arraycopy(out.toByteArray(), 0, in.toByteArray(), 0, out.toByteArray().length);
+		in.toByteArray()[1000] = 1; // a corrupt byte in the zero padding that follows the objects
+		try {
+			Iterator<Object> iterator = in.iterator();
+			for (Integer i = 0; i < n; i++)
+				assertEquals(i, iterator.next());
+			iterator.hasNext();
+			fail("the corrupt byte must be reported");
+		} catch (UncheckedIOException e) {
+		}
+		o.close();
+	}
+
 }
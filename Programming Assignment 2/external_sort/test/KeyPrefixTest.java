@@ -0,0 +1,148 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+import external_sort.KeyPrefix;
+import external_sort.PrefixSort;
+import external_sort.RunCodec;
+
+/**
+ * This program tests the {@link KeyPrefix} interface and the {@link PrefixSort} class.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class KeyPrefixTest {
+
+	/**
+	 * Tests the built-in {@link KeyPrefix}es to see whether or not they are consistent with the natural ordering.
+	 */
+	@Test
+	public void consistency() {
+		Random random = new Random(0);
+		ArrayList<Integer> integers = new ArrayList<Integer>();
+		ArrayList<Long> longs = new ArrayList<Long>();
+		ArrayList<Double> doubles = new ArrayList<Double>();
+		ArrayList<String> strings = new ArrayList<String>();
+		for (int i = 0; i < 1000; i++) {
+			integers.add(random.nextInt());
+			longs.add(random.nextLong());
+			doubles.add(random.nextGaussian());
+			strings.add(Integer.toString(random.nextInt(100000), 36));
+		}
+		Collections.addAll(integers, Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE);
+		Collections.addAll(longs, Long.MIN_VALUE, -1L, 0L, 1L, Long.MAX_VALUE);
+		Collections.addAll(doubles, Double.NEGATIVE_INFINITY, -0.0, 0.0, Double.MIN_VALUE, Double.NaN);
+		Collections.addAll(strings, "", "a", "a\0", "ab", "abcd", "abcde", "\uffff");
+		consistency(integers, KeyPrefix.INTEGER);
+		consistency(longs, KeyPrefix.LONG);
+		consistency(doubles, KeyPrefix.DOUBLE);
+		consistency(strings, KeyPrefix.STRING);
+	}
+
+	/**
+	 * Verifies that the specified {@code KeyPrefix} is consistent with the natural ordering of the specified elements.
+	 *
+	 * @param elements
+	 *            elements
+	 * @param keyPrefix
+	 *            a {@code KeyPrefix}
+	 */
+	<T extends Comparable<? super T>> void consistency(ArrayList<T> elements, KeyPrefix<T> keyPrefix) {
+		for (T a : elements)
+			for (T b : elements)
+				if (a.compareTo(b) < 0)
+					assertTrue(Long.compareUnsigned(keyPrefix.prefix(a), keyPrefix.prefix(b)) <= 0);
+		ArrayList<T> expected = new ArrayList<T>(elements);
+		Collections.sort(expected);
+		PrefixSort.sort(elements, keyPrefix);
+		assertEquals(expected, elements);
+	}
+
+	/**
+	 * Tests the {@link ExternalSort} class with {@link KeyPrefix}es.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void sort() throws ClassNotFoundException, IOException {
+		for (boolean loserTreeMerge : new boolean[] { false, true }) {
+			sort(30000, null, loserTreeMerge, 1);
+			sort(30000, RunCodec.STRING, loserTreeMerge, 1);
+			sort(30000, RunCodec.STRING, loserTreeMerge, 4);
+		}
+	}
+
+	/**
+	 * Sorts {@code n} strings that share long common prefixes using {@link KeyPrefix#STRING}.
+	 *
+	 * @param n
+	 *            the number of elements
+	 * @param codec
+	 *            a {@code RunCodec} ({@code null} if Java serialization is used)
+	 * @param loserTreeMerge
+	 *            a flag indicating whether {@code LoserTreeMergeIterator}s are used
+	 * @param parallelism
+	 *            the number of threads that construct runs
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	static void sort(int n, RunCodec<String> codec, boolean loserTreeMerge, int parallelism)
+			throws ClassNotFoundException, IOException {
+		ArrayList<String> strings = new ArrayList<String>();
+		Random random = new Random(n);
+		for (int i = 0; i < n; i++) // strings such as "ab12", "ab12ab7", ...
+			strings.add("ab" + random.nextInt(100) + (random.nextBoolean() ? "ab" + random.nextInt(10) : ""));
+		Iterator<String> iterator = strings.iterator();
+		ExternalSort<String> e = new ExternalSort<String>(iterator, 3, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<String> list) {
+				return list.size() >= 1000;
+			}
+
+			@Override
+			protected RunCodec<String> codec() {
+				return codec;
+			}
+
+			@Override
+			protected KeyPrefix<String> keyPrefix() {
+				return KeyPrefix.STRING;
+			}
+
+			@Override
+			protected boolean loserTreeMerge() {
+				return loserTreeMerge;
+			}
+
+			@Override
+			protected int parallelism() {
+				return parallelism;
+			}
+
+		};
+		Collections.sort(strings);
+		for (String s : strings) {
+			assertEquals(true, e.hasNext());
+			assertEquals(s, e.next());
+		}
+		assertEquals(false, e.hasNext());
+		System.out.println("bytes written: " + e.bytesWritten());
+	}
+
+}
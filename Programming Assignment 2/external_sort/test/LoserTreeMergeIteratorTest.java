@@ -0,0 +1,160 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+import external_sort.LoserTreeMergeIterator;
+
+/**
+ * This program tests the {@link LoserTreeMergeIterator} class.
+ * 
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ * 
+ */
+public class LoserTreeMergeIteratorTest {
+
+	/**
+	 * Tests {@link LoserTreeMergeIterator#next()}.
+	 */
+	@Test
+	public void next() {
+		next(10); // test with 10 numbers
+		next(20); // test with 20 numbers
+		next(30); // test with 30 numbers
+	}
+
+	/**
+	 * Tests {@link LoserTreeMergeIterator#next()} using the specified number of elements.
+	 * 
+	 * @param n
+	 *            the number of elements
+	 */
+	void next(int n) {
+
+		Iterator<Integer> iEven = new Iterator<Integer>() { // iterator over even numbers
+
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < n;
+			}
+
+			@Override
+			public Integer next() {
+				i += 2;
+				return i - 2;
+			}
+
+		};
+
+		Iterator<Integer> iOdd = new Iterator<Integer>() { // iterator over odd numbers
+
+			int i = 1;
+
+			@Override
+			public boolean hasNext() {
+				return i < n;
+			}
+
+			@Override
+			public Integer next() {
+				i += 2;
+				return i - 2;
+			}
+
+		};
+		LoserTreeMergeIterator<Integer> i = new LoserTreeMergeIterator<Integer>(Arrays.asList(iEven, iOdd));
+		for (Integer e = 0; e < n; e++) {
+			assertEquals(true, i.hasNext());
+			Integer next = i.next();
+			System.out.print((e == 0 ? "" : ", ") + next);
+			assertEquals(e, next); // must get 0, 1, 2, ..., (n-1) from i
+		}
+		assertEquals(false, i.hasNext());
+		System.out.println();
+	}
+
+	/**
+	 * Tests {@link LoserTreeMergeIterator#next()} while changing the number of input {@code Iterator}s.
+	 */
+	@Test
+	public void fanIn() {
+		for (int k = 0; k <= 40; k++)
+			fanIn(k, 1000);
+		fanIn(511, 100000);
+	}
+
+	/**
+	 * Tests {@link LoserTreeMergeIterator#next()} by merging the specified number of {@code Iterator}s over random
+	 * numbers.
+	 * 
+	 * @param k
+	 *            the number of input {@code Iterator}s
+	 * @param n
+	 *            the total number of elements
+	 */
+	void fanIn(int k, int n) {
+		ArrayList<ArrayList<Integer>> lists = new ArrayList<ArrayList<Integer>>();
+		for (int j = 0; j < k; j++)
+			lists.add(new ArrayList<Integer>());
+		ArrayList<Integer> expected = new ArrayList<Integer>();
+		for (int j = 0; k > 0 && j < n; j++) {
+			Integer e = (int) (Math.random() * n / 2); // duplicates are likely
+			lists.get((int) (Math.random() * k)).add(e);
+			expected.add(e);
+		}
+		ArrayList<Iterator<Integer>> iterators = new ArrayList<Iterator<Integer>>();
+		for (ArrayList<Integer> list : lists) {
+			Collections.sort(list);
+			iterators.add(list.iterator());
+		}
+		Collections.sort(expected);
+		LoserTreeMergeIterator<Integer> i = new LoserTreeMergeIterator<Integer>(iterators);
+		for (Integer e : expected) {
+			assertEquals(true, i.hasNext());
+			assertEquals(e, i.next());
+		}
+		assertEquals(false, i.hasNext());
+	}
+
+	/**
+	 * Tests the {@link ExternalSort} class using {@link LoserTreeMergeIterator}s.
+	 * 
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void sort() throws ClassNotFoundException, IOException {
+		int n = 160000;
+		ExternalSort<Integer> e = new ExternalSort<Integer>(RunWriterTest.iterator(n), 4, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 10000;
+			}
+
+			@Override
+			protected boolean loserTreeMerge() {
+				return true;
+			}
+
+		};
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(i, e.next()); // must get 0, 1, 2, ..., (n-1) from e
+		}
+		assertEquals(false, e.hasNext());
+	}
+
+}
@@ -0,0 +1,326 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import external_sort.BlockCompression;
+import external_sort.ExternalSort;
+import external_sort.MergeJoin;
+import external_sort.RunCodec;
+
+/**
+ * This program tests the {@link MergeJoin} class.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class MergeJoinTest {
+
+	/**
+	 * Tests whether or not joining the outputs of two {@code ExternalSort}s (whose final merge passes are fused into
+	 * the join) produces every pair of elements with equal keys, both when groups of duplicates are buffered in memory
+	 * and when they are spilled to runs.
+	 *
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	@Test
+	public void sorts() throws Exception {
+		List<Integer> left = input(50000, 5000, 1);
+		List<Integer> right = input(50000, 8000, 2);
+		for (int i = 0; i < 500; i++)
+			right.add(4321); // a large group of duplicates
+		for (int maxGroupSize : new int[] { 10000, 10 }) {
+			File directory = directory();
+			ExternalSort<Integer> r = sort(right, true);
+			MergeJoin<Integer, Integer, Long> join = join(sort(left, false), r, maxGroupSize);
+			assertEquals(expected(left, right), list(join));
+			System.out.println(join.spilledGroupCount() + " group(s) spilled");
+			if (maxGroupSize == 10)
+				assertTrue(join.spilledGroupCount() > 0);
+			else
+				assertEquals(0, join.spilledGroupCount());
+			while (r.hasNext()) // the remaining runs are deleted once all of the elements are obtained
+				r.next();
+			assertEquals(0, directory.listFiles().length); // every spilled group must be deleted
+		}
+	}
+
+	/**
+	 * Tests whether or not closing a {@code MergeJoin} while it reads back a spilled group ends the iteration and
+	 * deletes the run to which the group has been spilled.
+	 *
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	@Test
+	public void close() throws Exception {
+		List<Integer> left = input(50000, 5000, 1);
+		List<Integer> right = input(50000, 8000, 2);
+		for (int i = 0; i < 500; i++)
+			right.add(4321); // a large group of duplicates
+		File directory = directory();
+		ExternalSort<Integer> r = sort(right, true);
+		MergeJoin<Integer, Integer, Long> join = join(sort(left, false), r, 10);
+		while (join.next() != 4321)
+			;
+		assertTrue(join.spilledGroupCount() > 0);
+		join.close();
+		assertFalse(join.hasNext());
+		while (r.hasNext()) // the remaining runs are deleted once all of the elements are obtained
+			r.next();
+		assertEquals(0, directory.listFiles().length); // the spilled group must be deleted
+	}
+
+	/**
+	 * Tests whether or not joining sorted lists produces every pair of elements with equal keys (including when one
+	 * input is empty or has no key in common with the other).
+	 *
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	@Test
+	public void iterators() throws Exception {
+		List<Integer> left = input(20000, 1000, 3);
+		List<Integer> right = input(20000, 2000, 4);
+		Collections.sort(left);
+		Collections.sort(right);
+		for (int maxGroupSize : new int[] { 10000, 3 }) {
+			assertEquals(expected(left, right), list(join(left, right, maxGroupSize)));
+			assertEquals(expected(right, left), list(join(right, left, maxGroupSize)));
+			assertEquals(Collections.emptyList(), list(join(left, new ArrayList<Integer>(), maxGroupSize)));
+			assertEquals(Collections.emptyList(), list(join(new ArrayList<Integer>(), right, maxGroupSize)));
+			assertEquals(Collections.emptyList(), list(join(Arrays.asList(1, 3, 5), Arrays.asList(2, 4), maxGroupSize)));
+		}
+	}
+
+	/**
+	 * Creates (or empties) the spill directory of the right {@code ExternalSort} (see {@link #sort(List, boolean)}).
+	 *
+	 * @return the spill directory
+	 */
+	static File directory() {
+		File directory = new File("joined");
+		directory.mkdirs();
+		for (File f : directory.listFiles())
+			f.delete();
+		return directory;
+	}
+
+	/**
+	 * Generates the specified number of random integers.
+	 *
+	 * @param n
+	 *            the number of integers
+	 * @param bound
+	 *            the upper bound (exclusive) of the integers
+	 * @param seed
+	 *            the seed of the random number generator
+	 * @return a list of random integers
+	 */
+	static List<Integer> input(int n, int bound, long seed) {
+		Random random = new Random(seed);
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++)
+			input.add(random.nextInt(bound));
+		return input;
+	}
+
+	/**
+	 * Returns the expected join results (see {@link #join(Iterator, Iterator, int)}) computed by counting the elements
+	 * with each key.
+	 *
+	 * @param left
+	 *            the left integers
+	 * @param right
+	 *            the right integers
+	 * @return the expected join results in ascending order
+	 */
+	static List<Long> expected(List<Integer> left, List<Integer> right) {
+		TreeMap<Integer, Integer> l = counts(left), r = counts(right);
+		List<Long> expected = new ArrayList<Long>();
+		for (Integer key : l.keySet())
+			if (r.containsKey(key))
+				for (long i = 0, n = (long) l.get(key) * r.get(key); i < n; i++)
+					expected.add((long) key);
+		return expected;
+	}
+
+	/**
+	 * Counts the occurrences of each integer.
+	 *
+	 * @param integers
+	 *            a list of integers
+	 * @return the number of occurrences of each integer
+	 */
+	static TreeMap<Integer, Integer> counts(List<Integer> integers) {
+		TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+		for (Integer i : integers)
+			counts.put(i, counts.containsKey(i) ? counts.get(i) + 1 : 1);
+		return counts;
+	}
+
+	/**
+	 * Returns a list of the elements from the specified {@code Iterator}.
+	 *
+	 * @param iterator
+	 *            an {@code Iterator}
+	 * @return a list of the elements from the specified {@code Iterator}
+	 */
+	static List<Long> list(Iterator<Long> iterator) {
+		List<Long> list = new ArrayList<Long>();
+		while (iterator.hasNext())
+			list.add(iterator.next());
+		return list;
+	}
+
+	/**
+	 * Constructs a {@code MergeJoin} over the specified sorted lists of integers.
+	 *
+	 * @param left
+	 *            a sorted list of the left integers
+	 * @param right
+	 *            a sorted list of the right integers
+	 * @param maxGroupSize
+	 *            the maximum number of right integers in a group that are buffered in memory
+	 * @return the constructed {@code MergeJoin}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	MergeJoin<Integer, Integer, Long> join(List<Integer> left, List<Integer> right, int maxGroupSize)
+			throws ClassNotFoundException, IOException {
+		return join(left.iterator(), right.iterator(), maxGroupSize);
+	}
+
+	/**
+	 * Constructs a {@code MergeJoin} over the specified sorted integers that produces the key of each pair of equal
+	 * integers.
+	 *
+	 * @param left
+	 *            an {@code Iterator} over the left integers in ascending order
+	 * @param right
+	 *            an {@code Iterator} over the right integers in ascending order
+	 * @param maxGroupSize
+	 *            the maximum number of right integers in a group that are buffered in memory
+	 * @return the constructed {@code MergeJoin}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	MergeJoin<Integer, Integer, Long> join(Iterator<Integer> left, Iterator<Integer> right, int maxGroupSize)
+			throws ClassNotFoundException, IOException {
+		return new MergeJoin<Integer, Integer, Long>(left, right, 1024, "test_join") {
+
+			@Override
+			protected int compare(Integer left, Integer right) {
+				return left.compareTo(right);
+			}
+
+			@Override
+			protected Long join(Integer left, Integer right) {
+				return (long) left;
+			}
+
+			@Override
+			protected int maxGroupSize() {
+				return maxGroupSize;
+			}
+
+		};
+	}
+
+	/**
+	 * Constructs a {@code MergeJoin} over the outputs of the specified {@code ExternalSort}s that produces the key of
+	 * each pair of equal integers.
+	 *
+	 * @param left
+	 *            the {@code ExternalSort} of the left integers
+	 * @param right
+	 *            the {@code ExternalSort} of the right integers
+	 * @param maxGroupSize
+	 *            the maximum number of right integers in a group that are buffered in memory
+	 * @return the constructed {@code MergeJoin}
+	 */
+	MergeJoin<Integer, Integer, Long> join(ExternalSort<Integer> left, ExternalSort<Integer> right,
+			int maxGroupSize) {
+		return new MergeJoin<Integer, Integer, Long>(left, right) {
+
+			@Override
+			protected int compare(Integer left, Integer right) {
+				return left.compareTo(right);
+			}
+
+			@Override
+			protected Long join(Integer left, Integer right) {
+				return (long) left;
+			}
+
+			@Override
+			protected int maxGroupSize() {
+				return maxGroupSize;
+			}
+
+		};
+	}
+
+	/**
+	 * Sorts the specified integers using an {@code ExternalSort}.
+	 *
+	 * @param input
+	 *            a list of integers
+	 * @param right
+	 *            {@code true} for the right input, whose runs (and spilled groups) are compressed, encoded by a
+	 *            {@code RunCodec}, placed in a spill directory, and deleted once merged; {@code false} for the default
+	 *            settings
+	 * @return the {@code ExternalSort} whose final merge pass is yet to be performed
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(List<Integer> input, boolean right) throws ClassNotFoundException, IOException {
+		return new ExternalSort<Integer>(input.iterator(), 4, 1024, right ? "right" : "left", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 3000;
+			}
+
+			@Override
+			protected RunCodec<Integer> codec() {
+				return right ? RunCodec.INTEGER : null;
+			}
+
+			@Override
+			protected BlockCompression compression() {
+				return right ? BlockCompression.FAST : null;
+			}
+
+			@Override
+			protected List<File> spillDirectories() {
+				return right ? Arrays.asList(new File("joined")) : null;
+			}
+
+			@Override
+			protected boolean deleteMergedRuns() {
+				return right;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,119 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+import external_sort.MergePlan;
+
+/**
+ * This program tests the {@link MergePlan} class.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class MergePlanTest {
+
+	/**
+	 * Tests the passes of {@link MergePlan}s.
+	 */
+	@Test
+	public void passes() {
+		MergePlan p = new MergePlan(new long[] { 10, 10, 10 }, 4); // no merge pass needed
+		assertEquals(0, p.passCount());
+		assertEquals(Arrays.asList(0, 1, 2), p.finalGroup());
+		assertEquals(0, p.predictedBytesWritten());
+
+		p = new MergePlan(new long[] { 50, 10, 40, 20, 30 }, 4); // only the 2 shortest runs must be merged first
+		assertEquals(1, p.passCount());
+		assertEquals(Arrays.asList(Arrays.asList(1, 3)), p.groups(0));
+		assertEquals(Arrays.asList(0, 2, 4, 5), p.finalGroup());
+		assertEquals(30, p.predictedBytesWritten());
+		assertEquals(30, p.runLength(5));
+
+		p = new MergePlan(new long[] { 1, 1, 1, 1, 1, 1, 1, 1, 1 }, 2); // merging left to right would drop a run
+		assertEquals(3, p.passCount());
+		assertEquals(4, p.groups(0).size());
+		assertEquals(2, p.finalGroup().size());
+		ArrayList<Integer> merged = new ArrayList<Integer>(p.finalGroup());
+		for (int pass = 0; pass < p.passCount(); pass++)
+			for (List<Integer> group : p.groups(pass))
+				merged.addAll(group);
+		merged.sort(null);
+		for (int i = 0; i < 9 + 7; i++)
+			assertEquals(i, (int) merged.get(i)); // every run must be merged exactly once
+		assertEquals(20, p.predictedBytesWritten());
+		System.out.println(p);
+	}
+
+	/**
+	 * Tests the {@link ExternalSort} class with numbers of runs that are not powers of the degree.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void sort() throws ClassNotFoundException, IOException {
+		sort(29000, 1000, 3); // 29 runs
+		sort(50000, 10000, 4); // 5 runs
+		sort(9000, 1000, 2); // 9 runs
+		sort(13500, 1000, 16); // 14 runs
+	}
+
+	/**
+	 * Sorts {@code n} integers.
+	 *
+	 * @param n
+	 *            the number of elements
+	 * @param m
+	 *            the number of elements per initial run
+	 * @param degree
+	 *            the degree of external sort
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	static void sort(int n, int m, int degree) throws ClassNotFoundException, IOException {
+		Iterator<Integer> iterator = new Iterator<Integer>() { // iterator over (n-1), (n-2), ..., 2, 1, 0
+
+			int i = n - 1;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				return i--;
+			}
+
+		};
+		ExternalSort<Integer> e = new ExternalSort<Integer>(iterator, degree, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= m;
+			}
+
+		};
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(i, e.next()); // must get 0, 1, 2, ..., (n-1) from e
+		}
+		assertEquals(false, e.hasNext());
+		System.out.println(e.mergePlan());
+		System.out.println();
+	}
+
+}
@@ -0,0 +1,195 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+import external_sort.PassMetrics;
+import external_sort.SortListener;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * This program tests the {@link PassMetrics} and the {@link SortListener} of an {@link ExternalSort} as well as the
+ * JDK Flight Recorder events that it emits.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class MetricsTest {
+
+	/**
+	 * Tests whether or not the {@code PassMetrics} of every pass are reported to the {@code SortListener} and add up
+	 * to the totals of the {@code ExternalSort} (with and without parallel construction of runs and loser tree
+	 * merges).
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void passes() throws ClassNotFoundException, IOException {
+		int n = 100000;
+		for (int variant = 0; variant < 3; variant++) {
+			List<PassMetrics> reported = Collections.synchronizedList(new ArrayList<PassMetrics>());
+			long[] initialRunElements = new long[1];
+			ExternalSort<Integer> e = sort(n, variant, new SortListener() {
+
+				@Override
+				public void runCreated(int pass, String runName, long elements, long bytes) {
+					assertTrue(bytes > 0);
+					if (pass == 0)
+						synchronized (initialRunElements) {
+							initialRunElements[0] += elements;
+						}
+				}
+
+				@Override
+				public void passCompleted(PassMetrics metrics) {
+					reported.add(metrics);
+				}
+
+			});
+			assertEquals(n, initialRunElements[0]);
+			List<PassMetrics> passes = e.passMetrics();
+			assertEquals(e.mergePlan().passCount() + 2, passes.size()); // the initial and final passes included
+			assertEquals(passes, reported);
+			long bytesRead = 0, bytesWritten = 0, comparisons = 0;
+			for (int i = 0; i < passes.size(); i++) {
+				PassMetrics p = passes.get(i);
+				System.out.println(p);
+				assertEquals(i, p.pass());
+				assertTrue(p.wallNanos() > 0);
+				assertTrue(p.comparisons() > 0);
+				assertTrue(p.peakMemory() > 0);
+				bytesRead += p.bytesRead();
+				bytesWritten += p.bytesWritten();
+				comparisons += p.comparisons();
+			}
+			PassMetrics initial = passes.get(0);
+			assertEquals((n + 2999) / 3000, initial.runs());
+			assertEquals(n, initial.elements());
+			assertEquals(0, initial.bytesRead());
+			assertEquals(0, passes.get(passes.size() - 1).runs()); // the final pass constructs no run
+			assertEquals(0, passes.get(passes.size() - 1).bytesWritten());
+			assertTrue(passes.get(1).ioNanos() > 0);
+			assertEquals(e.physicalBytesRead(), bytesRead);
+			assertEquals(e.physicalBytesWritten(), bytesWritten);
+			assertEquals(e.comparisons(), comparisons);
+		}
+	}
+
+	/**
+	 * Tests whether or not an {@code ExternalSort} emits an event for each pass and for each block read and written
+	 * while the JDK Flight Recorder records them.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void flightRecorder() throws ClassNotFoundException, IOException {
+		Path file = Files.createTempFile("sort", ".jfr");
+		ExternalSort<Integer> e;
+		try (Recording recording = new Recording()) {
+			recording.enable("external_sort.Pass");
+			recording.enable("external_sort.BlockRead");
+			recording.enable("external_sort.BlockWrite");
+			recording.start();
+			e = sort(50000, 0, null);
+			recording.stop();
+			recording.dump(file);
+		}
+		int passes = 0, blockReads = 0, blockWrites = 0;
+		for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+			String name = event.getEventType().getName();
+			if (name.equals("external_sort.Pass"))
+				passes++;
+			else if (name.equals("external_sort.BlockRead"))
+				blockReads++;
+			else if (name.equals("external_sort.BlockWrite"))
+				blockWrites++;
+		}
+		Files.delete(file);
+		System.out.println(passes + " pass events, " + blockReads + " block read events, " + blockWrites
+				+ " block write events");
+		assertEquals(e.passMetrics().size(), passes);
+		assertEquals(e.bufferReadCount(), blockReads);
+		assertEquals(e.bufferWriteCount(), blockWrites);
+	}
+
+	/**
+	 * Sorts the specified number of integers in descending order and verifies the result.
+	 *
+	 * @param n
+	 *            the number of integers
+	 * @param variant
+	 *            0 for the default settings, 1 for parallel construction of runs, and 2 for loser tree merges
+	 * @param listener
+	 *            a {@code SortListener} ({@code null} if there is no such {@code SortListener})
+	 * @return the {@code ExternalSort} used
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(int n, int variant, SortListener listener) throws ClassNotFoundException, IOException {
+		Iterator<Integer> iterator = new Iterator<Integer>() { // iterator over (n-1), (n-2), ..., 2, 1, 0
+
+			int i = n - 1;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				return i--;
+			}
+
+		};
+		ExternalSort<Integer> e = new ExternalSort<Integer>(iterator, 4, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 3000;
+			}
+
+			@Override
+			protected int parallelism() {
+				return variant == 1 ? 4 : 1;
+			}
+
+			@Override
+			protected boolean loserTreeMerge() {
+				return variant == 2;
+			}
+
+			@Override
+			protected SortListener listener() {
+				return listener;
+			}
+
+		};
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(i, e.next()); // must get 0, 1, 2, ..., (n-1) from e
+		}
+		assertEquals(false, e.hasNext());
+		return e;
+	}
+
+}
@@ -0,0 +1,162 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+
+/**
+ * This program tests the {@link ExternalSort} class while constructing and merging runs in parallel.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class ParallelExternalSortTest {
+
+	/**
+	 * Tests the {@link ExternalSort} class while constructing and merging runs in parallel.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void iteration() throws ClassNotFoundException, IOException {
+		sort(160000, 10000, 2, 1024, 1, Integer.MAX_VALUE, System.out); // test with 160000 numbers and 1 thread
+		sort(160000, 10000, 2, 1024, 4, Integer.MAX_VALUE, System.out); // test with 160000 numbers and 4 threads
+		sort(1600000, 10000, 16, 1024, 8, Integer.MAX_VALUE, System.out); // test with 1600000 numbers and 8 threads
+		sort(160000, 10000, 4, 1024, 8, 2 * 5, System.out); // test with 8 threads but buffers for only 2 merges
+		sort(160000, 10000, 4, 1024, 8, 1, System.out); // test with 8 threads but a budget smaller than a merge
+	}
+
+	/**
+	 * Tests whether or not a failure in a task constructing an initial run stops the {@link ExternalSort} before the
+	 * whole input is consumed.
+	 *
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void failure() throws ClassNotFoundException {
+		int n = 1000000;
+		int[] consumed = { 0 };
+		Iterator<Integer> iterator = new Iterator<Integer>() {
+
+			@Override
+			public boolean hasNext() {
+				return consumed[0] < n;
+			}
+
+			@Override
+			public Integer next() {
+				return consumed[0]++;
+			}
+
+		};
+		try {
+			new ExternalSort<Integer>(iterator, 4, 1024, "test", System.out) {
+
+				@Override
+				protected boolean isFull(ArrayList<Integer> list) {
+					return list.size() >= 10000;
+				}
+
+				@Override
+				protected int parallelism() {
+					return 4;
+				}
+
+				@Override
+				protected long maxSpillBytes() {
+					return 1; // writing any run fails
+				}
+
+			};
+			fail();
+		} catch (IOException e) {
+			System.out.println(e.getMessage() + " after " + consumed[0] + " element(s)");
+			assertTrue(consumed[0] < n); // the failure must be reported before the whole input is consumed
+		}
+	}
+
+	/**
+	 * Tests the {@link ExternalSort} class.
+	 *
+	 * @param n
+	 *            the number of elements
+	 * @param m
+	 *            the number of elements per initial run
+	 * @param degree
+	 *            the degree of external sort
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param parallelism
+	 *            the number of threads that construct runs
+	 * @param mergeBufferBudget
+	 *            the total number of buffers that concurrent merges may use
+	 * @param out
+	 *            a {@code PrintStream}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	static void sort(int n, int m, int degree, int bufferSize, int parallelism, int mergeBufferBudget,
+			PrintStream out) throws ClassNotFoundException, IOException {
+		out.println("degree: " + degree);
+		out.println("bufferSize: " + bufferSize);
+		out.println("parallelism: " + parallelism);
+		out.println("merge buffer budget: " + mergeBufferBudget);
+		Iterator<Integer> iterator = new Iterator<Integer>() { // iterator over (n-1), (n-2), ..., 2, 1, 0
+
+			int i = n - 1;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				return i--;
+			}
+
+		};
+		long time = System.nanoTime();
+		ExternalSort<Integer> e = new ExternalSort<Integer>(iterator, degree, bufferSize, "test", out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= m;
+			}
+
+			@Override
+			protected int parallelism() {
+				return parallelism;
+			}
+
+			@Override
+			protected int mergeBufferBudget() {
+				return mergeBufferBudget;
+			}
+
+		};
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(i, e.next()); // must get 0, 1, 2, ..., (n-1) from e
+		}
+		assertEquals(false, e.hasNext());
+		out.println("number of buffer reads: " + e.bufferReadCount());
+		out.println("number of buffer writes: " + e.bufferWriteCount());
+		out.println("elapsed time: " + String.format(" %.5f seconds", (System.nanoTime() - time) * 1.0e-9));
+		out.println();
+	}
+
+}
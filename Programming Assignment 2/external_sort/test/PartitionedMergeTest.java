@@ -0,0 +1,282 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import external_sort.BlockCompression;
+import external_sort.Combiner;
+import external_sort.ExternalSort;
+import external_sort.KeyPrefix;
+import external_sort.RunCodec;
+
+/**
+ * This program tests the {@link ExternalSort} class when its final merge is partitioned into key ranges that are
+ * merged concurrently.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class PartitionedMergeTest {
+
+	/**
+	 * The number of variants of the {@code ExternalSort} (see {@link #sort(List, int, long)}).
+	 */
+	static final int VARIANTS = 6;
+
+	/**
+	 * Tests whether or not the partitions, each consumed by a different thread, cover disjoint consecutive key ranges
+	 * whose concatenation is the sorted output (with various settings of the {@code ExternalSort}).
+	 *
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	@Test
+	public void partitions() throws Exception {
+		List<Integer> input = input(100000);
+		File directory = directory();
+		for (int variant = 0; variant < VARIANTS; variant++) {
+			ExternalSort<Integer> e = sort(input, variant, Long.MAX_VALUE);
+			List<Iterator<Integer>> partitions = e.partitions(4);
+			assertTrue(partitions.size() > 1);
+			assertFalse(e.hasNext());
+			List<List<Integer>> outputs = new ArrayList<List<Integer>>();
+			List<Thread> threads = new ArrayList<Thread>();
+			for (Iterator<Integer> partition : partitions) {
+				List<Integer> output = new ArrayList<Integer>();
+				outputs.add(output);
+				Thread t = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+						while (partition.hasNext())
+							output.add(partition.next());
+					}
+
+				});
+				threads.add(t);
+				t.start();
+			}
+			for (Thread t : threads)
+				t.join();
+			List<Integer> output = new ArrayList<Integer>();
+			for (List<Integer> o : outputs) {
+				System.out.println("partition: " + o.size() + " element(s)");
+				if (!output.isEmpty() && !o.isEmpty())
+					assertTrue(output.get(output.size() - 1) < o.get(0)); // equal elements in the same partition
+				output.addAll(o);
+			}
+			assertEquals(expected(input, variant), output);
+			assertEquals(e.mergePlan().passCount() + 2, e.passMetrics().size()); // the final pass completed
+			if (variant == 5) {
+				assertEquals(0, directory.listFiles().length); // every run must be deleted
+				assertEquals(0, e.spillBytes());
+			}
+		}
+	}
+
+	/**
+	 * Tests whether or not a parallel {@code Stream} over the sorted elements produces them in order.
+	 *
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	@Test
+	public void stream() throws Exception {
+		List<Integer> input = input(100000);
+		directory();
+		for (int variant = 0; variant < VARIANTS; variant++) {
+			List<Integer> output = sort(input, variant, Long.MAX_VALUE).stream(8).collect(Collectors.toList());
+			assertEquals(expected(input, variant), output);
+		}
+	}
+
+	/**
+	 * Tests whether or not the elements sorted in memory and the limited number of the smallest elements are also
+	 * available from the partitions.
+	 *
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	@Test
+	public void fallbacks() throws Exception {
+		List<Integer> input = input(2000); // sorted in memory
+		ExternalSort<Integer> e = sort(input, 0, Long.MAX_VALUE);
+		List<Iterator<Integer>> partitions = e.partitions(4);
+		assertEquals(4, partitions.size());
+		assertEquals(expected(input, 0), concatenate(partitions));
+		input = input(100000);
+		e = sort(input, 0, 10000); // more than an initial run
+		partitions = e.partitions(4);
+		assertEquals(1, partitions.size()); // the output iterator itself
+		assertEquals(expected(input, 0).subList(0, 10000), concatenate(partitions));
+	}
+
+	/**
+	 * Tests whether or not an {@code ExternalSort} cannot be partitioned once elements have been obtained from it.
+	 *
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	@Test
+	public void illegalState() throws Exception {
+		ExternalSort<Integer> e = sort(input(100000), 0, Long.MAX_VALUE);
+		e.next();
+		try {
+			e.partitions(4);
+			fail();
+		} catch (IllegalStateException ex) {
+		}
+	}
+
+	/**
+	 * Creates (or empties) the spill directory used by variant 5 (see {@link #sort(List, int, long)}).
+	 *
+	 * @return the spill directory
+	 */
+	static File directory() {
+		File directory = new File("partitioned");
+		directory.mkdirs();
+		for (File f : directory.listFiles())
+			f.delete();
+		return directory;
+	}
+
+	/**
+	 * Generates the specified number of random integers with many duplicates.
+	 *
+	 * @param n
+	 *            the number of integers
+	 * @return a list of random integers
+	 */
+	static List<Integer> input(int n) {
+		Random random = new Random(0);
+		List<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++)
+			input.add(random.nextInt(n / 3));
+		return input;
+	}
+
+	/**
+	 * Returns the expected output of sorting the specified integers.
+	 *
+	 * @param input
+	 *            a list of integers
+	 * @param variant
+	 *            the variant of the {@code ExternalSort} (see {@link #sort(List, int, long)})
+	 * @return the expected output of sorting the specified integers
+	 */
+	static List<Integer> expected(List<Integer> input, int variant) {
+		if (variant == 3)
+			return new ArrayList<Integer>(new TreeSet<Integer>(input));
+		List<Integer> expected = new ArrayList<Integer>(input);
+		Collections.sort(expected);
+		return expected;
+	}
+
+	/**
+	 * Concatenates the elements from the specified {@code Iterator}s.
+	 *
+	 * @param iterators
+	 *            {@code Iterator}s
+	 * @return a list of the elements from the specified {@code Iterator}s
+	 */
+	static List<Integer> concatenate(List<Iterator<Integer>> iterators) {
+		List<Integer> output = new ArrayList<Integer>();
+		for (Iterator<Integer> i : iterators)
+			while (i.hasNext())
+				output.add(i.next());
+		return output;
+	}
+
+	/**
+	 * Constructs an {@code ExternalSort} over the specified integers.
+	 *
+	 * @param input
+	 *            a list of integers
+	 * @param variant
+	 *            0 for the default settings, 1 for compressed blocks that are prefetched, 2 for key prefixes and a
+	 *            run kept in memory, 3 for eliminating duplicates, 4 for memory-mapped final runs merged by a loser
+	 *            tree, and 5 for deleting merged runs from a spill directory
+	 * @param limit
+	 *            the maximum number of the smallest elements to produce
+	 * @return the constructed {@code ExternalSort}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(List<Integer> input, int variant, long limit)
+			throws ClassNotFoundException, IOException {
+		return new ExternalSort<Integer>(input.iterator(), 4, 1024, limit, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 3000;
+			}
+
+			@Override
+			protected BlockCompression compression() {
+				return variant == 1 ? BlockCompression.FAST : null;
+			}
+
+			@Override
+			protected int prefetchDepth() {
+				return variant == 1 ? 2 : 0;
+			}
+
+			@Override
+			protected KeyPrefix<Integer> keyPrefix() {
+				return variant == 2 ? KeyPrefix.INTEGER : null;
+			}
+
+			@Override
+			protected RunCodec<Integer> codec() {
+				return variant == 2 ? RunCodec.INTEGER : null;
+			}
+
+			@Override
+			protected boolean keepLastRunInMemory() {
+				return variant == 2;
+			}
+
+			@Override
+			protected Combiner<Integer> combiner() {
+				return variant == 3 ? Combiner.distinct() : null;
+			}
+
+			@Override
+			protected boolean mapFinalRuns() {
+				return variant == 4;
+			}
+
+			@Override
+			protected boolean loserTreeMerge() {
+				return variant == 4;
+			}
+
+			@Override
+			protected boolean deleteMergedRuns() {
+				return variant == 5;
+			}
+
+			@Override
+			protected List<File> spillDirectories() {
+				return variant == 5 ? Arrays.asList(new File("partitioned")) : null;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,214 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import external_sort.DoubleExternalSort;
+import external_sort.ExternalSort;
+import external_sort.IntExternalSort;
+import external_sort.LongExternalSort;
+import external_sort.PrimitiveRunReader;
+
+/**
+ * This program tests the {@link IntExternalSort}, {@link LongExternalSort}, and {@link DoubleExternalSort} classes.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class PrimitiveExternalSortTest {
+
+	/**
+	 * Tests the {@link IntExternalSort} class.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Test
+	public void ints() throws IOException {
+		for (int n : new int[] { 0, 1, 10, 160000 }) {
+			int[] values = new int[n];
+			for (int i = 0; i < n; i++)
+				values[i] = n - 1 - i; // (n-1), (n-2), ..., 2, 1, 0
+			IntExternalSort e = new IntExternalSort(Arrays.stream(values).iterator(), 3, 1024, 10000, "test",
+					System.out);
+			for (int i = 0; i < n; i++) {
+				assertEquals(true, e.hasNext());
+				assertEquals(i, e.nextInt()); // must get 0, 1, 2, ..., (n-1) from e
+			}
+			assertEquals(false, e.hasNext());
+			System.out.println("bytes written: " + e.bytesWritten());
+		}
+	}
+
+	/**
+	 * Tests the {@link LongExternalSort} class.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Test
+	public void longs() throws IOException {
+		long[] values = new Random(0).longs(200000).toArray();
+		LongExternalSort e = new LongExternalSort(Arrays.stream(values).iterator(), 4, 1000, 7000, "test",
+				System.out); // a buffer size that is not a multiple of the value width
+		Arrays.sort(values);
+		for (long v : values) {
+			assertEquals(true, e.hasNext());
+			assertEquals(v, e.nextLong());
+		}
+		assertEquals(false, e.hasNext());
+	}
+
+	/**
+	 * Tests the {@link DoubleExternalSort} class.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Test
+	public void doubles() throws IOException {
+		double[] values = new Random(0).doubles(100000).toArray();
+		for (int i = 0; i < values.length; i++)
+			values[i] -= 0.5; // negative and positive values
+		values[0] = Double.NaN;
+		values[1] = -0.0;
+		values[2] = 0.0;
+		values[3] = Double.NEGATIVE_INFINITY;
+		DoubleExternalSort e = new DoubleExternalSort(Arrays.stream(values).iterator(), 2, 1024, 10000, "test",
+				System.out);
+		Arrays.sort(values);
+		for (double v : values) {
+			assertEquals(true, e.hasNext());
+			assertEquals(Double.doubleToLongBits(v), Double.doubleToLongBits(e.nextDouble()));
+		}
+		assertEquals(false, e.hasNext());
+	}
+
+	/**
+	 * Tests whether or not an {@link IntExternalSort} deletes its runs once they are merged (and the final runs once
+	 * all of the values are obtained) and whether or not it fails once the runs would occupy too many bytes.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Test
+	public void spill() throws IOException {
+		File directory = new File("primitive");
+		directory.mkdirs();
+		for (File f : directory.listFiles())
+			f.delete();
+		int n = 160000;
+		int[] values = new Random(0).ints(n).toArray();
+		IntExternalSort e = sort(values, Long.MAX_VALUE);
+		Arrays.sort(values);
+		for (int v : values)
+			assertEquals(v, e.nextInt());
+		assertEquals(false, e.hasNext());
+		assertEquals(0, directory.listFiles().length); // every run must be deleted
+		assertEquals(0, e.spillBytes());
+		System.out.println("peak spill bytes: " + e.peakSpillBytes() + ", bytes written: " + e.bytesWritten());
+		assertTrue(e.peakSpillBytes() < e.bytesWritten());
+		try {
+			sort(values, e.peakSpillBytes() / 2);
+			fail();
+		} catch (IOException x) {
+			System.out.println(x.getMessage());
+		}
+	}
+
+	/**
+	 * Tests whether or not a {@link PrimitiveRunReader} reports a run that ends with a partial value.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Test
+	public void truncation() throws IOException {
+		IntExternalSort e = new IntExternalSort(Arrays.stream(new int[0]).iterator(), 2, 1024, 10, "test", System.out);
+		Files.write(new File("truncated.run").toPath(), new byte[] { 0, 0, 0, 7, 0, 0 }); // an int and 2 more bytes
+		PrimitiveRunReader reader = new PrimitiveRunReader("truncated.run", 1024, e);
+		assertEquals(true, reader.ensure(Integer.BYTES));
+		assertEquals(7, reader.getInt());
+		try {
+			reader.ensure(Integer.BYTES);
+			fail("the partial value must be reported");
+		} catch (IOException x) {
+			System.out.println(x.getMessage());
+		}
+	}
+
+	/**
+	 * Sorts the specified values using an {@link IntExternalSort} that places its runs in a directory and deletes them
+	 * once they are merged.
+	 *
+	 * @param values
+	 *            {@code int} values
+	 * @param maxSpillBytes
+	 *            the maximum number of bytes that the runs may occupy
+	 * @return the {@link IntExternalSort} whose output is yet to be obtained
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	static IntExternalSort sort(int[] values, long maxSpillBytes) throws IOException {
+		return new IntExternalSort(Arrays.stream(values).iterator(), 3, 1024, 10000, "primitive/test", System.out) {
+
+			@Override
+			protected boolean deleteMergedRuns() {
+				return true;
+			}
+
+			@Override
+			protected long maxSpillBytes() {
+				return maxSpillBytes;
+			}
+
+		};
+	}
+
+	/**
+	 * Compares the {@link IntExternalSort} class against the {@link ExternalSort} class.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void comparison() throws IOException, ClassNotFoundException {
+		int n = 1000000;
+		int[] values = new Random(0).ints(n).toArray();
+		long time = System.nanoTime();
+		IntExternalSort e = new IntExternalSort(Arrays.stream(values).iterator(), 4, 4 * 1024, 100000, "test",
+				System.out);
+		long sum = 0;
+		while (e.hasNext())
+			sum += e.nextInt();
+		System.out.println("IntExternalSort: " + e.bytesWritten() + " bytes written"
+				+ String.format(" (%.5f seconds)", (System.nanoTime() - time) * 1.0e-9));
+		time = System.nanoTime();
+		ExternalSort<Integer> b = new ExternalSort<Integer>(Arrays.stream(values).iterator(), 4, 4 * 1024, "test",
+				System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 100000;
+			}
+
+		};
+		while (b.hasNext())
+			sum -= b.next();
+		System.out.println("ExternalSort: " + b.bytesWritten() + " bytes written"
+				+ String.format(" (%.5f seconds)", (System.nanoTime() - time) * 1.0e-9));
+		assertEquals(0, sum);
+		assertTrue(e.bytesWritten() < b.bytesWritten());
+	}
+
+}
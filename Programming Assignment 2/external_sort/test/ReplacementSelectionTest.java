@@ -0,0 +1,131 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+import external_sort.ReplacementSelection;
+
+/**
+ * This program tests the {@link ReplacementSelection} class.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class ReplacementSelectionTest {
+
+	/**
+	 * Tests {@link ReplacementSelection#nextRun()} and {@link ReplacementSelection#next()}.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void runs() throws ClassNotFoundException, IOException {
+		assertEquals(1, runs(100000, 1000, RunWriterTest.iterator(100000))); // sorted input must result in 1 run
+		int n = 1000000;
+		int m = 1000;
+		int runCount = runs(n, m, new Iterator<Integer>() { // iterator over n random numbers
+
+			int count = 0;
+
+			@Override
+			public boolean hasNext() {
+				return count < n;
+			}
+
+			@Override
+			public Integer next() {
+				count++;
+				return (int) (Math.random() * Integer.MAX_VALUE);
+			}
+
+		});
+		System.out.println("average run length: " + n / runCount + " (memory: " + m + " elements)");
+		assertTrue(n / runCount > 1.5 * m); // runs must be about twice as long as the memory
+	}
+
+	/**
+	 * Constructs runs using the data from the specified input {@code Iterator}.
+	 *
+	 * @param n
+	 *            the number of elements
+	 * @param m
+	 *            the number of elements that the memory can hold
+	 * @param iterator
+	 *            an {@code Iterator} that provides the input data
+	 * @return the number of runs constructed
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	int runs(int n, int m, Iterator<Integer> iterator)
+			throws FileNotFoundException, ClassNotFoundException, IOException {
+		ExternalSort<Integer> externalSort = new ExternalSort<Integer>(null, 2, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= m;
+			}
+
+		};
+		ReplacementSelection<Integer> selection = new ReplacementSelection<Integer>(iterator, externalSort);
+		int count = 0;
+		int runCount = 0;
+		while (selection.nextRun()) {
+			runCount++;
+			Integer last = null;
+			while (selection.hasNext()) {
+				Integer next = selection.next();
+				if (last != null)
+					assertTrue(last <= next); // each run must be sorted
+				last = next;
+				count++;
+			}
+		}
+		assertEquals(n, count);
+		return runCount;
+	}
+
+	/**
+	 * Tests the {@link ExternalSort} class using replacement selection.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void sort() throws ClassNotFoundException, IOException {
+		int n = 160000;
+		ExternalSort<Integer> e = new ExternalSort<Integer>(RunWriterTest.iterator(n), 2, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 10000;
+			}
+
+			@Override
+			protected boolean replacementSelection() {
+				return true;
+			}
+
+		};
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(i, e.next()); // must get 0, 1, 2, ..., (n-1) from e
+		}
+		assertEquals(false, e.hasNext());
+		System.out.println("bytes written: " + e.bytesWritten());
+	}
+
+}
@@ -0,0 +1,319 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+import external_sort.RunCodec;
+import external_sort.RunManifest;
+
+/**
+ * This program tests whether or not an {@link ExternalSort} resumes from the runs recorded in a {@link RunManifest}.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class ResumeTest {
+
+	/**
+	 * Tests whether or not a sort that failed after its first merge pass resumes from the recorded runs without
+	 * consuming its input.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void resume() throws ClassNotFoundException, IOException {
+		int n = 100000;
+		ExternalSort<Integer> e = sort(input(n), n, false, true);
+		long bytesWritten = e.bytesWritten();
+		RunManifest manifest = new RunManifest("resumemanifest");
+		assertTrue(manifest.load());
+		assertFalse(manifest.resumable(4, 1024, Long.MAX_VALUE)); // the sort is complete
+		long count = 0;
+		for (String run : manifest.initialRuns())
+			count += manifest.count(run);
+		assertEquals(n, count);
+
+		int mergedRuns = e.mergePlan().groups(0).size();
+		simulateFailure(e.mergePlan().groups(1).size() + 1); // the second pass and the final merge did not happen
+		e = sort(null, n, false, true); // must not consume the input
+		System.out.println("bytes written: " + e.bytesWritten() + " (from scratch: " + bytesWritten + ")");
+		assertTrue(e.bytesWritten() < bytesWritten);
+		assertTrue(mergedRuns > 0);
+
+		simulateFailure(1); // the final merge did not happen
+		e = sort(null, n, false, true);
+		assertEquals(0, e.bytesWritten()); // all of the merge passes must be skipped
+	}
+
+	/**
+	 * Tests whether or not a sort that merges runs in parallel resumes from the recorded runs without consuming its
+	 * input (the recorded runs are consulted while the merging threads record new runs).
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void parallelResume() throws ClassNotFoundException, IOException {
+		int n = 100000;
+		ExternalSort<Integer> e = sort(input(n), n, false, true, null, 4);
+		long bytesWritten = e.bytesWritten();
+		simulateFailure(e.mergePlan().groups(1).size() + 1); // the second pass and the final merge did not happen
+		e = sort(null, n, false, true, null, 4); // must not consume the input
+		assertTrue(e.bytesWritten() < bytesWritten);
+
+		simulateFailure(1); // the final merge did not happen
+		e = sort(null, n, false, true, null, 4);
+		assertEquals(0, e.bytesWritten()); // all of the merge passes must be skipped
+	}
+
+	/**
+	 * Tests whether or not a sort resumes when the runs merged into recorded runs have been deleted.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void resumeAfterDeletion() throws ClassNotFoundException, IOException {
+		int n = 100000;
+		ExternalSort<Integer> e = sort(input(n), n, true, false); // the output iterator is not consumed
+		RunManifest manifest = new RunManifest("resumemanifest");
+		manifest.load();
+		assertFalse(new File(manifest.initialRuns().get(0)).exists()); // merged initial runs must be deleted
+		simulateFailure(1); // the final merge did not happen
+		e = sort(null, n, true, true);
+		assertEquals(0, e.bytesWritten()); // all of the merge passes must be skipped
+	}
+
+	/**
+	 * Tests whether or not a sort starts over if the recorded runs are corrupt.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void corruption() throws ClassNotFoundException, IOException {
+		int n = 50000;
+		sort(input(n), n, false, true);
+		simulateFailure(1);
+		for (File run : new File(".").listFiles()) {
+			if (!run.getName().startsWith("resume") || !run.getName().endsWith(".run"))
+				continue;
+			try (RandomAccessFile f = new RandomAccessFile(run, "rw")) { // flips a bit in every run
+				f.seek(100);
+				int b = f.read();
+				f.seek(100);
+				f.write(b ^ 1);
+			}
+		}
+		ExternalSort<Integer> e = sort(input(n), n, false, true); // must start over
+		assertTrue(e.bytesWritten() > 0);
+		RunManifest manifest = new RunManifest("resumemanifest");
+		manifest.load();
+		assertFalse(manifest.resumable(4, 1024, Long.MAX_VALUE));
+	}
+
+	/**
+	 * Tests whether or not a sort starts over if the runs were recorded with a different {@code RunCodec} (which
+	 * would otherwise decode them incorrectly).
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void formatChange() throws ClassNotFoundException, IOException {
+		int n = 50000;
+		sort(input(n), n, false, true);
+		simulateFailure(1);
+		ExternalSort<Integer> e = sort(input(n), n, false, true, RunCodec.INTEGER); // must start over
+		assertTrue(e.bytesWritten() > 0);
+		simulateFailure(1);
+		e = sort(null, n, false, true, RunCodec.INTEGER); // resumes with the same RunCodec
+		assertEquals(0, e.bytesWritten());
+	}
+
+	/**
+	 * Removes the specified number of the last lines from the manifest file as if the sort failed before writing them.
+	 *
+	 * @param lines
+	 *            the number of lines to remove
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	void simulateFailure(int lines) throws IOException {
+		File file = new File("resumemanifest");
+		List<String> content = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		content = content.subList(0, content.size() - lines);
+		Files.write(file.toPath(), content, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns an {@code Iterator} over (n-1), (n-2), ..., 2, 1, 0.
+	 *
+	 * @param n
+	 *            the number of integers
+	 * @return an {@code Iterator} over (n-1), (n-2), ..., 2, 1, 0
+	 */
+	Iterator<Integer> input(int n) {
+		return new Iterator<Integer>() {
+
+			int i = n - 1;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				return i--;
+			}
+
+		};
+	}
+
+	/**
+	 * Sorts the integers from the specified {@code Iterator} using a resumable {@code ExternalSort} and verifies the
+	 * result if requested.
+	 *
+	 * @param input
+	 *            the input {@code Iterator} ({@code null} if the {@code ExternalSort} is expected to resume)
+	 * @param n
+	 *            the number of integers
+	 * @param delete
+	 *            a flag indicating whether or not to delete runs once they are no longer needed
+	 * @param verify
+	 *            a flag indicating whether or not to verify the output
+	 * @return the {@code ExternalSort} used
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(Iterator<Integer> input, int n, boolean delete, boolean verify)
+			throws ClassNotFoundException, IOException {
+		return sort(input, n, delete, verify, null);
+	}
+
+	/**
+	 * Sorts the integers from the specified {@code Iterator} using a resumable {@code ExternalSort} with the specified
+	 * {@code RunCodec} and verifies the result if requested.
+	 *
+	 * @param input
+	 *            the input {@code Iterator} ({@code null} if the {@code ExternalSort} is expected to resume)
+	 * @param n
+	 *            the number of integers
+	 * @param delete
+	 *            a flag indicating whether or not to delete runs once they are no longer needed
+	 * @param verify
+	 *            a flag indicating whether or not to verify the output
+	 * @param codec
+	 *            the {@code RunCodec} for encoding the integers ({@code null} if Java serialization is used)
+	 * @return the {@code ExternalSort} used
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(Iterator<Integer> input, int n, boolean delete, boolean verify, RunCodec<Integer> codec)
+			throws ClassNotFoundException, IOException {
+		return sort(input, n, delete, verify, codec, 1);
+	}
+
+	/**
+	 * Sorts the integers from the specified {@code Iterator} using a resumable {@code ExternalSort} with the specified
+	 * {@code RunCodec} and parallelism and verifies the result if requested.
+	 *
+	 * @param input
+	 *            the input {@code Iterator} ({@code null} if the {@code ExternalSort} is expected to resume)
+	 * @param n
+	 *            the number of integers
+	 * @param delete
+	 *            a flag indicating whether or not to delete runs once they are no longer needed
+	 * @param verify
+	 *            a flag indicating whether or not to verify the output
+	 * @param codec
+	 *            the {@code RunCodec} for encoding the integers ({@code null} if Java serialization is used)
+	 * @param parallelism
+	 *            the number of threads that construct runs in parallel
+	 * @return the {@code ExternalSort} used
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(Iterator<Integer> input, int n, boolean delete, boolean verify, RunCodec<Integer> codec,
+			int parallelism) throws ClassNotFoundException, IOException {
+		Iterator<Integer> iterator = input != null ? input : new Iterator<Integer>() {
+
+			@Override
+			public boolean hasNext() {
+				throw new AssertionError("the input must not be consumed");
+			}
+
+			@Override
+			public Integer next() {
+				throw new AssertionError("the input must not be consumed");
+			}
+
+		};
+		ExternalSort<Integer> e = new ExternalSort<Integer>(iterator, 4, 1024, "resume", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 3000;
+			}
+
+			@Override
+			protected boolean resumable() {
+				return true;
+			}
+
+			@Override
+			protected boolean deleteMergedRuns() {
+				return delete;
+			}
+
+			@Override
+			protected RunCodec<Integer> codec() {
+				return codec;
+			}
+
+			@Override
+			protected int parallelism() {
+				return parallelism;
+			}
+
+		};
+		if (!verify)
+			return e;
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(i, e.next()); // must get 0, 1, 2, ..., (n-1) from e
+		}
+		assertEquals(false, e.hasNext());
+		return e;
+	}
+
+}
@@ -0,0 +1,250 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+import external_sort.RunCodec;
+import external_sort.RunReader;
+import external_sort.RunWriter;
+import hdb.data.relational.RelationSchema;
+import hdb.data.relational.Tuple;
+import hdb.data.relational.TupleCodec;
+
+/**
+ * This program tests the {@link RunCodec} interface.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class RunCodecTest {
+
+	/**
+	 * Tests the built-in {@link RunCodec}s using {@link RunWriter} and {@link RunReader}.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void iteration() throws ClassNotFoundException, IOException {
+		int n = 100000;
+		ArrayList<Integer> integers = new ArrayList<Integer>();
+		ArrayList<Long> longs = new ArrayList<Long>();
+		ArrayList<Double> doubles = new ArrayList<Double>();
+		ArrayList<String> strings = new ArrayList<String>();
+		for (int i = 0; i < n; i++) {
+			integers.add(i);
+			longs.add(i * 1000000000L);
+			doubles.add(i / 3.0);
+			strings.add(String.format("%08d\u00e9", i));
+		}
+		iteration(integers, null);
+		iteration(integers, RunCodec.INTEGER);
+		iteration(longs, RunCodec.LONG);
+		iteration(doubles, RunCodec.DOUBLE);
+		iteration(strings, RunCodec.STRING);
+		iteration(integers, null, true); // blocks encoded directly into direct ByteBuffers
+		iteration(strings, RunCodec.STRING, true);
+	}
+
+	/**
+	 * Writes the specified elements to a run using the specified {@code RunCodec} and then reads them back.
+	 *
+	 * @param elements
+	 *            the elements
+	 * @param codec
+	 *            a {@code RunCodec} ({@code null} if Java serialization is used)
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	<T extends Comparable<? super T>> void iteration(ArrayList<T> elements, RunCodec<T> codec)
+			throws FileNotFoundException, ClassNotFoundException, IOException {
+		iteration(elements, codec, false);
+	}
+
+	/**
+	 * Writes the specified elements to a run using the specified {@code RunCodec} and then reads them back.
+	 *
+	 * @param elements
+	 *            the elements
+	 * @param codec
+	 *            a {@code RunCodec} ({@code null} if Java serialization is used)
+	 * @param channelIO
+	 *            a flag indicating whether or not to write and read the run using {@code FileChannel}s
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	<T extends Comparable<? super T>> void iteration(ArrayList<T> elements, RunCodec<T> codec, boolean channelIO)
+			throws FileNotFoundException, ClassNotFoundException, IOException {
+		int bufferSize = 1024;
+		ExternalSort<T> externalSort = new ExternalSort<T>(null, 2, bufferSize, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<T> list) {
+				return false;
+			}
+
+			@Override
+			protected RunCodec<T> codec() {
+				return codec;
+			}
+
+			@Override
+			protected boolean channelIO() {
+				return channelIO;
+			}
+
+		};
+		String fileName = "test0.run";
+		new RunWriter<T>(elements.iterator(), fileName, bufferSize, externalSort);
+		RunReader reader = new RunReader(fileName, bufferSize, externalSort);
+		for (T e : elements) {
+			assertEquals(true, reader.hasNext());
+			assertEquals(e, reader.next());
+		}
+		assertEquals(false, reader.hasNext());
+		System.out.println(elements.size() + " " + elements.get(0).getClass().getSimpleName() + "s ("
+				+ (codec == null ? "serialization" : "codec") + "): " + externalSort.bytesWritten() + " bytes written");
+	}
+
+	/**
+	 * Tests the {@link TupleCodec} class by writing {@code Tuple}s to a run and then reading them back.
+	 *
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	@Test
+	public void tuples() throws Exception {
+		RelationSchema schema = TupleSortTest.schema();
+		ArrayList<Tuple> tuples = TupleSortTest.tuples(schema, 20000);
+		long serialized = tuples(tuples, null);
+		long encoded = tuples(tuples, new TupleCodec(schema));
+		assertTrue(encoded < serialized); // the codec must write fewer bytes than Java serialization
+		try {
+			new TupleCodec(new RelationSchema(new String[] { "Date" }, new Class<?>[] { java.util.Date.class }));
+			fail("a schema with an attribute type that has no codec must be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Writes the specified {@code Tuple}s to a run using the specified {@code RunCodec} and then reads them back.
+	 *
+	 * @param tuples
+	 *            the {@code Tuple}s
+	 * @param codec
+	 *            a {@code RunCodec} ({@code null} if Java serialization is used)
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	long tuples(ArrayList<Tuple> tuples, RunCodec<Tuple> codec) throws ClassNotFoundException, IOException {
+		int bufferSize = 1024;
+		ExternalSort<Tuple> externalSort = new ExternalSort<Tuple>(null, 2, bufferSize, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Tuple> list) {
+				return false;
+			}
+
+			@Override
+			protected RunCodec<Tuple> codec() {
+				return codec;
+			}
+
+		};
+		String fileName = "test0.run";
+		new RunWriter<Tuple>(tuples.iterator(), fileName, bufferSize, externalSort);
+		RunReader reader = new RunReader(fileName, bufferSize, externalSort);
+		for (Tuple t : tuples) {
+			assertEquals(true, reader.hasNext());
+			assertEquals(t.toString(), reader.next().toString());
+		}
+		assertEquals(false, reader.hasNext());
+		System.out.println(tuples.size() + " Tuples (" + (codec == null ? "serialization" : "codec") + "): "
+				+ externalSort.bytesWritten() + " bytes written");
+		return externalSort.bytesWritten();
+	}
+
+	/**
+	 * Tests the {@link ExternalSort} class with and without a {@link RunCodec}.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void sort() throws ClassNotFoundException, IOException {
+		int n = 160000;
+		long serialized = sort(n, null).bytesWritten();
+		long encoded = sort(n, RunCodec.INTEGER).bytesWritten();
+		assertTrue(encoded < serialized); // the codec must write fewer bytes than Java serialization
+	}
+
+	/**
+	 * Sorts {@code n} integers using the specified {@code RunCodec}.
+	 *
+	 * @param n
+	 *            the number of elements
+	 * @param codec
+	 *            a {@code RunCodec} ({@code null} if Java serialization is used)
+	 * @return the {@code ExternalSort} used
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(int n, RunCodec<Integer> codec) throws ClassNotFoundException, IOException {
+		Iterator<Integer> iterator = new Iterator<Integer>() { // iterator over (n-1), (n-2), ..., 2, 1, 0
+
+			int i = n - 1;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				return i--;
+			}
+
+		};
+		ExternalSort<Integer> e = new ExternalSort<Integer>(iterator, 2, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 10000;
+			}
+
+			@Override
+			protected RunCodec<Integer> codec() {
+				return codec;
+			}
+
+		};
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(i, e.next()); // must get 0, 1, 2, ..., (n-1) from e
+		}
+		assertEquals(false, e.hasNext());
+		System.out.println("bytes written: " + e.bytesWritten());
+		return e;
+	}
+
+}
@@ -31,6 +31,31 @@ public class RunReaderTest {
 		iteration(10000); // test with 1000 numbers
 	}
 
+	/**
+	 * Tests the {@link RunReader#hasNext()} and {@link RunReader#next()} while prefetching blocks in the background.
+	 */
+	@Test
+	public void prefetch() throws ClassNotFoundException, IOException {
+		iteration(0, 1); // test with no numbers
+		iteration(10000, 1); // test with 10000 numbers and a prefetch depth of 1
+		iteration(10000, 4); // test with 10000 numbers and a prefetch depth of 4
+		iteration(100000, 16); // test with 100000 numbers and a prefetch depth of 16
+	}
+
+	/**
+	 * Tests the {@link RunReader#hasNext()} and {@link RunReader#next()} while reading runs using {@code FileChannel}s
+	 * and memory-mapped files.
+	 */
+	@Test
+	public void channel() throws ClassNotFoundException, IOException {
+		iteration(0, 0, true, false); // test with no numbers
+		iteration(10000, 0, true, false); // test with 10000 numbers read using a FileChannel
+		iteration(10000, 4, true, false); // test with 10000 numbers read using a FileChannel and prefetched
+		iteration(0, 0, false, true); // test with no numbers
+		iteration(10000, 0, false, true); // test with 10000 numbers read from a memory-mapped file
+		iteration(10000, 4, true, true); // test with 10000 numbers read from a memory-mapped file and prefetched
+	}
+
 	/**
 	 * Tests the {@link RunReader#hasNext()} and {@link RunReader#next()} using the specified number of elements.
 	 * 
@@ -40,6 +65,39 @@ public class RunReaderTest {
 	 * @throws ClassNotFoundException
 	 */
 	void iteration(int n) throws FileNotFoundException, ClassNotFoundException, IOException {
+		iteration(n, 0);
+	}
+
+	/**
+	 * Tests the {@link RunReader#hasNext()} and {@link RunReader#next()} using the specified number of elements.
+	 * 
+	 * @param n
+	 *            the number of elements
+	 * @param prefetchDepth
+	 *            the number of blocks to load in the background
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	void iteration(int n, int prefetchDepth) throws FileNotFoundException, ClassNotFoundException, IOException {
+		iteration(n, prefetchDepth, false, false);
+	}
+
+	/**
+	 * Tests the {@link RunReader#hasNext()} and {@link RunReader#next()} using the specified number of elements.
+	 * 
+	 * @param n
+	 *            the number of elements
+	 * @param prefetchDepth
+	 *            the number of blocks to load in the background
+	 * @param channelIO
+	 *            a flag indicating whether or not to write and read the run using {@code FileChannel}s
+	 * @param mapped
+	 *            a flag indicating whether or not to memory-map the run
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	void iteration(int n, int prefetchDepth, boolean channelIO, boolean mapped)
+			throws FileNotFoundException, ClassNotFoundException, IOException {
 
 		int bufferSize = 1024;
 
@@ -50,13 +108,23 @@ public class RunReaderTest {
 				return false;
 			}
 
+			@Override
+			protected int prefetchDepth() {
+				return prefetchDepth;
+			}
+
+			@Override
+			protected boolean channelIO() {
+				return channelIO;
+			}
+
 		};
 
 		Iterator<Integer> iterator = RunWriterTest.iterator(n);
 		String fileName = "test0.run";
 		new RunWriter<Integer>(iterator, fileName, bufferSize, externalSort);
 		
-		RunReader reader = new RunReader(fileName, bufferSize, externalSort);
+		RunReader reader = new RunReader(fileName, bufferSize, externalSort, mapped);
 		for (Integer i = 0; i < n; i++) {
 			assertEquals(true, reader.hasNext());
 			assertEquals(i, reader.next()); // must get 0, 1, 2, ..., (n-1) from i
@@ -7,12 +7,14 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import org.junit.Test;
 
 import external_sort.ExternalSort;
 import external_sort.InputBuffer;
+import external_sort.RunCodec;
 import external_sort.RunWriter;
 
 /**
@@ -46,6 +48,77 @@ public class RunWriterTest {
 		constructor(10000000, 1 * 1024); // test with 10000 numbers
 	}
 
+	/**
+	 * Tests the constructor of {@link RunWriter} while writing filled buffers in the background.
+	 * 
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void writeBehind() throws ClassNotFoundException, IOException {
+		constructor(0, 1024, 1); // test with no numbers
+		constructor(100000, 1024, 1); // test with 100000 numbers and a write-behind depth of 1
+		constructor(1000000, 1024, 4); // test with 1000000 numbers and a write-behind depth of 4
+		constructor(1000000, 64 * 1024, 4); // test with 1000000 numbers and a write-behind depth of 4
+	}
+
+	/**
+	 * Tests whether or not the constructor of {@link RunWriter} fails (rather than writing empty blocks forever) when
+	 * an element does not fit in a block (with Java serialization, a {@code RunCodec}, and writing behind).
+	 * 
+	 * @throws IOException
+	 *             if an unexpected I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void tooLarge() throws ClassNotFoundException, IOException {
+		for (int variant = 0; variant < 4; variant++)
+			tooLarge(variant);
+	}
+
+	/**
+	 * Tests whether or not the constructor of {@link RunWriter} fails when an element does not fit in a block.
+	 * 
+	 * @param variant
+	 *            0 for Java serialization, 1 for a {@code RunCodec}, 2 for Java serialization and writing behind, and 3
+	 *            for a {@code RunCodec} and writing behind
+	 * @throws IOException
+	 *             if an unexpected I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	void tooLarge(int variant) throws ClassNotFoundException, IOException {
+		ExternalSort<String> externalSort = new ExternalSort<String>(null, 2, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<String> list) {
+				return false;
+			}
+
+			@Override
+			protected RunCodec<String> codec() {
+				return variant % 2 == 1 ? RunCodec.STRING : null;
+			}
+
+			@Override
+			protected int writeBehindDepth() {
+				return variant / 2;
+			}
+
+		};
+		String large = String.format("%2000s", "large");
+		try {
+			new RunWriter<String>(Arrays.asList("small", large, "small").iterator(), "test0.run", 1024, externalSort);
+			fail();
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			assertTrue(new File("test0.run").length() <= 1024 * 2); // no empty blocks written
+		}
+	}
+
 	/**
 	 * Tests the constructor of {@link RunWriter} using the specified number of elements.
 	 * 
@@ -59,6 +132,25 @@ public class RunWriterTest {
 	 *             if the class of a serialized object cannot be found
 	 */
 	void constructor(int n, int bufferSize) throws FileNotFoundException, ClassNotFoundException, IOException {
+		constructor(n, bufferSize, 0);
+	}
+
+	/**
+	 * Tests the constructor of {@link RunWriter} using the specified number of elements.
+	 * 
+	 * @param n
+	 *            the number of elements
+	 * @param bufferSize
+	 *            the buffer size
+	 * @param writeBehindDepth
+	 *            the maximum number of filled buffers waiting to be written in the background
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	void constructor(int n, int bufferSize, int writeBehindDepth)
+			throws FileNotFoundException, ClassNotFoundException, IOException {
 
 		ExternalSort<Integer> externalSort = new ExternalSort<Integer>(null, 2, bufferSize, "test", System.out) {
 
@@ -67,6 +159,11 @@ public class RunWriterTest {
 				return false;
 			}
 
+			@Override
+			protected int writeBehindDepth() {
+				return writeBehindDepth;
+			}
+
 		};
 
 		Iterator<Integer> iterator = iterator(n);
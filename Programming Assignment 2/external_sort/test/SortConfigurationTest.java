@@ -0,0 +1,107 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import external_sort.DeviceProfile;
+import external_sort.ExternalSort;
+import external_sort.SortConfiguration;
+
+/**
+ * This program tests the {@link SortConfiguration} class.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class SortConfigurationTest {
+
+	/**
+	 * Tests the parameters chosen by {@link SortConfiguration}s.
+	 */
+	@Test
+	public void parameters() {
+		long budget = 1024 * 1024;
+		long inputSize = 64 * budget;
+		SortConfiguration hdd = new SortConfiguration(budget, inputSize, DeviceProfile.HDD);
+		SortConfiguration nvme = new SortConfiguration(budget, inputSize, DeviceProfile.NVME);
+		System.out.println(hdd);
+		System.out.println(nvme);
+		for (SortConfiguration c : new SortConfiguration[] { hdd, nvme, new SortConfiguration(budget) }) {
+			assertTrue(c.degree() >= 2);
+			assertTrue((c.degree() + 1L) * c.bufferSize() <= budget); // a merge must fit in the memory budget
+			assertTrue(c.runBytes() + c.bufferSize() <= budget); // an initial run must fit in the memory budget
+		}
+		assertTrue(hdd.bufferSize() > nvme.bufferSize()); // slow positioning must favor larger buffers
+		SortConfiguration large = new SortConfiguration(1L << 50); // a degree this budget allows would overflow int
+		System.out.println(large);
+		assertTrue(large.degree() >= 2 && large.degree() <= SortConfiguration.MAX_DEGREE);
+		try {
+			new SortConfiguration(1024);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Tests whether or not an {@link ExternalSort} with a very large memory budget can be constructed (its
+	 * {@code BufferPool} must not reserve room for more buffers than the degree and the memory budget call for).
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void largeBudget() throws ClassNotFoundException, IOException {
+		ExternalSort<Integer> e = ExternalSort.create(Arrays.asList(3, 1, 2).iterator(), 1L << 50, "test", System.out);
+		assertTrue(e.configuration().degree() <= SortConfiguration.MAX_DEGREE);
+		for (Integer i = 1; i <= 3; i++)
+			assertEquals(i, e.next());
+		assertEquals(false, e.hasNext());
+	}
+
+	/**
+	 * Tests the {@link ExternalSort} class with a memory budget.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void sort() throws ClassNotFoundException, IOException {
+		int n = 160000;
+		Iterator<Integer> iterator = new Iterator<Integer>() { // iterator over (n-1), (n-2), ..., 2, 1, 0
+
+			int i = n - 1;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				return i--;
+			}
+
+		};
+		ExternalSort<Integer> e = ExternalSort.create(iterator, 1024 * 1024, 24L * n, DeviceProfile.SSD, "test",
+				System.out);
+		System.out.println(e.configuration());
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(i, e.next()); // must get 0, 1, 2, ..., (n-1) from e
+		}
+		assertEquals(false, e.hasNext());
+		assertEquals(e.configuration().bufferSize(), e.bufferSize());
+		long runBytes = e.configuration().runBytes();
+		assertEquals((24L * n + runBytes - 1) / runBytes, e.mergePlan().finalGroup().size()); // 24 bytes per integer
+	}
+
+}
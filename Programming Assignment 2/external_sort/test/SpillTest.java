@@ -0,0 +1,146 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+
+/**
+ * This program tests how an {@link ExternalSort} places, deletes, and limits its runs.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class SpillTest {
+
+	/**
+	 * Tests whether or not runs are spread across the spill directories and deleted once they are no longer needed.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void striping() throws ClassNotFoundException, IOException {
+		List<File> directories = Arrays.asList(new File("spill0"), new File("spill1"), new File("spill2"));
+		for (File directory : directories) {
+			directory.mkdirs();
+			for (File f : directory.listFiles())
+				f.delete();
+		}
+		int n = 100000;
+		ExternalSort<Integer> e = sort(n, directories, Long.MAX_VALUE);
+		for (File directory : directories)
+			assertTrue(directory.listFiles().length > 0); // the final runs must be in every directory
+		verify(n, e);
+		for (File directory : directories)
+			assertEquals(0, directory.listFiles().length); // every run must be deleted
+		assertEquals(0, e.spillBytes());
+		System.out.println("peak spill bytes: " + e.peakSpillBytes() + ", bytes written: " + e.bytesWritten());
+		assertTrue(e.peakSpillBytes() < e.bytesWritten());
+	}
+
+	/**
+	 * Tests whether or not a sort fails if its runs would occupy more bytes than allowed.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void limit() throws ClassNotFoundException, IOException {
+		int n = 100000;
+		long peak = sort(n, null, Long.MAX_VALUE).peakSpillBytes();
+		verify(n, sort(n, null, peak)); // the peak must be enough
+		try {
+			sort(n, null, peak / 2);
+			fail("the spill limit must be enforced");
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Sorts the specified number of integers in descending order, deleting runs once they are merged.
+	 *
+	 * @param n
+	 *            the number of integers
+	 * @param directories
+	 *            the spill directories ({@code null} if runs are placed according to the file name prefix)
+	 * @param maxSpillBytes
+	 *            the maximum number of bytes that the runs may occupy
+	 * @return the {@code ExternalSort} used
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(int n, List<File> directories, long maxSpillBytes)
+			throws ClassNotFoundException, IOException {
+		Iterator<Integer> iterator = new Iterator<Integer>() { // iterator over (n-1), (n-2), ..., 2, 1, 0
+
+			int i = n - 1;
+
+			@Override
+			public boolean hasNext() {
+				return i >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				return i--;
+			}
+
+		};
+		return new ExternalSort<Integer>(iterator, 4, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= 3000;
+			}
+
+			@Override
+			protected List<File> spillDirectories() {
+				return directories;
+			}
+
+			@Override
+			protected long maxSpillBytes() {
+				return maxSpillBytes;
+			}
+
+			@Override
+			protected boolean deleteMergedRuns() {
+				return true;
+			}
+
+		};
+	}
+
+	/**
+	 * Verifies that the specified {@code ExternalSort} produces 0, 1, 2, ..., (n-1).
+	 *
+	 * @param n
+	 *            the number of integers
+	 * @param e
+	 *            an {@code ExternalSort}
+	 */
+	void verify(int n, ExternalSort<Integer> e) {
+		for (Integer i = 0; i < n; i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(i, e.next()); // must get 0, 1, 2, ..., (n-1) from e
+		}
+		assertEquals(false, e.hasNext());
+	}
+
+}
@@ -0,0 +1,130 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+
+/**
+ * This program tests the {@link ExternalSort} class when only the smallest elements are produced.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class TopKTest {
+
+	/**
+	 * Tests whether or not the smallest elements are found in memory without writing any run when they fit in memory.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void inMemory() throws ClassNotFoundException, IOException {
+		ArrayList<Integer> input = input(100000, 1000);
+		for (long k : new long[] { 0, 1, 10, 1000 }) {
+			ExternalSort<Integer> e = sort(input, k, 5000);
+			verify(input, k, e);
+			assertEquals(0, e.bufferWriteCount());
+			assertNull(e.mergePlan());
+		}
+		ExternalSort<Integer> e = sort(input(3000, 1000), 10000, 5000); // fewer elements than the limit
+		verify(input(3000, 1000), 10000, e);
+		assertEquals(0, e.bufferWriteCount());
+	}
+
+	/**
+	 * Tests whether or not the smallest elements are found correctly when they do not fit in memory and whether or not
+	 * fewer bytes are written than when all of the elements are sorted.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Test
+	public void spill() throws ClassNotFoundException, IOException {
+		ArrayList<Integer> input = input(100000, 50000);
+		long bytesWritten = sort(input, Long.MAX_VALUE, 2000).bytesWritten();
+		for (long k : new long[] { 2001, 5000, 30000 }) {
+			ExternalSort<Integer> e = sort(input, k, 2000);
+			verify(input, k, e);
+			System.out.println("bytes written: " + e.bytesWritten() + " (all elements: " + bytesWritten + ")");
+			assertTrue(e.bytesWritten() < bytesWritten);
+		}
+	}
+
+	/**
+	 * Returns a list of random integers.
+	 *
+	 * @param n
+	 *            the number of integers
+	 * @param bound
+	 *            the upper bound (exclusive) on the integers
+	 * @return a list of random integers
+	 */
+	ArrayList<Integer> input(int n, int bound) {
+		Random random = new Random(n);
+		ArrayList<Integer> input = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++)
+			input.add(random.nextInt(bound));
+		return input;
+	}
+
+	/**
+	 * Constructs an {@code ExternalSort} that produces the specified number of the smallest elements.
+	 *
+	 * @param input
+	 *            the input elements
+	 * @param k
+	 *            the number of the smallest elements to produce
+	 * @param runLength
+	 *            the number of elements that can be kept in memory
+	 * @return the constructed {@code ExternalSort}
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Integer> sort(ArrayList<Integer> input, long k, int runLength)
+			throws ClassNotFoundException, IOException {
+		return new ExternalSort<Integer>(input.iterator(), 4, 1024, k, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Integer> list) {
+				return list.size() >= runLength;
+			}
+
+		};
+	}
+
+	/**
+	 * Verifies that the specified {@code ExternalSort} produces the specified number of the smallest input elements in
+	 * ascending order.
+	 *
+	 * @param input
+	 *            the input elements
+	 * @param k
+	 *            the number of the smallest elements to produce
+	 * @param e
+	 *            an {@code ExternalSort}
+	 */
+	void verify(ArrayList<Integer> input, long k, ExternalSort<Integer> e) {
+		ArrayList<Integer> expected = new ArrayList<Integer>(input);
+		Collections.sort(expected);
+		for (int i = 0; i < Math.min(k, expected.size()); i++) {
+			assertEquals(true, e.hasNext());
+			assertEquals(expected.get(i), e.next());
+		}
+		assertEquals(false, e.hasNext());
+	}
+
+}
@@ -0,0 +1,168 @@
+package external_sort.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import external_sort.ExternalSort;
+import hdb.data.relational.RelationSchema;
+import hdb.data.relational.RelationSchema.InvalidAttributeIndexException;
+import hdb.data.relational.RelationSchema.InvalidRelationSchemaDefinitionException;
+import hdb.data.relational.Tuple;
+import hdb.data.relational.Tuple.TypeException;
+import hdb.data.relational.TupleComparator;
+
+/**
+ * This program tests the {@link ExternalSort} class when {@link Tuple}s are sorted by a {@link TupleComparator}.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ *
+ */
+public class TupleSortTest {
+
+	/**
+	 * Tests whether or not {@code Tuple}s are sorted by multiple attributes in ascending and descending order (with
+	 * and without replacement selection, parallel construction of runs, and loser tree merges).
+	 *
+	 * @throws Exception
+	 *             if an error occurs
+	 */
+	@Test
+	public void sort() throws Exception {
+		RelationSchema schema = schema();
+		ArrayList<Tuple> tuples = tuples(schema, 20000);
+		TupleComparator[] comparators = { new TupleComparator(schema, 2, 0),
+				new TupleComparator(schema, new int[] { 1, 2, 0 }, new boolean[] { false, true, false }),
+				new TupleComparator(schema, new int[] { 2, 1, 0 }, new boolean[] { true, true, true }) };
+		for (TupleComparator comparator : comparators) {
+			ArrayList<Tuple> expected = new ArrayList<Tuple>(tuples);
+			Collections.sort(expected, comparator);
+			for (int variant = 0; variant < 4; variant++) {
+				ExternalSort<Tuple> e = sort(tuples, comparator, variant);
+				for (Tuple t : expected) {
+					assertEquals(true, e.hasNext());
+					assertEquals(t.toString(), e.next().toString());
+				}
+				assertEquals(false, e.hasNext());
+			}
+		}
+	}
+
+	/**
+	 * Tests whether or not a {@code TupleComparator} rejects invalid attribute indexes and mismatched directions and
+	 * whether or not a {@code Tuple} rejects {@code null} attribute values.
+	 *
+	 * @throws InvalidRelationSchemaDefinitionException
+	 *             if a {@code RelationSchema} is defined inappropriately
+	 * @throws InvalidAttributeIndexException
+	 *             if an invalid attribute index is unexpectedly reported
+	 */
+	@Test
+	public void invalidArguments() throws InvalidRelationSchemaDefinitionException, InvalidAttributeIndexException {
+		RelationSchema schema = schema();
+		try {
+			new TupleComparator(schema, 0, 3);
+			fail();
+		} catch (InvalidAttributeIndexException e) {
+		}
+		try {
+			new TupleComparator(schema, new int[] { 0, 1 }, new boolean[] { true });
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new Tuple(schema, 0, null, "name"); // a TupleComparator relies on Tuples having no null attribute values
+			fail();
+		} catch (TypeException e) {
+		}
+	}
+
+	/**
+	 * Returns the {@code RelationSchema} of the {@code Tuple}s used in this test.
+	 *
+	 * @return a {@code RelationSchema} with an {@code Integer}, a {@code Double}, and a {@code String} attribute
+	 * @throws InvalidRelationSchemaDefinitionException
+	 *             if a {@code RelationSchema} is defined inappropriately
+	 */
+	static RelationSchema schema() throws InvalidRelationSchemaDefinitionException {
+		return new RelationSchema(new String[] { "ID", "Score", "Name" },
+				new Class<?>[] { Integer.class, Double.class, String.class });
+	}
+
+	/**
+	 * Generates the specified number of random {@code Tuple}s with unique IDs and many duplicate scores and names.
+	 *
+	 * @param schema
+	 *            the {@code RelationSchema} of the {@code Tuple}s
+	 * @param n
+	 *            the number of {@code Tuple}s
+	 * @return a list of random {@code Tuple}s
+	 * @throws TypeException
+	 *             if an attribute value does not match the type of the corresponding attribute
+	 */
+	static ArrayList<Tuple> tuples(RelationSchema schema, int n) throws TypeException {
+		Random random = new Random(0);
+		ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+		for (int i = 0; i < n; i++)
+			tuples.add(new Tuple(schema, i, random.nextInt(100) / 10.0, "name" + random.nextInt(50)));
+		Collections.shuffle(tuples, random);
+		return tuples;
+	}
+
+	/**
+	 * Sorts the specified {@code Tuple}s using an {@code ExternalSort}.
+	 *
+	 * @param tuples
+	 *            a list of {@code Tuple}s
+	 * @param comparator
+	 *            the {@code Comparator} that determines the order of the {@code Tuple}s
+	 * @param variant
+	 *            0 for the default settings, 1 for replacement selection, 2 for parallel construction of runs, and 3
+	 *            for loser tree merges
+	 * @return the {@code ExternalSort} used
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	ExternalSort<Tuple> sort(ArrayList<Tuple> tuples, Comparator<Tuple> comparator, int variant)
+			throws ClassNotFoundException, IOException {
+		Iterator<Tuple> iterator = tuples.iterator();
+		return new ExternalSort<Tuple>(iterator, 4, 1024, "test", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Tuple> list) {
+				return list.size() >= 2000;
+			}
+
+			@Override
+			protected boolean replacementSelection() {
+				return variant == 1;
+			}
+
+			@Override
+			protected int parallelism() {
+				return variant == 2 ? 4 : 1;
+			}
+
+			@Override
+			protected boolean loserTreeMerge() {
+				return variant == 3;
+			}
+
+			@Override
+			protected Comparator<? super Tuple> comparator() {
+				return comparator;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,125 @@
+package external_sort.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import external_sort.ExternalSort;
+import external_sort.OptimizedExternalSort;
+
+/**
+ * This program measures the time that an {@link ExternalSort} and an {@link OptimizedExternalSort} take to sort
+ * elements and return all of them, including the time for writing and reading runs.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ExternalSortBenchmark {
+
+	/**
+	 * The number of elements sorted in each invocation.
+	 */
+	static final int ELEMENTS = 200000;
+
+	/**
+	 * The number of elements in each initial run.
+	 */
+	static final int RUN_LENGTH = 10000;
+
+	/**
+	 * A flag indicating whether to use {@code OptimizedExternalSort} or {@code ExternalSort}.
+	 */
+	@Param({ "false", "true" })
+	boolean optimized;
+
+	/**
+	 * The degree of external sort.
+	 */
+	@Param({ "2", "4", "16" })
+	int degree;
+
+	/**
+	 * The buffer size.
+	 */
+	@Param({ "1024", "8192", "65536" })
+	int bufferSize;
+
+	/**
+	 * The type of the elements.
+	 */
+	@Param({ "INTEGER", "DOUBLE", "TUPLE" })
+	Payload payload;
+
+	/**
+	 * The elements to sort.
+	 */
+	ArrayList<Comparable<Object>> elements;
+
+	/**
+	 * A {@code PrintStream} that discards the progress messages of the sorts.
+	 */
+	PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+
+	/**
+	 * Generates the elements.
+	 */
+	@Setup
+	public void setup() {
+		elements = payload.generate(ELEMENTS, 0);
+	}
+
+	/**
+	 * Sorts the elements.
+	 *
+	 * @param blackhole
+	 *            a {@code Blackhole} that consumes the sorted elements
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Benchmark
+	public void sort(Blackhole blackhole) throws ClassNotFoundException, IOException {
+		ExternalSort<Comparable<Object>> e = optimized
+				? new OptimizedExternalSort<Comparable<Object>>(elements.iterator(), degree, bufferSize, "benchmark",
+						out) {
+
+					@Override
+					protected boolean isFull(ArrayList<Comparable<Object>> list) {
+						return list.size() >= RUN_LENGTH;
+					}
+
+				}
+				: new ExternalSort<Comparable<Object>>(elements.iterator(), degree, bufferSize, "benchmark", out) {
+
+					@Override
+					protected boolean isFull(ArrayList<Comparable<Object>> list) {
+						return list.size() >= RUN_LENGTH;
+					}
+
+				};
+		while (e.hasNext())
+			blackhole.consume(e.next());
+	}
+
+}
@@ -0,0 +1,117 @@
+package external_sort.benchmark;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import external_sort.InputBuffer;
+import external_sort.OutputBuffer;
+import external_sort.OutputBuffer.BufferOverflowException;
+
+/**
+ * This program measures how fast {@link InputBuffer#iterator()} deserializes objects. Each operation decodes 1 MiB of
+ * buffers so that the scores for different buffer sizes are in MiB per second.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class InputBufferBenchmark {
+
+	/**
+	 * The number of bytes decoded in each operation.
+	 */
+	static final int BYTES = 1 << 20;
+
+	/**
+	 * The size of each buffer.
+	 */
+	@Param({ "1024", "8192", "65536" })
+	int bufferSize;
+
+	/**
+	 * The type of the elements.
+	 */
+	@Param({ "INTEGER", "DOUBLE", "TUPLE" })
+	Payload payload;
+
+	/**
+	 * The {@code InputBuffer}s to decode.
+	 */
+	InputBuffer[] buffers;
+
+	/**
+	 * Fills the {@code InputBuffer}s with sorted elements in the same way as a {@code RunWriter}.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Setup
+	public void setup() throws IOException {
+		ArrayList<Comparable<Object>> elements = payload.generate(BYTES / 4, 0); // more than enough to fill the buffers
+		Collections.sort(elements);
+		Iterator<Comparable<Object>> iterator = elements.iterator();
+		buffers = new InputBuffer[BYTES / bufferSize];
+		Object last = null;
+		for (int i = 0; i < buffers.length; i++) {
+			OutputBuffer b = new OutputBuffer(bufferSize);
+			ObjectOutputStream out = new ObjectOutputStream(b);
+			try {
+				while (true) {
+					if (last == null)
+						last = iterator.next();
+					out.writeObject(last);
+					last = null;
+				}
+			} catch (BufferOverflowException e) {
+			} finally {
+				try {
+					out.close();
+				} catch (Exception e) {
+				}
+			}
+			buffers[i] = new InputBuffer(bufferSize);
+			System.arraycopy(b.toByteArray(), 0, buffers[i].toByteArray(), 0, b.toByteArray().length);
+		}
+	}
+
+	/**
+	 * Deserializes all of the objects in the {@code InputBuffer}s.
+	 *
+	 * @param blackhole
+	 *            a {@code Blackhole} that consumes the deserialized objects
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Benchmark
+	public void decode(Blackhole blackhole) throws ClassNotFoundException, IOException {
+		for (InputBuffer b : buffers) {
+			Iterator<Object> i = b.iterator();
+			while (i.hasNext())
+				blackhole.consume(i.next());
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package external_sort.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import external_sort.OrderedMergeIterator;
+
+/**
+ * This program measures how the cost of an {@link OrderedMergeIterator} per element grows with the number of merged
+ * {@code Iterator}s.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MergeBenchmark {
+
+	/**
+	 * The number of elements merged in each invocation.
+	 */
+	static final int ELEMENTS = 1 << 18;
+
+	/**
+	 * The number of merged {@code Iterator}s.
+	 */
+	@Param({ "2", "4", "16", "64", "256" })
+	int fanIn;
+
+	/**
+	 * The type of the elements.
+	 */
+	@Param({ "INTEGER", "DOUBLE", "TUPLE" })
+	Payload payload;
+
+	/**
+	 * The sorted lists to merge.
+	 */
+	ArrayList<ArrayList<Comparable<Object>>> runs;
+
+	/**
+	 * Distributes the generated elements over {@link #fanIn} sorted lists.
+	 */
+	@Setup
+	public void setup() {
+		runs = new ArrayList<ArrayList<Comparable<Object>>>();
+		for (int i = 0; i < fanIn; i++)
+			runs.add(new ArrayList<Comparable<Object>>());
+		ArrayList<Comparable<Object>> elements = payload.generate(ELEMENTS, 0);
+		for (int i = 0; i < elements.size(); i++)
+			runs.get(i % fanIn).add(elements.get(i));
+		for (ArrayList<Comparable<Object>> run : runs)
+			Collections.sort(run);
+	}
+
+	/**
+	 * Merges the sorted lists.
+	 *
+	 * @param blackhole
+	 *            a {@code Blackhole} that consumes the merged elements
+	 */
+	@Benchmark
+	@OperationsPerInvocation(ELEMENTS)
+	public void merge(Blackhole blackhole) {
+		ArrayList<Iterator<Comparable<Object>>> iterators = new ArrayList<Iterator<Comparable<Object>>>();
+		for (ArrayList<Comparable<Object>> run : runs)
+			iterators.add(run.iterator());
+		OrderedMergeIterator<Comparable<Object>> i = OrderedMergeIterator.naturalOrder(iterators);
+		while (i.hasNext())
+			blackhole.consume(i.next());
+	}
+
+}
@@ -0,0 +1,141 @@
+package external_sort.benchmark;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Random;
+
+import hdb.data.relational.RelationSchema;
+import hdb.data.relational.RelationSchema.InvalidRelationSchemaDefinitionException;
+import hdb.data.relational.Tuple;
+import hdb.data.relational.Tuple.TypeException;
+
+/**
+ * A {@code Payload} generates the elements sorted in benchmarks.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+public enum Payload {
+
+	/**
+	 * {@code Integer}s.
+	 */
+	INTEGER {
+
+		@Override
+		Comparable<?> create(Random random, int n) {
+			return random.nextInt(n);
+		}
+
+	},
+
+	/**
+	 * {@code Double}s.
+	 */
+	DOUBLE {
+
+		@Override
+		Comparable<?> create(Random random, int n) {
+			return random.nextDouble();
+		}
+
+	},
+
+	/**
+	 * {@code Record}s, each containing a {@code Tuple} with an integer, a double, and a string attribute.
+	 */
+	TUPLE {
+
+		@Override
+		Comparable<?> create(Random random, int n) {
+			int key = random.nextInt(n);
+			try {
+				return new Record(new Tuple(Record.SCHEMA, key, random.nextDouble(), "name" + key));
+			} catch (TypeException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+	};
+
+	/**
+	 * A {@code Record} orders {@code Tuple}s by their first and then second attributes.
+	 */
+	public static class Record implements Comparable<Record>, Serializable {
+
+		/**
+		 * Automatically generated serial version UID.
+		 */
+		private static final long serialVersionUID = 5416925262462716208L;
+
+		/**
+		 * The {@code RelationSchema} of the {@code Tuple}s.
+		 */
+		static final RelationSchema SCHEMA = schema();
+
+		/**
+		 * The {@code Tuple} in this {@code Record}.
+		 */
+		Tuple tuple;
+
+		/**
+		 * Constructs a {@code Record}.
+		 *
+		 * @param tuple
+		 *            a {@code Tuple}
+		 */
+		Record(Tuple tuple) {
+			this.tuple = tuple;
+		}
+
+		@Override
+		public int compareTo(Record o) {
+			int c = ((Integer) tuple.attributeValue(0)).compareTo((Integer) o.tuple.attributeValue(0));
+			return c != 0 ? c : ((Double) tuple.attributeValue(1)).compareTo((Double) o.tuple.attributeValue(1));
+		}
+
+		/**
+		 * Returns the {@code RelationSchema} of the {@code Tuple}s.
+		 *
+		 * @return the {@code RelationSchema} of the {@code Tuple}s
+		 */
+		static RelationSchema schema() {
+			try {
+				return new RelationSchema(new String[] { "key", "value", "name" },
+						new Class<?>[] { Integer.class, Double.class, String.class });
+			} catch (InvalidRelationSchemaDefinitionException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+	}
+
+	/**
+	 * Creates an element.
+	 *
+	 * @param random
+	 *            a {@code Random}
+	 * @param n
+	 *            the number of elements to generate (keys are drawn from 0, 1, ..., (n-1))
+	 * @return an element
+	 */
+	abstract Comparable<?> create(Random random, int n);
+
+	/**
+	 * Generates the specified number of elements in random order.
+	 *
+	 * @param n
+	 *            the number of elements
+	 * @param seed
+	 *            the seed for the random number generator
+	 * @return a list containing the generated elements
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayList<Comparable<Object>> generate(int n, long seed) {
+		Random random = new Random(seed);
+		ArrayList<Comparable<Object>> elements = new ArrayList<Comparable<Object>>(n);
+		for (int i = 0; i < n; i++)
+			elements.add((Comparable<Object>) create(random, n));
+		return elements;
+	}
+
+}
@@ -0,0 +1,115 @@
+package external_sort.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import external_sort.ExternalSort;
+import external_sort.RunWriter;
+
+/**
+ * This program measures how fast a {@link RunWriter} serializes sorted elements and writes them to a run. Since each
+ * run is small, the run is normally written to the page cache rather than to the disk.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RunWriterBenchmark {
+
+	/**
+	 * The number of elements written in each invocation.
+	 */
+	static final int ELEMENTS = 1 << 17;
+
+	/**
+	 * The name of the run.
+	 */
+	static final String FILE_NAME = "benchmark0.run";
+
+	/**
+	 * The size of the output buffer.
+	 */
+	@Param({ "1024", "8192", "65536" })
+	int bufferSize;
+
+	/**
+	 * The type of the elements.
+	 */
+	@Param({ "INTEGER", "DOUBLE", "TUPLE" })
+	Payload payload;
+
+	/**
+	 * The sorted elements to write.
+	 */
+	ArrayList<Comparable<Object>> elements;
+
+	/**
+	 * The {@code ExternalSort} providing the settings for the {@code RunWriter}.
+	 */
+	ExternalSort<Comparable<Object>> externalSort;
+
+	/**
+	 * Generates the elements and constructs an {@code ExternalSort} that does not sort anything by itself.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws ClassNotFoundException
+	 *             if the class of a serialized object cannot be found
+	 */
+	@Setup
+	public void setup() throws ClassNotFoundException, IOException {
+		elements = payload.generate(ELEMENTS, 0);
+		Collections.sort(elements);
+		externalSort = new ExternalSort<Comparable<Object>>(null, 2, bufferSize, "benchmark", System.out) {
+
+			@Override
+			protected boolean isFull(ArrayList<Comparable<Object>> list) {
+				return false;
+			}
+
+		};
+	}
+
+	/**
+	 * Deletes the run.
+	 */
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		new File(FILE_NAME).delete();
+	}
+
+	/**
+	 * Writes the elements to a run.
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Benchmark
+	@OperationsPerInvocation(ELEMENTS)
+	public void encode() throws IOException {
+		new RunWriter<Comparable<Object>>(elements.iterator(), FILE_NAME, bufferSize, externalSort);
+	}
+
+}
@@ -0,0 +1,10 @@
+/**
+ * Provides JMH benchmarks for classes in the {@code external_sort} package. The benchmarks reside in their own source
+ * root ({@code benchmarks}) so that the assignments compile without JMH. They are compiled against the compiled
+ * {@code external_sort} and {@code hdb.data.relational} packages and JMH ({@code org.openjdk.jmh:jmh-core} and its
+ * annotation processor {@code jmh-generator-annprocess}) and run using {@code org.openjdk.jmh.Main} (see
+ * {@code README.md}); they are not run by the tests.
+ *
+ * @author Jeong-Hyon Hwang (jhh@cs.albany.edu)
+ */
+package external_sort.benchmark;